@@ -0,0 +1,93 @@
+package it.gestione.benchmark;
+
+import it.gestione.entity.EsitoAssegnazione;
+import it.gestione.entity.GruppoTavoli;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.Tavolo;
+import it.gestione.entity.Turno;
+import it.gestione.service.AssegnatoreTavoli;
+import it.gestione.service.GestioneSala;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assegnazione automatica su ristoranti sintetici: una serata intera di prenotazioni
+ * (coperti) su più sale con gruppi di tavoli da 1 a 6 in fila e capienza ~1.3x i coperti.
+ *
+ * Avvio: mvn -Pbenchmark compile exec:exec -Djmh.args=AssegnatoreTavoliBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssegnatoreTavoliBenchmark {
+
+    private static final LocalDate DATA = LocalDate.of(2025, 12, 31);
+
+    @Param({"200", "1000", "5000"})
+    public int coperti;
+
+    private List<Prenotazione> prenotazioni;
+    private List<GruppoTavoli> gruppi;
+    private AssegnatoreTavoli assegnatore;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        GestioneSala gestioneSala = new GestioneSala(null, null, null, null, null);
+
+        // --- prenotazioni 19:00-22:30 ogni 15 minuti --- //
+        prenotazioni = new ArrayList<>();
+        int totale = 0;
+        for (int i = 0; totale < coperti; i++) {
+            int persone = numPersone(rnd);
+            LocalTime orario = LocalTime.of(19, 0).plusMinutes(15L * rnd.nextInt(15));
+            prenotazioni.add(new Prenotazione("P" + i, persone, DATA, orario, null));
+            totale += persone;
+        }
+
+        // --- sale da 40 gruppi, fila di 1-6 tavoli per gruppo, una riga vuota tra i gruppi --- //
+        gruppi = new ArrayList<>();
+        int posti = 0;
+        for (int s = 0; posti < coperti * 13 / 10; s++) {
+            String nomeSala = "Sala" + s;
+            List<Tavolo> tavoli = new ArrayList<>();
+            for (int g = 0; g < 40; g++) {
+                int n = 1 + rnd.nextInt(6);
+                for (int k = 0; k < n; k++) {
+                    tavoli.add(new Tavolo((g % 5) * 8 + k, (g / 5) * 2, StatoTavolo.LIBERO));
+                }
+            }
+            for (List<Tavolo> gruppo : gestioneSala.trovaGruppi(tavoli)) {
+                int p = gestioneSala.calcolaPosti(gruppo);
+                gruppi.add(new GruppoTavoli(nomeSala, gruppo, p));
+                posti += p;
+            }
+        }
+
+        assegnatore = new AssegnatoreTavoli(120);
+    }
+
+    @Benchmark
+    public EsitoAssegnazione assegnaSerata() {
+        return assegnatore.assegna(DATA, Turno.CENA, prenotazioni, gruppi);
+    }
+
+    // distribuzione tipica: molte coppie, pochi gruppi grandi
+    private static int numPersone(Random rnd) {
+        int r = rnd.nextInt(100);
+        if (r < 40) return 2;
+        if (r < 75) return 3 + rnd.nextInt(2);
+        if (r < 95) return 5 + rnd.nextInt(4);
+        return 9 + rnd.nextInt(6);
+    }
+}
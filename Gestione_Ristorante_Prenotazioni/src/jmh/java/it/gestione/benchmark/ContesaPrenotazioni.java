@@ -0,0 +1,204 @@
+package it.gestione.benchmark;
+
+import it.gestione.database.AssegnazioneTavoloDAO;
+import it.gestione.database.ConfigurazioneSalaDAO;
+import it.gestione.database.PrenotazioneDAO;
+import it.gestione.database.RegolaRicorrenzaDAO;
+import it.gestione.database.SalaDAO;
+import it.gestione.database.TavoloDAO;
+import it.gestione.database.WorkingDayDAO;
+import it.gestione.database.ZonaSalaDAO;
+import it.gestione.entity.AssegnazioneTavoli;
+import it.gestione.entity.EsitoPrenotazioneTavoli;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.Sala;
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.Tavolo;
+import it.gestione.entity.Turno;
+import it.gestione.service.GestioneAssegnazioneTavoli;
+import it.gestione.service.GestioneCarico;
+import it.gestione.service.GestioneEventiTavoli;
+import it.gestione.service.GestioneSala;
+import it.gestione.service.GestioneWorkingDay;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prova di contesa su prenotaConTavoli contro un database vero (variabili DB_* come l'applicazione):
+ * centinaia di operatori prenotano nello stesso istante sulla stessa sala.
+ *
+ * Crea una sala temporanea con "gruppi" gruppi da 2 tavoli (6 posti), lancia "prenotazioni"
+ * richieste da 2-6 persone partite insieme, poi verifica che:
+ *  - nessun tavolo sia stato dato a due prenotazioni;
+ *  - ogni prenotazione inserita abbia i suoi tavoli (e nessuna sia rimasta senza);
+ *  - le prenotazioni riuscite siano min(prenotazioni, gruppi).
+ * Alla fine elimina sala e prenotazioni create. Codice di uscita 1 se una verifica fallisce
+ * (o la sala di prova non si può creare), così una CI si accorge del problema.
+ *
+ * Avvio: mvn -Pbenchmark compile exec:exec -Dbenchmark.main=it.gestione.benchmark.ContesaPrenotazioni -Djmh.args="300 120 64"
+ *        (prenotazioni, gruppi, thread)
+ */
+public class ContesaPrenotazioni {
+
+    private static final LocalDate DATA = LocalDate.of(2099, 1, 1);
+    private static final Turno TURNO = Turno.CENA;
+    private static final LocalTime ORARIO = LocalTime.of(20, 0);   // senza WorkingDay: dopo le 17 è CENA
+
+    public static void main(String[] args) throws Exception {
+        int prenotazioni = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int gruppi = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+        int thread = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        ZonaSalaDAO zonaSalaDAO = new ZonaSalaDAO();
+        SalaDAO salaDAO = new SalaDAO(zonaSalaDAO);
+        TavoloDAO tavoloDAO = new TavoloDAO();
+        PrenotazioneDAO prenotazioneDAO = new PrenotazioneDAO();
+        AssegnazioneTavoloDAO assegnazioneDAO = new AssegnazioneTavoloDAO();
+
+        GestioneEventiTavoli eventi = new GestioneEventiTavoli(16, 1, false);
+        GestioneSala gestioneSala = new GestioneSala(new ConfigurazioneSalaDAO(), tavoloDAO, salaDAO, zonaSalaDAO, eventi);
+        GestioneWorkingDay gestioneWorkingDay = new GestioneWorkingDay(new WorkingDayDAO(), new RegolaRicorrenzaDAO(), 90, 120);
+        GestioneAssegnazioneTavoli gestione = new GestioneAssegnazioneTavoli(
+                assegnazioneDAO, prenotazioneDAO, gestioneSala, gestioneWorkingDay,
+                new GestioneCarico(prenotazioneDAO, gestioneSala, gestioneWorkingDay), false);
+
+        String prefisso = "contesa-" + System.currentTimeMillis();
+        Sala sala = new Sala(prefisso);
+        boolean ok = false;
+
+        try {
+            // --- sala: gruppi da 2 tavoli affiancati, 20 per riga, separati da una colonna e una riga vuote --- //
+            if (salaDAO.aggiungiSala(sala) != 1 || gestioneSala.aggiungiConfigurazione(DATA, TURNO, sala) != 1) {
+                System.err.println("Impossibile creare sala/configurazione di prova");
+                return;
+            }
+            List<Tavolo> tavoli = new ArrayList<>();
+            for (int g = 0; g < gruppi; g++) {
+                int x = (g % 20) * 3;
+                int y = (g / 20) * 2;
+                tavoli.add(new Tavolo(x, y, StatoTavolo.LIBERO));
+                tavoli.add(new Tavolo(x + 1, y, StatoTavolo.LIBERO));
+            }
+            if (gestioneSala.aggiungiTavoli(DATA, TURNO, sala, tavoli) != tavoli.size()) {
+                System.err.println("Impossibile inserire i tavoli di prova");
+                return;
+            }
+
+            // --- tutti gli operatori partono insieme --- //
+            ExecutorService pool = Executors.newFixedThreadPool(thread);
+            CountDownLatch via = new CountDownLatch(1);
+            CountDownLatch fine = new CountDownLatch(prenotazioni);
+            ConcurrentLinkedQueue<EsitoPrenotazioneTavoli> esiti = new ConcurrentLinkedQueue<>();
+            long[] latenze = new long[prenotazioni];
+            AtomicInteger indice = new AtomicInteger();
+
+            for (int i = 0; i < prenotazioni; i++) {
+                final String nome = prefisso + "-" + i;
+                pool.execute(() -> {
+                    try {
+                        via.await();
+                        int persone = ThreadLocalRandom.current().nextInt(2, 7);
+                        long t0 = System.nanoTime();
+                        esiti.add(gestione.prenotaConTavoli(new Prenotazione(nome, persone, DATA, ORARIO, null), sala.getNome()));
+                        latenze[indice.getAndIncrement()] = System.nanoTime() - t0;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        fine.countDown();
+                    }
+                });
+            }
+
+            long inizio = System.nanoTime();
+            via.countDown();
+            fine.await();
+            long durataMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inizio);
+            pool.shutdown();
+
+            // --- esito lato client --- //
+            int riuscite = 0, senzaPosto = 0, errori = 0;
+            Set<String> tavoliPresi = new HashSet<>();
+            boolean doppie = false;
+            for (EsitoPrenotazioneTavoli e : esiti) {
+                if (e.getEsito() == 1 || e.getEsito() == 2) {
+                    riuscite++;
+                    for (Tavolo t : e.getAssegnazione().getTavoli()) {
+                        doppie |= !tavoliPresi.add(t.getX() + ";" + t.getY());
+                    }
+                } else if (e.getEsito() == -3) {
+                    senzaPosto++;
+                } else {
+                    errori++;
+                }
+            }
+
+            // --- verifica lato DB --- //
+            int riservati = 0;
+            for (Tavolo t : gestioneSala.getTavoli(DATA, TURNO, sala)) {
+                if (t.getStato() == StatoTavolo.RISERVATO) {
+                    riservati++;
+                }
+            }
+            int conTavoli = 0;
+            for (AssegnazioneTavoli a : assegnazioneDAO.getAssegnazioni(DATA, TURNO)) {
+                if (sala.getNome().equals(a.getNomeSala())) {
+                    conTavoli++;
+                }
+            }
+            int inserite = 0;
+            for (Prenotazione p : prenotazioneDAO.getPrenotazioniByData(DATA)) {
+                if (p.getNome().startsWith(prefisso + "-")) {
+                    inserite++;
+                }
+            }
+
+            long[] ordinate = Arrays.copyOf(latenze, indice.get());
+            Arrays.sort(ordinate);
+
+            System.out.printf("prenotazioni=%d gruppi=%d thread=%d durata=%d ms%n", prenotazioni, gruppi, thread, durataMs);
+            System.out.printf("riuscite=%d senzaPosto=%d errori=%d%n", riuscite, senzaPosto, errori);
+            System.out.printf("latenza p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                    percentile(ordinate, 0.50), percentile(ordinate, 0.99), percentile(ordinate, 1.0));
+            System.out.printf("DB: tavoli RISERVATO=%d, prenotazioni inserite=%d, con tavoli=%d%n",
+                    riservati, inserite, conTavoli);
+
+            ok = !doppie
+                    && errori == 0
+                    && riuscite == Math.min(prenotazioni, gruppi)
+                    && riservati == tavoliPresi.size()
+                    && inserite == riuscite
+                    && conTavoli == riuscite;
+            System.out.println(ok ? "OK" : "FALLITO" + (doppie ? " (tavoli assegnati due volte)" : ""));
+
+        } finally {
+            salaDAO.eliminaSala(sala.getNome());   // cascade su configurazione, tavoli e assegnazioni
+            for (int i = 0; i < prenotazioni; i++) {
+                prenotazioneDAO.eliminaPrenotazione(DATA, prefisso + "-" + i);
+            }
+            eventi.chiudi();
+        }
+
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static double percentile(long[] ordinate, double p) {
+        if (ordinate.length == 0) {
+            return 0;
+        }
+        int i = (int) Math.ceil(p * ordinate.length) - 1;
+        return ordinate[Math.max(0, i)] / 1_000_000.0;
+    }
+}
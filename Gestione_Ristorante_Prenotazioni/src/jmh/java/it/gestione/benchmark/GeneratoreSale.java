@@ -0,0 +1,113 @@
+package it.gestione.benchmark;
+
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.Tavolo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Disposizioni sintetiche di tavoli per i benchmark di GestioneSala.
+ * Seme fisso: a parità di parametri la sala generata è sempre la stessa.
+ */
+public final class GeneratoreSale {
+
+    public enum Disposizione {
+        /** File di 1-6 tavoli separate da una colonna e una riga vuote (come una sala vera). */
+        REALISTICA,
+        /** Un unico serpente: righe piene collegate alternativamente a destra e a sinistra. */
+        SERPENTE,
+        /** Griglia quadrata piena: un solo gruppo con il massimo delle unioni. */
+        GRIGLIA_DENSA,
+        /** Tavoli isolati su coordinate pari: un gruppo per tavolo. */
+        SINGOLI_SPARSI
+    }
+
+    private GeneratoreSale() {
+    }
+
+    /**
+     * n tavoli nella disposizione richiesta, in ordine casuale (come arrivano dal DB senza ORDER BY);
+     * una quota "occupati" (0..1) è RISERVATA o OCCUPATA.
+     */
+    static List<Tavolo> genera(Disposizione disposizione, int n, double occupati) {
+        Random rnd = new Random(42);
+        List<int[]> coordinate = switch (disposizione) {
+            case REALISTICA -> realistica(n, rnd);
+            case SERPENTE -> serpente(n);
+            case GRIGLIA_DENSA -> grigliaDensa(n);
+            case SINGOLI_SPARSI -> singoliSparsi(n);
+        };
+        Collections.shuffle(coordinate, rnd);
+
+        List<Tavolo> tavoli = new ArrayList<>(n);
+        for (int[] c : coordinate) {
+            StatoTavolo stato = StatoTavolo.LIBERO;
+            if (rnd.nextDouble() < occupati) {
+                stato = rnd.nextBoolean() ? StatoTavolo.RISERVATO : StatoTavolo.OCCUPATO;
+            }
+            tavoli.add(new Tavolo(c[0], c[1], stato));
+        }
+        return tavoli;
+    }
+
+    private static int lato(int n) {
+        return Math.max(1, (int) Math.ceil(Math.sqrt(n)));
+    }
+
+    private static List<int[]> realistica(int n, Random rnd) {
+        List<int[]> c = new ArrayList<>(n);
+        int larghezza = Math.max(8, lato(n) * 2);
+        int x = 0;
+        int y = 0;
+        while (c.size() < n) {
+            int fila = Math.min(1 + rnd.nextInt(6), n - c.size());
+            if (x + fila > larghezza) {
+                x = 0;
+                y += 2;
+            }
+            for (int k = 0; k < fila; k++) {
+                c.add(new int[]{x + k, y});
+            }
+            x += fila + 1;
+        }
+        return c;
+    }
+
+    // righe piene alle y pari, un tavolo di raccordo alle y dispari (a destra, poi a sinistra, ...)
+    private static List<int[]> serpente(int n) {
+        List<int[]> c = new ArrayList<>(n);
+        int larghezza = lato(n);
+        int y = 0;
+        while (c.size() < n) {
+            for (int x = 0; x < larghezza && c.size() < n; x++) {
+                c.add(new int[]{x, y});
+            }
+            if (c.size() < n) {
+                c.add(new int[]{(y / 2) % 2 == 0 ? larghezza - 1 : 0, y + 1});
+            }
+            y += 2;
+        }
+        return c;
+    }
+
+    private static List<int[]> grigliaDensa(int n) {
+        List<int[]> c = new ArrayList<>(n);
+        int larghezza = lato(n);
+        for (int i = 0; i < n; i++) {
+            c.add(new int[]{i % larghezza, i / larghezza});
+        }
+        return c;
+    }
+
+    private static List<int[]> singoliSparsi(int n) {
+        List<int[]> c = new ArrayList<>(n);
+        int larghezza = lato(n);
+        for (int i = 0; i < n; i++) {
+            c.add(new int[]{(i % larghezza) * 2, (i / larghezza) * 2});
+        }
+        return c;
+    }
+}
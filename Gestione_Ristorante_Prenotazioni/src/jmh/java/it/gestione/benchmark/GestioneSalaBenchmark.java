@@ -0,0 +1,64 @@
+package it.gestione.benchmark;
+
+import it.gestione.entity.GruppoTavoli;
+import it.gestione.entity.Tavolo;
+import it.gestione.service.GestioneSala;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Algoritmi di GestioneSala su sale sintetiche (vedi GeneratoreSale), senza database:
+ *  - trovaGruppi: BFS dei gruppi di tavoli adiacenti
+ *  - calcolaPosti: posti di ogni gruppo (gruppi già calcolati nel setup)
+ *  - trovaGruppiLiberi: gruppi + scelta di quelli tutti LIBERI (30% dei tavoli non liberi)
+ *
+ * Avvio (allocazioni per operazione con -prof gc, nessun accesso alla rete dopo il primo build):
+ *   mvn -o -Pbenchmark compile exec:exec -Djmh.args="GestioneSalaBenchmark -prof gc"
+ * Solo alcune combinazioni: -Djmh.args="GestioneSalaBenchmark -p disposizione=SERPENTE -p numTavoli=100000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GestioneSalaBenchmark {
+
+    @Param({"REALISTICA", "SERPENTE", "GRIGLIA_DENSA", "SINGOLI_SPARSI"})
+    public GeneratoreSale.Disposizione disposizione;
+
+    @Param({"10", "1000", "100000"})
+    public int numTavoli;
+
+    private GestioneSala gestioneSala;
+    private List<Tavolo> tavoli;
+    private List<List<Tavolo>> gruppi;
+
+    @Setup
+    public void setup() {
+        gestioneSala = new GestioneSala(null, null, null, null, null);
+        tavoli = GeneratoreSale.genera(disposizione, numTavoli, 0.3);
+        gruppi = gestioneSala.trovaGruppi(tavoli);
+    }
+
+    @Benchmark
+    public List<List<Tavolo>> trovaGruppi() {
+        return gestioneSala.trovaGruppi(tavoli);
+    }
+
+    @Benchmark
+    public int calcolaPosti() {
+        int tot = 0;
+        for (List<Tavolo> gruppo : gruppi) {
+            tot += gestioneSala.calcolaPosti(gruppo);
+        }
+        return tot;
+    }
+
+    @Benchmark
+    public List<GruppoTavoli> trovaGruppiLiberi() {
+        return gestioneSala.trovaGruppiLiberi("Sala", tavoli);
+    }
+}
@@ -0,0 +1,397 @@
+package it.gestione.benchmark;
+
+import it.gestione.Main;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prova di carico HTTP end-to-end: una serata di servizio su una sala temporanea.
+ *
+ * Fasi:
+ *  1. preparazione: sala "carico-..." con gruppi da 2 tavoli, configurazione CENA (non misurata);
+ *  2. apertura turno: ogni operatore legge sala, tavoli, prenotazioni e posti (snapshot);
+ *  3. servizio, per "durata" secondi: ogni operatore (un tablet) alterna polling di /posti,
+ *     PATCH stato di un tavolo, PATCH stato-gruppo e letture delle modifiche, con pause di 50-300 ms;
+ *     ogni 5 secondi arriva una raffica di 20 POST /api/prenotazioni contemporanee;
+ *  4. pulizia: elimina prenotazioni e sala create.
+ *
+ * Per endpoint (metodo + percorso con i parametri): richieste, richieste al secondo, esiti 2xx/4xx/429/5xx/errori
+ * e percentili 50/90/99/99.9/max in ms, su console e su file (per confrontare build e impostazioni dei pool).
+ *
+ * Avvio: mvn -Pbenchmark compile exec:exec -Dbenchmark.main=it.gestione.benchmark.SerataCarico -Djmh.args="avvia 120 32"
+ *        (url | avvia, durata in secondi, operatori, file del report; default avvia 60 16 target/carico-<data>.txt)
+ *  - "avvia": avvia l'applicazione in questo processo su una porta libera, con le variabili DB_* dell'ambiente
+ *    (DB_POOL_* per provare dimensioni diverse dei pool); altri argomenti "--chiave=valore" passano a Spring.
+ *  - un url (es. http://localhost:8080): usa un'istanza già avviata.
+ * Ogni operatore si presenta con l'header X-Operatore: in "avvia" l'ammissione lo usa come client.
+ *
+ * Esce con 1 (utile in CI) se la preparazione fallisce, se c'è un'eccezione o se una soglia non è rispettata:
+ *  - CARICO_ERRORI_MAX (default 0): risposte 5xx + errori di rete ammessi in tutto (i 429 non contano);
+ *  - CARICO_P99_MAX_MS (default 0 = nessun limite): p99 massimo di ogni endpoint.
+ */
+public class SerataCarico {
+
+    private static final LocalDate DATA = LocalDate.of(2099, 1, 2);
+    private static final String TURNO = "CENA";
+    private static final int GRUPPI_PER_RIGA = 10;
+    private static final int RIGHE = 6;             // 60 gruppi da 2 tavoli
+    private static final int RAFFICA = 20;
+    private static final long INTERVALLO_RAFFICA_MS = 5_000;
+
+    private static final long ERRORI_MAX = Long.parseLong(System.getenv().getOrDefault("CARICO_ERRORI_MAX", "0"));
+    private static final double P99_MAX_MS = Double.parseDouble(System.getenv().getOrDefault("CARICO_P99_MAX_MS", "0"));
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newFixedThreadPool(8))
+            .build();
+
+    // endpoint -> latenze in microsecondi ed esiti
+    private static final Map<String, Misure> misure = new ConcurrentHashMap<>();
+
+    private static String base;
+    private static String sala;
+
+    public static void main(String[] args) throws Exception {
+        List<String> posizionali = new ArrayList<>();
+        List<String> argomentiSpring = new ArrayList<>();
+        for (String a : args) {
+            (a.startsWith("--") ? argomentiSpring : posizionali).add(a);
+        }
+        String destinazione = posizionali.size() > 0 ? posizionali.get(0) : "avvia";
+        int durata = posizionali.size() > 1 ? Integer.parseInt(posizionali.get(1)) : 60;
+        int operatori = posizionali.size() > 2 ? Integer.parseInt(posizionali.get(2)) : 16;
+        Path report = Paths.get(posizionali.size() > 3 ? posizionali.get(3)
+                : "target/carico-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".txt");
+
+        ConfigurableApplicationContext ctx = null;
+        if (destinazione.equals("avvia")) {
+            argomentiSpring.add(0, "--server.port=0");
+            argomentiSpring.add("--gestione.ammissione.header-cliente=X-Operatore");
+            ctx = SpringApplication.run(Main.class, argomentiSpring.toArray(new String[0]));
+            base = "http://localhost:" + ctx.getEnvironment().getProperty("local.server.port");
+        } else {
+            base = destinazione.endsWith("/") ? destinazione.substring(0, destinazione.length() - 1) : destinazione;
+        }
+
+        sala = "carico-" + System.currentTimeMillis();
+        ConcurrentLinkedQueue<String> create = new ConcurrentLinkedQueue<>();
+        boolean ok = false;
+
+        try {
+            if (!prepara()) {
+                System.err.println("Impossibile creare sala/configurazione/tavoli di prova su " + base);
+                return;
+            }
+            misure.clear();
+
+            ExecutorService pool = Executors.newFixedThreadPool(operatori + RAFFICA);
+
+            // --- apertura turno: snapshot di tutti gli operatori insieme --- //
+            long inizio = System.nanoTime();
+            CountDownLatch apertura = new CountDownLatch(operatori);
+            for (int o = 0; o < operatori; o++) {
+                String operatore = "op" + o;
+                pool.submit(() -> {
+                    try {
+                        aperturaTurno(operatore);
+                    } finally {
+                        apertura.countDown();
+                    }
+                });
+            }
+            apertura.await();
+
+            // --- servizio --- //
+            long fine = System.currentTimeMillis() + durata * 1000L;
+            CountDownLatch servizio = new CountDownLatch(operatori);
+            for (int o = 0; o < operatori; o++) {
+                String operatore = "op" + o;
+                pool.submit(() -> {
+                    try {
+                        while (System.currentTimeMillis() < fine) {
+                            azioneServizio(operatore);
+                            Thread.sleep(50 + ThreadLocalRandom.current().nextInt(250));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        servizio.countDown();
+                    }
+                });
+            }
+
+            AtomicInteger progressivo = new AtomicInteger();
+            while (System.currentTimeMillis() < fine) {
+                CountDownLatch raffica = new CountDownLatch(RAFFICA);
+                for (int i = 0; i < RAFFICA; i++) {
+                    String nome = sala + "-" + progressivo.incrementAndGet();
+                    String operatore = "op" + (i % operatori);
+                    pool.submit(() -> {
+                        try {
+                            if (creaPrenotazione(operatore, nome)) {
+                                create.add(nome);
+                            }
+                        } finally {
+                            raffica.countDown();
+                        }
+                    });
+                }
+                raffica.await();
+                Thread.sleep(Math.max(0, Math.min(INTERVALLO_RAFFICA_MS, fine - System.currentTimeMillis())));
+            }
+            servizio.await();
+            double secondi = (System.nanoTime() - inizio) / 1e9;
+            pool.shutdown();
+
+            String testo = report(destinazione, durata, operatori, secondi);
+            System.out.println(testo);
+            if (report.getParent() != null) {
+                Files.createDirectories(report.getParent());
+            }
+            Files.writeString(report, testo);
+            System.out.println("Report scritto in " + report.toAbsolutePath());
+
+            List<String> violazioni = violazioni();
+            violazioni.forEach(v -> System.err.println("Soglia non rispettata: " + v));
+            ok = violazioni.isEmpty();
+            System.out.println(ok ? "OK" : "FALLITO");
+
+        } catch (Exception e) {
+            e.printStackTrace();   // System.exit nel finally non lascerebbe propagare l'eccezione
+        } finally {
+            for (String nome : create) {
+                invia("pulizia", "DELETE", "/api/prenotazioni/" + DATA + "/" + codifica(nome), null, null);
+            }
+            invia("pulizia", "DELETE", "/api/sala/" + codifica(sala), null, null);
+            if (ctx != null) {
+                ctx.close();
+            }
+            System.exit(ok ? 0 : 1);
+        }
+    }
+
+    // ---------- scenario ---------- //
+
+    private static boolean prepara() {
+        if (invia("prep", "POST", "/api/sala", "{\"nome\":\"" + sala + "\"}", null) / 100 != 2) {
+            return false;
+        }
+        String configurazione = "{\"data\":\"" + DATA + "\",\"turno\":\"" + TURNO + "\",\"sala\":{\"nome\":\"" + sala + "\"}}";
+        if (invia("prep", "POST", "/api/sala/configurazioni", configurazione, null) / 100 != 2) {
+            return false;
+        }
+        // gruppi da 2 tavoli affiancati, separati da una colonna e una riga vuote
+        StringBuilder tavoli = new StringBuilder("[");
+        for (int r = 0; r < RIGHE; r++) {
+            for (int g = 0; g < GRUPPI_PER_RIGA; g++) {
+                for (int k = 0; k < 2; k++) {
+                    if (tavoli.length() > 1) {
+                        tavoli.append(',');
+                    }
+                    tavoli.append("{\"x\":").append(g * 3 + k).append(",\"y\":").append(r * 2)
+                            .append(",\"stato\":\"LIBERO\"}");
+                }
+            }
+        }
+        tavoli.append(']');
+        return invia("prep", "POST", configurazione() + "/multipli", tavoli.toString(), null) / 100 == 2;
+    }
+
+    private static void aperturaTurno(String operatore) {
+        invia("GET /api/sala/{sala}", "GET", "/api/sala/" + codifica(sala), null, operatore);
+        invia("GET /api/sala/tavoli/{sala}/{data}/{turno}", "GET", configurazione(), null, operatore);
+        invia("GET /api/prenotazioni/{data}", "GET", "/api/prenotazioni/" + DATA, null, operatore);
+        invia("GET /api/sala/posti/{sala}/{data}/{turno}/gruppi", "GET", posti() + "/gruppi", null, operatore);
+        invia("GET /api/sala/posti/{sala}/{data}/{turno}/totale", "GET", posti() + "/totale", null, operatore);
+    }
+
+    private static void azioneServizio(String operatore) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int r = rnd.nextInt(100);
+        int g = rnd.nextInt(GRUPPI_PER_RIGA);
+        int x = g * 3 + rnd.nextInt(2);
+        int y = rnd.nextInt(RIGHE) * 2;
+        String stato = new String[]{"LIBERO", "RISERVATO", "OCCUPATO"}[rnd.nextInt(3)];
+
+        if (r < 25) {
+            invia("GET /api/sala/posti/{sala}/{data}/{turno}/totale", "GET", posti() + "/totale", null, operatore);
+        } else if (r < 40) {
+            invia("GET /api/sala/posti/{sala}/{data}/{turno}/gruppi", "GET", posti() + "/gruppi", null, operatore);
+        } else if (r < 65) {
+            invia("PATCH /api/sala/tavoli/{sala}/{data}/{turno}/{x}/{y}/stato/{stato}", "PATCH",
+                    configurazione() + "/" + x + "/" + y + "/stato/" + stato, null, operatore);
+        } else if (r < 80) {
+            invia("PATCH /api/sala/tavoli/{sala}/{data}/{turno}/{x}/{y}/stato-gruppo/{stato}", "PATCH",
+                    configurazione() + "/" + x + "/" + y + "/stato-gruppo/" + stato, null, operatore);
+        } else if (r < 90) {
+            invia("GET /api/sala/tavoli/{sala}/{data}/{turno}/changes", "GET",
+                    configurazione() + "/changes?since=0", null, operatore);
+        } else {
+            invia("GET /api/prenotazioni/{data}", "GET", "/api/prenotazioni/" + DATA, null, operatore);
+        }
+    }
+
+    private static boolean creaPrenotazione(String operatore, String nome) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        LocalTime orario = LocalTime.of(19, 0).plusMinutes(15L * rnd.nextInt(14));
+        String body = "{\"nome\":\"" + nome + "\",\"numPersone\":" + (2 + rnd.nextInt(5))
+                + ",\"date\":\"" + DATA + "\",\"orario\":\"" + orario + "\",\"numeroTelefono\":\"3330000000\"}";
+        return invia("POST /api/prenotazioni", "POST", "/api/prenotazioni", body, operatore) / 100 == 2;
+    }
+
+    private static String configurazione() {
+        return "/api/sala/tavoli/" + codifica(sala) + "/" + DATA + "/" + TURNO;
+    }
+
+    private static String posti() {
+        return "/api/sala/posti/" + codifica(sala) + "/" + DATA + "/" + TURNO;
+    }
+
+    // ---------- HTTP e misure ---------- //
+
+    /** Esegue la richiesta, la registra sotto "endpoint" e ritorna lo status (0 = errore di rete). */
+    private static int invia(String endpoint, String metodo, String percorso, String json, String operatore) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(base + percorso))
+                .timeout(Duration.ofSeconds(30))
+                .method(metodo, json == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(json));
+        if (json != null) {
+            b.header("Content-Type", "application/json");
+        }
+        if (operatore != null) {
+            b.header("X-Operatore", operatore);
+        }
+
+        long inizio = System.nanoTime();
+        int status;
+        try {
+            status = CLIENT.send(b.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            status = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 0;
+        }
+        long micros = (System.nanoTime() - inizio) / 1_000;
+
+        misure.computeIfAbsent(endpoint, k -> new Misure()).aggiungi(micros, status);
+        return status;
+    }
+
+    private static String codifica(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private static String report(String destinazione, int durata, int operatori, double secondi) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# Serata di carico ").append(LocalDateTime.now().withNano(0)).append('\n');
+        sb.append("# destinazione=").append(destinazione).append(" durata=").append(durata).append("s operatori=")
+                .append(operatori).append(" raffica=").append(RAFFICA).append("/").append(INTERVALLO_RAFFICA_MS / 1000)
+                .append("s tavoli=").append(RIGHE * GRUPPI_PER_RIGA * 2).append('\n');
+        for (String v : new String[]{"DB_POOL_SCRITTURA_MAX", "DB_POOL_LETTURA_MAX", "DB_POOL_REPORT_MAX"}) {
+            sb.append("# ").append(v).append('=').append(System.getenv().getOrDefault(v, "default")).append('\n');
+        }
+        sb.append(String.format("%-72s %8s %8s %6s %6s %6s %6s %6s %9s %9s %9s %9s %9s%n",
+                "endpoint", "richieste", "req/s", "2xx", "4xx", "429", "5xx", "err",
+                "p50_ms", "p90_ms", "p99_ms", "p999_ms", "max_ms"));
+
+        for (Map.Entry<String, Misure> e : new TreeMap<>(misure).entrySet()) {
+            if (e.getKey().equals("pulizia")) {
+                continue;
+            }
+            Misure m = e.getValue();
+            long[] l = m.ordinate();
+            sb.append(String.format("%-72s %8d %8.1f %6d %6d %6d %6d %6d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    e.getKey(), l.length, l.length / secondi,
+                    m.esiti[2].get(), m.esiti[4].get() - m.troppe.get(), m.troppe.get(), m.esiti[5].get(), m.esiti[0].get(),
+                    percentile(l, 0.50), percentile(l, 0.90), percentile(l, 0.99), percentile(l, 0.999),
+                    l.length == 0 ? 0 : l[l.length - 1] / 1000.0));
+        }
+        return sb.toString();
+    }
+
+    private static List<String> violazioni() {
+        List<String> violazioni = new ArrayList<>();
+        long errori = 0;
+        for (Map.Entry<String, Misure> e : new TreeMap<>(misure).entrySet()) {
+            if (e.getKey().equals("pulizia")) {
+                continue;
+            }
+            Misure m = e.getValue();
+            errori += m.esiti[5].get() + m.esiti[0].get();
+            double p99 = percentile(m.ordinate(), 0.99);
+            if (P99_MAX_MS > 0 && p99 > P99_MAX_MS) {
+                violazioni.add(e.getKey() + " p99 " + p99 + " ms > " + P99_MAX_MS + " ms");
+            }
+        }
+        if (errori > ERRORI_MAX) {
+            violazioni.add(errori + " risposte 5xx/errori di rete > " + ERRORI_MAX);
+        }
+        return violazioni;
+    }
+
+    private static double percentile(long[] ordinate, double p) {
+        if (ordinate.length == 0) {
+            return 0;
+        }
+        int i = (int) Math.ceil(p * ordinate.length) - 1;
+        return ordinate[Math.max(0, Math.min(ordinate.length - 1, i))] / 1000.0;
+    }
+
+    private static final class Misure {
+        private long[] latenze = new long[1024];
+        private int n;
+        // indice = status / 100 (0 = errore di rete)
+        final AtomicInteger[] esiti = {
+                new AtomicInteger(), new AtomicInteger(), new AtomicInteger(),
+                new AtomicInteger(), new AtomicInteger(), new AtomicInteger()
+        };
+        final AtomicInteger troppe = new AtomicInteger();
+
+        synchronized void aggiungi(long micros, int status) {
+            if (n == latenze.length) {
+                latenze = Arrays.copyOf(latenze, n * 2);
+            }
+            latenze[n++] = micros;
+            esiti[Math.min(5, status / 100)].incrementAndGet();
+            if (status == 429) {
+                troppe.incrementAndGet();
+            }
+        }
+
+        synchronized long[] ordinate() {
+            long[] l = Arrays.copyOf(latenze, n);
+            Arrays.sort(l);
+            return l;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package it.gestione.controller;
+
+import it.gestione.database.DBConnectionManager;
+import it.gestione.database.MonitorQuery;
+import it.gestione.service.ClasseEndpoint;
+import it.gestione.service.GestioneAmmissione;
+import it.gestione.service.GestioneStatistiche;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AdminController {
+
+    private final GestioneAmmissione gestioneAmmissione;
+    private final GestioneStatistiche gestioneStatistiche;
+
+    public AdminController(GestioneAmmissione gestioneAmmissione,
+                           GestioneStatistiche gestioneStatistiche) {
+        this.gestioneAmmissione = gestioneAmmissione;
+        this.gestioneStatistiche = gestioneStatistiche;
+    }
+
+    // GET /api/admin/ammissione -> richieste ammesse / rifiutate per classe e motivo
+    @GetMapping("/ammissione")
+    public ResponseEntity<?> getStatisticheAmmissione() {
+        return ResponseEntity.ok(gestioneAmmissione.getStatistiche());
+    }
+
+    // GET /api/admin/pool -> connessioni attive / libere / in attesa per ogni pool (ClassePool)
+    @GetMapping("/pool")
+    public ResponseEntity<?> getStatistichePool() {
+        return ResponseEntity.ok(DBConnectionManager.getStatistichePool());
+    }
+
+    // GET /api/admin/query?n=20 -> query per tempo totale (impronta, esecuzioni, media, max, chiamante)
+    @GetMapping("/query")
+    public ResponseEntity<?> getQueryPiuCostose(@RequestParam(defaultValue = "20") int n) {
+        return ResponseEntity.ok(MonitorQuery.getTop(n));
+    }
+
+    // DELETE /api/admin/query -> azzera le statistiche delle query
+    @DeleteMapping("/query")
+    public ResponseEntity<?> azzeraStatisticheQuery() {
+        MonitorQuery.azzera();
+        return ResponseEntity.noContent().build();
+    }
+
+    // POST /api/admin/statistiche/ricalcola?dal=2020-01-01&al=2026-12-31
+    // -> ricostruisce il riepilogo delle prenotazioni (prima volta o dopo modifiche agli orari)
+    @ClasseAmmissione(ClasseEndpoint.PESANTE)
+    @PostMapping("/statistiche/ricalcola")
+    public ResponseEntity<?> ricalcolaStatistiche(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dal,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate al) {
+
+        int res = gestioneStatistiche.ricalcola(dal, al);
+        if (res == -2) {
+            return ResponseEntity.badRequest()
+                    .body("Periodo non valido: dal <= al, massimo " + GestioneStatistiche.MAX_GIORNI + " giorni");
+        } else if (res == -1) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Errore durante il ricalcolo del riepilogo");
+        }
+        return ResponseEntity.ok("Righe di riepilogo ricalcolate: " + res);
+    }
+}
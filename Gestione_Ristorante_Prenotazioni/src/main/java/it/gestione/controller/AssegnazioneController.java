@@ -0,0 +1,101 @@
+package it.gestione.controller;
+
+import it.gestione.entity.AssegnazioneTavoli;
+import it.gestione.entity.EsitoAssegnazione;
+import it.gestione.entity.EsitoPrenotazioneTavoli;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.Turno;
+import it.gestione.service.ClasseEndpoint;
+import it.gestione.service.GestioneAssegnazioneTavoli;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/assegnazioni")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AssegnazioneController {
+
+    private final GestioneAssegnazioneTavoli gestioneAssegnazioneTavoli;
+
+    public AssegnazioneController(GestioneAssegnazioneTavoli gestioneAssegnazioneTavoli) {
+        this.gestioneAssegnazioneTavoli = gestioneAssegnazioneTavoli;
+    }
+
+    // POST /api/assegnazioni/2025-11-18/CENA
+    @ClasseAmmissione(ClasseEndpoint.PESANTE)
+    @PostMapping("/{date}/{turno}")
+    public ResponseEntity<?> assegna(
+            @PathVariable
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate date,
+            @PathVariable String turno) {
+
+        try {
+            Turno t = Turno.valueOf(turno.toUpperCase());
+
+            EsitoAssegnazione esito = gestioneAssegnazioneTavoli.assegnaTavoli(date, t);
+            if (esito == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body("Assegnazione non salvata: tavoli modificati nel frattempo o errore DB, riprovare");
+            }
+            return ResponseEntity.ok(esito);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body("Turno non valido");
+        }
+    }
+
+    // POST /api/assegnazioni/prenota?sala=Interna -> prenotazione + tavoli riservati in un colpo solo
+    @PostMapping("/prenota")
+    public ResponseEntity<?> prenotaConTavoli(
+            @RequestBody Prenotazione body,
+            @RequestParam(required = false) String sala) {
+
+        EsitoPrenotazioneTavoli esito = gestioneAssegnazioneTavoli.prenotaConTavoli(body, sala);
+
+        if (esito.getEsito() == 1) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(esito.getAssegnazione());
+        } else if (esito.getEsito() == 2) {
+            // come POST /api/prenotazioni: inserita, ma oltre la capienza in almeno una fascia
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header("X-Capienza-Superata", "true")
+                    .body(esito.getAssegnazione());
+        } else if (esito.getEsito() == 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Prenotazione già esistente per quella data e quel nome");
+        } else if (esito.getEsito() == -3) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Nessun gruppo di tavoli libero con abbastanza posti");
+        } else if (esito.getEsito() == -4) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Prenotazione rifiutata: capienza superata nella fascia oraria");
+        } else {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Errore durante la prenotazione");
+        }
+    }
+
+    // GET /api/assegnazioni/2025-11-18/CENA
+    @GetMapping("/{date}/{turno}")
+    public ResponseEntity<?> getAssegnazioni(
+            @PathVariable
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate date,
+            @PathVariable String turno) {
+
+        try {
+            Turno t = Turno.valueOf(turno.toUpperCase());
+
+            List<AssegnazioneTavoli> lista = gestioneAssegnazioneTavoli.getAssegnazioni(date, t);
+            return ResponseEntity.ok(lista);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body("Turno non valido");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package it.gestione.controller;
+
+import it.gestione.service.ClasseEndpoint;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Classe di ammissione di un endpoint, se diversa da quella del metodo HTTP
+ * (GET = LETTURA, altri = SCRITTURA). Vedi InterceptorAmmissione.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ClasseAmmissione {
+    ClasseEndpoint value();
+}
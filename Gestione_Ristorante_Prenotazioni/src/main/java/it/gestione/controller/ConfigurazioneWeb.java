@@ -0,0 +1,24 @@
+package it.gestione.controller;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class ConfigurazioneWeb implements WebMvcConfigurer {
+
+    private final InterceptorJfr interceptorJfr;
+    private final InterceptorAmmissione interceptorAmmissione;
+
+    public ConfigurazioneWeb(InterceptorJfr interceptorJfr, InterceptorAmmissione interceptorAmmissione) {
+        this.interceptorJfr = interceptorJfr;
+        this.interceptorAmmissione = interceptorAmmissione;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // l'ordine conta: l'evento JFR copre anche il tempo (e i rifiuti) dell'ammissione
+        registry.addInterceptor(interceptorJfr).addPathPatterns("/api/**");
+        registry.addInterceptor(interceptorAmmissione).addPathPatterns("/api/**");
+    }
+}
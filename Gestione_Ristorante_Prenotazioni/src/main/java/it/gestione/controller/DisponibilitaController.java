@@ -0,0 +1,55 @@
+package it.gestione.controller;
+
+import it.gestione.entity.DisponibilitaSlot;
+import it.gestione.entity.Turno;
+import it.gestione.service.ClasseEndpoint;
+import it.gestione.service.GestioneDisponibilita;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/disponibilita")
+@CrossOrigin(origins = "http://localhost:3000")
+public class DisponibilitaController {
+
+    private final GestioneDisponibilita gestioneDisponibilita;
+
+    public DisponibilitaController(GestioneDisponibilita gestioneDisponibilita) {
+        this.gestioneDisponibilita = gestioneDisponibilita;
+    }
+
+    // GET /api/disponibilita?persone=6&dal=2025-11-01&al=2025-11-30&turno=CENA&sala=Veranda
+    @ClasseAmmissione(ClasseEndpoint.PESANTE)
+    @GetMapping
+    public ResponseEntity<?> cerca(
+            @RequestParam int persone,
+            @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate dal,
+            @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate al,
+            @RequestParam(required = false) String turno,
+            @RequestParam(required = false) String sala) {
+
+        try {
+            Turno t = (turno != null) ? Turno.valueOf(turno.toUpperCase()) : null;
+            String nomeSala = (sala != null && !sala.isBlank()) ? sala : null;
+
+            List<DisponibilitaSlot> slot = gestioneDisponibilita.cercaDisponibilita(persone, dal, al, t, nomeSala);
+            if (slot == null) {
+                return ResponseEntity.badRequest()
+                        .body("Parametri non validi: persone > 0, dal <= al, massimo "
+                                + GestioneDisponibilita.MAX_GIORNI + " giorni");
+            }
+            return ResponseEntity.ok(slot);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body("Turno non valido");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package it.gestione.controller;
+
+import it.gestione.service.ClasseEndpoint;
+import it.gestione.service.FormatoEsportazione;
+import it.gestione.service.GestioneEsportazione;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/esportazione")
+@CrossOrigin(origins = "http://localhost:3000")
+public class EsportazioneController {
+
+    private final GestioneEsportazione gestioneEsportazione;
+
+    public EsportazioneController(GestioneEsportazione gestioneEsportazione) {
+        this.gestioneEsportazione = gestioneEsportazione;
+    }
+
+    // GET /api/esportazione/prenotazioni?dal=2025-01-01&al=2025-12-31&formato=csv&gzip=true
+    // -> file prenotazioni_<dal>_<al>.csv[.gz] (formato=ndjson: .ndjson), scritto mentre si legge
+    @ClasseAmmissione(ClasseEndpoint.PESANTE)
+    @GetMapping("/prenotazioni")
+    public WebAsyncTask<Void> esportaPrenotazioni(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dal,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate al,
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+
+        FormatoEsportazione f = formato(formato);
+        if (f == null) {
+            return errore(response, HttpStatus.BAD_REQUEST, "Formato non valido: csv o ndjson");
+        }
+
+        StreamingResponseBody corpo = gestioneEsportazione.esportaPrenotazioni(dal, al, f, gzip);
+        return risposta(response, corpo, "prenotazioni", dal, al, f, gzip);
+    }
+
+    // GET /api/esportazione/storico-tavoli?dal=2025-01-01&al=2025-01-31&formato=ndjson
+    // -> modifiche dei tavoli (inserimento, stato, eliminazione) non ancora compattate
+    @ClasseAmmissione(ClasseEndpoint.PESANTE)
+    @GetMapping("/storico-tavoli")
+    public WebAsyncTask<Void> esportaStoricoTavoli(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dal,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate al,
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+
+        FormatoEsportazione f = formato(formato);
+        if (f == null) {
+            return errore(response, HttpStatus.BAD_REQUEST, "Formato non valido: csv o ndjson");
+        }
+
+        StreamingResponseBody corpo = gestioneEsportazione.esportaStoricoTavoli(dal, al, f, gzip);
+        return risposta(response, corpo, "storico_tavoli", dal, al, f, gzip);
+    }
+
+
+    // ===================== helper ===================== //
+
+    private FormatoEsportazione formato(String formato) {
+        try {
+            return FormatoEsportazione.valueOf(formato.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // WebAsyncTask e non ResponseEntity<StreamingResponseBody>: così pool e timeout sono quelli
+    // delle esportazioni (GestioneEsportazione) e non quelli globali di Spring MVC
+    private WebAsyncTask<Void> risposta(HttpServletResponse response, StreamingResponseBody corpo, String nome,
+                                        LocalDate dal, LocalDate al, FormatoEsportazione formato, boolean gzip)
+            throws IOException {
+        if (corpo == null) {
+            return errore(response, HttpStatus.BAD_REQUEST,
+                    "Periodo non valido: dal <= al, massimo " + GestioneEsportazione.MAX_GIORNI + " giorni");
+        }
+        if (!gestioneEsportazione.occupa()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+            return errore(response, HttpStatus.SERVICE_UNAVAILABLE, "Troppe esportazioni in corso, riprovare tra poco");
+        }
+
+        String estensione = (formato == FormatoEsportazione.CSV) ? ".csv" : ".ndjson";
+        MediaType tipo = (formato == FormatoEsportazione.CSV)
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : new MediaType("application", "x-ndjson");
+        if (gzip) {
+            estensione += ".gz";
+            tipo = new MediaType("application", "gzip");
+        }
+
+        ContentDisposition allegato = ContentDisposition.attachment()
+                .filename(nome + "_" + dal + "_" + al + estensione)
+                .build();
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, allegato.toString());
+        response.setContentType(tipo.toString());
+        return gestioneEsportazione.inBackground(corpo, response::getOutputStream);
+    }
+
+    // risposta scritta qui: un WebAsyncTask null dice a Spring che la richiesta è già gestita
+    private WebAsyncTask<Void> errore(HttpServletResponse response, HttpStatus stato, String messaggio)
+            throws IOException {
+        response.setStatus(stato.value());
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(messaggio);
+        return null;
+    }
+}
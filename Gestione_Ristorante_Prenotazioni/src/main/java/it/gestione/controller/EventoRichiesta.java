@@ -0,0 +1,37 @@
+package it.gestione.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR per ogni richiesta /api (vedi InterceptorJfr e jfr/gestione.jfc).
+ */
+@Name("it.gestione.Richiesta")
+@Label("Richiesta HTTP")
+@Category("Gestione Ristorante")
+@Description("Richiesta a un controller REST, con sala/data/turno se presenti nel percorso")
+@StackTrace(false)
+class EventoRichiesta extends Event {
+
+    @Label("Metodo")
+    String metodo;
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Sala")
+    String sala;
+
+    @Label("Data")
+    String data;
+
+    @Label("Turno")
+    String turno;
+
+    @Label("Status")
+    int status;
+}
@@ -0,0 +1,242 @@
+package it.gestione.controller;
+
+import it.gestione.entity.RispostaIdempotente;
+import it.gestione.service.GestioneIdempotenza;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Header Idempotency-Key sulle scritture (POST/PUT/PATCH/DELETE) di /api/**.
+ *
+ * La prima richiesta con una chiave viene eseguita e la sua risposta salvata;
+ * i duplicati (retry dei client dopo un timeout) ricevono la stessa risposta
+ * senza arrivare ai controller né ai DAO. Le risposte 5xx e i rifiuti temporanei
+ * (409 conflitto, 429 ammissione/limite) non vengono salvate, così un retry dopo
+ * un errore o un rifiuto per carico viene rieseguito.
+ *
+ *  - stessa chiave, richiesta ancora in corso  -> 409 con Retry-After
+ *  - stessa chiave e endpoint, body diverso     -> 422
+ * La chiave è legata a metodo + percorso: la stessa Idempotency-Key su endpoint diversi non collide.
+ */
+@Component
+public class FiltroIdempotenza extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String HEADER_RIPETUTA = "Idempotent-Replayed";
+
+    private static final int LUNGHEZZA_MAX = 255;
+
+    private static final Set<String> METODI = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    // esiti transitori: il retry deve poter essere eseguito davvero (es. 429 di InterceptorAmmissione)
+    private static final Set<Integer> STATI_NON_SALVATI = Set.of(
+            HttpStatus.CONFLICT.value(), HttpStatus.TOO_MANY_REQUESTS.value());
+
+    // header gestiti dal container, da non salvare
+    private static final Set<String> HEADER_ESCLUSI = Set.of(
+            HttpHeaders.CONTENT_TYPE.toLowerCase(), HttpHeaders.CONTENT_LENGTH.toLowerCase(),
+            HttpHeaders.TRANSFER_ENCODING.toLowerCase(), HttpHeaders.DATE.toLowerCase(),
+            HttpHeaders.SET_COOKIE.toLowerCase());
+
+    private final GestioneIdempotenza gestioneIdempotenza;
+
+    public FiltroIdempotenza(GestioneIdempotenza gestioneIdempotenza) {
+        this.gestioneIdempotenza = gestioneIdempotenza;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !METODI.contains(request.getMethod())
+                || !request.getRequestURI().startsWith("/api/")
+                || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+
+        String chiaveClient = request.getHeader(HEADER).trim();
+        if (chiaveClient.isEmpty() || chiaveClient.length() > LUNGHEZZA_MAX) {
+            errore(response, HttpStatus.BAD_REQUEST, "Idempotency-Key non valida");
+            return;
+        }
+
+        RichiestaLetta richiesta = new RichiestaLetta(request);
+        String chiave = request.getMethod() + " " + request.getRequestURI() + " " + chiaveClient;
+        String impronta = impronta(request.getQueryString(), richiesta.corpo);
+
+        RispostaIdempotente esistente = gestioneIdempotenza.prenota(chiave, impronta);
+        if (esistente != null) {
+            if (!impronta.equals(esistente.getImpronta())) {
+                errore(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key già usata per una richiesta diversa");
+            } else if (!esistente.isCompletata()) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                errore(response, HttpStatus.CONFLICT,
+                        "Richiesta con la stessa Idempotency-Key ancora in corso");
+            } else {
+                ripeti(esistente, response);
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper risposta = new ContentCachingResponseWrapper(response);
+        boolean salvata = false;
+        try {
+            chain.doFilter(richiesta, risposta);
+
+            if (risposta.getStatus() < 500 && !STATI_NON_SALVATI.contains(risposta.getStatus())) {
+                gestioneIdempotenza.completa(chiave, fotografa(chiave, impronta, risposta));
+                salvata = true;
+            }
+        } finally {
+            if (!salvata) {
+                gestioneIdempotenza.annulla(chiave);
+            }
+            risposta.copyBodyToResponse();
+        }
+    }
+
+    // ---------- helper ---------- //
+
+    private RispostaIdempotente fotografa(String chiave, String impronta, ContentCachingResponseWrapper risposta) {
+        StringBuilder headers = new StringBuilder();
+        for (String nome : risposta.getHeaderNames()) {
+            if (HEADER_ESCLUSI.contains(nome.toLowerCase())) {
+                continue;
+            }
+            for (String valore : risposta.getHeaders(nome)) {
+                headers.append(nome).append(": ").append(valore).append('\n');
+            }
+        }
+
+        RispostaIdempotente r = new RispostaIdempotente(chiave, impronta, Instant.now());
+        r.setStato(risposta.getStatus());
+        r.setContentType(risposta.getContentType());
+        r.setHeaders(headers.toString());
+        r.setCorpo(risposta.getContentAsByteArray());
+        return r;
+    }
+
+    // gli header salvati includono anche quelli CORS della risposta originale
+    private void ripeti(RispostaIdempotente r, HttpServletResponse response) throws IOException {
+        response.setStatus(r.getStato());
+        if (r.getHeaders() != null) {
+            for (String riga : r.getHeaders().split("\n")) {
+                int i = riga.indexOf(": ");
+                if (i > 0) {
+                    response.addHeader(riga.substring(0, i), riga.substring(i + 2));
+                }
+            }
+        }
+        response.setHeader(HEADER_RIPETUTA, "true");
+        if (r.getContentType() != null) {
+            response.setContentType(r.getContentType());
+        }
+
+        byte[] corpo = (r.getCorpo() != null) ? r.getCorpo() : new byte[0];
+        response.setContentLength(corpo.length);
+        response.getOutputStream().write(corpo);
+    }
+
+    private void errore(HttpServletResponse response, HttpStatus stato, String messaggio) throws IOException {
+        response.setStatus(stato.value());
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(messaggio);
+    }
+
+    private String impronta(String query, byte[] corpo) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            if (query != null) {
+                md.update(query.getBytes(StandardCharsets.UTF_8));
+            }
+            md.update((byte) 0);
+            md.update(corpo);
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 è sempre presente nella JVM
+        }
+    }
+
+    /**
+     * Richiesta con il body già letto in memoria: serve per l'impronta
+     * e deve restare leggibile dal controller.
+     */
+    private static class RichiestaLetta extends HttpServletRequestWrapper {
+
+        private final byte[] corpo;
+
+        RichiestaLetta(HttpServletRequest request) throws IOException {
+            super(request);
+            this.corpo = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(corpo);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // il body è già tutto in memoria: pronto subito e finito dopo la prima lettura
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String cs = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(cs)));
+        }
+    }
+}
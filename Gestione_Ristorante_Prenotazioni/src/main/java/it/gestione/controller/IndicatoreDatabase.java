@@ -0,0 +1,52 @@
+package it.gestione.controller;
+
+import it.gestione.service.GestioneSalute;
+import it.gestione.service.StatoSalute;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Componente "database" di /actuator/health, incluso nel gruppo readiness
+ * (vedi application.properties). Legge solo lo stato già calcolato da GestioneSalute:
+ *  PRONTO      -> UP
+ *  DEGRADATO   -> DEGRADATO (HTTP 200: si resta in rotazione)
+ *  NON_PRONTO  -> OUT_OF_SERVICE (HTTP 503: il bilanciatore sposta il traffico)
+ *  SCONOSCIUTO -> UNKNOWN (prima sonda non ancora completata)
+ * La liveness non include il database: un DB lento non è un motivo per riavviare l'app.
+ */
+@Component("database")
+public class IndicatoreDatabase implements HealthIndicator {
+
+    static final Status DEGRADATO = new Status("DEGRADATO", "Database lento o pool sotto pressione");
+
+    private final GestioneSalute gestioneSalute;
+
+    public IndicatoreDatabase(GestioneSalute gestioneSalute) {
+        this.gestioneSalute = gestioneSalute;
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> dettagli = gestioneSalute.getDettagli();
+        StatoSalute stato = StatoSalute.valueOf((String) dettagli.remove("stato"));
+
+        return Health.status(status(stato)).withDetails(dettagli).build();
+    }
+
+    private static Status status(StatoSalute stato) {
+        switch (stato) {
+            case PRONTO:
+                return Status.UP;
+            case DEGRADATO:
+                return DEGRADATO;
+            case NON_PRONTO:
+                return Status.OUT_OF_SERVICE;
+            default:
+                return Status.UNKNOWN;
+        }
+    }
+}
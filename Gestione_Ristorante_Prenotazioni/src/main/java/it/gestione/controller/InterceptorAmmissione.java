@@ -0,0 +1,75 @@
+package it.gestione.controller;
+
+import it.gestione.service.ClasseEndpoint;
+import it.gestione.service.GestioneAmmissione;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Applica GestioneAmmissione prima dei controller. È un interceptor e non un filtro
+ * così le risposte 429 hanno già gli header CORS di @CrossOrigin e il front le può leggere.
+ */
+@Component
+public class InterceptorAmmissione implements HandlerInterceptor {
+
+    private final GestioneAmmissione gestioneAmmissione;
+
+    // header da cui leggere l'IP del client dietro un proxy (es. X-Forwarded-For); vuoto = IP della connessione
+    private final String headerCliente;
+
+    public InterceptorAmmissione(GestioneAmmissione gestioneAmmissione,
+                                 @Value("${gestione.ammissione.header-cliente:}") String headerCliente) {
+        this.gestioneAmmissione = gestioneAmmissione;
+        this.headerCliente = headerCliente;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+
+        if (!(handler instanceof HandlerMethod metodo) || "OPTIONS".equals(request.getMethod())) {
+            return true;
+        }
+        // fine di una risposta asincrona (esportazioni, SseEmitter): la richiesta è già stata ammessa
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
+        long attesaMs = gestioneAmmissione.ammetti(classe(request, metodo), cliente(request));
+        if (attesaMs == 0) {
+            return true;
+        }
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString((attesaMs + 999) / 1000));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("Troppe richieste, riprovare tra poco");
+        return false;
+    }
+
+    private ClasseEndpoint classe(HttpServletRequest request, HandlerMethod metodo) {
+        ClasseAmmissione a = metodo.getMethodAnnotation(ClasseAmmissione.class);
+        if (a != null) {
+            return a.value();
+        }
+        return "GET".equals(request.getMethod()) ? ClasseEndpoint.LETTURA : ClasseEndpoint.SCRITTURA;
+    }
+
+    private String cliente(HttpServletRequest request) {
+        if (!headerCliente.isEmpty()) {
+            String valore = request.getHeader(headerCliente);
+            if (valore != null && !valore.isBlank()) {
+                int virgola = valore.indexOf(',');
+                return (virgola >= 0 ? valore.substring(0, virgola) : valore).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
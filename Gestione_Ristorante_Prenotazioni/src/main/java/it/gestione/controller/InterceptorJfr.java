@@ -0,0 +1,68 @@
+package it.gestione.controller;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Apre un EventoRichiesta all'ingresso nel controller e lo chiude a risposta scritta.
+ * Registrato prima dell'ammissione, così anche i 429 compaiono nella registrazione.
+ * Con l'evento disattivato (nessuna registrazione o profilo senza di lui) costa un controllo.
+ */
+@Component
+public class InterceptorJfr implements HandlerInterceptor {
+
+    private static final String ATTRIBUTO = InterceptorJfr.class.getName();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // risposta asincrona: l'evento aperto al primo ingresso resta nella richiesta e copre tutto lo stream
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        EventoRichiesta evento = new EventoRichiesta();
+        if (evento.isEnabled()) {
+            evento.begin();
+            request.setAttribute(ATTRIBUTO, evento);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        if (!(request.getAttribute(ATTRIBUTO) instanceof EventoRichiesta evento)) {
+            return;
+        }
+        evento.end();
+        if (!evento.shouldCommit()) {
+            return; // sotto soglia
+        }
+
+        evento.metodo = request.getMethod();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        evento.endpoint = (pattern != null) ? pattern.toString() : request.getRequestURI();
+        // eccezione non gestita: la risposta 500 la scrive il container dopo di noi
+        evento.status = (ex != null && response.getStatus() < 400) ? 500 : response.getStatus();
+
+        if (request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE) instanceof Map<?, ?> variabili) {
+            evento.sala = valore(variabili, "nomeSala");
+            evento.data = valore(variabili, "date");
+            evento.turno = valore(variabili, "turno");
+        }
+        if (evento.sala == null) {
+            evento.sala = request.getParameter("sala"); // es. POST /api/assegnazioni/prenota?sala=
+        }
+        evento.commit();
+    }
+
+    private static String valore(Map<?, ?> variabili, String nome) {
+        Object v = variabili.get(nome);
+        return (v != null) ? v.toString() : null;
+    }
+}
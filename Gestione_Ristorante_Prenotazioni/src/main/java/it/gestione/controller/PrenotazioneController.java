@@ -1,6 +1,9 @@
 package it.gestione.controller;
 
 import it.gestione.entity.Prenotazione;
+import it.gestione.entity.Turno;
+import it.gestione.service.ClasseEndpoint;
+import it.gestione.service.GestioneCarico;
 import it.gestione.service.GestionePrenotazione;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -18,9 +21,12 @@ import java.util.List;
 public class PrenotazioneController {
 
     private final GestionePrenotazione gestionePrenotazione;
+    private final GestioneCarico gestioneCarico;
 
-    public PrenotazioneController(GestionePrenotazione gestionePrenotazione) {
+    public PrenotazioneController(GestionePrenotazione gestionePrenotazione,
+                                  GestioneCarico gestioneCarico) {
         this.gestionePrenotazione = gestionePrenotazione;
+        this.gestioneCarico = gestioneCarico;
     }
 
     // ---------- CREATE ---------- //
@@ -33,6 +39,14 @@ public class PrenotazioneController {
         if (res == 1) {
             // inserita
             return ResponseEntity.status(HttpStatus.CREATED).body(body);
+        } else if (res == 2) {
+            // inserita, ma oltre la capienza in almeno una fascia: lo segnalo in un header
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header("X-Capienza-Superata", "true")
+                    .body(body);
+        } else if (res == -3) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Prenotazione rifiutata: capienza superata nella fascia oraria");
         } else if (res == 0) {
             // già esistente (data + nome)
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -51,6 +65,40 @@ public class PrenotazioneController {
         return gestionePrenotazione.getAllPrenotazioni();
     }
 
+    // GET /api/prenotazioni/cerca?q=rosi&dal=2025-11-01&al=2025-11-30&limite=20
+    // q = nome (anche parziale o con errori) oppure numero di telefono; dal / al opzionali
+    @GetMapping("/cerca")
+    public ResponseEntity<?> cerca(
+            @RequestParam String q,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dal,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate al,
+            @RequestParam(defaultValue = "20") int limite) {
+
+        List<Prenotazione> lista = gestionePrenotazione.cercaPrenotazioni(q, dal, al, limite);
+        if (lista == null) {
+            return ResponseEntity.badRequest()
+                    .body("Periodo non valido: dal deve precedere al");
+        }
+        return ResponseEntity.ok(lista);
+    }
+
+    // GET /api/prenotazioni/carico/2025-11-18/CENA
+    @ClasseAmmissione(ClasseEndpoint.PESANTE)
+    @GetMapping("/carico/{date}/{turno}")
+    public ResponseEntity<?> getCarico(
+            @PathVariable
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @PathVariable String turno) {
+
+        try {
+            Turno t = Turno.valueOf(turno.toUpperCase());
+            return ResponseEntity.ok(gestioneCarico.calcolaCarico(date, t));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body("Turno non valido");
+        }
+    }
+
     // GET /api/prenotazioni/2025-11-18
     @GetMapping("/{date}")
     public ResponseEntity<?> getByDate(
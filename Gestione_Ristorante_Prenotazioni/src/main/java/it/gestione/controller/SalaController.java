@@ -1,28 +1,45 @@
 package it.gestione.controller;
 
 import it.gestione.entity.ConfigurazioneSala;
+import it.gestione.entity.DeltaModifiche;
+import it.gestione.entity.EventoTavolo;
+import it.gestione.entity.ModificaZona;
 import it.gestione.entity.Sala;
 import it.gestione.entity.StatoTavolo;
 import it.gestione.entity.Tavolo;
 import it.gestione.entity.Turno;
+import it.gestione.service.GestioneModifiche;
 import it.gestione.service.GestioneSala;
+import it.gestione.service.PiantaCompatta;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/sala")
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = "X-Versione")
 public class SalaController {
 
+    private static final MediaType PIANTA_COMPATTA = MediaType.parseMediaType(PiantaCompatta.MEDIA_TYPE);
+
+    // versione del registro modifiche da usare come "since" per il delta sync
+    private static final String HEADER_VERSIONE = "X-Versione";
+
     private final GestioneSala gestioneSala;
+    private final GestioneModifiche gestioneModifiche;
 
-    public SalaController(GestioneSala gestioneSala) {
+    public SalaController(GestioneSala gestioneSala, GestioneModifiche gestioneModifiche) {
         this.gestioneSala = gestioneSala;
+        this.gestioneModifiche = gestioneModifiche;
     }
 
     // ---------- GESTIONE SALA FISICA (Sala + ZonaSala) ---------- //
@@ -55,13 +72,40 @@ public class SalaController {
     }
 
     @GetMapping("/{nomeSala}")
-    public ResponseEntity<?> getSala(@PathVariable String nomeSala) {
+    public ResponseEntity<?> getSala(
+            @PathVariable String nomeSala,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+        long versione = gestioneModifiche.getVersioneZone();
         Sala sala = gestioneSala.getSala(nomeSala);
         if (sala == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body("Sala non trovata");
         }
-        return ResponseEntity.ok(sala);
+
+        // Accept: application/x-floorplan -> zone in formato binario compatto
+        if (accettaPiantaCompatta(accept)) {
+            return variaPerAccept(conVersione(piantaCompatta(PiantaCompatta.codificaZone(sala.getZone()), sala), versione));
+        }
+        return variaPerAccept(conVersione(ResponseEntity.ok(sala), versione));
+    }
+
+    @GetMapping("/{nomeSala}/zone/changes")
+    public ResponseEntity<?> getModificheZone(
+            @PathVariable String nomeSala,
+            @RequestParam(defaultValue = "0") long since) {
+
+        if (since < 0) {
+            return ResponseEntity.badRequest()
+                    .body("Parametro since non valido");
+        }
+
+        DeltaModifiche<ModificaZona> delta = gestioneModifiche.getModificheZone(nomeSala, since);
+        if (delta == null) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Errore durante la lettura delle modifiche");
+        }
+        return ResponseEntity.ok(delta);
     }
 
     @PutMapping("/{nomeSala}/zone")
@@ -163,20 +207,77 @@ public class SalaController {
             @PathVariable
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
             LocalDate date,
-            @PathVariable String turno) {
+            @PathVariable String turno,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
 
         try {
             Turno t = Turno.valueOf(turno.toUpperCase());
             Sala sala = new Sala(nomeSala);
 
+            long versione = gestioneModifiche.getVersioneTavoli();
             List<Tavolo> tavoli = gestioneSala.getTavoli(date, t, sala);
-            return ResponseEntity.ok(tavoli);
+
+            // Accept: application/x-floorplan -> griglia a 2 bit per cella
+            if (accettaPiantaCompatta(accept)) {
+                return variaPerAccept(conVersione(piantaCompatta(PiantaCompatta.codificaTavoli(tavoli), tavoli), versione));
+            }
+            return variaPerAccept(conVersione(ResponseEntity.ok(tavoli), versione));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body("Turno non valido");
+        }
+    }
+
+    // solo le modifiche dopo "since" (una per tavolo), oppure resyncRichiesto = true
+    @GetMapping("/tavoli/{nomeSala}/{date}/{turno}/changes")
+    public ResponseEntity<?> getModificheTavoli(
+            @PathVariable String nomeSala,
+            @PathVariable
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate date,
+            @PathVariable String turno,
+            @RequestParam(defaultValue = "0") long since) {
+
+        try {
+            Turno t = Turno.valueOf(turno.toUpperCase());
+            Sala sala = new Sala(nomeSala);
+
+            if (since < 0) {
+                return ResponseEntity.badRequest()
+                        .body("Parametro since non valido");
+            }
+
+            DeltaModifiche<EventoTavolo> delta = gestioneModifiche.getModificheTavoli(date, t, sala, since);
+            if (delta == null) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Errore durante la lettura delle modifiche");
+            }
+            return ResponseEntity.ok(delta);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest()
                     .body("Turno non valido");
         }
     }
 
+    // stream SSE: evento "snapshot" iniziale, poi eventi "tavolo" (INSERITO/ELIMINATO/STATO/RESET)
+    @GetMapping(value = "/tavoli/{nomeSala}/{date}/{turno}/eventi", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter eventiTavoli(
+            @PathVariable String nomeSala,
+            @PathVariable
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate date,
+            @PathVariable String turno) {
+
+        try {
+            Turno t = Turno.valueOf(turno.toUpperCase());
+            Sala sala = new Sala(nomeSala);
+
+            return gestioneSala.iscriviEventiTavoli(date, t, sala);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Turno non valido");
+        }
+    }
+
     @PostMapping("/tavoli/{nomeSala}/{date}/{turno}")
     public ResponseEntity<?> aggiungiTavolo(
             @PathVariable String nomeSala,
@@ -202,6 +303,9 @@ public class SalaController {
             } else if (res == 0) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body("Tavolo già esistente in quella posizione per data/turno/sala");
+            } else if (res == -2) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("Posizione tavolo non valida: fuori dalle zone vivibili della sala");
             } else {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                         .body("Errore durante l'inserimento del Tavolo");
@@ -213,6 +317,82 @@ public class SalaController {
         }
     }
 
+    @PostMapping("/tavoli/{nomeSala}/{date}/{turno}/multipli")
+    public ResponseEntity<?> aggiungiTavoli(
+            @PathVariable String nomeSala,
+            @PathVariable
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate date,
+            @PathVariable String turno,
+            @RequestBody List<Tavolo> body) {
+
+        try {
+            Turno t = Turno.valueOf(turno.toUpperCase());
+            Sala sala = new Sala(nomeSala);
+
+            if (body == null || body.isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body("Lista tavoli vuota");
+            }
+            for (Tavolo tavolo : body) {
+                if (tavolo == null) {
+                    return ResponseEntity.badRequest()
+                            .body("Tavolo nullo nella lista");
+                }
+                if (tavolo.getStato() == null) {
+                    return ResponseEntity.badRequest()
+                            .body("Campo obbligatorio: stato tavolo");
+                }
+            }
+
+            int res = gestioneSala.aggiungiTavoli(date, t, sala, body);
+
+            if (res >= 0) {
+                return ResponseEntity.status(HttpStatus.CREATED)
+                        .body("Tavoli inseriti: " + res);
+            } else if (res == -2) {
+                // rispondo con i tavoli da spostare, niente è stato inserito
+                List<Tavolo> nonValidi = gestioneSala.trovaTavoliNonValidi(nomeSala, body);
+                if (nonValidi != null) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(nonValidi);
+                }
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Errore durante la lettura delle zone della sala");
+            } else {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Errore durante l'inserimento dei Tavoli");
+            }
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body("Turno non valido");
+        }
+    }
+
+    @GetMapping("/tavoli/{nomeSala}/{date}/{turno}/non-validi")
+    public ResponseEntity<?> getTavoliNonValidi(
+            @PathVariable String nomeSala,
+            @PathVariable
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate date,
+            @PathVariable String turno) {
+
+        try {
+            Turno t = Turno.valueOf(turno.toUpperCase());
+            Sala sala = new Sala(nomeSala);
+
+            List<Tavolo> nonValidi = gestioneSala.getTavoliNonValidi(date, t, sala);
+            if (nonValidi == null) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Errore durante la lettura delle zone della sala");
+            }
+            return ResponseEntity.ok(nonValidi);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body("Turno non valido");
+        }
+    }
+
     @DeleteMapping("/tavoli/{nomeSala}/{date}/{turno}/{x}/{y}")
     public ResponseEntity<?> eliminaTavolo(
             @PathVariable String nomeSala,
@@ -354,4 +534,58 @@ public class SalaController {
                     .body("Turno non valido");
         }
     }
+
+    // ---------- helper ---------- //
+
+    /**
+     * true solo se il client chiede esplicitamente application/x-floorplan
+     * (Accept generici, es. application/* o qualsiasi tipo, continuano a ricevere JSON).
+     */
+    private boolean accettaPiantaCompatta(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        try {
+            for (MediaType m : MediaType.parseMediaTypes(accept)) {
+                if (!m.isWildcardType() && !m.isWildcardSubtype() && m.isCompatibleWith(PIANTA_COMPATTA)) {
+                    return true;
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        return false;
+    }
+
+    // aggiunge X-Versione alle letture complete (solo se il registro è leggibile)
+    private ResponseEntity<?> conVersione(ResponseEntity<?> risposta, long versione) {
+        if (versione < 0 || !risposta.getStatusCode().is2xxSuccessful()) {
+            return risposta;
+        }
+        return ResponseEntity.status(risposta.getStatusCode())
+                .headers(risposta.getHeaders())
+                .header(HEADER_VERSIONE, Long.toString(versione))
+                .body(risposta.getBody());
+    }
+
+    // stessa URL, rappresentazione diversa secondo Accept: una cache condivisa deve tenerne conto
+    private ResponseEntity<?> variaPerAccept(ResponseEntity<?> risposta) {
+        return ResponseEntity.status(risposta.getStatusCode())
+                .headers(risposta.getHeaders())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(risposta.getBody());
+    }
+
+    // raster che non conviene (dati null): stesso contenuto in JSON, con Content-Type esplicito
+    // così lo si scrive anche se Accept chiede solo application/x-floorplan
+    private ResponseEntity<?> piantaCompatta(byte[] dati, Object json) {
+        if (dati == null) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(json);
+        }
+        return ResponseEntity.ok()
+                .contentType(PIANTA_COMPATTA)
+                .body(dati);
+    }
 }
@@ -0,0 +1,38 @@
+package it.gestione.controller;
+
+import it.gestione.entity.StatistichePrenotazioni;
+import it.gestione.service.ClasseEndpoint;
+import it.gestione.service.GestioneStatistiche;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/statistiche")
+@CrossOrigin(origins = "http://localhost:3000")
+public class StatisticheController {
+
+    private final GestioneStatistiche gestioneStatistiche;
+
+    public StatisticheController(GestioneStatistiche gestioneStatistiche) {
+        this.gestioneStatistiche = gestioneStatistiche;
+    }
+
+    // GET /api/statistiche/prenotazioni?dal=2025-01-01&al=2025-12-31
+    // -> prenotazioni e coperti totali, per mese, giorno, turno e numero di persone
+    @ClasseAmmissione(ClasseEndpoint.PESANTE)
+    @GetMapping("/prenotazioni")
+    public ResponseEntity<?> getStatistichePrenotazioni(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dal,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate al) {
+
+        StatistichePrenotazioni s = gestioneStatistiche.getStatistiche(dal, al);
+        if (s == null) {
+            return ResponseEntity.badRequest()
+                    .body("Periodo non valido: dal <= al, massimo " + GestioneStatistiche.MAX_GIORNI + " giorni");
+        }
+        return ResponseEntity.ok(s);
+    }
+}
@@ -1,7 +1,9 @@
 package it.gestione.controller;
 
+import it.gestione.entity.RegolaRicorrenza;
 import it.gestione.entity.WorkingDay;
 import it.gestione.entity.WorkingDayType;
+import it.gestione.service.ClasseEndpoint;
 import it.gestione.service.GestioneWorkingDay;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -91,4 +93,62 @@ public class WorkingDayController {
                     .body("Tipo non valido. Valori ammessi: WEEKDAY, SATURDAY, SUNDAY, SPECIAL");
         }
     }
+
+    // ---------- RICORRENZE ---------- //
+
+    @PostMapping("/ricorrenze") // POST /api/working-days/ricorrenze -> una regola al posto di tanti SPECIAL
+    public ResponseEntity<?> createRegola(@RequestBody RegolaRicorrenza body) {
+        int res = gestioneWorkingDay.aggiungiRegola(body);
+
+        if (res > 0) {
+            body.setId(res);
+            return ResponseEntity.status(HttpStatus.CREATED).body(body);
+        } else if (res == -2) {
+            return ResponseEntity.badRequest().body(gestioneWorkingDay.descriviErrore(body));
+        } else {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Errore durante l'inserimento della regola");
+        }
+    }
+
+    @GetMapping("/ricorrenze")
+    public List<RegolaRicorrenza> getAllRegole() {
+        return gestioneWorkingDay.getAllRegole();
+    }
+
+    @DeleteMapping("/ricorrenze/{id}")
+    public ResponseEntity<?> deleteRegola(@PathVariable int id) {
+        int deleted = gestioneWorkingDay.eliminaRegola(id);
+        if (deleted == -1) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Errore durante l'eliminazione della regola");
+        }
+        return ResponseEntity.ok("Regole eliminate: " + deleted);
+    }
+
+    // GET /api/working-days/ricorrenze/espansione?dal=2026-01-01&al=2026-12-31 -> SPECIAL generati, senza salvarli
+    @GetMapping("/ricorrenze/espansione")
+    public ResponseEntity<?> espandi(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dal,
+                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate al) {
+        List<WorkingDay> lista = gestioneWorkingDay.espandiRicorrenze(dal, al);
+        if (lista == null) {
+            return ResponseEntity.badRequest().body("Periodo non valido (dal <= al, al massimo 3 anni)");
+        }
+        return ResponseEntity.ok(lista);
+    }
+
+    // POST /api/working-days/ricorrenze/materializza?dal=...&al=... -> salva i SPECIAL generati con un solo batch
+    @PostMapping("/ricorrenze/materializza")
+    @ClasseAmmissione(ClasseEndpoint.PESANTE)
+    public ResponseEntity<?> materializza(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dal,
+                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate al) {
+        int res = gestioneWorkingDay.materializzaRicorrenze(dal, al);
+        if (res == -2) {
+            return ResponseEntity.badRequest().body("Periodo non valido (dal <= al, al massimo 3 anni)");
+        } else if (res == -1) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Errore durante il salvataggio dei giorni speciali");
+        }
+        return ResponseEntity.ok("Special inseriti: " + res);
+    }
 }
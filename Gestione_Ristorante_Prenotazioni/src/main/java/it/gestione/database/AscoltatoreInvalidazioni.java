@@ -0,0 +1,17 @@
+package it.gestione.database;
+
+/**
+ * Implementato dai service che tengono dati in cache: il BusInvalidazioni
+ * li trova tutti come bean Spring.
+ */
+public interface AscoltatoreInvalidazioni {
+
+    /** Un nodo (anche questo) ha modificato la chiave indicata. */
+    void invalida(TipoInvalidazione tipo, String chiave);
+
+    /**
+     * Cambio di stato della connessione LISTEN. In entrambi i casi la cache va svuotata:
+     * con attivo = false non va più usata, perché le notifiche degli altri nodi non arrivano.
+     */
+    void cambioStatoBus(boolean attivo);
+}
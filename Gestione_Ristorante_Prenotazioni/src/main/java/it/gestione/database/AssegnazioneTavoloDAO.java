@@ -0,0 +1,346 @@
+package it.gestione.database;
+
+import it.gestione.entity.AssegnazioneTavoli;
+import it.gestione.entity.GruppoTavoli;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.Tavolo;
+import it.gestione.entity.Turno;
+
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Repository
+public class AssegnazioneTavoloDAO {
+
+    // ritorni di prenotaETrattieni oltre a -1 (errore SQL)
+    public static final int PRENOTAZIONE_ESISTENTE = -2;
+    public static final int NESSUN_GRUPPO = -3;
+    public static final int RIFIUTATA = -4;
+
+    // ---------- SQL ---------- //
+
+    private static final String INSERT_SQL =
+            "INSERT INTO assegnazione_tavolo (data, turno, nome_sala, x, y, nome_prenotazione) " +
+                    "VALUES (?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT DO NOTHING";
+
+    // il vincolo su stato = LIBERO evita di "rubare" un tavolo cambiato nel frattempo
+    private static final String RISERVA_SQL =
+            "UPDATE tavolo_sala SET stato = ? " +
+                    "WHERE data = ? AND turno = ? AND nome_sala = ? AND x = ? AND y = ? " +
+                    "AND stato = ?";
+
+    // completato con una coppia "(?, ?)" per tavolo: vedi sqlBloccaGruppo
+    private static final String BLOCCA_GRUPPO_SQL =
+            "SELECT x, y FROM tavolo_sala " +
+                    "WHERE data = ? AND turno = ? AND nome_sala = ? AND stato = ? " +
+                    "AND (x, y) IN (%s) " +
+                    "FOR UPDATE SKIP LOCKED";
+
+    private static final String SELECT_NOMI_SQL =
+            "SELECT DISTINCT nome_prenotazione " +
+                    "FROM assegnazione_tavolo " +
+                    "WHERE data = ? AND turno = ?";
+
+    private static final String SELECT_BY_TURNO_SQL =
+            "SELECT a.nome_prenotazione, a.nome_sala, a.x, a.y, t.stato, p.num_persone, p.orario " +
+                    "FROM assegnazione_tavolo a " +
+                    "JOIN tavolo_sala t ON t.data = a.data AND t.turno = a.turno " +
+                    "AND t.nome_sala = a.nome_sala AND t.x = a.x AND t.y = a.y " +
+                    "JOIN prenotazioni p ON p.data = a.data AND p.nome = a.nome_prenotazione " +
+                    "WHERE a.data = ? AND a.turno = ? " +
+                    "ORDER BY p.orario, a.nome_prenotazione, a.nome_sala, a.y, a.x";
+
+
+    // ---------- COSTRUTTORE ---------- //
+
+    public AssegnazioneTavoloDAO() {}
+
+
+    // ---------- CRUD ---------- //
+
+    /**
+     * Salva in un'unica transazione tutte le assegnazioni di un (data, turno)
+     * e porta i tavoli coinvolti da LIBERO a RISERVATO (due batch JDBC).
+     *
+     * Ritorna:
+     *  numero di tavoli riservati,
+     *  -1 in caso di errore SQL o se un tavolo non è più LIBERO (rollback completo).
+     */
+    public int salvaAssegnazioni(LocalDate data, Turno turno, List<AssegnazioneTavoli> assegnazioni) {
+        if (assegnazioni.isEmpty()) {
+            return 0;
+        }
+
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA)) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement ins = conn.prepareStatement(INSERT_SQL);
+                 PreparedStatement upd = conn.prepareStatement(RISERVA_SQL)) {
+
+                // un gruppo può servire più prenotazioni nel turno: lo riservo una volta sola
+                Set<String> giaRiservati = new HashSet<>();
+
+                for (AssegnazioneTavoli a : assegnazioni) {
+                    for (Tavolo t : a.getTavoli()) {
+                        ins.setDate(1, Date.valueOf(data));
+                        ins.setString(2, turno.name());
+                        ins.setString(3, a.getNomeSala());
+                        ins.setInt(4, t.getX());
+                        ins.setInt(5, t.getY());
+                        ins.setString(6, a.getNomePrenotazione());
+                        ins.addBatch();
+
+                        if (giaRiservati.add(a.getNomeSala() + ";" + t.getX() + ";" + t.getY())) {
+                            upd.setString(1, StatoTavolo.RISERVATO.name());
+                            upd.setDate(2, Date.valueOf(data));
+                            upd.setString(3, turno.name());
+                            upd.setString(4, a.getNomeSala());
+                            upd.setInt(5, t.getX());
+                            upd.setInt(6, t.getY());
+                            upd.setString(7, StatoTavolo.LIBERO.name());
+                            upd.addBatch();
+                        }
+                    }
+                }
+
+                ins.executeBatch();
+                int[] aggiornati = upd.executeBatch();
+
+                for (int n : aggiornati) {
+                    if (n == 0) {
+                        conn.rollback();
+                        System.err.println("Assegnazione annullata: almeno un tavolo non è più LIBERO");
+                        return -1;
+                    }
+                }
+
+                conn.commit();
+                return aggiornati.length;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("salvaAssegnazioni", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Inserisce la prenotazione e trattiene per lei un gruppo di tavoli LIBERI,
+     * tutto in un'unica transazione.
+     *
+     * I candidati vengono provati in ordine: i tavoli di ogni gruppo sono bloccati con
+     * FOR UPDATE SKIP LOCKED, quindi se un altro operatore sta prendendo lo stesso gruppo
+     * (o uno dei suoi tavoli non è più LIBERO) si passa subito al successivo senza attendere.
+     * I lock parziali di un gruppo scartato vengono rilasciati con un savepoint.
+     *
+     * L'insert passa da PrenotazioneDAO.inserisci con il controllo (es. capienza): lock sul
+     * turno e controllo come in aggiungiPrenotazione, quindi prenotazioni con e senza tavoli
+     * dello stesso (data, turno) passano una alla volta. controllo null = nessun controllo.
+     *
+     * Ritorna:
+     *  indice (>= 0) in candidati del gruppo trattenuto,
+     *  PRENOTAZIONE_ESISTENTE se esiste già una prenotazione con stessa data e nome,
+     *  NESSUN_GRUPPO se nessun candidato era disponibile (prenotazione non inserita),
+     *  RIFIUTATA se il controllo ha rifiutato l'inserimento,
+     *  -1 in caso di errore SQL.
+     */
+    public int prenotaETrattieni(Prenotazione p, Turno turno, List<GruppoTavoli> candidati,
+                                 ControlloInserimento controllo) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA)) {
+            conn.setAutoCommit(false);
+
+            try {
+                int n = PrenotazioneDAO.inserisci(conn, p, turno, controllo);
+                if (n != 1) {
+                    conn.rollback();
+                    return (n == 0) ? PRENOTAZIONE_ESISTENTE : RIFIUTATA;
+                }
+
+                for (int i = 0; i < candidati.size(); i++) {
+                    GruppoTavoli g = candidati.get(i);
+                    Savepoint sp = conn.setSavepoint();
+
+                    if (bloccaGruppo(conn, p.getDate(), turno, g)) {
+                        // i tavoli sono bloccati e LIBERI: insert e update non possono fallire per concorrenza
+                        try (PreparedStatement ins = conn.prepareStatement(INSERT_SQL);
+                             PreparedStatement upd = conn.prepareStatement(RISERVA_SQL)) {
+                            for (Tavolo t : g.getTavoli()) {
+                                ins.setDate(1, Date.valueOf(p.getDate()));
+                                ins.setString(2, turno.name());
+                                ins.setString(3, g.getNomeSala());
+                                ins.setInt(4, t.getX());
+                                ins.setInt(5, t.getY());
+                                ins.setString(6, p.getNome());
+                                ins.addBatch();
+
+                                upd.setString(1, StatoTavolo.RISERVATO.name());
+                                upd.setDate(2, Date.valueOf(p.getDate()));
+                                upd.setString(3, turno.name());
+                                upd.setString(4, g.getNomeSala());
+                                upd.setInt(5, t.getX());
+                                upd.setInt(6, t.getY());
+                                upd.setString(7, StatoTavolo.LIBERO.name());
+                                upd.addBatch();
+                            }
+                            upd.executeBatch();
+                            ins.executeBatch();
+                        }
+
+                        conn.commit();
+                        return i;
+                    }
+
+                    conn.rollback(sp);
+                }
+
+                conn.rollback();
+                return NESSUN_GRUPPO;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("prenotaETrattieni", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Nomi delle prenotazioni che hanno già dei tavoli assegnati in (data, turno).
+     */
+    public Set<String> getNomiPrenotazioniAssegnate(LocalDate data, Turno turno) {
+        Set<String> nomi = new HashSet<>();
+
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_NOMI_SQL,
+                    ps -> {
+                        ps.setDate(1, Date.valueOf(data));
+                        ps.setString(2, turno.name());
+                    },
+                    rs -> rs.getString("nome_prenotazione"), nomi::add);
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getNomiPrenotazioniAssegnate", e);
+        }
+
+        return nomi;
+    }
+
+    /**
+     * Tutte le assegnazioni salvate per (data, turno), una per prenotazione e sala.
+     */
+    public List<AssegnazioneTavoli> getAssegnazioni(LocalDate data, Turno turno) {
+        Map<String, AssegnazioneTavoli> perChiave = new LinkedHashMap<>();
+
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_BY_TURNO_SQL,
+                    ps -> {
+                        ps.setDate(1, Date.valueOf(data));
+                        ps.setString(2, turno.name());
+                    },
+                    rs -> {
+                        String nome = rs.getString("nome_prenotazione");
+                        String nomeSala = rs.getString("nome_sala");
+
+                        AssegnazioneTavoli a = perChiave.get(nome + ";" + nomeSala);
+                        if (a == null) {
+                            a = new AssegnazioneTavoli();
+                            a.setNomePrenotazione(nome);
+                            a.setNomeSala(nomeSala);
+                            a.setNumPersone(rs.getInt("num_persone"));
+
+                            Time t = rs.getTime("orario");
+                            if (t != null)
+                                a.setOrario(t.toLocalTime());
+
+                            perChiave.put(nome + ";" + nomeSala, a);
+                        }
+
+                        a.getTavoli().add(new Tavolo(rs.getInt("x"), rs.getInt("y"),
+                                StatoTavolo.valueOf(rs.getString("stato"))));
+                    });
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getAssegnazioni", e);
+        }
+
+        return new ArrayList<>(perChiave.values());
+    }
+
+
+    // ---------- helper ---------- //
+
+    // true se tutti i tavoli del gruppo sono stati bloccati e sono ancora LIBERI
+    private boolean bloccaGruppo(Connection conn, LocalDate data, Turno turno, GruppoTavoli g) throws SQLException {
+        List<Tavolo> tavoli = g.getTavoli();
+        if (tavoli.isEmpty()) {
+            return false;
+        }
+
+        StringBuilder coppie = new StringBuilder();
+        for (int i = 0; i < tavoli.size(); i++) {
+            coppie.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(String.format(BLOCCA_GRUPPO_SQL, coppie))) {
+            int idx = 1;
+            ps.setDate(idx++, Date.valueOf(data));
+            ps.setString(idx++, turno.name());
+            ps.setString(idx++, g.getNomeSala());
+            ps.setString(idx++, StatoTavolo.LIBERO.name());
+            for (Tavolo t : tavoli) {
+                ps.setInt(idx++, t.getX());
+                ps.setInt(idx++, t.getY());
+            }
+
+            int bloccati = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    bloccati++;
+                }
+            }
+            return bloccati == tavoli.size();
+        }
+    }
+}
+
+/*
+CREATE TABLE assegnazione_tavolo (
+    data DATE NOT NULL,
+    turno VARCHAR(16) NOT NULL,
+    nome_sala VARCHAR(64) NOT NULL,
+    x INT NOT NULL,
+    y INT NOT NULL,
+    nome_prenotazione VARCHAR(100) NOT NULL,
+
+    PRIMARY KEY (data, turno, nome_sala, x, y, nome_prenotazione),
+
+    FOREIGN KEY (data, turno, nome_sala, x, y)
+        REFERENCES tavolo_sala(data, turno, nome_sala, x, y)
+        ON DELETE CASCADE,
+
+    FOREIGN KEY (data, nome_prenotazione)
+        REFERENCES prenotazioni(data, nome)
+        ON DELETE CASCADE
+);
+*/
@@ -0,0 +1,222 @@
+package it.gestione.database;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Invalidazione delle cache tra più istanze del backend con LISTEN/NOTIFY di PostgreSQL.
+ *
+ * - i DAO, dopo una scrittura riuscita, chiamano notifica(...) sulla loro connessione;
+ * - ogni nodo tiene UNA connessione dedicata (fuori da Hikari) in LISTEN sul canale
+ *   e inoltra le notifiche agli AscoltatoreInvalidazioni;
+ * - se la connessione cade le notifiche nel frattempo sono perse: le cache restano
+ *   disattivate finché non si riconnette e poi ripartono da vuote.
+ *
+ * Payload: "<codice tipo>:<chiave>", es. "S:Sala1" o "W:*".
+ */
+@Component
+public class BusInvalidazioni {
+
+    public static final String CANALE = "gestione_invalidazioni";
+
+    private static final String NOTIFY_SQL = "SELECT pg_notify(?, ?)";
+
+    private static final long ATTESA_MIN_MS = 1_000;
+    private static final long ATTESA_MAX_MS = 30_000;
+
+    private final List<AscoltatoreInvalidazioni> ascoltatori;
+    private final boolean attivo;
+    private final int pollMs;
+    private final int pingMs;
+
+    // completata la prima volta che le cache sono abilitate (vedi getPrimaConnessione)
+    private final CompletableFuture<Void> primaConnessione = new CompletableFuture<>();
+
+    private volatile boolean inEsecuzione;
+    private volatile Connection connessione;
+    private Thread thread;
+
+    public BusInvalidazioni(List<AscoltatoreInvalidazioni> ascoltatori,
+                            @Value("${gestione.invalidazioni.attivo:true}") boolean attivo,
+                            @Value("${gestione.invalidazioni.poll-ms:500}") int pollMs,
+                            @Value("${gestione.invalidazioni.ping-ms:15000}") int pingMs) {
+        this.ascoltatori = ascoltatori;
+        this.attivo = attivo;
+        this.pollMs = pollMs;
+        this.pingMs = pingMs;
+    }
+
+    // ---------- PUBBLICAZIONE (usata dai DAO) ---------- //
+
+    /**
+     * Pubblica una notifica sulla connessione del DAO. Se la connessione è in una
+     * transazione, PostgreSQL la consegna solo al commit (e mai in caso di rollback).
+     * Un errore qui non fa fallire la scrittura: viene solo registrato.
+     */
+    public static void notifica(Connection conn, TipoInvalidazione tipo, String chiave) {
+        try (PreparedStatement ps = conn.prepareStatement(NOTIFY_SQL)) {
+            ps.setString(1, CANALE);
+            ps.setString(2, tipo.getCodice() + ":" + chiave);
+            ps.execute();
+        } catch (SQLException e) {
+            System.err.println("Errore SQL in notifica (" + tipo + " " + chiave + "): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pubblica una notifica fuori da una transazione, su una connessione SCRITTURA presa e resa subito
+     * (per eventi che seguono una scrittura già committata, es. quelli SSE dei tavoli).
+     */
+    public static void notifica(TipoInvalidazione tipo, String chiave) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA)) {
+            notifica(conn, tipo, chiave);
+        } catch (SQLException e) {
+            System.err.println("Errore SQL in notifica (" + tipo + " " + chiave + "): " + e.getMessage());
+        }
+    }
+
+    // ---------- ASCOLTO ---------- //
+
+    @PostConstruct
+    public void avvia() {
+        if (!attivo) {
+            // nodo singolo: bastano le invalidazioni locali dei service
+            for (AscoltatoreInvalidazioni a : ascoltatori) {
+                a.cambioStatoBus(true);
+            }
+            primaConnessione.complete(null);
+            return;
+        }
+
+        inEsecuzione = true;
+        thread = new Thread(this::ascolta, "bus-invalidazioni");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        inEsecuzione = false;
+        Connection c = connessione;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (SQLException ignored) {
+                // in chiusura
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public boolean isConnesso() {
+        return connessione != null;
+    }
+
+    /**
+     * Completata quando le cache sono abilitate per la prima volta: subito con il bus disattivato,
+     * altrimenti alla prima LISTEN riuscita, dopo che tutti gli ascoltatori hanno svuotato e
+     * riabilitato le loro cache. Prima di allora quello che si legge non resta in cache.
+     */
+    public CompletableFuture<Void> getPrimaConnessione() {
+        return primaConnessione;
+    }
+
+    private void ascolta() {
+        long attesa = ATTESA_MIN_MS;
+
+        while (inEsecuzione) {
+            try (Connection conn = DBConnectionManager.apriConnessioneDedicata()) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("LISTEN " + CANALE);
+                }
+                PGConnection pg = conn.unwrap(PGConnection.class);
+
+                // da qui in poi non si perde nulla: le cache ripartono da vuote
+                connessione = conn;
+                cambioStato(true);
+                attesa = ATTESA_MIN_MS;
+
+                long ultimoContatto = System.currentTimeMillis();
+                while (inEsecuzione) {
+                    PGNotification[] notifiche = pg.getNotifications(pollMs);
+                    long ora = System.currentTimeMillis();
+
+                    if (notifiche != null && notifiche.length > 0) {
+                        for (PGNotification n : notifiche) {
+                            consegna(n.getParameter());
+                        }
+                        ultimoContatto = ora;
+                    } else if (ora - ultimoContatto >= pingMs) {
+                        // una connessione mezza aperta non dà errori finché non ci si scrive
+                        if (!conn.isValid(5)) {
+                            throw new SQLException("connessione LISTEN non più valida");
+                        }
+                        ultimoContatto = ora;
+                    }
+                }
+
+            } catch (SQLException e) {
+                if (!inEsecuzione) {
+                    break;
+                }
+                System.err.println("Bus invalidazioni: LISTEN non disponibile, nuovo tentativo tra "
+                        + attesa + " ms (" + e.getMessage() + ")");
+            } finally {
+                if (connessione != null) {
+                    connessione = null;
+                    cambioStato(false);
+                }
+            }
+
+            try {
+                Thread.sleep(attesa);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            attesa = Math.min(attesa * 2, ATTESA_MAX_MS);
+        }
+    }
+
+    private void consegna(String payload) {
+        if (payload == null || payload.length() < 2 || payload.charAt(1) != ':') {
+            return;
+        }
+        TipoInvalidazione tipo = TipoInvalidazione.daCodice(payload.charAt(0));
+        if (tipo == null) {
+            return;
+        }
+
+        String chiave = payload.substring(2);
+        for (AscoltatoreInvalidazioni a : ascoltatori) {
+            try {
+                a.invalida(tipo, chiave);
+            } catch (RuntimeException e) {
+                System.err.println("Errore in invalidazione " + payload + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void cambioStato(boolean connesso) {
+        for (AscoltatoreInvalidazioni a : ascoltatori) {
+            try {
+                a.cambioStatoBus(connesso);
+            } catch (RuntimeException e) {
+                System.err.println("Errore in cambio stato bus invalidazioni: " + e.getMessage());
+            }
+        }
+        if (connesso) {
+            primaConnessione.complete(null);
+        }
+    }
+}
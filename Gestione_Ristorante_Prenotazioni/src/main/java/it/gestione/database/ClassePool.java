@@ -0,0 +1,37 @@
+package it.gestione.database;
+
+/**
+ * Pool di connessioni separati (bulkhead) per classe di operazione.
+ * Ogni metodo dei DAO dichiara la sua classe in DBConnectionManager.getConnection:
+ * un picco di report non può togliere connessioni agli aggiornamenti dei tavoli in servizio.
+ */
+public enum ClassePool {
+
+    /** Scritture interattive (stato tavoli, prenotazioni, configurazione): brevi e urgenti. */
+    SCRITTURA("DB_POOL_SCRITTURA", 8, 5_000),
+
+    /** Letture interattive per singola data / sala. */
+    LETTURA("DB_POOL_LETTURA", 8, 10_000),
+
+    /** Letture massive, periodi, report e manutenzione (compattazioni, pulizie). */
+    REPORT("DB_POOL_REPORT", 4, 30_000);
+
+    // prefisso delle variabili d'ambiente: <prefisso>_MAX e <prefisso>_TIMEOUT_MS
+    private final String prefissoEnv;
+    private final int maxDefault;
+    private final long timeoutDefaultMs;
+
+    ClassePool(String prefissoEnv, int maxDefault, long timeoutDefaultMs) {
+        this.prefissoEnv = prefissoEnv;
+        this.maxDefault = maxDefault;
+        this.timeoutDefaultMs = timeoutDefaultMs;
+    }
+
+    int getMaxConnessioni() {
+        return Integer.parseInt(System.getenv().getOrDefault(prefissoEnv + "_MAX", String.valueOf(maxDefault)));
+    }
+
+    long getTimeoutMs() {
+        return Long.parseLong(System.getenv().getOrDefault(prefissoEnv + "_TIMEOUT_MS", String.valueOf(timeoutDefaultMs)));
+    }
+}
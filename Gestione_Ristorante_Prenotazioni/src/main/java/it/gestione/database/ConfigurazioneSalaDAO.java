@@ -50,7 +50,7 @@ public class ConfigurazioneSalaDAO {
      * -1 = errore SQL
      */
     public int aggiungiConfigurazione(ConfigurazioneSala c) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
 
             ps.setDate(1, Date.valueOf(c.getData()));
@@ -60,7 +60,7 @@ public class ConfigurazioneSalaDAO {
             return ps.executeUpdate();
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in aggiungiConfigurazione: " + e.getMessage());
+            ErroriSQL.segnala("aggiungiConfigurazione", e);
             return -1;
         }
     }
@@ -70,7 +70,7 @@ public class ConfigurazioneSalaDAO {
      * Elimina una configurazione sala specifica.
      */
     public int eliminaConfigurazione(LocalDate data, Turno turno, String nomeSala) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
 
             ps.setDate(1, Date.valueOf(data));
@@ -80,7 +80,7 @@ public class ConfigurazioneSalaDAO {
             return ps.executeUpdate();
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in eliminaConfigurazione: " + e.getMessage());
+            ErroriSQL.segnala("eliminaConfigurazione", e);
             return -1;
         }
     }
@@ -92,7 +92,7 @@ public class ConfigurazioneSalaDAO {
      */
     public ConfigurazioneSala getConfigurazione(LocalDate data, Turno turno, String nomeSala) {
 
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.LETTURA);
              PreparedStatement ps = conn.prepareStatement(SELECT_BY_KEY_SQL)) {
 
             ps.setDate(1, Date.valueOf(data));
@@ -106,7 +106,7 @@ public class ConfigurazioneSalaDAO {
             }
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getConfigurazione: " + e.getMessage());
+            ErroriSQL.segnala("getConfigurazione", e);
         }
 
         return null;
@@ -119,16 +119,12 @@ public class ConfigurazioneSalaDAO {
     public List<ConfigurazioneSala> getAllConfigurazioni() {
         List<ConfigurazioneSala> lista = new ArrayList<>();
 
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_ALL_SQL);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                lista.add(mapRowToConfigurazione(rs));
-            }
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.REPORT, SELECT_ALL_SQL, ParametriQuery.NESSUNO,
+                    this::mapRowToConfigurazione, lista::add);
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getAllConfigurazioni: " + e.getMessage());
+            ErroriSQL.segnala("getAllConfigurazioni", e);
         }
 
         return lista;
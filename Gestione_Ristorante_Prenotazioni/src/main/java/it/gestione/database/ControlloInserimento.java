@@ -0,0 +1,16 @@
+package it.gestione.database;
+
+import it.gestione.entity.Prenotazione;
+
+import java.util.List;
+
+/**
+ * Controllo eseguito da PrenotazioneDAO.aggiungiPrenotazione dentro la transazione dell'insert,
+ * con il turno già bloccato: riceve le prenotazioni presenti nella data, comprese quelle
+ * appena committate da chi aveva il lock prima. Deve solo calcolare, senza prendere connessioni.
+ * Ritorna false per rifiutare l'inserimento.
+ */
+@FunctionalInterface
+public interface ControlloInserimento {
+    boolean consenti(List<Prenotazione> presentiNellaData);
+}
@@ -2,14 +2,25 @@ package it.gestione.database;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import java.sql.*;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 public class DBConnectionManager {
 
     // ======= CONFIG =======
     // Imposta queste variabili d'ambiente in esecuzione:
     // DB_HOST, DB_PORT, DB_NAME, DB_USER, DB_PASSWORD
+    // Opzionali, per pool: DB_POOL_<SCRITTURA|LETTURA|REPORT>_MAX e _TIMEOUT_MS (vedi ClassePool)
     private static final String HOST = System.getenv("DB_HOST");
     private static final String PORT = System.getenv("DB_PORT");
     private static final String DB   = System.getenv("DB_NAME");
@@ -23,60 +34,315 @@ public class DBConnectionManager {
     private static final String URL =
             "jdbc:postgresql://" + HOST + ":" + PORT + "/" + DB + "?sslmode=require&preferQueryMode=simple";
 
-    private static final HikariDataSource DS;
+    // Connessione dedicata per LISTEN (BusInvalidazioni): deve essere una sessione diretta,
+    // un PgBouncer in transaction pooling non mantiene le LISTEN.
+    // DB_LISTEN_HOST / DB_LISTEN_PORT se diversi dal pooler, altrimenti gli stessi di sopra.
+    private static final String LISTEN_HOST = System.getenv().getOrDefault("DB_LISTEN_HOST", HOST);
+    private static final String LISTEN_PORT = System.getenv().getOrDefault("DB_LISTEN_PORT", PORT);
 
-    static {
+    private static final String LISTEN_URL =
+            "jdbc:postgresql://" + LISTEN_HOST + ":" + LISTEN_PORT + "/" + DB + "?sslmode=require&tcpKeepAlive=true";
+
+    // un pool Hikari per ClassePool: dimensioni e timeout separati (DB_POOL_<CLASSE>_MAX / _TIMEOUT_MS).
+    // Creati in background (avviaPool, chiamato all'avvio da GestioneAvvio o dalla prima richiesta):
+    // la registrazione delle metriche e la connessione LISTEN non dipendono dal DB raggiungibile,
+    // e chi chiede una connessione durante la creazione aspetta al massimo il timeout del suo pool.
+    private static final Object LOCK_POOL = new Object();
+    private static volatile Map<ClassePool, HikariDataSource> pool;
+    private static CompletableFuture<Map<ClassePool, HikariDataSource>> creazione; // sotto LOCK_POOL
+    private static MeterRegistry registroMetriche;
+
+    /**
+     * Avvia la creazione dei pool su un thread dedicato, se non sono già creati o in creazione.
+     * Il future si completa quando i pool sono pronti, o con l'errore se il DB non risponde
+     * (in quel caso la prossima richiesta di connessione riprova).
+     */
+    public static CompletableFuture<?> avviaPool() {
+        synchronized (LOCK_POOL) {
+            if (pool != null) {
+                return CompletableFuture.completedFuture(pool);
+            }
+            if (creazione == null) {
+                CompletableFuture<Map<ClassePool, HikariDataSource>> f = new CompletableFuture<>();
+                creazione = f;
+                Thread t = new Thread(() -> completaCreazione(f), "avvio-pool-db");
+                t.setDaemon(true);
+                t.start();
+            }
+            return creazione;
+        }
+    }
+
+    private static void completaCreazione(CompletableFuture<Map<ClassePool, HikariDataSource>> f) {
+        Map<ClassePool, HikariDataSource> nuovi = new EnumMap<>(ClassePool.class);
+        try {
+            for (ClassePool classe : ClassePool.values()) {
+                nuovi.put(classe, creaPool(classe));
+            }
+        } catch (RuntimeException e) {
+            // DB non raggiungibile: niente pool a metà, si riprova alla prossima richiesta
+            nuovi.values().forEach(HikariDataSource::close);
+            synchronized (LOCK_POOL) {
+                creazione = null;
+            }
+            f.completeExceptionally(e);
+            return;
+        }
+
+        synchronized (LOCK_POOL) {
+            // metriche registrate mentre i pool si stavano creando
+            if (registroMetriche != null) {
+                for (HikariDataSource ds : nuovi.values()) {
+                    if (ds.getMetricRegistry() == null) {
+                        ds.setMetricRegistry(registroMetriche);
+                    }
+                }
+            }
+            pool = nuovi;
+            creazione = null;
+        }
+        f.complete(nuovi);
+    }
+
+    // pool pronti, aspettando la creazione al massimo il timeout di connessione della classe
+    private static Map<ClassePool, HikariDataSource> pool(ClassePool classe) throws SQLException {
+        Map<ClassePool, HikariDataSource> p = pool;
+        if (p != null) {
+            return p;
+        }
+
+        long timeoutMs = classe.getTimeoutMs();
+        try {
+            avviaPool().get(timeoutMs, TimeUnit.MILLISECONDS);
+            return pool;
+        } catch (TimeoutException e) {
+            throw new SQLTransientConnectionException("Pool DB non pronti dopo " + timeoutMs + " ms");
+        } catch (ExecutionException e) {
+            throw new SQLTransientConnectionException("Creazione pool DB fallita: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrotto in attesa dei pool DB", e);
+        }
+    }
+
+    /**
+     * Metriche Hikari (hikaricp.connections.active / idle / pending / acquire, tag pool)
+     * sul registro Micrometer, anche per i pool già creati.
+     */
+    public static void registraMetriche(MeterRegistry registro) {
+        synchronized (LOCK_POOL) {
+            registroMetriche = registro;
+            if (pool != null) {
+                for (HikariDataSource ds : pool.values()) {
+                    if (ds.getMetricRegistry() == null) {
+                        ds.setMetricRegistry(registro);
+                    }
+                }
+            }
+        }
+    }
+
+    private static HikariDataSource creaPool(ClassePool classe) {
         HikariConfig cfg = new HikariConfig();
         cfg.setJdbcUrl(URL);
         cfg.setUsername(USER);
         cfg.setPassword(PASS);
+        // il nome del pool compare nei log e negli MXBean di Hikari
+        cfg.setPoolName("gestione-" + classe.name().toLowerCase());
 
         // ------- Pool tuning (valori tipici, aggiusta in base al carico) -------
-        cfg.setMaximumPoolSize(20);
-        cfg.setMinimumIdle(2);
+        cfg.setMaximumPoolSize(classe.getMaxConnessioni());
+        cfg.setMinimumIdle(classe == ClassePool.REPORT ? 0 : 2);
         cfg.setAutoCommit(true);
-        cfg.setConnectionTimeout(10_000); // ms
+        cfg.setConnectionTimeout(classe.getTimeoutMs());
         cfg.setIdleTimeout(300_000);      // 5 min
         cfg.setMaxLifetime(1_800_000);    // 30 min (tenere < timeout server)
 
         // Compatibilità PgBouncer (transaction pooling)
         cfg.addDataSourceProperty("prepareThreshold", "0");
 
-        DS = new HikariDataSource(cfg);
+        if (registroMetriche != null) {
+            cfg.setMetricRegistry(registroMetriche);
+        }
+
+        return new HikariDataSource(cfg);
     }
 
-    /** Restituisce una Connection dal pool (ricordati di chiuderla con try-with-resources). */
-    public static Connection getConnection() throws SQLException {
-        return DS.getConnection();
+    /**
+     * Restituisce una Connection dal pool della classe indicata
+     * (ricordati di chiuderla con try-with-resources).
+     * Gli statement creati sono misurati da ProxyJdbc (query lente e top in MonitorQuery);
+     * l'attesa per la connessione è un EventoConnessione JFR.
+     */
+    public static Connection getConnection(ClassePool classe) throws SQLException {
+        EventoConnessione evento = new EventoConnessione();
+        evento.begin();
+        try {
+            Connection conn = ProxyJdbc.connessione(pool(classe).get(classe).getConnection());
+            evento.riuscita = true;
+            return conn;
+        } finally {
+            evento.end();
+            if (evento.shouldCommit()) {
+                evento.pool = classe.name();
+                evento.commit();
+            }
+        }
+    }
+
+    /** Thread in coda per una connessione del pool (0 se il pool non è ancora disponibile). */
+    public static int getThreadInAttesa(ClassePool classe) {
+        Map<ClassePool, HikariDataSource> p = pool;
+        if (p == null) {
+            return 0;
+        }
+        HikariPoolMXBean mx = p.get(classe).getHikariPoolMXBean();
+        return (mx != null) ? mx.getThreadsAwaitingConnection() : 0;
     }
 
     /**
-     * Esegue una SELECT con Statement semplice e restituisce un ResultSet APERTO.
-     * Chi deve chiudere: ResultSet, Statement e Connection (usa closeResources).
-     * Consigliato usare PreparedStatement nei DAO.
+     * Stato di ogni pool: connessioni attive, libere, totali, thread in attesa,
+     * massimo e timeout configurati. Vuoto finché i pool non sono stati creati.
      */
-    public static ResultSet selectQuery(String query) throws SQLException {
-        Connection conn = getConnection();
-        Statement stmt = conn.createStatement();
-        System.out.println("Eseguo SELECT: " + query);
-        return stmt.executeQuery(query);
+    public static Map<String, Map<String, Long>> getStatistichePool() {
+        Map<String, Map<String, Long>> stat = new LinkedHashMap<>();
+        Map<ClassePool, HikariDataSource> p = pool;
+        if (p == null) {
+            return stat;
+        }
+        for (Map.Entry<ClassePool, HikariDataSource> e : p.entrySet()) {
+            HikariDataSource ds = e.getValue();
+            HikariPoolMXBean mx = ds.getHikariPoolMXBean();
+            Map<String, Long> m = new LinkedHashMap<>();
+            m.put("attive", (mx != null) ? (long) mx.getActiveConnections() : 0L);
+            m.put("libere", (mx != null) ? (long) mx.getIdleConnections() : 0L);
+            m.put("totali", (mx != null) ? (long) mx.getTotalConnections() : 0L);
+            m.put("inAttesa", (mx != null) ? (long) mx.getThreadsAwaitingConnection() : 0L);
+            m.put("max", (long) ds.getMaximumPoolSize());
+            m.put("timeoutMs", ds.getConnectionTimeout());
+            stat.put(e.getKey().name(), m);
+        }
+        return stat;
+    }
+
+    /**
+     * SELECT 1 su una connessione del pool, per la sonda di salute (GestioneSalute).
+     * Ritorna {nanosecondi di attesa della connessione, nanosecondi del round trip}.
+     * Non passa da ProxyJdbc: la sonda non deve comparire tra le query di MonitorQuery.
+     */
+    public static long[] sonda(ClassePool classe, int timeoutSecondi) throws SQLException {
+        long inizio = System.nanoTime();
+        try (Connection conn = pool(classe).get(classe).getConnection()) {
+            long connessa = System.nanoTime();
+            try (Statement st = conn.createStatement()) {
+                st.setQueryTimeout(timeoutSecondi);
+                st.execute("SELECT 1");
+            }
+            return new long[] { connessa - inizio, System.nanoTime() - connessa };
+        }
+    }
+
+    /** Connessione fuori dal pool, per chi la tiene aperta a lungo (LISTEN). Va chiusa dal chiamante. */
+    static Connection apriConnessioneDedicata() throws SQLException {
+        return DriverManager.getConnection(LISTEN_URL, USER, PASS);
+    }
+
+    // righe per blocco: fetch size delle query interattive e FETCH FORWARD dei cursori REPORT
+    private static final int RIGHE_PER_BLOCCO = 500;
+
+    /**
+     * Esegue una SELECT e passa ogni riga, già convertita da mappa, al consumatore.
+     * Ritorna il numero di righe passate al consumatore (vedi la versione con ElaboraRiga).
+     */
+    public static <T> long perOgniRiga(ClassePool classe, String sql, ParametriQuery parametri,
+                                       MappaRiga<T> mappa, Consumer<? super T> consumatore) throws SQLException {
+        return perOgniRiga(classe, sql, parametri, rs -> consumatore.accept(mappa.mappa(rs)));
+    }
+
+    /**
+     * Esegue una SELECT e chiama elabora su ogni riga.
+     * Connessione, statement e ResultSet sono sempre chiusi, anche se elabora
+     * lancia un'eccezione: non c'è niente da chiudere a carico del chiamante.
+     *
+     * REPORT: cursore lato server (DECLARE / FETCH a blocchi di RIGHE_PER_BLOCCO) in una transazione,
+     * memoria costante qualunque sia il numero di righe. Serve il cursore esplicito perché con
+     * preferQueryMode=simple (PgBouncer) il driver ignora il fetch size.
+     * LETTURA / SCRITTURA: una sola esecuzione, con fetch size impostato.
+     *
+     * Ritorna il numero di righe elaborate.
+     */
+    public static long perOgniRiga(ClassePool classe, String sql, ParametriQuery parametri,
+                                   ElaboraRiga elabora) throws SQLException {
+        try (Connection conn = getConnection(classe)) {
+            if (classe == ClassePool.REPORT) {
+                return conCursore(conn, sql, parametri, elabora);
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setFetchSize(RIGHE_PER_BLOCCO);
+                parametri.imposta(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return scorri(rs, elabora);
+                }
+            }
+        }
+    }
+
+    private static long conCursore(Connection conn, String sql, ParametriQuery parametri,
+                                   ElaboraRiga elabora) throws SQLException {
+        // nome diverso per ogni SQL: nelle statistiche di MonitorQuery i FETCH restano distinti
+        String cursore = "cursore_" + Integer.toUnsignedString(sql.hashCode(), 36);
+
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement ps = conn.prepareStatement("DECLARE " + cursore + " NO SCROLL CURSOR FOR " + sql)) {
+                parametri.imposta(ps);
+                ps.execute();
+            }
+
+            long totale = 0;
+            try (PreparedStatement fetch = conn.prepareStatement("FETCH FORWARD " + RIGHE_PER_BLOCCO + " FROM " + cursore)) {
+                long blocco;
+                do {
+                    try (ResultSet rs = fetch.executeQuery()) {
+                        blocco = scorri(rs, elabora);
+                    }
+                    totale += blocco;
+                } while (blocco == RIGHE_PER_BLOCCO);
+            }
+
+            conn.commit(); // chiude anche il cursore
+            return totale;
+
+        } catch (SQLException | RuntimeException | Error e) {
+            try {
+                conn.rollback();
+            } catch (SQLException r) {
+                e.addSuppressed(r);
+            }
+            throw e;
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException ignorata) {
+                // connessione rotta: Hikari la scarta, conta l'eccezione originale
+            }
+        }
+    }
+
+    private static long scorri(ResultSet rs, ElaboraRiga elabora) throws SQLException {
+        long n = 0;
+        while (rs.next()) {
+            elabora.elabora(rs);
+            n++;
+        }
+        return n;
     }
 
     /** Esegue UPDATE/INSERT/DELETE con Statement semplice (risorse chiuse automaticamente). */
     public static int updateQuery(String query) throws SQLException {
-        try (Connection conn = getConnection();
+        try (Connection conn = getConnection(ClassePool.SCRITTURA);
              Statement stmt = conn.createStatement()) {
-            System.out.println("Eseguo UPDATE: " + query);
-            int result = stmt.executeUpdate(query);
-            System.out.println("Righe modificate: " + result);
-            return result;
+            return stmt.executeUpdate(query);
         }
     }
-
-    /** Utility per chiudere in sicurezza rs/stmt/conn quando usi selectQuery(String). */
-    public static void closeResources(Connection conn, Statement stmt, ResultSet rs) {
-        try { if (rs != null && !rs.isClosed()) rs.close(); } catch (SQLException e) { e.printStackTrace(); }
-        try { if (stmt != null && !stmt.isClosed()) stmt.close(); } catch (SQLException e) { e.printStackTrace(); }
-        try { if (conn != null && !conn.isClosed()) conn.close(); } catch (SQLException e) { e.printStackTrace(); }
-    }
 }
@@ -0,0 +1,13 @@
+package it.gestione.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Elabora la riga corrente del ResultSet (senza chiamare next):
+ * per le letture che raggruppano più righe in un solo oggetto.
+ */
+@FunctionalInterface
+public interface ElaboraRiga {
+    void elabora(ResultSet rs) throws SQLException;
+}
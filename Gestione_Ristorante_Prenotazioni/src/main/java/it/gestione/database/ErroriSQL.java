@@ -0,0 +1,28 @@
+package it.gestione.database;
+
+import java.sql.SQLException;
+
+/**
+ * Punto unico per gli errori SQL dei DAO: stampa il messaggio come prima
+ * e segna il thread, così MetricheDAO conta l'errore anche se il metodo
+ * lo trasforma in un valore di ritorno (-1, null, lista vuota).
+ */
+final class ErroriSQL {
+
+    private static final ThreadLocal<Boolean> ERRORE = new ThreadLocal<>();
+
+    private ErroriSQL() {
+    }
+
+    static void segnala(String metodo, SQLException e) {
+        System.err.println("Errore SQL in " + metodo + ": " + e.getMessage());
+        ERRORE.set(Boolean.TRUE);
+    }
+
+    /** true se dall'ultima chiamata c'è stato un errore; azzera il segnale. */
+    static boolean consuma() {
+        boolean errore = ERRORE.get() != null;
+        ERRORE.remove();
+        return errore;
+    }
+}
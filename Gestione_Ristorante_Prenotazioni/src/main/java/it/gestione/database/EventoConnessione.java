@@ -0,0 +1,26 @@
+package it.gestione.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR per l'acquisizione di una connessione in DBConnectionManager.getConnection
+ * (attesa in coda al pool compresa).
+ */
+@Name("it.gestione.AcquisizioneConnessione")
+@Label("Acquisizione connessione")
+@Category("Gestione Ristorante")
+@Description("Attesa per una connessione da uno dei pool (ClassePool)")
+@StackTrace(false)
+class EventoConnessione extends Event {
+
+    @Label("Pool")
+    String pool;
+
+    @Label("Riuscita")
+    boolean riuscita;
+}
@@ -0,0 +1,31 @@
+package it.gestione.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR per ogni chiamata a un metodo pubblico dei DAO (registrato da MetricheDAO).
+ */
+@Name("it.gestione.ChiamataDAO")
+@Label("Chiamata DAO")
+@Category("Gestione Ristorante")
+@Description("Metodo DAO eseguito: righe lette o modificate ed esito")
+@StackTrace(false)
+class EventoDAO extends Event {
+
+    @Label("DAO")
+    String dao;
+
+    @Label("Metodo")
+    String metodo;
+
+    @Label("Righe")
+    long righe;
+
+    @Label("Errore")
+    boolean errore;
+}
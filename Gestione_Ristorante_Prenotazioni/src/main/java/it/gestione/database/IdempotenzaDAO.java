@@ -0,0 +1,163 @@
+package it.gestione.database;
+
+import it.gestione.entity.RispostaIdempotente;
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+
+@Repository
+public class IdempotenzaDAO {
+
+    // ---------- SQL ---------- //
+
+    // prende la chiave se è libera, scaduta, o se la richiesta precedente è rimasta appesa
+    private static final String PRENOTA_SQL =
+            "INSERT INTO richiesta_idempotente (chiave, impronta, completata, creato_il) " +
+                    "VALUES (?, ?, FALSE, now()) " +
+                    "ON CONFLICT (chiave) DO UPDATE " +
+                    "SET impronta = EXCLUDED.impronta, completata = FALSE, stato = NULL, " +
+                    "content_type = NULL, headers = NULL, corpo = NULL, creato_il = now() " +
+                    "WHERE richiesta_idempotente.creato_il < now() - make_interval(secs => ?) " +
+                    "OR (NOT richiesta_idempotente.completata " +
+                    "AND richiesta_idempotente.creato_il < now() - make_interval(secs => ?)) " +
+                    "RETURNING chiave";
+
+    private static final String SELECT_SQL =
+            "SELECT chiave, impronta, completata, stato, content_type, headers, corpo, creato_il " +
+                    "FROM richiesta_idempotente WHERE chiave = ?";
+
+    private static final String COMPLETA_SQL =
+            "UPDATE richiesta_idempotente " +
+                    "SET completata = TRUE, stato = ?, content_type = ?, headers = ?, corpo = ? " +
+                    "WHERE chiave = ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM richiesta_idempotente WHERE chiave = ?";
+
+    private static final String DELETE_SCADUTE_SQL =
+            "DELETE FROM richiesta_idempotente WHERE creato_il < now() - make_interval(secs => ?)";
+
+
+    // ---------- COSTRUTTORE ---------- //
+
+    public IdempotenzaDAO() {}
+
+
+    // ---------- CRUD ---------- //
+
+    /**
+     * Prova a riservare la chiave per la richiesta corrente.
+     *
+     * Ritorna:
+     *  null se la chiave è stata presa (la richiesta va eseguita),
+     *  la voce esistente se un'altra richiesta con la stessa chiave è in corso o completata.
+     * In caso di errore SQL lancia l'eccezione: il chiamante decide se procedere senza protezione.
+     */
+    public RispostaIdempotente prenota(String chiave, String impronta,
+                                       long ttlSecondi, long inCorsoMaxSecondi) throws SQLException {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA)) {
+
+            try (PreparedStatement ps = conn.prepareStatement(PRENOTA_SQL)) {
+                ps.setString(1, chiave);
+                ps.setString(2, impronta);
+                ps.setLong(3, ttlSecondi);
+                ps.setLong(4, inCorsoMaxSecondi);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return null;
+                    }
+                }
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_SQL)) {
+                ps.setString(1, chiave);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    // eliminata nel frattempo (richiesta fallita): la si considera libera al prossimo tentativo
+                    return rs.next() ? mapRow(rs) : null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Salva la risposta della richiesta che aveva preso la chiave.
+     */
+    public int completa(String chiave, RispostaIdempotente r) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
+             PreparedStatement ps = conn.prepareStatement(COMPLETA_SQL)) {
+
+            ps.setInt(1, r.getStato());
+            ps.setString(2, r.getContentType());
+            ps.setString(3, r.getHeaders());
+            ps.setBytes(4, r.getCorpo());
+            ps.setString(5, chiave);
+            return ps.executeUpdate();
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("completa", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Libera la chiave (richiesta fallita con 5xx: il retry deve poter rieseguire).
+     */
+    public int annulla(String chiave) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
+             PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+
+            ps.setString(1, chiave);
+            return ps.executeUpdate();
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("annulla", e);
+            return -1;
+        }
+    }
+
+    public int eliminaScadute(long ttlSecondi) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.REPORT);
+             PreparedStatement ps = conn.prepareStatement(DELETE_SCADUTE_SQL)) {
+
+            ps.setLong(1, ttlSecondi);
+            return ps.executeUpdate();
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("eliminaScadute", e);
+            return -1;
+        }
+    }
+
+
+    // ---------- MAPPING ---------- //
+
+    private RispostaIdempotente mapRow(ResultSet rs) throws SQLException {
+        RispostaIdempotente r = new RispostaIdempotente(
+                rs.getString("chiave"),
+                rs.getString("impronta"),
+                rs.getTimestamp("creato_il").toInstant());
+        r.setCompletata(rs.getBoolean("completata"));
+        r.setStato(rs.getInt("stato"));
+        r.setContentType(rs.getString("content_type"));
+        r.setHeaders(rs.getString("headers"));
+        r.setCorpo(rs.getBytes("corpo"));
+        return r;
+    }
+}
+
+/*
+CREATE TABLE richiesta_idempotente (
+    chiave VARCHAR(400) PRIMARY KEY,
+    impronta VARCHAR(64) NOT NULL,
+    completata BOOLEAN NOT NULL,
+    stato INT,
+    content_type VARCHAR(100),
+    headers TEXT,
+    corpo BYTEA,
+    creato_il TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX ix_richiesta_idempotente_creato ON richiesta_idempotente (creato_il);
+*/
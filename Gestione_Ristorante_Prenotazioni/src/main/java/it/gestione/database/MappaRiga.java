@@ -0,0 +1,12 @@
+package it.gestione.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converte la riga corrente del ResultSet in un oggetto (senza chiamare next).
+ */
+@FunctionalInterface
+public interface MappaRiga<T> {
+    T mappa(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,134 @@
+package it.gestione.database;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.gestione.entity.DeltaModifiche;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metriche di ogni metodo pubblico dei DAO (@Repository di questo package), tag dao e metodo:
+ *  - gestione.dao.durata  timer con istogramma e percentili 50/95/99 (tag esito = ok / errore)
+ *  - gestione.dao.righe   righe lette o modificate (dimensione del risultato)
+ *  - gestione.dao.errori  errori SQL, anche quelli che il DAO trasforma in -1 / null / lista vuota
+ * Registra anche le metriche Hikari dei pool. Tutto esposto su /actuator/prometheus.
+ * Ogni chiamata è anche un EventoDAO JFR (attivo solo in registrazione, vedi jfr/gestione.jfc).
+ */
+@Aspect
+@Component
+public class MetricheDAO {
+
+    private final MeterRegistry registro;
+
+    // "dao.metodo.esito" -> meter, per non ricostruirli a ogni chiamata
+    private final Map<String, Timer> timer = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> righe = new ConcurrentHashMap<>();
+    private final Map<String, Counter> errori = new ConcurrentHashMap<>();
+
+    public MetricheDAO(MeterRegistry registro) {
+        this.registro = registro;
+        DBConnectionManager.registraMetriche(registro);
+    }
+
+    @Around("within(it.gestione.database..*) && @within(org.springframework.stereotype.Repository) && execution(public * *(..))")
+    public Object misura(ProceedingJoinPoint pjp) throws Throwable {
+        String dao = pjp.getSignature().getDeclaringType().getSimpleName();
+        String metodo = pjp.getSignature().getName();
+
+        // un segnale rimasto da una chiamata precedente non misurata non va attribuito a questa
+        ErroriSQL.consuma();
+        EventoDAO evento = new EventoDAO();
+        evento.begin();
+        long inizio = System.nanoTime();
+        boolean errore = true;
+        long n = 0;
+        try {
+            Object risultato = pjp.proceed();
+            errore = ErroriSQL.consuma();
+            if (!errore) {
+                n = contaRighe(risultato);
+                righe(dao, metodo).record(n);
+            }
+            return risultato;
+        } finally {
+            long durata = System.nanoTime() - inizio;
+            timer(dao, metodo, errore).record(durata, TimeUnit.NANOSECONDS);
+            if (errore) {
+                errori(dao, metodo).increment();
+            }
+            evento.end();
+            if (evento.shouldCommit()) {
+                evento.dao = dao;
+                evento.metodo = metodo;
+                evento.righe = n;
+                evento.errore = errore;
+                evento.commit();
+            }
+        }
+    }
+
+    private Timer timer(String dao, String metodo, boolean errore) {
+        String esito = errore ? "errore" : "ok";
+        return timer.computeIfAbsent(dao + "." + metodo + "." + esito, k -> Timer.builder("gestione.dao.durata")
+                .description("Durata dei metodi DAO")
+                .tag("dao", dao)
+                .tag("metodo", metodo)
+                .tag("esito", esito)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registro));
+    }
+
+    private DistributionSummary righe(String dao, String metodo) {
+        return righe.computeIfAbsent(dao + "." + metodo, k -> DistributionSummary.builder("gestione.dao.righe")
+                .description("Righe lette o modificate dai metodi DAO")
+                .baseUnit("righe")
+                .tag("dao", dao)
+                .tag("metodo", metodo)
+                .register(registro));
+    }
+
+    private Counter errori(String dao, String metodo) {
+        return errori.computeIfAbsent(dao + "." + metodo, k -> Counter.builder("gestione.dao.errori")
+                .description("Errori SQL dei metodi DAO")
+                .tag("dao", dao)
+                .tag("metodo", metodo)
+                .register(registro));
+    }
+
+    // int/long = righe modificate, collezioni e mappe = righe lette, oggetto singolo = 0 o 1
+    private static long contaRighe(Object risultato) {
+        if (risultato == null) {
+            return 0;
+        }
+        if (risultato instanceof Number n) {
+            return Math.max(0, n.longValue());
+        }
+        if (risultato instanceof Collection<?> c) {
+            return c.size();
+        }
+        if (risultato instanceof Map<?, ?> m) {
+            long n = 0;
+            for (Object v : m.values()) {
+                n += (v instanceof Collection<?> c) ? c.size() : 1;
+            }
+            return n;
+        }
+        if (risultato instanceof DeltaModifiche<?> d) {
+            return (d.getModifiche() != null) ? d.getModifiche().size() : 0;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,166 @@
+package it.gestione.database;
+
+import it.gestione.entity.StatisticaQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Registro delle query eseguite attraverso ProxyJdbc, raggruppate per impronta
+ * (SQL con letterali e parametri sostituiti da ?).
+ *
+ * Le esecuzioni oltre DB_QUERY_LENTA_MS (default 200) vanno nel log con forma dei parametri
+ * e metodo DAO chiamante; per tutte si tengono conteggio, tempo totale e massimo
+ * (top per tempo totale su /api/admin/query).
+ */
+public final class MonitorQuery {
+
+    private static final long SOGLIA_NANOS = Long.parseLong(
+            System.getenv().getOrDefault("DB_QUERY_LENTA_MS", "200")) * 1_000_000L;
+
+    // limiti di memoria: le impronte sono poche (SQL costanti nei DAO), ma perOgniRiga e updateQuery accettano SQL libero
+    private static final int MAX_IMPRONTE = 500;
+    private static final int MAX_CACHE_SQL = 1000;
+    private static final String ALTRE = "(altre impronte)";
+
+    private static final Pattern STRINGHE = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMERI = Pattern.compile("(?<![\\w$])\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern SEGNAPOSTO = Pattern.compile("\\$\\d+");
+    private static final Pattern LISTE_IN = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    // (x, y) IN ((?, ?), (?, ?), ...): tuple della stessa arietà, qualunque numero
+    private static final String TUPLA = "\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)";
+    private static final Pattern LISTE_TUPLE = Pattern.compile(
+            "(?i)\\bin\\s*\\(\\s*(" + TUPLA + ")(?:\\s*,\\s*" + TUPLA + ")*\\s*\\)");
+    private static final Pattern SPAZI = Pattern.compile("\\s+");
+
+    private static final Map<String, String> impronte = new ConcurrentHashMap<>();
+    private static final Map<String, Accumulo> statistiche = new ConcurrentHashMap<>();
+
+    private MonitorQuery() {
+    }
+
+    /**
+     * Le query con il maggior tempo totale (esecuzione + fetch), al massimo n.
+     */
+    public static List<StatisticaQuery> getTop(int n) {
+        List<StatisticaQuery> lista = new ArrayList<>();
+        for (Map.Entry<String, Accumulo> e : statistiche.entrySet()) {
+            lista.add(e.getValue().fotografia(e.getKey()));
+        }
+        lista.sort(Comparator.comparingDouble(StatisticaQuery::getTotaleMs).reversed());
+        return (lista.size() > n) ? new ArrayList<>(lista.subList(0, Math.max(0, n))) : lista;
+    }
+
+    /** Azzera le statistiche (per esempio a inizio servizio). */
+    public static void azzera() {
+        statistiche.clear();
+    }
+
+    static void registra(String sql, String forma, long nanos, long righe) {
+        String impronta = impronta(sql);
+
+        Accumulo a = statistiche.get(impronta);
+        if (a == null) {
+            if (statistiche.size() >= MAX_IMPRONTE) {
+                impronta = ALTRE;
+            }
+            a = statistiche.computeIfAbsent(impronta, k -> new Accumulo());
+        }
+
+        boolean lenta = nanos >= SOGLIA_NANOS;
+        // lo stack si percorre solo se serve: query lenta o prima volta che la si vede
+        String chiamante = (lenta || a.chiamante == null) ? trovaChiamante() : null;
+        a.aggiungi(nanos, righe, chiamante, (lenta || a.forma == null) ? forma : null);
+
+        if (lenta) {
+            System.err.println("Query lenta (" + (nanos / 1_000_000) + " ms, " + righe + " righe) in "
+                    + chiamante + ": " + impronta + (forma.isEmpty() ? "" : " parametri " + forma));
+        }
+    }
+
+    static String impronta(String sql) {
+        if (sql == null) {
+            return "(SQL sconosciuto)";
+        }
+        String i = impronte.get(sql);
+        if (i != null) {
+            return i;
+        }
+        i = normalizza(sql);
+        if (impronte.size() >= MAX_CACHE_SQL) {
+            impronte.clear();
+        }
+        impronte.put(sql, i);
+        return i;
+    }
+
+    private static String normalizza(String sql) {
+        String s = STRINGHE.matcher(sql).replaceAll("?");
+        s = SEGNAPOSTO.matcher(s).replaceAll("?");
+        s = NUMERI.matcher(s).replaceAll("?");
+        s = SPAZI.matcher(s).replaceAll(" ").trim();
+        s = LISTE_IN.matcher(s).replaceAll("IN (?+)");
+        // la prima tupla riscritta in forma canonica: resta l'arietà, sparisce il numero di righe
+        return LISTE_TUPLE.matcher(s).replaceAll(m -> {
+            int arieta = (int) m.group(1).chars().filter(c -> c == '?').count();
+            return "IN ((" + String.join(", ", Collections.nCopies(arieta, "?")) + ")+)";
+        });
+    }
+
+    // primo frame dell'applicazione fuori dal monitor e da DBConnectionManager (perOgniRiga,
+    // conCursore e le loro lambda), di norma il metodo DAO (Classe.metodo)
+    private static String trovaChiamante() {
+        return StackWalker.getInstance().walk(frame -> frame
+                .filter(f -> {
+                    String c = f.getClassName();
+                    return c.startsWith("it.gestione.") && !c.startsWith("it.gestione.database.ProxyJdbc")
+                            && !c.startsWith(DBConnectionManager.class.getName())
+                            && !c.equals(MonitorQuery.class.getName()) && !c.equals(MetricheDAO.class.getName())
+                            && !c.contains("$$");
+                })
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1) + "." + metodo(f.getMethodName()))
+                .findFirst()
+                .orElse("?"));
+    }
+
+    // lambda$getAllSale$0 -> getAllSale
+    static String metodo(String nome) {
+        if (nome.startsWith("lambda$")) {
+            int fine = nome.indexOf('$', 7);
+            return (fine > 7) ? nome.substring(7, fine) : nome;
+        }
+        return nome;
+    }
+
+    private static final class Accumulo {
+        private long esecuzioni;
+        private long totaleNanos;
+        private long maxNanos;
+        private long righe;
+        private volatile String chiamante;
+        private volatile String forma;
+
+        synchronized void aggiungi(long nanos, long r, String chiamante, String forma) {
+            esecuzioni++;
+            totaleNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            righe += r;
+            if (chiamante != null) {
+                this.chiamante = chiamante;
+            }
+            if (forma != null) {
+                this.forma = forma;
+            }
+        }
+
+        synchronized StatisticaQuery fotografia(String impronta) {
+            return new StatisticaQuery(impronta, esecuzioni, totaleNanos / 1e6, maxNanos / 1e6,
+                    righe, chiamante, forma);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package it.gestione.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Imposta i parametri (?) di una query prima dell'esecuzione.
+ */
+@FunctionalInterface
+public interface ParametriQuery {
+
+    ParametriQuery NESSUNO = ps -> { };
+
+    void imposta(PreparedStatement ps) throws SQLException;
+}
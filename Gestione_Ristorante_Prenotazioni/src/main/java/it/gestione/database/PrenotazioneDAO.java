@@ -1,6 +1,7 @@
 package it.gestione.database;
 
 import it.gestione.entity.Prenotazione;
+import it.gestione.entity.Turno;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Connection;
@@ -14,6 +15,7 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public class PrenotazioneDAO {
@@ -22,12 +24,14 @@ public class PrenotazioneDAO {
 
     private static final String INSERT_SQL =
             "INSERT INTO prenotazioni " +
-                    " (nome, data, num_persone, orario, numero_telefono) " +
-                    "VALUES (?, ?, ?, ?, ?) " +
+                    " (nome, data, num_persone, orario, numero_telefono, turno) " +
+                    "VALUES (?, ?, ?, ?, ?, ?) " +
                     "ON CONFLICT (data, nome) DO NOTHING";
 
+    // turno: la riga del riepilogo in cui la prenotazione è stata contata
     private static final String DELETE_SQL =
-            "DELETE FROM prenotazioni WHERE data = ? AND nome = ?";
+            "DELETE FROM prenotazioni WHERE data = ? AND nome = ? " +
+                    "RETURNING num_persone, turno";
 
     private static final String SELECT_BY_DATA_SQL =
             "SELECT * FROM prenotazioni WHERE data = ? ORDER BY orario, nome";
@@ -35,9 +39,51 @@ public class PrenotazioneDAO {
     private static final String SELECT_ALL_SQL =
             "SELECT * FROM prenotazioni ORDER BY data, orario, nome";
 
+    // serializza gli inserimenti dello stesso (data, turno): chiave (giorno epoch, turno)
+    private static final String LOCK_TURNO_SQL =
+            "SELECT pg_advisory_xact_lock(?, ?)";
+
     private static final String SELECT_BY_PK_SQL =
             "SELECT * FROM prenotazioni WHERE data = ? AND nome = ?";
 
+    // prenotazioni del periodo che non hanno ancora tavoli in assegnazione_tavolo
+    private static final String SELECT_NON_ASSEGNATE_SQL =
+            "SELECT * FROM prenotazioni p " +
+                    "WHERE p.data BETWEEN ? AND ? " +
+                    "AND NOT EXISTS (SELECT 1 FROM assegnazione_tavolo a " +
+                    "WHERE a.data = p.data AND a.nome_prenotazione = p.nome) " +
+                    "ORDER BY p.data, p.orario, p.nome";
+
+    // ricerca per nome: prefisso (indice btree text_pattern_ops) o parola simile (indice GIN pg_trgm).
+    // %s = filtri opzionali su data, aggiunti in cercaPrenotazioni
+    private static final String CERCA_NOME_SQL =
+            "SELECT * FROM prenotazioni " +
+                    "WHERE (lower(nome) LIKE ? ESCAPE '\\' %s) %s " +
+                    "ORDER BY (lower(nome) LIKE ? ESCAPE '\\') DESC, " +
+                    "word_similarity(?, lower(nome)) DESC, data DESC, orario " +
+                    "LIMIT ?";
+
+    private static final String CERCA_NOME_SIMILE_SQL = "OR ? <% lower(nome)";
+
+    // ricerca per telefono sulle sole cifre: prefisso (indice btree text_pattern_ops sull'espressione);
+    // solo se non trova nulla e le cifre sono almeno 3, cifre contenute (indice GIN pg_trgm).
+    // %s = filtri opzionali su data; il parametro è sempre di sole cifre, niente escape
+    private static final String TELEFONO_CIFRE = "regexp_replace(numero_telefono, '[^0-9]', '', 'g')";
+
+    private static final String CERCA_TELEFONO_SQL =
+            "SELECT * FROM prenotazioni " +
+                    "WHERE " + TELEFONO_CIFRE + " LIKE ? %s " +
+                    "ORDER BY data DESC, orario " +
+                    "LIMIT ?";
+
+    private static final int MIN_CIFRE_CONTENUTE = 3;   // sotto i 3 caratteri pg_trgm non usa l'indice
+
+    // esportazione a pagine, keyset sulla PK (data, nome): %s = "dopo l'ultima riga" dalla seconda pagina in poi
+    private static final String PAGINA_SQL =
+            "SELECT * FROM prenotazioni WHERE data BETWEEN ? AND ? %s ORDER BY data, nome LIMIT ?";
+
+    private static final String PAGINA_DOPO_SQL = "AND (data, nome) > (?, ?)";
+
 
 
     // Costruttore di default
@@ -47,14 +93,75 @@ public class PrenotazioneDAO {
     // ---------- CRUD ---------- //
 
     /**
-     * Inserisce una Prenotazione.
+     * Inserisce una Prenotazione e la conta nel riepilogo del turno (RiepilogoPrenotazioniDAO),
+     * in un'unica transazione.
      *  1 = inserita
      *  0 = già presente (conflitto su PK data+nome)
      * -1 = errore
      */
-    public int aggiungiPrenotazione(Prenotazione p) {
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+    public int aggiungiPrenotazione(Prenotazione p, Turno turno) {
+        return aggiungiPrenotazione(p, turno, null);
+    }
+
+    /**
+     * Come sopra, con un controllo (es. capienza) nella stessa transazione dell'insert:
+     * lock sul turno, lettura delle prenotazioni della data, controllo, insert, commit.
+     * Due prenotazioni concorrenti per lo stesso (data, turno) passano una alla volta,
+     * quindi la seconda vede la prima. controllo null = nessun controllo.
+     * -3 = rifiutata dal controllo (niente inserito)
+     */
+    public int aggiungiPrenotazione(Prenotazione p, Turno turno, ControlloInserimento controllo) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA)) {
+            conn.setAutoCommit(false);
+
+            try {
+                int n = inserisci(conn, p, turno, controllo); // 1, 0 o -3
+                if (n == 1) {
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+                return n;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("aggiungiPrenotazione", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Insert con controllo sulla connessione del chiamante, dentro la sua transazione
+     * (vedi aggiungiPrenotazione e AssegnazioneTavoloDAO.prenotaETrattieni): lock sul turno,
+     * lettura delle prenotazioni della data, controllo, insert. Il lock resta fino alla fine
+     * della transazione del chiamante. controllo null = insert senza lock.
+     *  1 = inserita, 0 = già presente, -3 = rifiutata dal controllo (niente inserito).
+     * Con 0 e -3 il chiamante deve fare rollback.
+     */
+    static int inserisci(Connection conn, Prenotazione p, Turno turno, ControlloInserimento controllo)
+            throws SQLException {
+        if (controllo != null) {
+            bloccaTurno(conn, p.getDate(), turno);
+            if (!controllo.consenti(leggiPerData(conn, p.getDate()))) {
+                return -3;
+            }
+        }
+        return inserisci(conn, p, turno);
+    }
+
+    /**
+     * Insert (più aggiornamento del riepilogo) sulla connessione del chiamante, senza lock né controlli.
+     * Il turno resta salvato sulla prenotazione: l'eliminazione toglie dalla stessa riga del
+     * riepilogo anche se nel frattempo gli orari del working day sono cambiati.
+     */
+    private static int inserisci(Connection conn, Prenotazione p, Turno turno) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
 
             ps.setString(1, p.getNome());
             ps.setDate(2, Date.valueOf(p.getDate()));
@@ -72,31 +179,56 @@ public class PrenotazioneDAO {
             else
                 ps.setNull(5, Types.VARCHAR);
 
-            return ps.executeUpdate(); // 1 o 0
+            ps.setString(6, turno.name());
 
-        } catch (SQLException e) {
-            System.err.println("Errore SQL in aggiungiPrenotazione: " + e.getMessage());
-            return -1;
+            int n = ps.executeUpdate();
+            if (n == 1) {
+                RiepilogoPrenotazioniDAO.aggiorna(conn, p.getDate(), turno, p.getNumPersone(), 1);
+            }
+            return n;
         }
     }
 
     /**
-     * Elimina una prenotazione identificata da data + nome.
+     * Elimina una prenotazione identificata da data + nome e la toglie dal riepilogo
+     * (dal turno salvato all'inserimento), in un'unica transazione.
+     * Turno null: prenotazione precedente alla colonna e non ancora ricalcolata, quindi mai contata.
      * Ritorna:
      *  numero righe eliminate (0 o 1),
      * -1 in caso di errore.
      */
     public int eliminaPrenotazione(LocalDate data, String nome) {
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA)) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+                ps.setDate(1, Date.valueOf(data));
+                ps.setString(2, nome);
+
+                int n = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        n = 1;
+                        String turno = rs.getString("turno");
+                        if (turno != null) {
+                            RiepilogoPrenotazioniDAO.aggiorna(conn, data, Turno.valueOf(turno),
+                                    rs.getInt("num_persone"), -1);
+                        }
+                    }
+                }
 
-            ps.setDate(1, Date.valueOf(data));
-            ps.setString(2, nome);
+                conn.commit();
+                return n;
 
-            return ps.executeUpdate();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in eliminaPrenotazione: " + e.getMessage());
+            ErroriSQL.segnala("eliminaPrenotazione", e);
             return -1;
         }
     }
@@ -108,19 +240,13 @@ public class PrenotazioneDAO {
     public List<Prenotazione> getPrenotazioniByData(LocalDate data) {
         List<Prenotazione> lista = new ArrayList<>();
 
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_DATA_SQL)) {
-
-            ps.setDate(1, Date.valueOf(data));
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    lista.add(mapRowToPrenotazione(rs));
-                }
-            }
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_BY_DATA_SQL,
+                    ps -> ps.setDate(1, Date.valueOf(data)),
+                    PrenotazioneDAO::mapRowToPrenotazione, lista::add);
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getPrenotazioniByData: " + e.getMessage());
+            ErroriSQL.segnala("getPrenotazioniByData", e);
         }
 
         return lista;
@@ -132,20 +258,57 @@ public class PrenotazioneDAO {
      */
     public List<Prenotazione> getAllPrenotazioni() {
         List<Prenotazione> lista = new ArrayList<>();
+        perOgniPrenotazione(lista::add);
+        return lista;
+    }
 
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_ALL_SQL);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                lista.add(mapRowToPrenotazione(rs));
-            }
+    /**
+     * Passa tutte le prenotazioni al consumatore una alla volta (cursore, memoria costante),
+     * nell'ordine di getAllPrenotazioni.
+     * Ritorna quante ne ha passate, -1 in caso di errore (il consumatore può averne già ricevute).
+     */
+    public long perOgniPrenotazione(Consumer<Prenotazione> consumatore) {
+        try {
+            return DBConnectionManager.perOgniRiga(ClassePool.REPORT, SELECT_ALL_SQL, ParametriQuery.NESSUNO,
+                    PrenotazioneDAO::mapRowToPrenotazione, consumatore);
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getAllPrenotazioni: " + e.getMessage());
+            ErroriSQL.segnala("perOgniPrenotazione", e);
+            return -1;
         }
+    }
 
-        return lista;
+    /**
+     * Una pagina dell'esportazione: fino a limite prenotazioni tra dal e al (inclusi), in ordine
+     * di data e nome, a partire da quella dopo l'ultima della pagina precedente (null = dall'inizio).
+     * Ogni pagina è una lettura a sé (cursore REPORT): la connessione torna al pool a fine pagina,
+     * non resta occupata per tutta la durata del download.
+     * Ritorna null in caso di errore.
+     */
+    public List<Prenotazione> getPaginaPrenotazioni(LocalDate dal, LocalDate al, Prenotazione dopo, int limite) {
+        List<Prenotazione> pagina = new ArrayList<>(limite);
+        String sql = String.format(PAGINA_SQL, (dopo == null) ? "" : PAGINA_DOPO_SQL);
+
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.REPORT, sql,
+                    ps -> {
+                        int i = 1;
+                        ps.setDate(i++, Date.valueOf(dal));
+                        ps.setDate(i++, Date.valueOf(al));
+                        if (dopo != null) {
+                            ps.setDate(i++, Date.valueOf(dopo.getDate()));
+                            ps.setString(i++, dopo.getNome());
+                        }
+                        ps.setInt(i, limite);
+                    },
+                    PrenotazioneDAO::mapRowToPrenotazione, pagina::add);
+
+            return pagina;
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getPaginaPrenotazioni", e);
+            return null;
+        }
     }
 
     /**
@@ -155,7 +318,7 @@ public class PrenotazioneDAO {
      *  - null se non esiste o in caso di errore
      */
     public Prenotazione getPrenotazione(LocalDate data, String nome) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.LETTURA);
              PreparedStatement ps = conn.prepareStatement(SELECT_BY_PK_SQL)) {
 
             ps.setDate(1, Date.valueOf(data));
@@ -168,7 +331,7 @@ public class PrenotazioneDAO {
             }
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getPrenotazione: " + e.getMessage());
+            ErroriSQL.segnala("getPrenotazione", e);
         }
 
         return null;
@@ -176,9 +339,141 @@ public class PrenotazioneDAO {
 
 
 
+    /**
+     * Cerca le prenotazioni per nome (prefisso, o parola simile se il testo ha almeno 3 caratteri:
+     * "rosi" trova "Mario Rossi") oppure, se il testo contiene solo cifre e separatori,
+     * per numero di telefono sulle sole cifre (senza spazi / + / -): prima per prefisso,
+     * poi, se non trova nulla e le cifre sono almeno 3, per cifre contenute.
+     * dal e al (inclusi) sono opzionali. Ordine: prima le corrispondenze per prefisso,
+     * poi le più simili, poi le più recenti.
+     * In caso di errore: ritorna lista vuota.
+     */
+    public List<Prenotazione> cercaPrenotazioni(String testo, LocalDate dal, LocalDate al, int limite) {
+        List<Prenotazione> lista = new ArrayList<>();
+
+        StringBuilder filtri = new StringBuilder();
+        if (dal != null) {
+            filtri.append("AND data >= ? ");
+        }
+        if (al != null) {
+            filtri.append("AND data <= ? ");
+        }
+
+        String cifre = testo.replaceAll("[^0-9]", "");
+        if (!cifre.isEmpty() && testo.matches("[0-9+\\-./()\\s]+")) {
+            String sql = String.format(CERCA_TELEFONO_SQL, filtri);
+            try {
+                cercaPerTelefono(sql, cifre + "%", dal, al, limite, lista);
+                if (lista.isEmpty() && cifre.length() >= MIN_CIFRE_CONTENUTE) {
+                    cercaPerTelefono(sql, "%" + cifre + "%", dal, al, limite, lista);
+                }
+            } catch (SQLException e) {
+                ErroriSQL.segnala("cercaPrenotazioni", e);
+            }
+            return lista;
+        }
+
+        boolean simile = testo.length() >= 3;
+        String sql = String.format(CERCA_NOME_SQL, simile ? CERCA_NOME_SIMILE_SQL : "", filtri);
+
+        String minuscolo = testo.toLowerCase();
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, sql,
+                    ps -> {
+                        int i = 1;
+                        ps.setString(i++, escapeLike(minuscolo) + "%");
+                        if (simile) {
+                            ps.setString(i++, minuscolo);
+                        }
+                        if (dal != null) {
+                            ps.setDate(i++, Date.valueOf(dal));
+                        }
+                        if (al != null) {
+                            ps.setDate(i++, Date.valueOf(al));
+                        }
+                        ps.setString(i++, escapeLike(minuscolo) + "%");
+                        ps.setString(i++, minuscolo);
+                        ps.setInt(i, limite);
+                    },
+                    PrenotazioneDAO::mapRowToPrenotazione, lista::add);
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("cercaPrenotazioni", e);
+        }
+
+        return lista;
+    }
+
+    private static void cercaPerTelefono(String sql, String pattern, LocalDate dal, LocalDate al, int limite,
+                                         List<Prenotazione> lista) throws SQLException {
+        DBConnectionManager.perOgniRiga(ClassePool.LETTURA, sql,
+                ps -> {
+                    int i = 1;
+                    ps.setString(i++, pattern);
+                    if (dal != null) {
+                        ps.setDate(i++, Date.valueOf(dal));
+                    }
+                    if (al != null) {
+                        ps.setDate(i++, Date.valueOf(al));
+                    }
+                    ps.setInt(i, limite);
+                },
+                PrenotazioneDAO::mapRowToPrenotazione, lista::add);
+    }
+
+    /**
+     * Ritorna le prenotazioni tra dal e al (inclusi) ancora senza tavoli assegnati.
+     * In caso di errore: ritorna lista vuota.
+     */
+    public List<Prenotazione> getPrenotazioniNonAssegnate(LocalDate dal, LocalDate al) {
+        List<Prenotazione> lista = new ArrayList<>();
+
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.REPORT, SELECT_NON_ASSEGNATE_SQL,
+                    ps -> {
+                        ps.setDate(1, Date.valueOf(dal));
+                        ps.setDate(2, Date.valueOf(al));
+                    },
+                    PrenotazioneDAO::mapRowToPrenotazione, lista::add);
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getPrenotazioniNonAssegnate", e);
+        }
+
+        return lista;
+    }
+
+
     // ---------- helper privati ---------- //
 
-    private Prenotazione mapRowToPrenotazione(ResultSet rs) throws SQLException {
+    // lock advisory fino a fine transazione (rientrante nella stessa connessione)
+    private static void bloccaTurno(Connection conn, LocalDate data, Turno turno) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(LOCK_TURNO_SQL)) {
+            ps.setInt(1, (int) data.toEpochDay());
+            ps.setInt(2, turno.ordinal());
+            ps.execute();
+        }
+    }
+
+    private static List<Prenotazione> leggiPerData(Connection conn, LocalDate data) throws SQLException {
+        List<Prenotazione> lista = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_DATA_SQL)) {
+            ps.setDate(1, Date.valueOf(data));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapRowToPrenotazione(rs));
+                }
+            }
+        }
+        return lista;
+    }
+
+    // il testo cercato non deve valere come pattern: \ % _ diventano letterali
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static Prenotazione mapRowToPrenotazione(ResultSet rs) throws SQLException {
         Prenotazione p = new Prenotazione();
 
         p.setNome(rs.getString("nome"));
@@ -207,7 +502,29 @@ CREATE TABLE prenotazioni (
     num_persone     INTEGER      NOT NULL,
     orario          TIME         NOT NULL,
     numero_telefono VARCHAR(20),
+    turno           VARCHAR(16),     -- riga del riepilogo in cui è contata (null = non ancora contata)
 
     PRIMARY KEY (data, nome)
 );
+
+-- tabella esistente:
+-- ALTER TABLE prenotazioni ADD COLUMN turno VARCHAR(16);
+-- poi POST /api/admin/statistiche/ricalcola sullo storico (assegna il turno e ricostruisce il riepilogo)
+
+-- ricerca (cercaPrenotazioni): prefisso del nome anche con 1-2 caratteri e prefisso delle cifre
+-- del telefono (btree text_pattern_ops), parola simile sul nome e cifre contenute con pg_trgm
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX ix_prenotazioni_nome_prefisso
+    ON prenotazioni (lower(nome) text_pattern_ops);
+
+CREATE INDEX ix_prenotazioni_nome_trgm
+    ON prenotazioni USING gin (lower(nome) gin_trgm_ops);
+
+CREATE INDEX ix_prenotazioni_telefono_prefisso
+    ON prenotazioni (regexp_replace(numero_telefono, '[^0-9]', '', 'g') text_pattern_ops);
+
+-- solo per il ripiego "cifre contenute" (almeno 3 cifre, nessun risultato per prefisso)
+CREATE INDEX ix_prenotazioni_telefono_trgm
+    ON prenotazioni USING gin (regexp_replace(numero_telefono, '[^0-9]', '', 'g') gin_trgm_ops);
 */
@@ -0,0 +1,228 @@
+package it.gestione.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Proxy JDBC leggero sulle connessioni date dai pool: misura esecuzione e fetch di ogni statement
+ * e passa SQL, forma dei parametri e righe a MonitorQuery. I valori dei parametri non vengono mai letti
+ * oltre al tipo (e alla lunghezza per stringhe e byte[]).
+ */
+final class ProxyJdbc {
+
+    private static final ClassLoader LOADER = ProxyJdbc.class.getClassLoader();
+
+    private ProxyJdbc() {
+    }
+
+    static Connection connessione(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(LOADER, new Class<?>[]{Connection.class}, new SuConnessione(conn));
+    }
+
+    private static Object delega(Object target, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ---------- Connection ---------- //
+
+    private static final class SuConnessione implements InvocationHandler {
+
+        private final Connection conn;
+
+        SuConnessione(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            Object r = delega(conn, m, args);
+            String nome = m.getName();
+            if (r instanceof Statement st
+                    && (nome.equals("prepareStatement") || nome.equals("prepareCall") || nome.equals("createStatement"))) {
+                String sql = (args != null && args.length > 0 && args[0] instanceof String s) ? s : null;
+                return Proxy.newProxyInstance(LOADER, new Class<?>[]{m.getReturnType()}, new SuStatement(st, sql));
+            }
+            return r;
+        }
+    }
+
+    // ---------- Statement / PreparedStatement ---------- //
+
+    private static final class SuStatement implements InvocationHandler {
+
+        private final Statement st;
+        private String sql;
+        private final List<String> forma = new ArrayList<>();
+        private int batch;
+        private SuResultSet aperto;
+
+        SuStatement(Statement st, String sql) {
+            this.st = st;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            String nome = m.getName();
+
+            if (nome.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer i) {
+                segnaParametro(i, nome.equals("setNull") ? null : args[1]);
+                return delega(st, m, args);
+            }
+            if (nome.equals("clearParameters")) {
+                forma.clear();
+                return delega(st, m, args);
+            }
+            if (nome.equals("addBatch")) {
+                batch++;
+                if (args != null && args.length == 1 && args[0] instanceof String s && sql == null) {
+                    sql = s;
+                }
+                return delega(st, m, args);
+            }
+            if (nome.equals("close")) {
+                chiudiResultSet();
+                return delega(st, m, args);
+            }
+            if (!nome.startsWith("execute")) {
+                return delega(st, m, args);
+            }
+
+            // Statement semplice: l'SQL arriva con l'esecuzione
+            if (args != null && args.length > 0 && args[0] instanceof String s) {
+                sql = s;
+            }
+            chiudiResultSet();
+
+            String formaEsecuzione = formaCorrente();
+            long inizio = System.nanoTime();
+            Object r;
+            try {
+                r = delega(st, m, args);
+            } catch (Throwable t) {
+                MonitorQuery.registra(sql, formaEsecuzione, System.nanoTime() - inizio, 0);
+                throw t;
+            }
+            long durata = System.nanoTime() - inizio;
+
+            if (r instanceof ResultSet rs) {
+                // il tempo del fetch si aggiunge alla chiusura del ResultSet
+                aperto = new SuResultSet(rs, sql, formaEsecuzione, durata);
+                return Proxy.newProxyInstance(LOADER, new Class<?>[]{ResultSet.class}, aperto);
+            }
+            MonitorQuery.registra(sql, formaEsecuzione, durata, righe(r));
+            if (nome.equals("executeBatch") || nome.equals("executeLargeBatch")) {
+                batch = 0;
+            }
+            return r;
+        }
+
+        private void segnaParametro(int indice, Object valore) {
+            while (forma.size() < indice) {
+                forma.add("?");
+            }
+            forma.set(indice - 1, descrivi(valore));
+        }
+
+        private String formaCorrente() {
+            if (forma.isEmpty() && batch == 0) {
+                return "";
+            }
+            String f = forma.toString();
+            return (batch > 0) ? f + " x" + batch : f;
+        }
+
+        private void chiudiResultSet() {
+            if (aperto != null) {
+                aperto.registra();
+                aperto = null;
+            }
+        }
+
+        private static long righe(Object r) {
+            if (r instanceof Integer n) {
+                return Math.max(0, n);
+            }
+            if (r instanceof Long n) {
+                return Math.max(0, n);
+            }
+            if (r instanceof int[] esiti) {
+                long n = 0;
+                for (int e : esiti) {
+                    // SUCCESS_NO_INFO (-2): riga eseguita ma conteggio non disponibile
+                    n += (e == Statement.SUCCESS_NO_INFO) ? 1 : Math.max(0, e);
+                }
+                return n;
+            }
+            return 0;
+        }
+
+        private static String descrivi(Object v) {
+            if (v == null) {
+                return "null";
+            }
+            if (v instanceof String s) {
+                return "String(" + s.length() + ")";
+            }
+            if (v instanceof byte[] b) {
+                return "byte[" + b.length + "]";
+            }
+            return v.getClass().getSimpleName();
+        }
+    }
+
+    // ---------- ResultSet ---------- //
+
+    private static final class SuResultSet implements InvocationHandler {
+
+        private final ResultSet rs;
+        private final String sql;
+        private final String forma;
+        private long durata;
+        private long righe;
+        private boolean registrato;
+
+        SuResultSet(ResultSet rs, String sql, String forma, long durataEsecuzione) {
+            this.rs = rs;
+            this.sql = sql;
+            this.forma = forma;
+            this.durata = durataEsecuzione;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            String nome = m.getName();
+            if (nome.equals("next")) {
+                long inizio = System.nanoTime();
+                Object r = delega(rs, m, args);
+                durata += System.nanoTime() - inizio;
+                if (Boolean.TRUE.equals(r)) {
+                    righe++;
+                }
+                return r;
+            }
+            if (nome.equals("close")) {
+                registra();
+            }
+            return delega(rs, m, args);
+        }
+
+        void registra() {
+            if (!registrato) {
+                registrato = true;
+                MonitorQuery.registra(sql, forma, durata, righe);
+            }
+        }
+    }
+}
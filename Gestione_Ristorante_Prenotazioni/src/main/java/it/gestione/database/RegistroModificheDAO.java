@@ -0,0 +1,419 @@
+package it.gestione.database;
+
+import it.gestione.entity.DeltaModifiche;
+import it.gestione.entity.EventoTavolo;
+import it.gestione.entity.ModificaTavolo;
+import it.gestione.entity.ModificaZona;
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.TipoEventoTavolo;
+import it.gestione.entity.TipoZona;
+import it.gestione.entity.Turno;
+import it.gestione.entity.ZonaSala;
+
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lettura del registro modifiche di tavolo_sala e zona_sala.
+ * Le righe vengono scritte dai trigger (schema in fondo al file), quindi ogni
+ * scrittura è registrata, comprese le cancellazioni in cascata.
+ *
+ * La "versione" di una riga non è il seq (preso all'insert, prima del commit) ma un numero
+ * assegnato al commit da un trigger differito sulla riga unica di contatore_modifiche:
+ * il lock sulla riga serializza i commit, quindi chi vede la versione V vede anche tutte
+ * quelle più basse. La versione consolidata è il valore del contatore, senza finestre di tempo.
+ */
+@Repository
+public class RegistroModificheDAO {
+
+    public static final String TAVOLI = "modifica_tavolo";
+    public static final String ZONE = "modifica_zona";
+
+    // ---------- SQL ---------- //
+
+    private static final String STATO_REGISTRO_SQL =
+            "SELECT (SELECT valore FROM contatore_modifiche) AS consolidata, " +
+                    "(SELECT ultimo_seq FROM compattazione_modifiche WHERE tabella = ?) AS compattato";
+
+    // solo l'ultima modifica per tavolo; "inserito" dice se nel frattempo il tavolo è stato creato
+    private static final String SELECT_TAVOLI_SQL =
+            "SELECT versione, x, y, tipo, stato, inserito FROM (" +
+                    "SELECT versione, x, y, tipo, stato, " +
+                    "row_number() OVER (PARTITION BY x, y ORDER BY versione DESC, seq DESC) AS rn, " +
+                    "bool_or(tipo = 'INSERITO') OVER (PARTITION BY x, y) AS inserito " +
+                    "FROM modifica_tavolo " +
+                    "WHERE data = ? AND turno = ? AND nome_sala = ? AND versione > ?" +
+                    ") m WHERE rn = 1 ORDER BY versione";
+
+    private static final String SELECT_ZONE_SQL =
+            "SELECT versione, x, y, base, altezza, tipo_zona, eliminata FROM (" +
+                    "SELECT versione, x, y, base, altezza, tipo_zona, eliminata, " +
+                    "row_number() OVER (PARTITION BY x, y ORDER BY versione DESC, seq DESC) AS rn " +
+                    "FROM modifica_zona " +
+                    "WHERE nome_sala = ? AND versione > ?" +
+                    ") m WHERE rn = 1 ORDER BY versione";
+
+    // compattazione per versione (ultimo_seq di compattazione_modifiche è una versione)
+    private static final String ULTIMO_DA_COMPATTARE_SQL =
+            "SELECT versione FROM %s WHERE creato_il < now() - make_interval(hours => ?) " +
+                    "AND versione IS NOT NULL ORDER BY versione DESC LIMIT 1";
+
+    private static final String DELETE_COMPATTATI_SQL =
+            "DELETE FROM %s WHERE versione <= ?";
+
+    private static final String UPSERT_COMPATTATO_SQL =
+            "INSERT INTO compattazione_modifiche (tabella, ultimo_seq) VALUES (?, ?) " +
+                    "ON CONFLICT (tabella) DO UPDATE " +
+                    "SET ultimo_seq = GREATEST(compattazione_modifiche.ultimo_seq, EXCLUDED.ultimo_seq)";
+
+    // esportazione dello storico a pagine, keyset sull'indice ix_modifica_tavolo_config.
+    // %s = "dopo l'ultima riga" dalla seconda pagina in poi
+    private static final String PAGINA_TAVOLI_SQL =
+            "SELECT seq, data, turno, nome_sala, x, y, tipo, stato, creato_il FROM modifica_tavolo " +
+                    "WHERE data BETWEEN ? AND ? %s ORDER BY data, turno, nome_sala, seq LIMIT ?";
+
+    private static final String PAGINA_TAVOLI_DOPO_SQL = "AND (data, turno, nome_sala, seq) > (?, ?, ?, ?)";
+
+
+    // ---------- COSTRUTTORE ---------- //
+
+    public RegistroModificheDAO() {}
+
+
+    // ---------- LETTURA ---------- //
+
+    /**
+     * Versione fino alla quale il registro (TAVOLI o ZONE) è sicuramente visibile:
+     * è il valore da restituire insieme ad una lettura completa. -1 in caso di errore.
+     */
+    public long getVersioneConsolidata(String tabella) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.LETTURA)) {
+            long[] stato = statoRegistro(conn, tabella);
+            return Math.max(stato[0], stato[1]);
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getVersioneConsolidata", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Modifiche dei tavoli di una configurazione con seq > since, una per tavolo.
+     * Ritorna resyncRichiesto se lo storico dopo since è stato compattato
+     * (o since non appartiene a questo database), null in caso di errore.
+     */
+    public DeltaModifiche<EventoTavolo> getModificheTavoli(LocalDate data, Turno turno,
+                                                           String nomeSala, long since) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.LETTURA)) {
+            long[] stato = statoRegistro(conn, TAVOLI);
+            long versione = Math.max(since, Math.max(stato[0], stato[1]));
+
+            if (since < stato[1] || since > stato[0]) {
+                return DeltaModifiche.resync(Math.max(stato[0], stato[1]));
+            }
+
+            List<EventoTavolo> modifiche = new ArrayList<>();
+
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_TAVOLI_SQL)) {
+                ps.setDate(1, Date.valueOf(data));
+                ps.setString(2, turno.name());
+                ps.setString(3, nomeSala);
+                ps.setLong(4, since);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        TipoEventoTavolo tipo = TipoEventoTavolo.valueOf(rs.getString("tipo"));
+                        // creato e poi modificato dopo since: per il client è un inserimento
+                        if (tipo == TipoEventoTavolo.STATO && rs.getBoolean("inserito")) {
+                            tipo = TipoEventoTavolo.INSERITO;
+                        }
+
+                        String s = rs.getString("stato");
+                        EventoTavolo ev = new EventoTavolo(tipo, rs.getInt("x"), rs.getInt("y"),
+                                s == null ? null : StatoTavolo.valueOf(s));
+                        ev.setVersione(rs.getLong("versione"));
+                        modifiche.add(ev);
+                    }
+                }
+            }
+
+            return new DeltaModifiche<>(versione, false, modifiche);
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getModificheTavoli", e);
+            return null;
+        }
+    }
+
+    /**
+     * Modifiche delle zone di una sala con seq > since, una per zona.
+     * Stesse regole di getModificheTavoli.
+     */
+    public DeltaModifiche<ModificaZona> getModificheZone(String nomeSala, long since) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.LETTURA)) {
+            long[] stato = statoRegistro(conn, ZONE);
+            long versione = Math.max(since, Math.max(stato[0], stato[1]));
+
+            if (since < stato[1] || since > stato[0]) {
+                return DeltaModifiche.resync(Math.max(stato[0], stato[1]));
+            }
+
+            List<ModificaZona> modifiche = new ArrayList<>();
+
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_ZONE_SQL)) {
+                ps.setString(1, nomeSala);
+                ps.setLong(2, since);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ZonaSala z = new ZonaSala(rs.getInt("x"), rs.getInt("y"),
+                                TipoZona.valueOf(rs.getString("tipo_zona")),
+                                rs.getInt("base"), rs.getInt("altezza"));
+
+                        modifiche.add(new ModificaZona(rs.getLong("versione"), rs.getBoolean("eliminata"), z));
+                    }
+                }
+            }
+
+            return new DeltaModifiche<>(versione, false, modifiche);
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getModificheZone", e);
+            return null;
+        }
+    }
+
+
+    // ---------- ESPORTAZIONE ---------- //
+
+    /**
+     * Una pagina dello storico dei tavoli con data tra dal e al (inclusi), in ordine di
+     * configurazione (data, turno, sala) e poi di seq, a partire dalla riga dopo l'ultima della
+     * pagina precedente (null = dall'inizio). Lo storico copre solo il periodo non ancora compattato.
+     * Come PrenotazioneDAO.getPaginaPrenotazioni: connessione REPORT solo per la durata della pagina.
+     * Ritorna null in caso di errore.
+     */
+    public List<ModificaTavolo> getPaginaStoricoTavoli(LocalDate dal, LocalDate al, ModificaTavolo dopo, int limite) {
+        List<ModificaTavolo> pagina = new ArrayList<>(limite);
+        String sql = String.format(PAGINA_TAVOLI_SQL, (dopo == null) ? "" : PAGINA_TAVOLI_DOPO_SQL);
+
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.REPORT, sql,
+                    ps -> {
+                        int i = 1;
+                        ps.setDate(i++, Date.valueOf(dal));
+                        ps.setDate(i++, Date.valueOf(al));
+                        if (dopo != null) {
+                            ps.setDate(i++, Date.valueOf(dopo.getData()));
+                            ps.setString(i++, dopo.getTurno().name());
+                            ps.setString(i++, dopo.getNomeSala());
+                            ps.setLong(i++, dopo.getVersione());
+                        }
+                        ps.setInt(i, limite);
+                    },
+                    rs -> {
+                        ModificaTavolo m = new ModificaTavolo();
+                        m.setVersione(rs.getLong("seq"));
+                        m.setData(rs.getDate("data").toLocalDate());
+                        m.setTurno(Turno.valueOf(rs.getString("turno")));
+                        m.setNomeSala(rs.getString("nome_sala"));
+                        m.setX(rs.getInt("x"));
+                        m.setY(rs.getInt("y"));
+                        m.setTipo(TipoEventoTavolo.valueOf(rs.getString("tipo")));
+                        String s = rs.getString("stato");
+                        m.setStato(s == null ? null : StatoTavolo.valueOf(s));
+                        m.setCreatoIl(rs.getTimestamp("creato_il").toInstant());
+                        return m;
+                    },
+                    pagina::add);
+
+            return pagina;
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getPaginaStoricoTavoli", e);
+            return null;
+        }
+    }
+
+    // ---------- COMPATTAZIONE ---------- //
+
+    /**
+     * Elimina dal registro le righe più vecchie di oreRetention e alza il
+     * limite di compattazione: chi chiede un since più basso dovrà risincronizzarsi.
+     *
+     * Ritorna il numero di righe eliminate, -1 in caso di errore SQL.
+     */
+    public int compatta(String tabella, int oreRetention) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.REPORT)) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement sel = conn.prepareStatement(String.format(ULTIMO_DA_COMPATTARE_SQL, tabella));
+                 PreparedStatement del = conn.prepareStatement(String.format(DELETE_COMPATTATI_SQL, tabella));
+                 PreparedStatement ups = conn.prepareStatement(UPSERT_COMPATTATO_SQL)) {
+
+                sel.setInt(1, oreRetention);
+                long ultimo;
+                try (ResultSet rs = sel.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.commit();
+                        return 0;
+                    }
+                    ultimo = rs.getLong(1);
+                }
+
+                // il limite va scritto nella stessa transazione della delete
+                ups.setString(1, tabella);
+                ups.setLong(2, ultimo);
+                ups.executeUpdate();
+
+                del.setLong(1, ultimo);
+                int eliminate = del.executeUpdate();
+
+                conn.commit();
+                return eliminate;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("compatta", e);
+            return -1;
+        }
+    }
+
+
+    // ---------- helper ---------- //
+
+    // {ultima versione committata, limite di compattazione}
+    private long[] statoRegistro(Connection conn, String tabella) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(STATO_REGISTRO_SQL)) {
+            ps.setString(1, tabella);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new long[] { rs.getLong("consolidata"), rs.getLong("compattato") };
+            }
+        }
+    }
+}
+
+/*
+CREATE SEQUENCE seq_modifiche;
+
+CREATE TABLE modifica_tavolo (
+    seq BIGINT PRIMARY KEY DEFAULT nextval('seq_modifiche'),
+    data DATE NOT NULL,
+    turno VARCHAR(16) NOT NULL,
+    nome_sala VARCHAR(64) NOT NULL,
+    x INT NOT NULL,
+    y INT NOT NULL,
+    tipo VARCHAR(16) NOT NULL,        -- INSERITO / ELIMINATO / STATO
+    stato VARCHAR(16),                -- null per ELIMINATO
+    creato_il TIMESTAMPTZ NOT NULL DEFAULT now(),
+    versione BIGINT                   -- assegnata al commit (assegna_versione_modifica), null prima
+);
+
+CREATE INDEX ix_modifica_tavolo_config ON modifica_tavolo (data, turno, nome_sala, seq);
+
+CREATE TABLE modifica_zona (
+    seq BIGINT PRIMARY KEY DEFAULT nextval('seq_modifiche'),
+    nome_sala VARCHAR(64) NOT NULL,
+    x INT NOT NULL,
+    y INT NOT NULL,
+    base INT NOT NULL,
+    altezza INT NOT NULL,
+    tipo_zona VARCHAR(16) NOT NULL,
+    eliminata BOOLEAN NOT NULL,
+    creato_il TIMESTAMPTZ NOT NULL DEFAULT now(),
+    versione BIGINT
+);
+
+CREATE INDEX ix_modifica_zona_sala ON modifica_zona (nome_sala, seq);
+
+CREATE TABLE compattazione_modifiche (
+    tabella VARCHAR(32) PRIMARY KEY,
+    ultimo_seq BIGINT NOT NULL        -- ultima versione compattata
+);
+
+-- una sola riga: l'ultima versione committata di tavoli e zone
+CREATE TABLE contatore_modifiche (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    valore BIGINT NOT NULL
+);
+INSERT INTO contatore_modifiche (valore) VALUES (0);
+
+-- registro già esistente (prima delle versioni):
+-- ALTER TABLE modifica_tavolo ADD COLUMN versione BIGINT;
+-- ALTER TABLE modifica_zona ADD COLUMN versione BIGINT;
+-- UPDATE modifica_tavolo SET versione = seq;  UPDATE modifica_zona SET versione = seq;
+-- UPDATE contatore_modifiche SET valore = (SELECT coalesce(max(last_value), 0) FROM seq_modifiche);
+
+-- al commit (trigger differito): una versione per transazione, dal contatore. Il lock sulla riga
+-- del contatore resta fino alla fine del commit, quindi le versioni seguono l'ordine dei commit
+CREATE FUNCTION assegna_versione_modifica() RETURNS trigger AS $$
+DECLARE
+    v BIGINT;
+BEGIN
+    v := nullif(current_setting('gestione.versione_modifiche', true), '')::bigint;
+    IF v IS NULL THEN
+        UPDATE contatore_modifiche SET valore = valore + 1 RETURNING valore INTO v;
+        PERFORM set_config('gestione.versione_modifiche', v::text, true);
+    END IF;
+    EXECUTE format('UPDATE %I SET versione = $1 WHERE seq = $2', TG_TABLE_NAME) USING v, NEW.seq;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE CONSTRAINT TRIGGER tr_versione_modifica_tavolo
+    AFTER INSERT ON modifica_tavolo DEFERRABLE INITIALLY DEFERRED
+    FOR EACH ROW EXECUTE FUNCTION assegna_versione_modifica();
+
+CREATE CONSTRAINT TRIGGER tr_versione_modifica_zona
+    AFTER INSERT ON modifica_zona DEFERRABLE INITIALLY DEFERRED
+    FOR EACH ROW EXECUTE FUNCTION assegna_versione_modifica();
+
+CREATE FUNCTION registra_modifica_tavolo() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO modifica_tavolo (data, turno, nome_sala, x, y, tipo, stato)
+        VALUES (OLD.data, OLD.turno, OLD.nome_sala, OLD.x, OLD.y, 'ELIMINATO', NULL);
+        RETURN OLD;
+    ELSIF TG_OP = 'INSERT' THEN
+        INSERT INTO modifica_tavolo (data, turno, nome_sala, x, y, tipo, stato)
+        VALUES (NEW.data, NEW.turno, NEW.nome_sala, NEW.x, NEW.y, 'INSERITO', NEW.stato);
+    ELSIF NEW.stato IS DISTINCT FROM OLD.stato THEN
+        INSERT INTO modifica_tavolo (data, turno, nome_sala, x, y, tipo, stato)
+        VALUES (NEW.data, NEW.turno, NEW.nome_sala, NEW.x, NEW.y, 'STATO', NEW.stato);
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER tr_modifica_tavolo
+    AFTER INSERT OR UPDATE OR DELETE ON tavolo_sala
+    FOR EACH ROW EXECUTE FUNCTION registra_modifica_tavolo();
+
+CREATE FUNCTION registra_modifica_zona() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO modifica_zona (nome_sala, x, y, base, altezza, tipo_zona, eliminata)
+        VALUES (OLD.nome_sala, OLD.x, OLD.y, OLD.base, OLD.altezza, OLD.tipo, TRUE);
+        RETURN OLD;
+    END IF;
+    INSERT INTO modifica_zona (nome_sala, x, y, base, altezza, tipo_zona, eliminata)
+    VALUES (NEW.nome_sala, NEW.x, NEW.y, NEW.base, NEW.altezza, NEW.tipo, FALSE);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER tr_modifica_zona
+    AFTER INSERT OR DELETE ON zona_sala
+    FOR EACH ROW EXECUTE FUNCTION registra_modifica_zona();
+*/
@@ -0,0 +1,226 @@
+package it.gestione.database;
+
+import it.gestione.entity.RegolaRicorrenza;
+import it.gestione.entity.TipoRicorrenza;
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+@Repository
+public class RegolaRicorrenzaDAO {
+
+    // ---------- SQL ---------- //
+
+    private static final String INSERT_SQL =
+            "INSERT INTO regola_ricorrenza " +
+                    "(descrizione, tipo, mese, giorno, giorni_settimana, posizione, dal, al, g1, g2, a1, c1, a2, c2) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "RETURNING id_regola";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM regola_ricorrenza WHERE id_regola = ?";
+
+    private static final String SELECT_ALL_SQL =
+            "SELECT id_regola, descrizione, tipo, mese, giorno, giorni_settimana, posizione, " +
+                    "dal, al, g1, g2, a1, c1, a2, c2 " +
+                    "FROM regola_ricorrenza " +
+                    "ORDER BY id_regola";
+
+
+    // ---------- COSTRUTTORE ---------- //
+
+    public RegolaRicorrenzaDAO() {}
+
+
+    // ---------- CRUD ---------- //
+
+    /**
+     * Inserisce una regola.
+     * Ritorna l'id assegnato, -1 in caso di errore SQL.
+     */
+    public int aggiungiRegola(RegolaRicorrenza r) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+
+            ps.setString(1, r.getDescrizione());
+            ps.setString(2, r.getTipo().name());
+            setIntOrNull(ps, 3, r.getMese());
+            setIntOrNull(ps, 4, r.getGiorno());
+            ps.setString(5, giorniToString(r.getGiorniSettimana()));
+            setIntOrNull(ps, 6, r.getPosizione());
+            setDateOrNull(ps, 7, r.getDal());
+            setDateOrNull(ps, 8, r.getAl());
+            ps.setBoolean(9, r.isG1());
+            ps.setBoolean(10, r.isG2());
+            setTimeOrNull(ps, 11, r.getA1());
+            setTimeOrNull(ps, 12, r.getC1());
+            setTimeOrNull(ps, 13, r.getA2());
+            setTimeOrNull(ps, 14, r.getC2());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                int id = rs.getInt(1);
+                // le regole cambiano i working day di più date, come ogni modifica a working_day
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.WORKING_DAY, "*");
+                return id;
+            }
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("aggiungiRegola", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Elimina una regola. I giorni SPECIAL già materializzati restano in working_day.
+     * Ritorna le righe eliminate, -1 in caso di errore SQL.
+     */
+    public int eliminaRegola(int id) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
+             PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+
+            ps.setInt(1, id);
+            int n = ps.executeUpdate();
+            if (n > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.WORKING_DAY, "*");
+            }
+            return n;
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("eliminaRegola", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Tutte le regole, in ordine di inserimento.
+     * Ritorna null in caso di errore SQL (lista vuota = nessuna regola:
+     * il service la mette in cache, un errore no).
+     */
+    public List<RegolaRicorrenza> getAllRegole() {
+        List<RegolaRicorrenza> lista = new ArrayList<>();
+
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_ALL_SQL, ParametriQuery.NESSUNO,
+                    this::mapRowToRegola, lista::add);
+            return lista;
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getAllRegole", e);
+            return null;
+        }
+    }
+
+
+    // ---------- helper privati ---------- //
+
+    private RegolaRicorrenza mapRowToRegola(ResultSet rs) throws SQLException {
+        RegolaRicorrenza r = new RegolaRicorrenza();
+        r.setId(rs.getInt("id_regola"));
+        r.setDescrizione(rs.getString("descrizione"));
+        r.setTipo(TipoRicorrenza.valueOf(rs.getString("tipo")));
+        r.setMese(getIntOrNull(rs, "mese"));
+        r.setGiorno(getIntOrNull(rs, "giorno"));
+        r.setGiorniSettimana(giorniFromString(rs.getString("giorni_settimana")));
+        r.setPosizione(getIntOrNull(rs, "posizione"));
+
+        Date dal = rs.getDate("dal");
+        Date al = rs.getDate("al");
+        r.setDal(dal != null ? dal.toLocalDate() : null);
+        r.setAl(al != null ? al.toLocalDate() : null);
+
+        r.setG1(rs.getBoolean("g1"));
+        r.setG2(rs.getBoolean("g2"));
+        r.setA1(getTimeOrNull(rs, "a1"));
+        r.setC1(getTimeOrNull(rs, "c1"));
+        r.setA2(getTimeOrNull(rs, "a2"));
+        r.setC2(getTimeOrNull(rs, "c2"));
+        return r;
+    }
+
+    // giorni della settimana come "MONDAY,FRIDAY" (null se nessuno)
+    private static String giorniToString(Set<DayOfWeek> giorni) {
+        if (giorni == null || giorni.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (DayOfWeek d : giorni) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(d.name());
+        }
+        return sb.toString();
+    }
+
+    private static Set<DayOfWeek> giorniFromString(String s) {
+        Set<DayOfWeek> giorni = EnumSet.noneOf(DayOfWeek.class);
+        if (s != null && !s.isBlank()) {
+            for (String g : s.split(",")) {
+                giorni.add(DayOfWeek.valueOf(g.trim()));
+            }
+        }
+        return giorni;
+    }
+
+    private static void setIntOrNull(PreparedStatement ps, int index, Integer valore) throws SQLException {
+        if (valore != null)
+            ps.setInt(index, valore);
+        else
+            ps.setNull(index, Types.INTEGER);
+    }
+
+    private static void setDateOrNull(PreparedStatement ps, int index, LocalDate data) throws SQLException {
+        if (data != null)
+            ps.setDate(index, Date.valueOf(data));
+        else
+            ps.setNull(index, Types.DATE);
+    }
+
+    private static void setTimeOrNull(PreparedStatement ps, int index, LocalTime time) throws SQLException {
+        if (time != null)
+            ps.setTime(index, Time.valueOf(time));
+        else
+            ps.setNull(index, Types.TIME);
+    }
+
+    private static Integer getIntOrNull(ResultSet rs, String colonna) throws SQLException {
+        int v = rs.getInt(colonna);
+        return rs.wasNull() ? null : v;
+    }
+
+    private static LocalTime getTimeOrNull(ResultSet rs, String colonna) throws SQLException {
+        Time t = rs.getTime(colonna);
+        return (t != null) ? t.toLocalTime() : null;
+    }
+}
+
+/*
+CREATE TABLE regola_ricorrenza (
+    id_regola SERIAL PRIMARY KEY,
+    descrizione VARCHAR(200),
+    tipo VARCHAR(16) NOT NULL,        -- ANNUALE / SETTIMANALE / MENSILE / INTERVALLO
+
+    mese INT,                         -- ANNUALE
+    giorno INT,                       -- ANNUALE
+    giorni_settimana VARCHAR(100),    -- SETTIMANALE / MENSILE, es. 'MONDAY,TUESDAY'
+    posizione INT,                    -- MENSILE: 1..5, -1 = ultimo
+
+    dal DATE,                         -- validità (obbligatoria per INTERVALLO)
+    al DATE,
+
+    g1 BOOLEAN NOT NULL,
+    g2 BOOLEAN NOT NULL,
+    a1 TIME,
+    c1 TIME,
+    a2 TIME,
+    c2 TIME
+);
+*/
@@ -0,0 +1,197 @@
+package it.gestione.database;
+
+import it.gestione.entity.RiepilogoPrenotazioni;
+import it.gestione.entity.Turno;
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Riepilogo di prenotazioni e coperti per (data, turno, numero persone).
+ *
+ * Tenuto aggiornato in modo incrementale dalle scritture di PrenotazioneDAO,
+ * nella stessa transazione dell'insert / delete (vedi aggiorna). Ogni prenotazione ha il suo
+ * turno salvato (prenotazioni.turno): la delete toglie dalla riga in cui era stata contata.
+ * ricalcola lo ricostruisce da prenotazioni per un periodo: serve per riempirlo la prima volta
+ * e per riallineare il turno quando cambiano gli orari dei working day.
+ *
+ * Mentre ricalcola gira (un mese alla volta, vedi GestioneStatistiche) tutte le insert e delete
+ * di prenotazioni aspettano il suo commit, perché anche loro scrivono il riepilogo.
+ */
+@Repository
+public class RiepilogoPrenotazioniDAO {
+
+    // ---------- SQL ---------- //
+
+    private static final String AGGIORNA_SQL =
+            "INSERT INTO riepilogo_prenotazioni (data, turno, num_persone, prenotazioni, coperti) " +
+                    "VALUES (?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (data, turno, num_persone) DO UPDATE " +
+                    "SET prenotazioni = riepilogo_prenotazioni.prenotazioni + EXCLUDED.prenotazioni, " +
+                    "coperti = riepilogo_prenotazioni.coperti + EXCLUDED.coperti";
+
+    // blocca gli aggiornamenti incrementali finché il ricalcolo non fa commit:
+    // una prenotazione non ancora committata non è nella SELECT e il suo +1 arriva dopo
+    private static final String LOCK_SQL =
+            "LOCK TABLE riepilogo_prenotazioni IN EXCLUSIVE MODE";
+
+    // riallinea il turno salvato agli orari attuali; va fatto prima del LOCK: una delete in corso
+    // tiene il lock della sua riga e poi scrive il riepilogo, al contrario si bloccherebbero a vicenda.
+    // inizio cena per data (da GestioneWorkingDay) passato come due array paralleli
+    private static final String RICLASSIFICA_SQL =
+            "UPDATE prenotazioni p " +
+                    "SET turno = CASE WHEN p.orario < c.inizio_cena THEN 'PRANZO' ELSE 'CENA' END " +
+                    "FROM unnest(?::date[], ?::time[]) AS c(data, inizio_cena) " +
+                    "WHERE c.data = p.data AND p.data BETWEEN ? AND ? " +
+                    "AND p.turno IS DISTINCT FROM (CASE WHEN p.orario < c.inizio_cena THEN 'PRANZO' ELSE 'CENA' END)";
+
+    private static final String DELETE_PERIODO_SQL =
+            "DELETE FROM riepilogo_prenotazioni WHERE data BETWEEN ? AND ?";
+
+    // dal turno salvato, come fanno insert e delete
+    private static final String RICALCOLA_SQL =
+            "INSERT INTO riepilogo_prenotazioni (data, turno, num_persone, prenotazioni, coperti) " +
+                    "SELECT data, turno, num_persone, count(*), sum(num_persone) " +
+                    "FROM prenotazioni " +
+                    "WHERE data BETWEEN ? AND ? AND turno IS NOT NULL " +
+                    "GROUP BY 1, 2, 3";
+
+    // anche le righe negative: un disallineamento deve vedersi nelle statistiche, non sparire
+    private static final String SELECT_PERIODO_SQL =
+            "SELECT data, turno, num_persone, prenotazioni, coperti " +
+                    "FROM riepilogo_prenotazioni " +
+                    "WHERE data BETWEEN ? AND ? AND prenotazioni <> 0 " +
+                    "ORDER BY data, turno, num_persone";
+
+
+    // ---------- COSTRUTTORE ---------- //
+
+    public RiepilogoPrenotazioniDAO() {}
+
+
+    // ---------- CRUD ---------- //
+
+    /**
+     * Aggiunge (segno = 1) o toglie (segno = -1) una prenotazione dal riepilogo,
+     * sulla connessione e nella transazione del chiamante (PrenotazioneDAO).
+     */
+    static void aggiorna(Connection conn, LocalDate data, Turno turno, int numPersone, int segno) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(AGGIORNA_SQL)) {
+            ps.setDate(1, Date.valueOf(data));
+            ps.setString(2, turno.name());
+            ps.setInt(3, numPersone);
+            ps.setInt(4, segno);
+            ps.setInt(5, segno * numPersone);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Ricostruisce il riepilogo tra dal e al (inclusi) dalle prenotazioni, in un'unica transazione:
+     * prima riassegna il turno salvato sulle prenotazioni, poi blocca il riepilogo e lo riscrive.
+     * inizioCena: per ogni data del periodo l'orario da cui le prenotazioni sono CENA
+     * (per le date assenti resta il turno già salvato).
+     *
+     * Ritorna il numero di righe del riepilogo scritte, -1 in caso di errore SQL.
+     */
+    public int ricalcola(LocalDate dal, LocalDate al, Map<LocalDate, LocalTime> inizioCena) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.REPORT)) {
+            conn.setAutoCommit(false);
+
+            try {
+                Date[] date = new Date[inizioCena.size()];
+                Time[] orari = new Time[inizioCena.size()];
+                int i = 0;
+                for (Map.Entry<LocalDate, LocalTime> e : inizioCena.entrySet()) {
+                    date[i] = Date.valueOf(e.getKey());
+                    orari[i] = Time.valueOf(e.getValue());
+                    i++;
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(RICLASSIFICA_SQL)) {
+                    ps.setArray(1, conn.createArrayOf("date", date));
+                    ps.setArray(2, conn.createArrayOf("time", orari));
+                    ps.setDate(3, Date.valueOf(dal));
+                    ps.setDate(4, Date.valueOf(al));
+                    ps.executeUpdate();
+                }
+
+                try (Statement st = conn.createStatement()) {
+                    st.execute(LOCK_SQL);
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(DELETE_PERIODO_SQL)) {
+                    ps.setDate(1, Date.valueOf(dal));
+                    ps.setDate(2, Date.valueOf(al));
+                    ps.executeUpdate();
+                }
+
+                int scritte;
+                try (PreparedStatement ps = conn.prepareStatement(RICALCOLA_SQL)) {
+                    ps.setDate(1, Date.valueOf(dal));
+                    ps.setDate(2, Date.valueOf(al));
+                    scritte = ps.executeUpdate();
+                }
+
+                conn.commit();
+                return scritte;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("ricalcola", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Righe del riepilogo tra dal e al (inclusi): al massimo turni x dimensioni per giorno,
+     * indipendentemente da quante prenotazioni ci sono.
+     * In caso di errore: ritorna lista vuota.
+     */
+    public List<RiepilogoPrenotazioni> getRiepilogo(LocalDate dal, LocalDate al) {
+        List<RiepilogoPrenotazioni> lista = new ArrayList<>();
+
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.REPORT, SELECT_PERIODO_SQL,
+                    ps -> {
+                        ps.setDate(1, Date.valueOf(dal));
+                        ps.setDate(2, Date.valueOf(al));
+                    },
+                    rs -> new RiepilogoPrenotazioni(
+                            rs.getDate("data").toLocalDate(),
+                            Turno.valueOf(rs.getString("turno")),
+                            rs.getInt("num_persone"),
+                            rs.getInt("prenotazioni"),
+                            rs.getInt("coperti")),
+                    lista::add);
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getRiepilogo", e);
+        }
+
+        return lista;
+    }
+}
+
+/*
+CREATE TABLE riepilogo_prenotazioni (
+    data DATE NOT NULL,
+    turno VARCHAR(16) NOT NULL,
+    num_persone INT NOT NULL,
+    prenotazioni INT NOT NULL,
+    coperti INT NOT NULL,
+
+    PRIMARY KEY (data, turno, num_persone)
+);
+*/
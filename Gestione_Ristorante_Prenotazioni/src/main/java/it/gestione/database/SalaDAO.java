@@ -31,76 +31,92 @@ public class SalaDAO {
 
 
     public int aggiungiSala(Sala sala) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
 
             ps.setString(1, sala.getNome());
-            return ps.executeUpdate();
+            int n = ps.executeUpdate();
+            if (n > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.SALA, sala.getNome());
+            }
+            return n;
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in aggiungiSala: " + e.getMessage());
+            ErroriSQL.segnala("aggiungiSala", e);
             return -1;
         }
     }
 
     public int eliminaSala(String nomeSala) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
 
             ps.setString(1, nomeSala);
-            return ps.executeUpdate();
+            int n = ps.executeUpdate();
+            if (n > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.SALA, nomeSala);
+            }
+            return n;
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in eliminaSala: " + e.getMessage());
+            ErroriSQL.segnala("eliminaSala", e);
             return -1;
         }
     }
 
     public Sala getSala(String nomeSala) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        Sala sala = null;
+
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.LETTURA);
              PreparedStatement ps = conn.prepareStatement(SELECT_ONE_SQL)) {
 
             ps.setString(1, nomeSala);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-
-                    Sala sala = new Sala(rs.getString("nome"));
-
-                    // carica le zone dal DAO
-                    List<ZonaSala> zone = zonaSalaDAO.getZoneForSala(nomeSala);
-                    sala.setZone(zone);
-
-                    return sala;
+                    sala = new Sala(rs.getString("nome"));
                 }
             }
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getSala: " + e.getMessage());
+            ErroriSQL.segnala("getSala", e);
+            return null;
+        }
+
+        if (sala == null) {
+            return null;
         }
 
-        return null;
+        // zone lette a connessione già restituita, come in getAllSale: due connessioni LETTURA
+        // tenute insieme da ogni richiesta possono esaurire il pool e bloccarsi a vicenda
+        List<ZonaSala> zone = zonaSalaDAO.getZoneForSala(nomeSala);
+        if (zone == null) {
+            return null;   // errore: meglio nessuna sala (e niente cache) che una sala senza zone
+        }
+        sala.setZone(zone);
+
+        return sala;
     }
 
     public List<Sala> getAllSale() {
         List<Sala> lista = new ArrayList<>();
 
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_ALL_SQL);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-
-                String nomeSala = rs.getString("nome");
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_ALL_SQL, ParametriQuery.NESSUNO,
+                    rs -> new Sala(rs.getString("nome")), lista::add);
 
-                Sala sala = new Sala(nomeSala);
-                sala.setZone(zonaSalaDAO.getZoneForSala(nomeSala));
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getAllSale", e);
+            return lista;
+        }
 
-                lista.add(sala);
+        // zone lette a connessione già restituita (prima si tenevano due connessioni per sala)
+        for (Sala sala : lista) {
+            List<ZonaSala> zone = zonaSalaDAO.getZoneForSala(sala.getNome());
+            if (zone == null) {
+                return new ArrayList<>();   // errore: come sopra, non sale senza zone
             }
-
-        } catch (SQLException e) {
-            System.err.println("Errore SQL in getAllSale: " + e.getMessage());
+            sala.setZone(zone);
         }
 
         return lista;
@@ -1,5 +1,7 @@
 package it.gestione.database;
 
+import it.gestione.entity.ConfigurazioneSala;
+import it.gestione.entity.Sala;
 import it.gestione.entity.StatoTavolo;
 import it.gestione.entity.Tavolo;
 import it.gestione.entity.Turno;
@@ -9,7 +11,9 @@ import org.springframework.stereotype.Repository;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class TavoloDAO {
@@ -40,6 +44,18 @@ public class TavoloDAO {
                     "FROM tavolo_sala " +
                     "WHERE data = ? AND turno = ? AND nome_sala = ? AND x = ? AND y = ?";
 
+    private static final String SELECT_BY_TURNO_SQL =
+            "SELECT data, turno, nome_sala, x, y, stato " +
+                    "FROM tavolo_sala " +
+                    "WHERE data = ? AND turno = ? " +
+                    "ORDER BY nome_sala, y, x";
+
+    // i filtri opzionali (turno, nome_sala) vengono aggiunti in getConfigurazioniConTavoli
+    private static final String SELECT_BY_PERIODO_SQL =
+            "SELECT data, turno, nome_sala, x, y, stato " +
+                    "FROM tavolo_sala " +
+                    "WHERE data BETWEEN ? AND ?";
+
 
     // ---------- COSTRUTTORE ---------- //
 
@@ -55,7 +71,7 @@ public class TavoloDAO {
      * -1 = errore SQL
      */
     public int aggiungiTavolo(LocalDate data, Turno turno, String nomeSala, Tavolo t) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
 
             ps.setDate(1, Date.valueOf(data));
@@ -68,17 +84,55 @@ public class TavoloDAO {
             return ps.executeUpdate();
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in aggiungiTavolo: " + e.getMessage());
+            ErroriSQL.segnala("aggiungiTavolo", e);
             return -1;
         }
     }
 
+    /**
+     * Aggiunge più tavoli alla stessa configurazione con un unico batch.
+     * Ritorna i tavoli effettivamente inseriti (i già presenti sono ignorati),
+     * null in caso di errore SQL.
+     */
+    public List<Tavolo> aggiungiTavoli(LocalDate data, Turno turno, String nomeSala, List<Tavolo> tavoli) {
+        List<Tavolo> inseriti = new ArrayList<>();
+        if (tavoli.isEmpty()) {
+            return inseriti;
+        }
+
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+
+            for (Tavolo t : tavoli) {
+                ps.setDate(1, Date.valueOf(data));
+                ps.setString(2, turno.name());
+                ps.setString(3, nomeSala);
+                ps.setInt(4, t.getX());
+                ps.setInt(5, t.getY());
+                ps.setString(6, t.getStato().name());
+                ps.addBatch();
+            }
+
+            int[] esiti = ps.executeBatch();
+            for (int i = 0; i < esiti.length; i++) {
+                if (esiti[i] > 0 || esiti[i] == Statement.SUCCESS_NO_INFO) {
+                    inseriti.add(tavoli.get(i));
+                }
+            }
+            return inseriti;
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("aggiungiTavoli", e);
+            return null;
+        }
+    }
+
     /**
      * Modifica lo stato di un tavolo in una configurazione sala.
      */
     public int aggiornaStato(LocalDate data, Turno turno,
                              String nomeSala, int x, int y, StatoTavolo nuovoStato) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(UPDATE_STATO_SQL)) {
 
             ps.setString(1, nuovoStato.name());
@@ -91,7 +145,7 @@ public class TavoloDAO {
             return ps.executeUpdate();
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in aggiornaStato: " + e.getMessage());
+            ErroriSQL.segnala("aggiornaStato", e);
             return -1;
         }
     }
@@ -101,7 +155,7 @@ public class TavoloDAO {
      */
     public int eliminaTavolo(LocalDate data, Turno turno,
                              String nomeSala, int x, int y) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
 
             ps.setDate(1, Date.valueOf(data));
@@ -113,7 +167,7 @@ public class TavoloDAO {
             return ps.executeUpdate();
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in eliminaTavolo: " + e.getMessage());
+            ErroriSQL.segnala("eliminaTavolo", e);
             return -1;
         }
     }
@@ -125,21 +179,17 @@ public class TavoloDAO {
 
         List<Tavolo> lista = new ArrayList<>();
 
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_CONFIG_SQL)) {
-
-            ps.setDate(1, Date.valueOf(data));
-            ps.setString(2, turno.name());
-            ps.setString(3, nomeSala);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    lista.add(mapRowToTavolo(rs));
-                }
-            }
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_BY_CONFIG_SQL,
+                    ps -> {
+                        ps.setDate(1, Date.valueOf(data));
+                        ps.setString(2, turno.name());
+                        ps.setString(3, nomeSala);
+                    },
+                    this::mapRowToTavolo, lista::add);
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getTavoli: " + e.getMessage());
+            ErroriSQL.segnala("getTavoli", e);
         }
 
         return lista;
@@ -151,7 +201,7 @@ public class TavoloDAO {
     public Tavolo getTavolo(LocalDate data, Turno turno,
                             String nomeSala, int x, int y) {
 
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.LETTURA);
              PreparedStatement ps = conn.prepareStatement(SELECT_ONE_SQL)) {
 
             ps.setDate(1, Date.valueOf(data));
@@ -167,13 +217,97 @@ public class TavoloDAO {
             }
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getTavolo: " + e.getMessage());
+            ErroriSQL.segnala("getTavolo", e);
         }
 
         return null;
     }
 
 
+    /**
+     * Ottiene i tavoli di TUTTE le sale configurate per (data, turno), con una sola query.
+     * Ritorna mappa nome_sala -> tavoli (ordinata per nome sala).
+     */
+    public Map<String, List<Tavolo>> getTavoliPerTurno(LocalDate data, Turno turno) {
+
+        Map<String, List<Tavolo>> perSala = new LinkedHashMap<>();
+
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_BY_TURNO_SQL,
+                    ps -> {
+                        ps.setDate(1, Date.valueOf(data));
+                        ps.setString(2, turno.name());
+                    },
+                    rs -> perSala.computeIfAbsent(rs.getString("nome_sala"), k -> new ArrayList<>())
+                            .add(mapRowToTavolo(rs)));
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getTavoliPerTurno", e);
+        }
+
+        return perSala;
+    }
+
+
+    /**
+     * Ottiene in una sola query tutte le configurazioni (con i loro tavoli) comprese
+     * tra dal e al (inclusi), opzionalmente filtrate per turno e/o sala (null = tutti).
+     * Configurazioni senza tavoli non compaiono.
+     */
+    public List<ConfigurazioneSala> getConfigurazioniConTavoli(LocalDate dal, LocalDate al,
+                                                               Turno turno, String nomeSala) {
+
+        StringBuilder sql = new StringBuilder(SELECT_BY_PERIODO_SQL);
+        if (turno != null) {
+            sql.append(" AND turno = ?");
+        }
+        if (nomeSala != null) {
+            sql.append(" AND nome_sala = ?");
+        }
+        sql.append(" ORDER BY data, turno, nome_sala, y, x");
+
+        List<ConfigurazioneSala> lista = new ArrayList<>();
+
+        // righe ordinate per configurazione: cambio config quando cambia la chiave
+        ConfigurazioneSala[] corrente = new ConfigurazioneSala[1];
+
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.REPORT, sql.toString(),
+                    ps -> {
+                        int i = 1;
+                        ps.setDate(i++, Date.valueOf(dal));
+                        ps.setDate(i++, Date.valueOf(al));
+                        if (turno != null) {
+                            ps.setString(i++, turno.name());
+                        }
+                        if (nomeSala != null) {
+                            ps.setString(i, nomeSala);
+                        }
+                    },
+                    rs -> {
+                        LocalDate d = rs.getDate("data").toLocalDate();
+                        Turno t = Turno.valueOf(rs.getString("turno"));
+                        String s = rs.getString("nome_sala");
+
+                        ConfigurazioneSala c = corrente[0];
+                        if (c == null || !c.getData().equals(d)
+                                || c.getTurno() != t || !c.getSala().getNome().equals(s)) {
+                            c = new ConfigurazioneSala(d, t, new Sala(s));
+                            corrente[0] = c;
+                            lista.add(c);
+                        }
+
+                        c.getTavoli().add(mapRowToTavolo(rs));
+                    });
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getConfigurazioniConTavoli", e);
+        }
+
+        return lista;
+    }
+
+
     // ---------- helper ---------- //
 
     private Tavolo mapRowToTavolo(ResultSet rs) throws SQLException {
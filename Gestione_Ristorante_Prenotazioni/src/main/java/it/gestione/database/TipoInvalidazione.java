@@ -0,0 +1,26 @@
+package it.gestione.database;
+
+public enum TipoInvalidazione {
+    SALA('S'),          // chiave = nome sala (sala e sue zone)
+    WORKING_DAY('W'),   // chiave = "*", qualsiasi modifica può cambiare più date
+    TAVOLO('T');        // non è un'invalidazione: evento SSE da inoltrare agli altri nodi (GestioneEventiTavoli)
+
+    private final char codice;
+
+    TipoInvalidazione(char codice) {
+        this.codice = codice;
+    }
+
+    public char getCodice() {
+        return this.codice;
+    }
+
+    public static TipoInvalidazione daCodice(char codice) {
+        for (TipoInvalidazione t : values()) {
+            if (t.codice == codice) {
+                return t;
+            }
+        }
+        return null;
+    }
+}
@@ -10,6 +10,7 @@ import java.sql.Time;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -44,6 +45,14 @@ public class WorkingDayDAO {
                     "FROM working_day " +
                     "ORDER BY type, data NULLS FIRST";
 
+    // SPECIAL della data se esiste, altrimenti il template del tipo di giorno
+    private static final String SELECT_BY_DATA_SQL =
+            "SELECT type, data, g1, g2, a1, c1, a2, c2 " +
+                    "FROM working_day " +
+                    "WHERE (type = 'SPECIAL' AND data = ?) OR (type = ? AND data IS NULL) " +
+                    "ORDER BY data NULLS LAST " +
+                    "LIMIT 1";
+
     // ---------- COSTRUTTORE ---------- //
 
     public WorkingDayDAO() {}
@@ -57,7 +66,7 @@ public class WorkingDayDAO {
      * -1 = errore
      */
     public int aggiungiWorkingDay(WorkingDay wd) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
 
             ps.setString(1, wd.getType().name());
@@ -75,10 +84,61 @@ public class WorkingDayDAO {
             setTimeOrNull(ps, 7, wd.getA2());
             setTimeOrNull(ps, 8, wd.getC2());
 
-            return ps.executeUpdate(); // 1 o 0
+            int n = ps.executeUpdate(); // 1 o 0
+            if (n > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.WORKING_DAY, "*");
+            }
+            return n;
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in aggiungiWorkingDay: " + e.getMessage());
+            ErroriSQL.segnala("aggiungiWorkingDay", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Inserisce più WorkingDay con un unico batch (giorni SPECIAL generati dalle regole di ricorrenza).
+     * Ritorna quanti sono stati inseriti (i già presenti sono ignorati), -1 in caso di errore SQL.
+     */
+    public int aggiungiWorkingDays(List<WorkingDay> lista) {
+        if (lista.isEmpty()) {
+            return 0;
+        }
+
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+
+            for (WorkingDay wd : lista) {
+                ps.setString(1, wd.getType().name());
+
+                if (wd.getData() != null)
+                    ps.setDate(2, Date.valueOf(wd.getData()));
+                else
+                    ps.setNull(2, Types.DATE);
+
+                ps.setBoolean(3, wd.isG1());
+                ps.setBoolean(4, wd.isG2());
+
+                setTimeOrNull(ps, 5, wd.getA1());
+                setTimeOrNull(ps, 6, wd.getC1());
+                setTimeOrNull(ps, 7, wd.getA2());
+                setTimeOrNull(ps, 8, wd.getC2());
+                ps.addBatch();
+            }
+
+            int inseriti = 0;
+            for (int esito : ps.executeBatch()) {
+                if (esito > 0 || esito == Statement.SUCCESS_NO_INFO) {
+                    inseriti++;
+                }
+            }
+            if (inseriti > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.WORKING_DAY, "*");
+            }
+            return inseriti;
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("aggiungiWorkingDays", e);
             return -1;
         }
     }
@@ -88,14 +148,18 @@ public class WorkingDayDAO {
      * ritorna numero righe eliminate, -1 se errore
      */
     public int eliminaWorkingDayTemplate(WorkingDayType type) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(DELETE_TEMPLATE_SQL)) {
 
             ps.setString(1, type.name());
-            return ps.executeUpdate();
+            int n = ps.executeUpdate();
+            if (n > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.WORKING_DAY, "*");
+            }
+            return n;
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in eliminaWorkingDayTemplate: " + e.getMessage());
+            ErroriSQL.segnala("eliminaWorkingDayTemplate", e);
             return -1;
         }
     }
@@ -105,15 +169,19 @@ public class WorkingDayDAO {
      * ritorna numero righe eliminate, -1 se errore
      */
     public int eliminaWorkingDay(WorkingDayType type, LocalDate data) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(DELETE_BY_TYPE_AND_DATE_SQL)) {
 
             ps.setString(1, type.name());
             ps.setDate(2, Date.valueOf(data));
-            return ps.executeUpdate();
+            int n = ps.executeUpdate();
+            if (n > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.WORKING_DAY, "*");
+            }
+            return n;
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in eliminaWorkingDay: " + e.getMessage());
+            ErroriSQL.segnala("eliminaWorkingDay", e);
             return -1;
         }
     }
@@ -125,19 +193,13 @@ public class WorkingDayDAO {
     public List<WorkingDay> getWorkingDaysByType(WorkingDayType type) {
         List<WorkingDay> lista = new ArrayList<>();
 
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_TYPE_SQL)) {
-
-            ps.setString(1, type.name());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    lista.add(mapRowToWorkingDay(rs));
-                }
-            }
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_BY_TYPE_SQL,
+                    ps -> ps.setString(1, type.name()),
+                    this::mapRowToWorkingDay, lista::add);
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getWorkingDaysByType: " + e.getMessage());
+            ErroriSQL.segnala("getWorkingDaysByType", e);
         }
 
         return lista;
@@ -150,19 +212,40 @@ public class WorkingDayDAO {
     public List<WorkingDay> getAllWorkingDays() {
         List<WorkingDay> lista = new ArrayList<>();
 
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_ALL_SQL);
-             ResultSet rs = ps.executeQuery()) {
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_ALL_SQL, ParametriQuery.NESSUNO,
+                    this::mapRowToWorkingDay, lista::add);
+
+        } catch (SQLException e) {
+            ErroriSQL.segnala("getAllWorkingDays", e);
+        }
+
+        return lista;
+    }
 
-            while (rs.next()) {
-                lista.add(mapRowToWorkingDay(rs));
+    /**
+     * Ritorna il WorkingDay valido per una data:
+     * lo SPECIAL di quella data se presente, altrimenti il template del tipo (WEEKDAY/SATURDAY/SUNDAY).
+     * null se non trovato o in caso di errore.
+     */
+    public WorkingDay getWorkingDayPerData(LocalDate data, WorkingDayType tipoTemplate) {
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.LETTURA);
+             PreparedStatement ps = conn.prepareStatement(SELECT_BY_DATA_SQL)) {
+
+            ps.setDate(1, Date.valueOf(data));
+            ps.setString(2, tipoTemplate.name());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return mapRowToWorkingDay(rs);
+                }
             }
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getAllWorkingDays: " + e.getMessage());
+            ErroriSQL.segnala("getWorkingDayPerData", e);
         }
 
-        return lista;
+        return null;
     }
 
     // ---------- helper privati ---------- //
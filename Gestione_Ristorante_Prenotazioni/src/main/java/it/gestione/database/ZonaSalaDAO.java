@@ -44,7 +44,7 @@ public class ZonaSalaDAO {
      * Aggiunge una zona ad una sala.
      */
     public int aggiungiZona(String nomeSala, ZonaSala z) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
 
             ps.setString(1, nomeSala);
@@ -54,10 +54,14 @@ public class ZonaSalaDAO {
             ps.setInt(5, z.getAltezza());
             ps.setString(6, z.getTipo().name());
 
-            return ps.executeUpdate();
+            int n = ps.executeUpdate();
+            if (n > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.SALA, nomeSala);
+            }
+            return n;
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in aggiungiZona: " + e.getMessage());
+            ErroriSQL.segnala("aggiungiZona", e);
             return -1;
         }
     }
@@ -66,17 +70,21 @@ public class ZonaSalaDAO {
      * Elimina UNA singola zona della sala.
      */
     public int eliminaZona(String nomeSala, int x, int y) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
 
             ps.setString(1, nomeSala);
             ps.setInt(2, x);
             ps.setInt(3, y);
 
-            return ps.executeUpdate();
+            int n = ps.executeUpdate();
+            if (n > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.SALA, nomeSala);
+            }
+            return n;
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in eliminaZona: " + e.getMessage());
+            ErroriSQL.segnala("eliminaZona", e);
             return -1;
         }
     }
@@ -85,38 +93,38 @@ public class ZonaSalaDAO {
      * Elimina TUTTE le zone della sala.
      */
     public int eliminaTutteLeZone(String nomeSala) {
-        try (Connection conn = DBConnectionManager.getConnection();
+        try (Connection conn = DBConnectionManager.getConnection(ClassePool.SCRITTURA);
              PreparedStatement ps = conn.prepareStatement(DELETE_ALL_SQL)) {
 
             ps.setString(1, nomeSala);
 
-            return ps.executeUpdate();
+            int n = ps.executeUpdate();
+            if (n > 0) {
+                BusInvalidazioni.notifica(conn, TipoInvalidazione.SALA, nomeSala);
+            }
+            return n;
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in eliminaTutteLeZone: " + e.getMessage());
+            ErroriSQL.segnala("eliminaTutteLeZone", e);
             return -1;
         }
     }
 
     /**
      * Restituisce TUTTE le zone di una sala.
+     * In caso di errore: null (una lista vuota vorrebbe dire "sala senza vincoli").
      */
     public List<ZonaSala> getZoneForSala(String nomeSala) {
         List<ZonaSala> lista = new ArrayList<>();
 
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_SALA_SQL)) {
-
-            ps.setString(1, nomeSala);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    lista.add(mapRowToZonaSala(rs));
-                }
-            }
+        try {
+            DBConnectionManager.perOgniRiga(ClassePool.LETTURA, SELECT_BY_SALA_SQL,
+                    ps -> ps.setString(1, nomeSala),
+                    this::mapRowToZonaSala, lista::add);
 
         } catch (SQLException e) {
-            System.err.println("Errore SQL in getZoneForSala: " + e.getMessage());
+            ErroriSQL.segnala("getZoneForSala", e);
+            return null;
         }
 
         return lista;
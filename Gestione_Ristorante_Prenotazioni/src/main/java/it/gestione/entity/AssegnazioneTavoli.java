@@ -0,0 +1,69 @@
+package it.gestione.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AssegnazioneTavoli {
+    private String nomePrenotazione;
+    private int numPersone;
+
+    @JsonFormat(pattern = "HH:mm")
+    private LocalTime orario;
+
+    private String nomeSala;
+    private List<Tavolo> tavoli;   // tavoli del gruppo assegnato
+    private int posti;             // posti del gruppo (>= numPersone)
+
+    public AssegnazioneTavoli() {
+        this.tavoli = new ArrayList<>();
+    }
+
+    public AssegnazioneTavoli(Prenotazione p, GruppoTavoli g) {
+        this.nomePrenotazione = p.getNome();
+        this.numPersone = p.getNumPersone();
+        this.orario = p.getOrario();
+        this.nomeSala = g.getNomeSala();
+        this.tavoli = g.getTavoli();
+        this.posti = g.getPosti();
+    }
+
+    public String getNomePrenotazione() {
+        return this.nomePrenotazione;
+    }
+    public void setNomePrenotazione(String nomePrenotazione) {
+        this.nomePrenotazione = nomePrenotazione;
+    }
+    public int getNumPersone() {
+        return this.numPersone;
+    }
+    public void setNumPersone(int numPersone) {
+        this.numPersone = numPersone;
+    }
+    public LocalTime getOrario() {
+        return this.orario;
+    }
+    public void setOrario(LocalTime orario) {
+        this.orario = orario;
+    }
+    public String getNomeSala() {
+        return this.nomeSala;
+    }
+    public void setNomeSala(String nomeSala) {
+        this.nomeSala = nomeSala;
+    }
+    public List<Tavolo> getTavoli() {
+        return this.tavoli;
+    }
+    public void setTavoli(List<Tavolo> tavoli) {
+        this.tavoli = tavoli;
+    }
+    public int getPosti() {
+        return this.posti;
+    }
+    public void setPosti(int posti) {
+        this.posti = posti;
+    }
+}
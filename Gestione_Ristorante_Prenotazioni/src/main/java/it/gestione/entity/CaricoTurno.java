@@ -0,0 +1,75 @@
+package it.gestione.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CaricoTurno {
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate data;
+
+    private Turno turno;
+    private int capienza;              // posti totali di tutte le sale nel turno
+    private int permanenzaMinuti;      // durata considerata per ogni prenotazione
+    private int piccoCoperti;
+    private double utilizzoPicco;      // piccoCoperti / capienza
+    private List<FasciaCarico> fasce;
+
+    public CaricoTurno() {
+        this.fasce = new ArrayList<>();
+    }
+
+    public CaricoTurno(LocalDate data, Turno turno, int capienza, int permanenzaMinuti) {
+        this.data = data;
+        this.turno = turno;
+        this.capienza = capienza;
+        this.permanenzaMinuti = permanenzaMinuti;
+        this.fasce = new ArrayList<>();
+    }
+
+    public LocalDate getData() {
+        return this.data;
+    }
+    public void setData(LocalDate data) {
+        this.data = data;
+    }
+    public Turno getTurno() {
+        return this.turno;
+    }
+    public void setTurno(Turno turno) {
+        this.turno = turno;
+    }
+    public int getCapienza() {
+        return this.capienza;
+    }
+    public void setCapienza(int capienza) {
+        this.capienza = capienza;
+    }
+    public int getPermanenzaMinuti() {
+        return this.permanenzaMinuti;
+    }
+    public void setPermanenzaMinuti(int permanenzaMinuti) {
+        this.permanenzaMinuti = permanenzaMinuti;
+    }
+    public int getPiccoCoperti() {
+        return this.piccoCoperti;
+    }
+    public void setPiccoCoperti(int piccoCoperti) {
+        this.piccoCoperti = piccoCoperti;
+    }
+    public double getUtilizzoPicco() {
+        return this.utilizzoPicco;
+    }
+    public void setUtilizzoPicco(double utilizzoPicco) {
+        this.utilizzoPicco = utilizzoPicco;
+    }
+    public List<FasciaCarico> getFasce() {
+        return this.fasce;
+    }
+    public void setFasce(List<FasciaCarico> fasce) {
+        this.fasce = fasce;
+    }
+}
@@ -0,0 +1,43 @@
+package it.gestione.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DeltaModifiche<T> {
+    private long versione;              // da usare come "since" alla prossima richiesta
+    private boolean resyncRichiesto;    // storico compattato: ricaricare tutto
+    private List<T> modifiche;
+
+    public DeltaModifiche() {
+        this.modifiche = new ArrayList<>();
+    }
+
+    public DeltaModifiche(long versione, boolean resyncRichiesto, List<T> modifiche) {
+        this.versione = versione;
+        this.resyncRichiesto = resyncRichiesto;
+        this.modifiche = modifiche;
+    }
+
+    public static <T> DeltaModifiche<T> resync(long versione) {
+        return new DeltaModifiche<>(versione, true, new ArrayList<>());
+    }
+
+    public long getVersione() {
+        return this.versione;
+    }
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
+    public boolean isResyncRichiesto() {
+        return this.resyncRichiesto;
+    }
+    public void setResyncRichiesto(boolean resyncRichiesto) {
+        this.resyncRichiesto = resyncRichiesto;
+    }
+    public List<T> getModifiche() {
+        return this.modifiche;
+    }
+    public void setModifiche(List<T> modifiche) {
+        this.modifiche = modifiche;
+    }
+}
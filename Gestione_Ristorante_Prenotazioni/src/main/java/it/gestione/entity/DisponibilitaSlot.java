@@ -0,0 +1,66 @@
+package it.gestione.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+
+public class DisponibilitaSlot {
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate data;
+
+    private Turno turno;
+    private String nomeSala;
+    private int postiGruppo;         // posti del gruppo libero più piccolo che basta (best-fit)
+    private int gruppiDisponibili;   // quanti gruppi liberi bastano per la richiesta
+    private int postiLiberi;         // posti liberi totali della sala nel turno
+
+    public DisponibilitaSlot() {}
+
+    public DisponibilitaSlot(LocalDate data, Turno turno, String nomeSala,
+                             int postiGruppo, int gruppiDisponibili, int postiLiberi) {
+        this.data = data;
+        this.turno = turno;
+        this.nomeSala = nomeSala;
+        this.postiGruppo = postiGruppo;
+        this.gruppiDisponibili = gruppiDisponibili;
+        this.postiLiberi = postiLiberi;
+    }
+
+    public LocalDate getData() {
+        return this.data;
+    }
+    public void setData(LocalDate data) {
+        this.data = data;
+    }
+    public Turno getTurno() {
+        return this.turno;
+    }
+    public void setTurno(Turno turno) {
+        this.turno = turno;
+    }
+    public String getNomeSala() {
+        return this.nomeSala;
+    }
+    public void setNomeSala(String nomeSala) {
+        this.nomeSala = nomeSala;
+    }
+    public int getPostiGruppo() {
+        return this.postiGruppo;
+    }
+    public void setPostiGruppo(int postiGruppo) {
+        this.postiGruppo = postiGruppo;
+    }
+    public int getGruppiDisponibili() {
+        return this.gruppiDisponibili;
+    }
+    public void setGruppiDisponibili(int gruppiDisponibili) {
+        this.gruppiDisponibili = gruppiDisponibili;
+    }
+    public int getPostiLiberi() {
+        return this.postiLiberi;
+    }
+    public void setPostiLiberi(int postiLiberi) {
+        this.postiLiberi = postiLiberi;
+    }
+}
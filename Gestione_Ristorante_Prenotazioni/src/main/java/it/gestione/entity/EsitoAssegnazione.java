@@ -0,0 +1,61 @@
+package it.gestione.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EsitoAssegnazione {
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate data;
+
+    private Turno turno;
+    private List<AssegnazioneTavoli> assegnazioni;
+    private List<Prenotazione> nonAssegnate;   // nessun gruppo libero abbastanza grande
+    private int postiSprecati;                 // somma di (posti - numPersone)
+
+    public EsitoAssegnazione() {
+        this.assegnazioni = new ArrayList<>();
+        this.nonAssegnate = new ArrayList<>();
+    }
+
+    public EsitoAssegnazione(LocalDate data, Turno turno) {
+        this.data = data;
+        this.turno = turno;
+        this.assegnazioni = new ArrayList<>();
+        this.nonAssegnate = new ArrayList<>();
+    }
+
+    public LocalDate getData() {
+        return this.data;
+    }
+    public void setData(LocalDate data) {
+        this.data = data;
+    }
+    public Turno getTurno() {
+        return this.turno;
+    }
+    public void setTurno(Turno turno) {
+        this.turno = turno;
+    }
+    public List<AssegnazioneTavoli> getAssegnazioni() {
+        return this.assegnazioni;
+    }
+    public void setAssegnazioni(List<AssegnazioneTavoli> assegnazioni) {
+        this.assegnazioni = assegnazioni;
+    }
+    public List<Prenotazione> getNonAssegnate() {
+        return this.nonAssegnate;
+    }
+    public void setNonAssegnate(List<Prenotazione> nonAssegnate) {
+        this.nonAssegnate = nonAssegnate;
+    }
+    public int getPostiSprecati() {
+        return this.postiSprecati;
+    }
+    public void setPostiSprecati(int postiSprecati) {
+        this.postiSprecati = postiSprecati;
+    }
+}
@@ -0,0 +1,26 @@
+package it.gestione.entity;
+
+public class EsitoPrenotazioneTavoli {
+    private int esito;                         // stessa convenzione di GestioneAssegnazioneTavoli.prenotaConTavoli
+    private AssegnazioneTavoli assegnazione;   // valorizzata solo se esito = 1 o 2
+
+    public EsitoPrenotazioneTavoli() {}
+
+    public EsitoPrenotazioneTavoli(int esito, AssegnazioneTavoli assegnazione) {
+        this.esito = esito;
+        this.assegnazione = assegnazione;
+    }
+
+    public int getEsito() {
+        return this.esito;
+    }
+    public void setEsito(int esito) {
+        this.esito = esito;
+    }
+    public AssegnazioneTavoli getAssegnazione() {
+        return this.assegnazione;
+    }
+    public void setAssegnazione(AssegnazioneTavoli assegnazione) {
+        this.assegnazione = assegnazione;
+    }
+}
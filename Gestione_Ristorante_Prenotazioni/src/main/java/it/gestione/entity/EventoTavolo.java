@@ -0,0 +1,65 @@
+package it.gestione.entity;
+
+public class EventoTavolo {
+    private TipoEventoTavolo tipo;
+    private int x;
+    private int y;
+    private StatoTavolo stato;     // null per ELIMINATO e RESET
+    private long versione;         // numero di sequenza (solo nel delta sync, 0 negli eventi SSE)
+
+    public EventoTavolo() {}
+
+    public EventoTavolo(TipoEventoTavolo tipo, int x, int y, StatoTavolo stato) {
+        this.tipo = tipo;
+        this.x = x;
+        this.y = y;
+        this.stato = stato;
+    }
+
+    public static EventoTavolo inserito(Tavolo t) {
+        return new EventoTavolo(TipoEventoTavolo.INSERITO, t.getX(), t.getY(), t.getStato());
+    }
+
+    public static EventoTavolo stato(int x, int y, StatoTavolo stato) {
+        return new EventoTavolo(TipoEventoTavolo.STATO, x, y, stato);
+    }
+
+    public static EventoTavolo eliminato(int x, int y) {
+        return new EventoTavolo(TipoEventoTavolo.ELIMINATO, x, y, null);
+    }
+
+    public static EventoTavolo reset() {
+        return new EventoTavolo(TipoEventoTavolo.RESET, 0, 0, null);
+    }
+
+    public TipoEventoTavolo getTipo() {
+        return this.tipo;
+    }
+    public void setTipo(TipoEventoTavolo tipo) {
+        this.tipo = tipo;
+    }
+    public int getX() {
+        return this.x;
+    }
+    public void setX(int x) {
+        this.x = x;
+    }
+    public int getY() {
+        return this.y;
+    }
+    public void setY(int y) {
+        this.y = y;
+    }
+    public long getVersione() {
+        return this.versione;
+    }
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
+    public StatoTavolo getStato() {
+        return this.stato;
+    }
+    public void setStato(StatoTavolo stato) {
+        this.stato = stato;
+    }
+}
@@ -0,0 +1,41 @@
+package it.gestione.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalTime;
+
+public class FasciaCarico {
+
+    @JsonFormat(pattern = "HH:mm")
+    private LocalTime inizio;      // inizio della fascia (15 minuti)
+
+    private int coperti;           // persone sedute nella fascia
+    private double utilizzo;       // coperti / capienza (0 se capienza sconosciuta)
+
+    public FasciaCarico() {}
+
+    public FasciaCarico(LocalTime inizio, int coperti, double utilizzo) {
+        this.inizio = inizio;
+        this.coperti = coperti;
+        this.utilizzo = utilizzo;
+    }
+
+    public LocalTime getInizio() {
+        return this.inizio;
+    }
+    public void setInizio(LocalTime inizio) {
+        this.inizio = inizio;
+    }
+    public int getCoperti() {
+        return this.coperti;
+    }
+    public void setCoperti(int coperti) {
+        this.coperti = coperti;
+    }
+    public double getUtilizzo() {
+        return this.utilizzo;
+    }
+    public void setUtilizzo(double utilizzo) {
+        this.utilizzo = utilizzo;
+    }
+}
@@ -0,0 +1,39 @@
+package it.gestione.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GruppoTavoli {
+    private String nomeSala;
+    private List<Tavolo> tavoli;   // tavoli adiacenti (componente connessa)
+    private int posti;             // posti secondo la regola 4 * N - 2 * U
+
+    public GruppoTavoli() {
+        this.tavoli = new ArrayList<>();
+    }
+
+    public GruppoTavoli(String nomeSala, List<Tavolo> tavoli, int posti) {
+        this.nomeSala = nomeSala;
+        this.tavoli = tavoli;
+        this.posti = posti;
+    }
+
+    public String getNomeSala() {
+        return this.nomeSala;
+    }
+    public void setNomeSala(String nomeSala) {
+        this.nomeSala = nomeSala;
+    }
+    public List<Tavolo> getTavoli() {
+        return this.tavoli;
+    }
+    public void setTavoli(List<Tavolo> tavoli) {
+        this.tavoli = tavoli;
+    }
+    public int getPosti() {
+        return this.posti;
+    }
+    public void setPosti(int posti) {
+        this.posti = posti;
+    }
+}
@@ -0,0 +1,81 @@
+package it.gestione.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Una riga dello storico modifiche di un tavolo (registro modifica_tavolo), per l'esportazione.
+ */
+public class ModificaTavolo {
+    private long versione;
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate data;
+
+    private Turno turno;
+    private String nomeSala;
+    private int x;
+    private int y;
+    private TipoEventoTavolo tipo;
+    private StatoTavolo stato;     // null per ELIMINATO
+    private Instant creatoIl;
+
+    public ModificaTavolo() {}
+
+    public long getVersione() {
+        return this.versione;
+    }
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
+    public LocalDate getData() {
+        return this.data;
+    }
+    public void setData(LocalDate data) {
+        this.data = data;
+    }
+    public Turno getTurno() {
+        return this.turno;
+    }
+    public void setTurno(Turno turno) {
+        this.turno = turno;
+    }
+    public String getNomeSala() {
+        return this.nomeSala;
+    }
+    public void setNomeSala(String nomeSala) {
+        this.nomeSala = nomeSala;
+    }
+    public int getX() {
+        return this.x;
+    }
+    public void setX(int x) {
+        this.x = x;
+    }
+    public int getY() {
+        return this.y;
+    }
+    public void setY(int y) {
+        this.y = y;
+    }
+    public TipoEventoTavolo getTipo() {
+        return this.tipo;
+    }
+    public void setTipo(TipoEventoTavolo tipo) {
+        this.tipo = tipo;
+    }
+    public StatoTavolo getStato() {
+        return this.stato;
+    }
+    public void setStato(StatoTavolo stato) {
+        this.stato = stato;
+    }
+    public Instant getCreatoIl() {
+        return this.creatoIl;
+    }
+    public void setCreatoIl(Instant creatoIl) {
+        this.creatoIl = creatoIl;
+    }
+}
@@ -0,0 +1,34 @@
+package it.gestione.entity;
+
+public class ModificaZona {
+    private long versione;
+    private boolean eliminata;     // true = zona rimossa, false = zona inserita
+    private ZonaSala zona;
+
+    public ModificaZona() {}
+
+    public ModificaZona(long versione, boolean eliminata, ZonaSala zona) {
+        this.versione = versione;
+        this.eliminata = eliminata;
+        this.zona = zona;
+    }
+
+    public long getVersione() {
+        return this.versione;
+    }
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
+    public boolean isEliminata() {
+        return this.eliminata;
+    }
+    public void setEliminata(boolean eliminata) {
+        this.eliminata = eliminata;
+    }
+    public ZonaSala getZona() {
+        return this.zona;
+    }
+    public void setZona(ZonaSala zona) {
+        this.zona = zona;
+    }
+}
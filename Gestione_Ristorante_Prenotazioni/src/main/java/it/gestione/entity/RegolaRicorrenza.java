@@ -0,0 +1,149 @@
+package it.gestione.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Regola che genera giorni SPECIAL ricorrenti (festività, chiusure, ferie)
+ * con gli orari indicati (stessi campi di WorkingDay).
+ *
+ * Campi usati per tipo:
+ *  ANNUALE      mese, giorno
+ *  SETTIMANALE  giorniSettimana
+ *  MENSILE      posizione, giorniSettimana (uno solo)
+ *  INTERVALLO   dal, al (obbligatori)
+ * dal / al limitano la validità di ogni regola (null = senza limite).
+ */
+public class RegolaRicorrenza {
+    private int id;
+    private String descrizione;
+    private TipoRicorrenza tipo;
+
+    private Integer mese;
+    private Integer giorno;
+    private Set<DayOfWeek> giorniSettimana = EnumSet.noneOf(DayOfWeek.class);
+    private Integer posizione;
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate dal;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate al;
+
+    private boolean g1;
+    private boolean g2;
+
+    @JsonFormat(pattern = "HH:mm")
+    private LocalTime a1;
+    @JsonFormat(pattern = "HH:mm")
+    private LocalTime c1;
+    @JsonFormat(pattern = "HH:mm")
+    private LocalTime a2;
+    @JsonFormat(pattern = "HH:mm")
+    private LocalTime c2;
+
+    public RegolaRicorrenza() {
+    }
+
+    /** Giorno SPECIAL generato dalla regola per una data. */
+    public WorkingDay perData(LocalDate data) {
+        return new WorkingDay(WorkingDayType.SPECIAL, g1, g2, a1, c1, a2, c2, data);
+    }
+
+    public int getId() {
+        return id;
+    }
+    public String getDescrizione() {
+        return descrizione;
+    }
+    public TipoRicorrenza getTipo() {
+        return tipo;
+    }
+    public Integer getMese() {
+        return mese;
+    }
+    public Integer getGiorno() {
+        return giorno;
+    }
+    public Set<DayOfWeek> getGiorniSettimana() {
+        return giorniSettimana;
+    }
+    public Integer getPosizione() {
+        return posizione;
+    }
+    public LocalDate getDal() {
+        return dal;
+    }
+    public LocalDate getAl() {
+        return al;
+    }
+    public boolean isG1() {
+        return g1;
+    }
+    public boolean isG2() {
+        return g2;
+    }
+    public LocalTime getA1() {
+        return a1;
+    }
+    public LocalTime getC1() {
+        return c1;
+    }
+    public LocalTime getA2() {
+        return a2;
+    }
+    public LocalTime getC2() {
+        return c2;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+    public void setDescrizione(String descrizione) {
+        this.descrizione = descrizione;
+    }
+    public void setTipo(TipoRicorrenza tipo) {
+        this.tipo = tipo;
+    }
+    public void setMese(Integer mese) {
+        this.mese = mese;
+    }
+    public void setGiorno(Integer giorno) {
+        this.giorno = giorno;
+    }
+    public void setGiorniSettimana(Set<DayOfWeek> giorniSettimana) {
+        this.giorniSettimana = (giorniSettimana == null || giorniSettimana.isEmpty())
+                ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(giorniSettimana);
+    }
+    public void setPosizione(Integer posizione) {
+        this.posizione = posizione;
+    }
+    public void setDal(LocalDate dal) {
+        this.dal = dal;
+    }
+    public void setAl(LocalDate al) {
+        this.al = al;
+    }
+    public void setG1(boolean g1) {
+        this.g1 = g1;
+    }
+    public void setG2(boolean g2) {
+        this.g2 = g2;
+    }
+    public void setA1(LocalTime a1) {
+        this.a1 = a1;
+    }
+    public void setC1(LocalTime c1) {
+        this.c1 = c1;
+    }
+    public void setA2(LocalTime a2) {
+        this.a2 = a2;
+    }
+    public void setC2(LocalTime c2) {
+        this.c2 = c2;
+    }
+}
@@ -0,0 +1,45 @@
+package it.gestione.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+
+/**
+ * Riga della tabella riepilogo_prenotazioni: quante prenotazioni (e quanti coperti)
+ * di una certa dimensione ci sono in un (data, turno).
+ */
+public class RiepilogoPrenotazioni {
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate data;
+    private Turno turno;
+    private int numPersone;
+    private int prenotazioni;
+    private int coperti;
+
+    public RiepilogoPrenotazioni() {}
+
+    public RiepilogoPrenotazioni(LocalDate data, Turno turno, int numPersone, int prenotazioni, int coperti) {
+        this.data = data;
+        this.turno = turno;
+        this.numPersone = numPersone;
+        this.prenotazioni = prenotazioni;
+        this.coperti = coperti;
+    }
+
+    public LocalDate getData() {
+        return data;
+    }
+    public Turno getTurno() {
+        return turno;
+    }
+    public int getNumPersone() {
+        return numPersone;
+    }
+    public int getPrenotazioni() {
+        return prenotazioni;
+    }
+    public int getCoperti() {
+        return coperti;
+    }
+}
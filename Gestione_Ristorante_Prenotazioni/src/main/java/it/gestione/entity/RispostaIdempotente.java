@@ -0,0 +1,71 @@
+package it.gestione.entity;
+
+import java.time.Instant;
+
+public class RispostaIdempotente {
+    private String chiave;          // metodo + percorso + Idempotency-Key
+    private String impronta;        // SHA-256 del body della richiesta
+    private boolean completata;     // false = prima richiesta ancora in corso
+    private int stato;
+    private String contentType;
+    private String headers;         // header da riproporre, una riga "Nome: valore" ciascuno
+    private byte[] corpo;
+    private Instant creataIl;
+
+    public RispostaIdempotente() {}
+
+    public RispostaIdempotente(String chiave, String impronta, Instant creataIl) {
+        this.chiave = chiave;
+        this.impronta = impronta;
+        this.creataIl = creataIl;
+    }
+
+    public String getChiave() {
+        return this.chiave;
+    }
+    public void setChiave(String chiave) {
+        this.chiave = chiave;
+    }
+    public String getImpronta() {
+        return this.impronta;
+    }
+    public void setImpronta(String impronta) {
+        this.impronta = impronta;
+    }
+    public boolean isCompletata() {
+        return this.completata;
+    }
+    public void setCompletata(boolean completata) {
+        this.completata = completata;
+    }
+    public int getStato() {
+        return this.stato;
+    }
+    public void setStato(int stato) {
+        this.stato = stato;
+    }
+    public String getContentType() {
+        return this.contentType;
+    }
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+    public String getHeaders() {
+        return this.headers;
+    }
+    public void setHeaders(String headers) {
+        this.headers = headers;
+    }
+    public byte[] getCorpo() {
+        return this.corpo;
+    }
+    public void setCorpo(byte[] corpo) {
+        this.corpo = corpo;
+    }
+    public Instant getCreataIl() {
+        return this.creataIl;
+    }
+    public void setCreataIl(Instant creataIl) {
+        this.creataIl = creataIl;
+    }
+}
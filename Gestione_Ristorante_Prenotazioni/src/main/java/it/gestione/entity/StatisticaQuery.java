@@ -0,0 +1,76 @@
+package it.gestione.entity;
+
+public class StatisticaQuery {
+
+    private String impronta;        // SQL normalizzato (letterali e parametri -> ?)
+    private long esecuzioni;
+    private double totaleMs;        // esecuzione + fetch, somma di tutte le esecuzioni
+    private double mediaMs;
+    private double maxMs;
+    private long righe;             // righe lette o modificate, in totale
+    private String chiamante;       // ultimo metodo DAO visto (Classe.metodo)
+    private String formaParametri;  // tipi dei parametri dell'ultima esecuzione lenta (o della prima)
+
+    public StatisticaQuery() {}
+
+    public StatisticaQuery(String impronta, long esecuzioni, double totaleMs, double maxMs,
+                           long righe, String chiamante, String formaParametri) {
+        this.impronta = impronta;
+        this.esecuzioni = esecuzioni;
+        this.totaleMs = totaleMs;
+        this.mediaMs = (esecuzioni > 0) ? totaleMs / esecuzioni : 0;
+        this.maxMs = maxMs;
+        this.righe = righe;
+        this.chiamante = chiamante;
+        this.formaParametri = formaParametri;
+    }
+
+    public String getImpronta() {
+        return this.impronta;
+    }
+    public void setImpronta(String impronta) {
+        this.impronta = impronta;
+    }
+    public long getEsecuzioni() {
+        return this.esecuzioni;
+    }
+    public void setEsecuzioni(long esecuzioni) {
+        this.esecuzioni = esecuzioni;
+    }
+    public double getTotaleMs() {
+        return this.totaleMs;
+    }
+    public void setTotaleMs(double totaleMs) {
+        this.totaleMs = totaleMs;
+    }
+    public double getMediaMs() {
+        return this.mediaMs;
+    }
+    public void setMediaMs(double mediaMs) {
+        this.mediaMs = mediaMs;
+    }
+    public double getMaxMs() {
+        return this.maxMs;
+    }
+    public void setMaxMs(double maxMs) {
+        this.maxMs = maxMs;
+    }
+    public long getRighe() {
+        return this.righe;
+    }
+    public void setRighe(long righe) {
+        this.righe = righe;
+    }
+    public String getChiamante() {
+        return this.chiamante;
+    }
+    public void setChiamante(String chiamante) {
+        this.chiamante = chiamante;
+    }
+    public String getFormaParametri() {
+        return this.formaParametri;
+    }
+    public void setFormaParametri(String formaParametri) {
+        this.formaParametri = formaParametri;
+    }
+}
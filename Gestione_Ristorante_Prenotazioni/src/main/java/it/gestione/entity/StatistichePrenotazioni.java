@@ -0,0 +1,81 @@
+package it.gestione.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prenotazioni e coperti di un periodo, dal riepilogo (RiepilogoPrenotazioniDAO):
+ * totale, per mese ("2025-11"), per giorno, per turno e per numero di persone.
+ */
+public class StatistichePrenotazioni {
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate dal;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate al;
+
+    private final Conteggio totale = new Conteggio();
+    private final Map<String, Conteggio> perMese = new TreeMap<>();
+    private final Map<LocalDate, Conteggio> perData = new TreeMap<>();
+    private final Map<Turno, Conteggio> perTurno = new EnumMap<>(Turno.class);
+    private final Map<Integer, Conteggio> perNumPersone = new TreeMap<>();
+
+    public StatistichePrenotazioni() {}
+
+    public StatistichePrenotazioni(LocalDate dal, LocalDate al) {
+        this.dal = dal;
+        this.al = al;
+    }
+
+    /** Somma una riga del riepilogo in tutti i raggruppamenti. */
+    public void aggiungi(RiepilogoPrenotazioni r) {
+        totale.aggiungi(r);
+        perMese.computeIfAbsent(r.getData().toString().substring(0, 7), k -> new Conteggio()).aggiungi(r);
+        perData.computeIfAbsent(r.getData(), k -> new Conteggio()).aggiungi(r);
+        perTurno.computeIfAbsent(r.getTurno(), k -> new Conteggio()).aggiungi(r);
+        perNumPersone.computeIfAbsent(r.getNumPersone(), k -> new Conteggio()).aggiungi(r);
+    }
+
+    public LocalDate getDal() {
+        return dal;
+    }
+    public LocalDate getAl() {
+        return al;
+    }
+    public Conteggio getTotale() {
+        return totale;
+    }
+    public Map<String, Conteggio> getPerMese() {
+        return perMese;
+    }
+    public Map<LocalDate, Conteggio> getPerData() {
+        return perData;
+    }
+    public Map<Turno, Conteggio> getPerTurno() {
+        return perTurno;
+    }
+    public Map<Integer, Conteggio> getPerNumPersone() {
+        return perNumPersone;
+    }
+
+    public static class Conteggio {
+        private int prenotazioni;
+        private int coperti;
+
+        void aggiungi(RiepilogoPrenotazioni r) {
+            prenotazioni += r.getPrenotazioni();
+            coperti += r.getCoperti();
+        }
+
+        public int getPrenotazioni() {
+            return prenotazioni;
+        }
+        public int getCoperti() {
+            return coperti;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package it.gestione.entity;
+
+public enum TipoEventoTavolo {
+    INSERITO,
+    ELIMINATO,
+    STATO,
+    RESET      // configurazione (o sala) eliminata: il client deve svuotare la pianta
+}
@@ -0,0 +1,8 @@
+package it.gestione.entity;
+
+public enum TipoRicorrenza {
+    ANNUALE,      // ogni anno lo stesso giorno (mese + giorno), es. 25/12
+    SETTIMANALE,  // ogni settimana nei giorniSettimana, es. chiuso il lunedì
+    MENSILE,      // ogni mese l'n-esimo giornoSettimana (posizione 1..5, -1 = ultimo), es. primo lunedì
+    INTERVALLO    // ogni giorno tra dal e al, es. ferie estive
+}
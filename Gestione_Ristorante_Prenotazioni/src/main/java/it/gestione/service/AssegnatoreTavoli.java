@@ -0,0 +1,123 @@
+package it.gestione.service;
+
+import it.gestione.entity.AssegnazioneTavoli;
+import it.gestione.entity.EsitoAssegnazione;
+import it.gestione.entity.GruppoTavoli;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.Turno;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Algoritmo di assegnazione automatica prenotazioni -> gruppi di tavoli liberi.
+ * Non accede al DB: riceve prenotazioni e gruppi già caricati (vedi GestioneAssegnazioneTavoli).
+ *
+ * Strategia "best-fit decreasing":
+ *  - le prenotazioni sono ordinate per numero di persone decrescente (poi per orario);
+ *  - ogni prenotazione prende il gruppo con MENO posti sufficienti (minimo spreco)
+ *    che sia libero nell'intervallo [orario, orario + durata);
+ *  - lo stesso gruppo può ospitare più prenotazioni nel turno se gli orari non si sovrappongono.
+ *
+ * Costo: O(P log P + P * G) nel caso peggiore, con P prenotazioni e G gruppi.
+ */
+public class AssegnatoreTavoli {
+
+    private static final int MINUTI_GIORNO = 24 * 60;
+
+    private final int durataMinuti;
+
+    public AssegnatoreTavoli(int durataMinuti) {
+        this.durataMinuti = durataMinuti;
+    }
+
+    public EsitoAssegnazione assegna(LocalDate data, Turno turno,
+                                     List<Prenotazione> prenotazioni,
+                                     List<GruppoTavoli> gruppi) {
+
+        EsitoAssegnazione esito = new EsitoAssegnazione(data, turno);
+
+        // Gruppi indicizzati per numero di posti: ceiling = best-fit
+        TreeMap<Integer, List<Slot>> slotPerPosti = new TreeMap<>();
+        for (GruppoTavoli g : gruppi) {
+            if (g.getPosti() > 0) {
+                slotPerPosti.computeIfAbsent(g.getPosti(), k -> new ArrayList<>()).add(new Slot(g));
+            }
+        }
+
+        List<Prenotazione> ordinate = new ArrayList<>(prenotazioni);
+        ordinate.sort(Comparator
+                .comparingInt(Prenotazione::getNumPersone).reversed()
+                .thenComparing(Prenotazione::getOrario, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        int sprecati = 0;
+
+        for (Prenotazione p : ordinate) {
+            int inizio = inizio(p.getOrario());
+            int fine = (p.getOrario() == null) ? MINUTI_GIORNO : inizio + durataMinuti;
+
+            Slot scelto = null;
+            for (List<Slot> candidati : slotPerPosti.tailMap(p.getNumPersone(), true).values()) {
+                for (Slot s : candidati) {
+                    if (s.isLibero(inizio, fine)) {
+                        scelto = s;
+                        break;
+                    }
+                }
+                if (scelto != null) {
+                    break;
+                }
+            }
+
+            if (scelto == null) {
+                esito.getNonAssegnate().add(p);
+                continue;
+            }
+
+            scelto.occupa(inizio, fine);
+            esito.getAssegnazioni().add(new AssegnazioneTavoli(p, scelto.gruppo));
+            sprecati += scelto.gruppo.getPosti() - p.getNumPersone();
+        }
+
+        // in uscita l'ordine è quello di servizio (orario, nome)
+        esito.getAssegnazioni().sort(Comparator
+                .comparing(AssegnazioneTavoli::getOrario, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(AssegnazioneTavoli::getNomePrenotazione));
+        esito.setPostiSprecati(sprecati);
+
+        return esito;
+    }
+
+    // ===================== helper interni ===================== //
+
+    private int inizio(LocalTime orario) {
+        return (orario == null) ? 0 : orario.getHour() * 60 + orario.getMinute();
+    }
+
+    /**
+     * Un gruppo di tavoli con gli intervalli (in minuti dal mezzanotte) già occupati nel turno.
+     * Gli intervalli per gruppo sono pochi (2-3 rotazioni al massimo), basta una lista.
+     */
+    private static final class Slot {
+        private final GruppoTavoli gruppo;
+        private final List<int[]> occupato = new ArrayList<>(2);
+
+        private Slot(GruppoTavoli gruppo) {
+            this.gruppo = gruppo;
+        }
+
+        private boolean isLibero(int inizio, int fine) {
+            for (int[] i : occupato) {
+                if (inizio < i[1] && i[0] < fine) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void occupa(int inizio, int fine) {
+            occupato.add(new int[]{inizio, fine});
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package it.gestione.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache in memoria dei service, svuotata dal BusInvalidazioni.
+ * Parte disattivata: si attiva solo quando il bus è in ascolto (o è spento perché nodo singolo).
+ *
+ * Il contatore di generazione evita di rimettere in cache un valore letto dal DB
+ * prima di un'invalidazione arrivata durante la lettura.
+ */
+class CacheLocale<K, V> {
+
+    private final Map<K, V> valori = new ConcurrentHashMap<>();
+    private final AtomicLong generazione = new AtomicLong();
+    private volatile boolean abilitata;
+
+    /**
+     * Valore in cache o, se assente, quello del caricatore (i null non vengono salvati).
+     */
+    V get(K chiave, Function<K, V> caricatore) {
+        if (!abilitata) {
+            return caricatore.apply(chiave);
+        }
+
+        V v = valori.get(chiave);
+        if (v != null) {
+            return v;
+        }
+
+        long gen = generazione.get();
+        v = caricatore.apply(chiave);
+        if (v != null && abilitata && generazione.get() == gen) {
+            valori.put(chiave, v);
+            // invalidazione arrivata tra il controllo e la put
+            if (generazione.get() != gen) {
+                valori.remove(chiave, v);
+            }
+        }
+        return v;
+    }
+
+    void rimuovi(K chiave) {
+        generazione.incrementAndGet();
+        valori.remove(chiave);
+    }
+
+    void svuota() {
+        generazione.incrementAndGet();
+        valori.clear();
+    }
+
+    void setAbilitata(boolean abilitata) {
+        this.abilitata = abilitata;
+        svuota();
+    }
+}
@@ -0,0 +1,11 @@
+package it.gestione.service;
+
+/**
+ * Classi di endpoint per il controllo di ammissione (GestioneAmmissione):
+ * ognuna ha i suoi token bucket, così una raffica di letture non toglie spazio alle scritture.
+ */
+public enum ClasseEndpoint {
+    LETTURA,     // GET puntuali (tavoli, sale, prenotazioni del giorno...)
+    SCRITTURA,   // POST / PUT / PATCH / DELETE
+    PESANTE      // letture su molti giorni o elaborazioni costose (disponibilità, carico, assegnazione automatica)
+}
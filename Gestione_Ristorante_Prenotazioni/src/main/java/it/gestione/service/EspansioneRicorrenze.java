@@ -0,0 +1,136 @@
+package it.gestione.service;
+
+import it.gestione.entity.RegolaRicorrenza;
+import it.gestione.entity.WorkingDay;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Espansione delle regole di ricorrenza nei giorni SPECIAL di un anno.
+ * Un anno alla volta (al massimo 366 date): GestioneWorkingDay mette in cache il risultato
+ * per anno e risponde a ogni data con una get sulla mappa.
+ *
+ * Se più regole cadono sulla stessa data vince quella inserita per prima (id più basso).
+ */
+final class EspansioneRicorrenze {
+
+    private EspansioneRicorrenze() {}
+
+    /**
+     * Controlla che la regola abbia i campi richiesti dal suo tipo.
+     * Ritorna null se valida, altrimenti il motivo.
+     */
+    static String valida(RegolaRicorrenza r) {
+        if (r == null || r.getTipo() == null) {
+            return "Tipo di ricorrenza mancante";
+        }
+        if (r.getDal() != null && r.getAl() != null && r.getAl().isBefore(r.getDal())) {
+            return "Intervallo di validità non valido (al prima di dal)";
+        }
+
+        switch (r.getTipo()) {
+            case ANNUALE:
+                if (r.getMese() == null || r.getGiorno() == null
+                        || r.getMese() < 1 || r.getMese() > 12
+                        || r.getGiorno() < 1 || r.getGiorno() > Month.of(r.getMese()).maxLength()) {
+                    return "ANNUALE richiede mese e giorno validi";
+                }
+                return null;
+            case SETTIMANALE:
+                return r.getGiorniSettimana().isEmpty() ? "SETTIMANALE richiede almeno un giorno della settimana" : null;
+            case MENSILE:
+                if (r.getGiorniSettimana().size() != 1 || r.getPosizione() == null
+                        || r.getPosizione() == 0 || r.getPosizione() < -1 || r.getPosizione() > 5) {
+                    return "MENSILE richiede un giorno della settimana e la posizione (1..5 o -1 = ultimo)";
+                }
+                return null;
+            case INTERVALLO:
+                return (r.getDal() == null || r.getAl() == null) ? "INTERVALLO richiede dal e al" : null;
+            default:
+                return "Tipo di ricorrenza non gestito";
+        }
+    }
+
+    /**
+     * Giorni SPECIAL generati dalle regole nell'anno indicato (data -> WorkingDay).
+     * Le regole non valide vengono ignorate.
+     */
+    static Map<LocalDate, WorkingDay> espandi(List<RegolaRicorrenza> regole, int anno) {
+        Map<LocalDate, WorkingDay> giorni = new HashMap<>();
+
+        for (RegolaRicorrenza r : regole) {
+            if (valida(r) != null) {
+                continue;
+            }
+
+            LocalDate inizio = LocalDate.of(anno, 1, 1);
+            LocalDate fine = LocalDate.of(anno, 12, 31);
+            if (r.getDal() != null && r.getDal().isAfter(inizio)) {
+                inizio = r.getDal();
+            }
+            if (r.getAl() != null && r.getAl().isBefore(fine)) {
+                fine = r.getAl();
+            }
+            if (fine.isBefore(inizio)) {
+                continue; // regola non valida in quest'anno
+            }
+
+            switch (r.getTipo()) {
+                case ANNUALE:
+                    // 29 febbraio solo negli anni bisestili
+                    if (YearMonth.of(anno, r.getMese()).isValidDay(r.getGiorno())) {
+                        aggiungi(giorni, r, LocalDate.of(anno, r.getMese(), r.getGiorno()), inizio, fine);
+                    }
+                    break;
+
+                case SETTIMANALE:
+                    for (LocalDate d = inizio; !d.isAfter(fine); d = d.plusDays(1)) {
+                        if (r.getGiorniSettimana().contains(d.getDayOfWeek())) {
+                            giorni.putIfAbsent(d, r.perData(d));
+                        }
+                    }
+                    break;
+
+                case MENSILE:
+                    DayOfWeek dow = r.getGiorniSettimana().iterator().next();
+                    for (int mese = 1; mese <= 12; mese++) {
+                        LocalDate primo = LocalDate.of(anno, mese, 1);
+                        LocalDate d = (r.getPosizione() == -1)
+                                ? primo.with(TemporalAdjusters.lastInMonth(dow))
+                                : primo.with(TemporalAdjusters.dayOfWeekInMonth(r.getPosizione(), dow));
+                        // il quinto lunedì non c'è in tutti i mesi: l'adjuster sconfina nel mese dopo
+                        if (d.getMonthValue() == mese) {
+                            aggiungi(giorni, r, d, inizio, fine);
+                        }
+                    }
+                    break;
+
+                case INTERVALLO:
+                    for (LocalDate d = inizio; !d.isAfter(fine); d = d.plusDays(1)) {
+                        giorni.putIfAbsent(d, r.perData(d));
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        return giorni.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(giorni);
+    }
+
+    private static void aggiungi(Map<LocalDate, WorkingDay> giorni, RegolaRicorrenza r,
+                                 LocalDate d, LocalDate inizio, LocalDate fine) {
+        if (!d.isBefore(inizio) && !d.isAfter(fine)) {
+            giorni.putIfAbsent(d, r.perData(d));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package it.gestione.service;
+
+/**
+ * Formati di GestioneEsportazione: una riga per record in entrambi i casi.
+ */
+public enum FormatoEsportazione {
+    CSV,     // RFC 4180, intestazione nella prima riga, UTF-8
+    NDJSON   // un oggetto JSON per riga, stessi campi delle API
+}
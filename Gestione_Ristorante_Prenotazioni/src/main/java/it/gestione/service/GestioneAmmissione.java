@@ -0,0 +1,168 @@
+package it.gestione.service;
+
+import it.gestione.database.ClassePool;
+import it.gestione.database.DBConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Controllo di ammissione davanti ai controller, per non accodare richieste
+ * sul pool da 20 connessioni fino al timeout di 10 s.
+ *
+ * Una richiesta passa solo se:
+ *  1. c'è un gettone nel bucket del client per la sua classe;
+ *  2. c'è un gettone nel bucket globale della classe;
+ *  3. i thread già in attesa di una connessione sono sotto soglia
+ *     (LETTURA e PESANTE alla soglia, SCRITTURA al doppio: le scritture hanno la precedenza).
+ * Altrimenti viene rifiutata subito con il tempo di attesa consigliato (429 + Retry-After).
+ *
+ * Configurazione: gestione.ammissione.<classe>.globale / .cliente nel formato "rate:burst"
+ * (rate = richieste al secondo).
+ */
+@Service
+public class GestioneAmmissione {
+
+    // bucket dei client inattivi da più di così vengono eliminati
+    private static final long INATTIVITA_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final boolean attivo;
+    private final int sogliaAttesaPool;
+
+    private final Map<ClasseEndpoint, TokenBucket> globali = new EnumMap<>(ClasseEndpoint.class);
+    private final Map<ClasseEndpoint, double[]> configCliente = new EnumMap<>(ClasseEndpoint.class);
+    private final Map<String, TokenBucket> perCliente = new ConcurrentHashMap<>();
+
+    // metriche: classe -> [ammesse, rifiutate cliente, rifiutate globale, rifiutate pool]
+    private final Map<ClasseEndpoint, LongAdder[]> contatori = new EnumMap<>(ClasseEndpoint.class);
+
+    public GestioneAmmissione(@Value("${gestione.ammissione.attivo:true}") boolean attivo,
+                              @Value("${gestione.ammissione.soglia-attesa-pool:10}") int sogliaAttesaPool,
+                              @Value("${gestione.ammissione.lettura.globale:200:400}") String letturaGlobale,
+                              @Value("${gestione.ammissione.lettura.cliente:20:40}") String letturaCliente,
+                              @Value("${gestione.ammissione.scrittura.globale:100:200}") String scritturaGlobale,
+                              @Value("${gestione.ammissione.scrittura.cliente:10:20}") String scritturaCliente,
+                              @Value("${gestione.ammissione.pesante.globale:5:10}") String pesanteGlobale,
+                              @Value("${gestione.ammissione.pesante.cliente:1:3}") String pesanteCliente) {
+        this.attivo = attivo;
+        this.sogliaAttesaPool = sogliaAttesaPool;
+
+        configura(ClasseEndpoint.LETTURA, letturaGlobale, letturaCliente);
+        configura(ClasseEndpoint.SCRITTURA, scritturaGlobale, scritturaCliente);
+        configura(ClasseEndpoint.PESANTE, pesanteGlobale, pesanteCliente);
+
+        for (ClasseEndpoint c : ClasseEndpoint.values()) {
+            LongAdder[] a = new LongAdder[4];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = new LongAdder();
+            }
+            contatori.put(c, a);
+        }
+    }
+
+    /**
+     * Decide se ammettere una richiesta.
+     * Ritorna 0 se ammessa, altrimenti i millisecondi dopo cui riprovare (>= 1).
+     */
+    public long ammetti(ClasseEndpoint classe, String cliente) {
+        LongAdder[] c = contatori.get(classe);
+        if (!attivo) {
+            c[0].increment();
+            return 0;
+        }
+
+        TokenBucket bucketCliente = perCliente.computeIfAbsent(classe.name() + "|" + cliente, k -> {
+            double[] cfg = configCliente.get(classe);
+            return new TokenBucket(cfg[0], (int) cfg[1]);
+        });
+
+        long attesa = bucketCliente.prendi();
+        if (attesa > 0) {
+            c[1].increment();
+            return millis(attesa);
+        }
+
+        attesa = globali.get(classe).prendi();
+        if (attesa > 0) {
+            bucketCliente.restituisci();
+            c[2].increment();
+            return millis(attesa);
+        }
+
+        int soglia = (classe == ClasseEndpoint.SCRITTURA) ? sogliaAttesaPool * 2 : sogliaAttesaPool;
+        if (DBConnectionManager.getThreadInAttesa(poolDi(classe)) >= soglia) {
+            bucketCliente.restituisci();
+            globali.get(classe).restituisci();
+            c[3].increment();
+            return 1000; // il pool si svuota in fretta o va in timeout: un secondo basta
+        }
+
+        c[0].increment();
+        return 0;
+    }
+
+    // pool su cui pesa di più la classe di endpoint (vedi ClassePool)
+    private static ClassePool poolDi(ClasseEndpoint classe) {
+        switch (classe) {
+            case SCRITTURA:
+                return ClassePool.SCRITTURA;
+            case PESANTE:
+                return ClassePool.REPORT;
+            default:
+                return ClassePool.LETTURA;
+        }
+    }
+
+    /**
+     * Contatori per classe: ammesse e rifiutate per motivo.
+     */
+    public Map<String, Map<String, Long>> getStatistiche() {
+        Map<String, Map<String, Long>> stat = new LinkedHashMap<>();
+        for (Map.Entry<ClasseEndpoint, LongAdder[]> e : contatori.entrySet()) {
+            LongAdder[] a = e.getValue();
+            Map<String, Long> m = new LinkedHashMap<>();
+            m.put("ammesse", a[0].sum());
+            m.put("rifiutateCliente", a[1].sum());
+            m.put("rifiutateGlobale", a[2].sum());
+            m.put("rifiutatePool", a[3].sum());
+            stat.put(e.getKey().name(), m);
+        }
+        return stat;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void rimuoviClientInattivi() {
+        long limite = System.nanoTime() - INATTIVITA_NANOS;
+        perCliente.values().removeIf(b -> b.getUltimoUso() - limite < 0);
+    }
+
+    // ---------- helper ---------- //
+
+    private void configura(ClasseEndpoint classe, String globale, String cliente) {
+        double[] g = parse(globale);
+        globali.put(classe, new TokenBucket(g[0], (int) g[1]));
+        configCliente.put(classe, parse(cliente));
+    }
+
+    // "rate:burst" -> {rate, burst}
+    private static double[] parse(String valore) {
+        String[] parti = valore.trim().split(":");
+        double rate = Double.parseDouble(parti[0]);
+        double burst = (parti.length > 1) ? Double.parseDouble(parti[1]) : Math.max(1, rate);
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Configurazione ammissione non valida: " + valore);
+        }
+        return new double[] { rate, burst };
+    }
+
+    private static long millis(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos) + 1);
+    }
+}
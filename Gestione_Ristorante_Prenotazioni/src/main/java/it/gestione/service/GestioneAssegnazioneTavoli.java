@@ -0,0 +1,177 @@
+package it.gestione.service;
+
+import it.gestione.database.AssegnazioneTavoloDAO;
+import it.gestione.database.PrenotazioneDAO;
+import it.gestione.entity.AssegnazioneTavoli;
+import it.gestione.entity.EsitoAssegnazione;
+import it.gestione.entity.EsitoPrenotazioneTavoli;
+import it.gestione.entity.GruppoTavoli;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.Tavolo;
+import it.gestione.entity.Turno;
+import it.gestione.entity.WorkingDay;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+@Service
+public class GestioneAssegnazioneTavoli {
+
+    private final AssegnazioneTavoloDAO assegnazioneTavoloDAO;
+    private final PrenotazioneDAO prenotazioneDAO;
+    private final GestioneSala gestioneSala;
+    private final GestioneWorkingDay gestioneWorkingDay;
+    private final GestioneCarico gestioneCarico;
+
+    // stessa impostazione di GestionePrenotazione: vale anche per le prenotazioni con tavoli
+    private final boolean rifiutaOltreCapienza;
+
+    public GestioneAssegnazioneTavoli(AssegnazioneTavoloDAO assegnazioneTavoloDAO,
+                                      PrenotazioneDAO prenotazioneDAO,
+                                      GestioneSala gestioneSala,
+                                      GestioneWorkingDay gestioneWorkingDay,
+                                      GestioneCarico gestioneCarico,
+                                      @Value("${gestione.carico.rifiuta-oltre-capienza:false}") boolean rifiutaOltreCapienza) {
+        this.assegnazioneTavoloDAO = assegnazioneTavoloDAO;
+        this.prenotazioneDAO = prenotazioneDAO;
+        this.gestioneSala = gestioneSala;
+        this.gestioneWorkingDay = gestioneWorkingDay;
+        this.gestioneCarico = gestioneCarico;
+        this.rifiutaOltreCapienza = rifiutaOltreCapienza;
+    }
+
+    /**
+     * Assegna automaticamente i tavoli LIBERI di tutte le sale alle prenotazioni
+     * di (data, turno) che non hanno ancora tavoli, poi salva le assegnazioni e
+     * riserva i tavoli in un'unica transazione.
+     *
+     * Ritorna l'esito (assegnazioni + prenotazioni rimaste senza posto),
+     * oppure null se il salvataggio fallisce (nessuna modifica a DB).
+     */
+    public EsitoAssegnazione assegnaTavoli(LocalDate data, Turno turno) {
+        if (data == null || turno == null) {
+            return null;
+        }
+
+        WorkingDay wd = gestioneWorkingDay.getWorkingDayPerData(data);
+        Set<String> giaAssegnate = assegnazioneTavoloDAO.getNomiPrenotazioniAssegnate(data, turno);
+
+        List<Prenotazione> daAssegnare = new ArrayList<>();
+        for (Prenotazione p : prenotazioneDAO.getPrenotazioniByData(data)) {
+            if (gestioneWorkingDay.getTurnoPerOrario(wd, p.getOrario()) == turno
+                    && !giaAssegnate.contains(p.getNome())) {
+                daAssegnare.add(p);
+            }
+        }
+
+        List<GruppoTavoli> gruppi = gestioneSala.getGruppiLiberi(data, turno);
+
+        AssegnatoreTavoli assegnatore = new AssegnatoreTavoli(gestioneWorkingDay.getPermanenzaMinuti(turno));
+        EsitoAssegnazione esito = assegnatore.assegna(data, turno, daAssegnare, gruppi);
+
+        int res = assegnazioneTavoloDAO.salvaAssegnazioni(data, turno, esito.getAssegnazioni());
+        if (res == -1) {
+            return null;
+        }
+
+        for (AssegnazioneTavoli a : esito.getAssegnazioni()) {
+            gestioneSala.tavoliRiservati(data, turno, a.getNomeSala(), a.getTavoli());
+        }
+
+        return esito;
+    }
+
+    /**
+     * Inserisce una prenotazione e le riserva subito un gruppo di tavoli LIBERI,
+     * in un'unica transazione: due operatori in contemporanea non possono
+     * ottenere gli stessi tavoli. Se nomeSala è null si cerca in tutte le sale.
+     *
+     * Il gruppo resta RISERVATO per tutto il turno (non si condivide a orari diversi
+     * come nell'assegnazione automatica).
+     *
+     * Come creaPrenotazione, controlla la capienza del turno con il turno bloccato,
+     * nella stessa transazione dell'insert e della riserva.
+     *
+     * Ritorni (campo esito):
+     *  2  = prenotata e tavoli riservati, ma in almeno una fascia si supera la capienza
+     *  1  = prenotata, tavoli riservati (assegnazione valorizzata)
+     *  0  = già esistente (stessa data + nome)
+     * -1  = errore o parametri non validi
+     * -3  = nessun gruppo libero con abbastanza posti (prenotazione non inserita)
+     * -4  = rifiutata: supererebbe la capienza (solo se gestione.carico.rifiuta-oltre-capienza=true)
+     */
+    public EsitoPrenotazioneTavoli prenotaConTavoli(Prenotazione p, String nomeSala) {
+        if (p == null || p.getNome() == null || p.getNome().isBlank()
+                || p.getNumPersone() <= 0 || p.getDate() == null || p.getOrario() == null) {
+            return new EsitoPrenotazioneTavoli(-1, null);
+        }
+
+        GestioneCarico.ControlloCapienza controllo = gestioneCarico.preparaControllo(p, rifiutaOltreCapienza);
+        Turno turno = controllo.getTurno();
+        List<GruppoTavoli> candidati = candidatiPer(p.getNumPersone(), nomeSala,
+                gestioneSala.getGruppiLiberi(p.getDate(), turno));
+
+        int res = assegnazioneTavoloDAO.prenotaETrattieni(p, turno, candidati, controllo);
+        if (res == AssegnazioneTavoloDAO.PRENOTAZIONE_ESISTENTE) {
+            return new EsitoPrenotazioneTavoli(0, null);
+        }
+        if (res == AssegnazioneTavoloDAO.NESSUN_GRUPPO) {
+            return new EsitoPrenotazioneTavoli(-3, null);
+        }
+        if (res == AssegnazioneTavoloDAO.RIFIUTATA) {
+            return new EsitoPrenotazioneTavoli(-4, null);
+        }
+        if (res < 0) {
+            return new EsitoPrenotazioneTavoli(-1, null);
+        }
+
+        GruppoTavoli g = candidati.get(res);
+        AssegnazioneTavoli a = new AssegnazioneTavoli();
+        a.setNomePrenotazione(p.getNome());
+        a.setNomeSala(g.getNomeSala());
+        a.setNumPersone(p.getNumPersone());
+        a.setOrario(p.getOrario());
+
+        for (Tavolo t : g.getTavoli()) {
+            a.getTavoli().add(new Tavolo(t.getX(), t.getY(), StatoTavolo.RISERVATO));
+        }
+        gestioneSala.tavoliRiservati(p.getDate(), turno, g.getNomeSala(), a.getTavoli());
+
+        return new EsitoPrenotazioneTavoli((controllo.getOltreCapienza() != null) ? 2 : 1, a);
+    }
+
+    /**
+     * Ritorna le assegnazioni già salvate per (data, turno).
+     */
+    public List<AssegnazioneTavoli> getAssegnazioni(LocalDate data, Turno turno) {
+        if (data == null || turno == null) {
+            return new ArrayList<>();
+        }
+        return assegnazioneTavoloDAO.getAssegnazioni(data, turno);
+    }
+
+    /**
+     * Gruppi con abbastanza posti, dal più piccolo (best fit).
+     * A parità di posti l'ordine è casuale, così prenotazioni concorrenti
+     * puntano a gruppi diversi invece di contendersi sempre il primo.
+     */
+    private List<GruppoTavoli> candidatiPer(int numPersone, String nomeSala, List<GruppoTavoli> gruppi) {
+        List<GruppoTavoli> candidati = new ArrayList<>();
+        for (GruppoTavoli g : gruppi) {
+            if (g.getPosti() >= numPersone && (nomeSala == null || nomeSala.equals(g.getNomeSala()))) {
+                candidati.add(g);
+            }
+        }
+
+        Collections.shuffle(candidati);
+        candidati.sort(Comparator.comparingInt(GruppoTavoli::getPosti)); // sort stabile: lo shuffle resta tra pari posti
+        return candidati;
+    }
+}
@@ -0,0 +1,113 @@
+package it.gestione.service;
+
+import it.gestione.database.BusInvalidazioni;
+import it.gestione.database.DBConnectionManager;
+import it.gestione.entity.Sala;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Avvio dell'applicazione, prima di accettare traffico.
+ * Gira come ApplicationRunner: finché non termina la readiness resta REFUSING_TRAFFIC
+ * e il bilanciatore non manda richieste a questo nodo.
+ *
+ *  1. creazione dei pool DB in background, attesa al massimo attesa-pool-ms;
+ *  2. attesa del bus invalidazioni (stesso limite): finché non è connesso le cache locali
+ *     sono disattivate e alla connessione vengono svuotate, preriscaldarle prima è inutile;
+ *  3. preriscaldamento delle sole cache locali (sale e mappe zone, working day e regole),
+ *     al massimo attesa-preriscaldamento-ms. Tavoli e prenotazioni non hanno cache: si leggono
+ *     sempre dal DB e non c'è niente da preparare.
+ *
+ * Se il DB non risponde in tempo l'avvio prosegue comunque: le cache si riempiono
+ * con le prime richieste e GestioneSalute tiene il nodo NON_PRONTO finché serve.
+ */
+@Service
+public class GestioneAvvio implements ApplicationRunner {
+
+    private final GestioneSala gestioneSala;
+    private final GestioneWorkingDay gestioneWorkingDay;
+    private final BusInvalidazioni busInvalidazioni;
+
+    private final boolean preriscaldamento;
+    private final long attesaPoolMs;
+    private final long attesaPreriscaldamentoMs;
+
+    public GestioneAvvio(GestioneSala gestioneSala,
+                         GestioneWorkingDay gestioneWorkingDay,
+                         BusInvalidazioni busInvalidazioni,
+                         @Value("${gestione.avvio.preriscaldamento:true}") boolean preriscaldamento,
+                         @Value("${gestione.avvio.attesa-pool-ms:15000}") long attesaPoolMs,
+                         @Value("${gestione.avvio.attesa-preriscaldamento-ms:15000}") long attesaPreriscaldamentoMs) {
+        this.gestioneSala = gestioneSala;
+        this.gestioneWorkingDay = gestioneWorkingDay;
+        this.busInvalidazioni = busInvalidazioni;
+        this.preriscaldamento = preriscaldamento;
+        this.attesaPoolMs = attesaPoolMs;
+        this.attesaPreriscaldamentoMs = attesaPreriscaldamentoMs;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long inizio = System.nanoTime();
+
+        if (!attendi("pool DB", DBConnectionManager.avviaPool(), attesaPoolMs)) {
+            return;
+        }
+        long poolPronti = System.nanoTime();
+
+        if (!preriscaldamento
+                || !attendi("bus invalidazioni", busInvalidazioni.getPrimaConnessione(), attesaPoolMs)) {
+            return;
+        }
+        long cacheAbilitate = System.nanoTime();
+
+        CompletableFuture<Void> f = CompletableFuture.runAsync(this::preriscalda);
+        if (!attendi("preriscaldamento", f, attesaPreriscaldamentoMs)) {
+            return;
+        }
+
+        System.err.println("Avvio: pool DB pronti in " + millis(poolPronti - inizio)
+                + " ms, bus invalidazioni in " + millis(cacheAbilitate - poolPronti)
+                + " ms, preriscaldamento in " + millis(System.nanoTime() - cacheAbilitate) + " ms");
+    }
+
+    private void preriscalda() {
+        LocalDate oggi = LocalDate.now();
+
+        for (Sala s : gestioneSala.getAllSale()) {
+            gestioneSala.getSala(s.getNome());
+            gestioneSala.getMappaZone(s.getNome());
+        }
+
+        gestioneWorkingDay.getAllWorkingDays();
+        gestioneWorkingDay.getWorkingDayPerData(oggi);
+    }
+
+    // true se il passo è terminato in tempo e senza errori
+    private static boolean attendi(String passo, CompletableFuture<?> f, long timeoutMs) {
+        try {
+            f.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            // il passo continua in background: chi arriva dopo lo trova già avviato
+            System.err.println("Avvio: " + passo + " non completato in " + timeoutMs + " ms, si prosegue");
+        } catch (ExecutionException e) {
+            System.err.println("Avvio: " + passo + " fallito, si prosegue: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
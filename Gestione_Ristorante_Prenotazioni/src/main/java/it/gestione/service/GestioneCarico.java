@@ -0,0 +1,218 @@
+package it.gestione.service;
+
+import it.gestione.database.ControlloInserimento;
+import it.gestione.database.PrenotazioneDAO;
+import it.gestione.entity.CaricoTurno;
+import it.gestione.entity.FasciaCarico;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.Turno;
+import it.gestione.entity.WorkingDay;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class GestioneCarico {
+
+    public static final int MINUTI_FASCIA = 15;
+
+    private static final int MINUTI_GIORNO = 24 * 60;
+
+    private final PrenotazioneDAO prenotazioneDAO;
+    private final GestioneSala gestioneSala;
+    private final GestioneWorkingDay gestioneWorkingDay;
+
+    public GestioneCarico(PrenotazioneDAO prenotazioneDAO,
+                          GestioneSala gestioneSala,
+                          GestioneWorkingDay gestioneWorkingDay) {
+        this.prenotazioneDAO = prenotazioneDAO;
+        this.gestioneSala = gestioneSala;
+        this.gestioneWorkingDay = gestioneWorkingDay;
+    }
+
+    /**
+     * Curva di carico di un turno: coperti seduti per fascia di 15 minuti e picco di utilizzo.
+     * Ogni prenotazione occupa [orario, orario + permanenza del turno).
+     * Se data o turno sono null → null.
+     */
+    public CaricoTurno calcolaCarico(LocalDate data, Turno turno) {
+        if (data == null || turno == null) {
+            return null;
+        }
+
+        return costruisciCurva(data, turno, prenotazioniDelTurno(data, turno),
+                gestioneWorkingDay.getPermanenzaMinuti(turno),
+                gestioneSala.calcolaPostiTotali(data, turno));
+    }
+
+    /**
+     * Verifica se una nuova prenotazione farebbe superare la capienza in almeno
+     * una delle fasce che occupa. Conta solo le fasce toccate dalla nuova prenotazione,
+     * così un sovraccarico già esistente in altri orari non la blocca.
+     *
+     * Ritorna la prima fascia oltre capienza, oppure null se c'è posto
+     * (o se per quel turno non ci sono tavoli configurati).
+     */
+    public FasciaCarico verificaCapienza(Prenotazione nuova) {
+        if (nuova == null || nuova.getDate() == null || nuova.getOrario() == null) {
+            return null;
+        }
+
+        ControlloCapienza controllo = preparaControllo(nuova, false);
+        controllo.consenti(prenotazioneDAO.getPrenotazioniByData(nuova.getDate()));
+        return controllo.getOltreCapienza();
+    }
+
+    /**
+     * Controllo di capienza da passare a PrenotazioneDAO.aggiungiPrenotazione, che lo esegue
+     * nella transazione dell'insert con il turno bloccato. Working day, capienza e permanenza
+     * si leggono qui, prima della transazione: sotto lock restano solo calcoli.
+     * rifiuta = true: l'inserimento viene rifiutato se supera la capienza.
+     */
+    ControlloCapienza preparaControllo(Prenotazione nuova, boolean rifiuta) {
+        WorkingDay wd = gestioneWorkingDay.getWorkingDayPerData(nuova.getDate());
+        Turno turno = gestioneWorkingDay.getTurnoPerOrario(wd, nuova.getOrario());
+        return new ControlloCapienza(nuova, wd, turno,
+                gestioneSala.calcolaPostiTotali(nuova.getDate(), turno),
+                gestioneWorkingDay.getPermanenzaMinuti(turno), rifiuta);
+    }
+
+    /**
+     * Verifica di verificaCapienza sulle prenotazioni passate dal chiamante.
+     * Dopo consenti(), getOltreCapienza() è la prima fascia oltre capienza (null se c'è posto).
+     */
+    final class ControlloCapienza implements ControlloInserimento {
+        private final Prenotazione nuova;
+        private final WorkingDay wd;
+        private final Turno turno;
+        private final int capienza;
+        private final int permanenza;
+        private final boolean rifiuta;
+
+        private FasciaCarico oltreCapienza;
+
+        private ControlloCapienza(Prenotazione nuova, WorkingDay wd, Turno turno,
+                                  int capienza, int permanenza, boolean rifiuta) {
+            this.nuova = nuova;
+            this.wd = wd;
+            this.turno = turno;
+            this.capienza = capienza;
+            this.permanenza = permanenza;
+            this.rifiuta = rifiuta;
+        }
+
+        Turno getTurno() {
+            return turno;
+        }
+
+        FasciaCarico getOltreCapienza() {
+            return oltreCapienza;
+        }
+
+        @Override
+        public boolean consenti(List<Prenotazione> presentiNellaData) {
+            oltreCapienza = (capienza > 0) ? primaFasciaOltre(presentiNellaData) : null;
+            return oltreCapienza == null || !rifiuta;
+        }
+
+        private FasciaCarico primaFasciaOltre(List<Prenotazione> presentiNellaData) {
+            List<Prenotazione> prenotazioni = new ArrayList<>();
+            for (Prenotazione p : presentiNellaData) {
+                if (gestioneWorkingDay.getTurnoPerOrario(wd, p.getOrario()) == turno) {
+                    prenotazioni.add(p);
+                }
+            }
+            prenotazioni.add(nuova);
+
+            CaricoTurno carico = costruisciCurva(nuova.getDate(), turno, prenotazioni, permanenza, capienza);
+
+            int inizio = minuti(nuova.getOrario());
+            int fine = inizio + permanenza;
+
+            // le fasce sono consecutive: i minuti assoluti si ricavano dall'indice
+            List<FasciaCarico> fasce = carico.getFasce();
+            int primaFascia = minuti(fasce.get(0).getInizio());
+            for (int i = 0; i < fasce.size(); i++) {
+                int m = primaFascia + i * MINUTI_FASCIA;
+                if (m + MINUTI_FASCIA > inizio && m < fine && fasce.get(i).getCoperti() > capienza) {
+                    return fasce.get(i);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Sweep-line su array alle differenze: +persone nella fascia di arrivo,
+     * -persone nella fascia dopo l'uscita; una somma prefissa dà i coperti per fascia.
+     * O(P + F) con P prenotazioni e F fasce, nessun ordinamento.
+     */
+    public CaricoTurno costruisciCurva(LocalDate data, Turno turno, List<Prenotazione> prenotazioni,
+                                       int permanenzaMinuti, int capienza) {
+
+        CaricoTurno carico = new CaricoTurno(data, turno, capienza, permanenzaMinuti);
+
+        int nFasce = (MINUTI_GIORNO + permanenzaMinuti) / MINUTI_FASCIA + 2;
+        int[] diff = new int[nFasce + 1];
+        int prima = Integer.MAX_VALUE;
+        int ultima = -1;
+
+        for (Prenotazione p : prenotazioni) {
+            if (p.getOrario() == null || p.getNumPersone() <= 0) {
+                continue;
+            }
+            int inizio = minuti(p.getOrario());
+            int fine = inizio + permanenzaMinuti;
+
+            int f0 = inizio / MINUTI_FASCIA;
+            int f1 = (fine + MINUTI_FASCIA - 1) / MINUTI_FASCIA; // prima fascia libera
+
+            diff[f0] += p.getNumPersone();
+            diff[f1] -= p.getNumPersone();
+            prima = Math.min(prima, f0);
+            ultima = Math.max(ultima, f1 - 1);
+        }
+
+        int coperti = 0;
+        int picco = 0;
+        for (int f = 0; f <= ultima; f++) {
+            coperti += diff[f];
+            if (f < prima) {
+                continue;
+            }
+            picco = Math.max(picco, coperti);
+            carico.getFasce().add(new FasciaCarico(
+                    LocalTime.ofSecondOfDay((long) (f * MINUTI_FASCIA % MINUTI_GIORNO) * 60),
+                    coperti, utilizzo(coperti, capienza)));
+        }
+
+        carico.setPiccoCoperti(picco);
+        carico.setUtilizzoPicco(utilizzo(picco, capienza));
+        return carico;
+    }
+
+    // ===================== helper interni ===================== //
+
+    private List<Prenotazione> prenotazioniDelTurno(LocalDate data, Turno turno) {
+        WorkingDay wd = gestioneWorkingDay.getWorkingDayPerData(data);
+
+        List<Prenotazione> delTurno = new ArrayList<>();
+        for (Prenotazione p : prenotazioneDAO.getPrenotazioniByData(data)) {
+            if (gestioneWorkingDay.getTurnoPerOrario(wd, p.getOrario()) == turno) {
+                delTurno.add(p);
+            }
+        }
+        return delTurno;
+    }
+
+    private int minuti(LocalTime t) {
+        return t.getHour() * 60 + t.getMinute();
+    }
+
+    private double utilizzo(int coperti, int capienza) {
+        return (capienza > 0) ? (double) coperti / capienza : 0.0;
+    }
+}
@@ -0,0 +1,151 @@
+package it.gestione.service;
+
+import it.gestione.database.PrenotazioneDAO;
+import it.gestione.database.TavoloDAO;
+import it.gestione.entity.AssegnazioneTavoli;
+import it.gestione.entity.ConfigurazioneSala;
+import it.gestione.entity.DisponibilitaSlot;
+import it.gestione.entity.GruppoTavoli;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.Tavolo;
+import it.gestione.entity.Turno;
+import it.gestione.entity.WorkingDay;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+@Service
+public class GestioneDisponibilita {
+
+    // Limite di sicurezza sull'ampiezza della ricerca (giorni)
+    public static final int MAX_GIORNI = 92;
+
+    // Una prenotazione non ancora assegnata blocca un gruppo per tutto il turno (stima prudente)
+    private static final int BLOCCO_TURNO_MINUTI = 24 * 60;
+
+    private final TavoloDAO tavoloDAO;
+    private final PrenotazioneDAO prenotazioneDAO;
+    private final GestioneSala gestioneSala;
+    private final GestioneWorkingDay gestioneWorkingDay;
+
+    public GestioneDisponibilita(TavoloDAO tavoloDAO,
+                                 PrenotazioneDAO prenotazioneDAO,
+                                 GestioneSala gestioneSala,
+                                 GestioneWorkingDay gestioneWorkingDay) {
+        this.tavoloDAO = tavoloDAO;
+        this.prenotazioneDAO = prenotazioneDAO;
+        this.gestioneSala = gestioneSala;
+        this.gestioneWorkingDay = gestioneWorkingDay;
+    }
+
+    /**
+     * Cerca dove possono sedersi numPersone tra dal e al (inclusi),
+     * opzionalmente solo per un turno e/o una sala (null = tutti).
+     *
+     * Letture a DB: tavoli di tutte le configurazioni del periodo (1 query),
+     * prenotazioni non ancora assegnate (1 query), working day (1 query).
+     * Ogni (data, turno) viene poi valutato in parallelo:
+     *  - gruppi completamente LIBERI di tutte le sale;
+     *  - le prenotazioni non assegnate del turno "consumano" i gruppi (best-fit, un gruppo per turno);
+     *  - per ogni sala resta il gruppo più piccolo con posti >= numPersone.
+     *
+     * Ritorna gli slot disponibili ordinati per data, turno e spreco di posti;
+     * null se i parametri non sono validi.
+     */
+    public List<DisponibilitaSlot> cercaDisponibilita(int numPersone, LocalDate dal, LocalDate al,
+                                                      Turno turno, String nomeSala) {
+        if (numPersone <= 0 || dal == null || al == null || al.isBefore(dal)
+                || ChronoUnit.DAYS.between(dal, al) >= MAX_GIORNI) {
+            return null;
+        }
+
+        // tutte le sale anche se si filtra per sala: le prenotazioni in attesa possono finire ovunque
+        List<ConfigurazioneSala> configurazioni = tavoloDAO.getConfigurazioniConTavoli(dal, al, turno, null);
+        Map<LocalDate, WorkingDay> workingDays = gestioneWorkingDay.getWorkingDaysPerPeriodo(dal, al);
+
+        // raggruppo configurazioni e prenotazioni per (data, turno)
+        Map<String, List<ConfigurazioneSala>> configPerTurno = new LinkedHashMap<>();
+        for (ConfigurazioneSala c : configurazioni) {
+            configPerTurno.computeIfAbsent(key(c.getData(), c.getTurno()), k -> new ArrayList<>()).add(c);
+        }
+
+        Map<String, List<Prenotazione>> pendentiPerTurno = new HashMap<>();
+        for (Prenotazione p : prenotazioneDAO.getPrenotazioniNonAssegnate(dal, al)) {
+            Turno t = gestioneWorkingDay.getTurnoPerOrario(workingDays.get(p.getDate()), p.getOrario());
+            if (t != null) {
+                pendentiPerTurno.computeIfAbsent(key(p.getDate(), t), k -> new ArrayList<>()).add(p);
+            }
+        }
+
+        List<DisponibilitaSlot> slot = new ArrayList<>(configPerTurno.entrySet().parallelStream()
+                .flatMap(e -> valutaTurno(numPersone, nomeSala, e.getValue(),
+                        pendentiPerTurno.getOrDefault(e.getKey(), Collections.emptyList())).stream())
+                .toList());
+
+        slot.sort(Comparator
+                .comparing(DisponibilitaSlot::getData)
+                .thenComparing(DisponibilitaSlot::getTurno)
+                .thenComparingInt(DisponibilitaSlot::getPostiGruppo)
+                .thenComparing(DisponibilitaSlot::getNomeSala));
+
+        return slot;
+    }
+
+    // ===================== helper interni ===================== //
+
+    /**
+     * Valuta un singolo (data, turno): configurazioni di tutte le sale + prenotazioni in attesa.
+     */
+    private List<DisponibilitaSlot> valutaTurno(int numPersone, String nomeSala,
+                                                List<ConfigurazioneSala> configurazioni,
+                                                List<Prenotazione> pendenti) {
+        LocalDate data = configurazioni.get(0).getData();
+        Turno turno = configurazioni.get(0).getTurno();
+
+        List<GruppoTavoli> liberi = new ArrayList<>();
+        for (ConfigurazioneSala c : configurazioni) {
+            liberi.addAll(gestioneSala.trovaGruppiLiberi(c.getSala().getNome(), c.getTavoli()));
+        }
+
+        // gruppi che verrebbero usati dalle prenotazioni in attesa (confronto per identità)
+        Set<List<Tavolo>> consumati = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (!pendenti.isEmpty()) {
+            AssegnatoreTavoli assegnatore = new AssegnatoreTavoli(BLOCCO_TURNO_MINUTI);
+            for (AssegnazioneTavoli a : assegnatore.assegna(data, turno, pendenti, liberi).getAssegnazioni()) {
+                consumati.add(a.getTavoli());
+            }
+        }
+
+        // per sala: gruppo best-fit, numero di gruppi adatti, posti liberi
+        Map<String, int[]> perSala = new LinkedHashMap<>();
+        for (GruppoTavoli g : liberi) {
+            if (consumati.contains(g.getTavoli())
+                    || (nomeSala != null && !nomeSala.equals(g.getNomeSala()))) {
+                continue;
+            }
+
+            int[] acc = perSala.computeIfAbsent(g.getNomeSala(), k -> new int[]{Integer.MAX_VALUE, 0, 0});
+            acc[2] += g.getPosti();
+            if (g.getPosti() >= numPersone) {
+                acc[0] = Math.min(acc[0], g.getPosti());
+                acc[1]++;
+            }
+        }
+
+        List<DisponibilitaSlot> slot = new ArrayList<>();
+        for (Map.Entry<String, int[]> e : perSala.entrySet()) {
+            int[] acc = e.getValue();
+            if (acc[1] > 0) {
+                slot.add(new DisponibilitaSlot(data, turno, e.getKey(), acc[0], acc[1], acc[2]));
+            }
+        }
+
+        return slot;
+    }
+
+    private String key(LocalDate data, Turno turno) {
+        return data + ";" + turno.name();
+    }
+}
@@ -0,0 +1,247 @@
+package it.gestione.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import it.gestione.database.PrenotazioneDAO;
+import it.gestione.database.RegistroModificheDAO;
+import it.gestione.entity.ModificaTavolo;
+import it.gestione.entity.Prenotazione;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Esportazione di prenotazioni e storico tavoli in CSV o NDJSON, scritta direttamente nella risposta.
+ *
+ * Le righe si leggono a pagine (keyset, righePerPagina righe) e ogni pagina viene scritta e
+ * dimenticata prima di leggere la successiva: la memoria non dipende dalla dimensione del periodo.
+ * La connessione REPORT è occupata solo durante la lettura di una pagina, non mentre si aspetta
+ * un client lento: un download di milioni di righe non toglie connessioni alle altre richieste.
+ *
+ * Un errore a metà esportazione interrompe la risposta (IOException): il client vede un download
+ * incompleto invece di un file troncato che sembra valido.
+ *
+ * Le esportazioni girano su un pool dedicato (thread, default 2) con un proprio timeout
+ * (timeout-minuti, default 60): non occupano l'executor MVC delle altre richieste asincrone
+ * e il timeout lungo vale solo per loro. Con tutti i thread occupati occupa() ritorna false.
+ */
+@Service
+public class GestioneEsportazione {
+
+    // periodo massimo esportabile (10 anni)
+    public static final long MAX_GIORNI = 3660;
+
+    private static final int BUFFER_BYTE = 64 * 1024;
+
+    private static final String[] COLONNE_PRENOTAZIONI =
+            { "data", "orario", "nome", "num_persone", "numero_telefono" };
+
+    private static final String[] COLONNE_STORICO_TAVOLI =
+            { "versione", "data", "turno", "nome_sala", "x", "y", "tipo", "stato", "creato_il" };
+
+    private final PrenotazioneDAO prenotazioneDAO;
+    private final RegistroModificheDAO registroModificheDAO;
+    private final int righePerPagina;
+    private final long timeoutMs;
+
+    // un posto per thread: chi non lo trova riceve 503 invece di aspettare in coda
+    private final Semaphore posti;
+    private final ExecutorService esecuzione;
+    private final AsyncTaskExecutor esecutore;
+
+    // il flush a ogni oggetto lo fa già il cambio pagina
+    private final ObjectWriter scrittoreJson;
+
+    public GestioneEsportazione(PrenotazioneDAO prenotazioneDAO,
+                                RegistroModificheDAO registroModificheDAO,
+                                ObjectMapper objectMapper,
+                                @Value("${gestione.esportazione.righe-per-pagina:5000}") int righePerPagina,
+                                @Value("${gestione.esportazione.thread:2}") int thread,
+                                @Value("${gestione.esportazione.timeout-minuti:60}") long timeoutMinuti) {
+        this.prenotazioneDAO = prenotazioneDAO;
+        this.registroModificheDAO = registroModificheDAO;
+        this.righePerPagina = righePerPagina;
+        this.timeoutMs = TimeUnit.MINUTES.toMillis(timeoutMinuti);
+        this.posti = new Semaphore(thread);
+        AtomicInteger n = new AtomicInteger();
+        this.esecuzione = Executors.newFixedThreadPool(thread, r -> {
+            Thread t = new Thread(r, "esportazione-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.esecutore = new TaskExecutorAdapter(esecuzione);
+        this.scrittoreJson = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Riserva un posto per un'esportazione: false se sono tutti occupati.
+     * Il posto si libera da solo alla fine della richiesta asincrona (vedi inBackground).
+     */
+    public boolean occupa() {
+        return posti.tryAcquire();
+    }
+
+    /**
+     * Scrive corpo sullo stream dato da uscita con il pool e il timeout delle esportazioni,
+     * dopo occupa(). Al timeout il thread viene interrotto e la risposta chiusa.
+     */
+    public WebAsyncTask<Void> inBackground(StreamingResponseBody corpo, Callable<OutputStream> uscita) {
+        WebAsyncTask<Void> task = new WebAsyncTask<>(timeoutMs, esecutore, () -> {
+            OutputStream out = uscita.call();
+            corpo.writeTo(out);
+            out.flush();
+            return null;
+        });
+        // anche su timeout ed errore: la richiesta asincrona termina sempre con onCompletion
+        task.onCompletion(posti::release);
+        return task;
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        esecuzione.shutdownNow();
+    }
+
+    /**
+     * Prenotazioni tra dal e al (inclusi) in ordine di data e nome.
+     * null se il periodo non è valido.
+     */
+    public StreamingResponseBody esportaPrenotazioni(LocalDate dal, LocalDate al,
+                                                     FormatoEsportazione formato, boolean gzip) {
+        if (!periodoValido(dal, al)) {
+            return null;
+        }
+
+        return out -> scrivi(out, formato, gzip, COLONNE_PRENOTAZIONI,
+                (Prenotazione dopo) -> prenotazioneDAO.getPaginaPrenotazioni(dal, al, dopo, righePerPagina),
+                p -> new Object[] { p.getDate(), p.getOrario(), p.getNome(), p.getNumPersone(),
+                        p.getNumeroTelefono() });
+    }
+
+    /**
+     * Storico modifiche dei tavoli (registro modifica_tavolo) per le configurazioni con data
+     * tra dal e al (inclusi). Contiene solo le modifiche non ancora compattate.
+     * null se il periodo non è valido.
+     */
+    public StreamingResponseBody esportaStoricoTavoli(LocalDate dal, LocalDate al,
+                                                      FormatoEsportazione formato, boolean gzip) {
+        if (!periodoValido(dal, al)) {
+            return null;
+        }
+
+        return out -> scrivi(out, formato, gzip, COLONNE_STORICO_TAVOLI,
+                (ModificaTavolo dopo) -> registroModificheDAO.getPaginaStoricoTavoli(dal, al, dopo, righePerPagina),
+                m -> new Object[] { m.getVersione(), m.getData(), m.getTurno(), m.getNomeSala(),
+                        m.getX(), m.getY(), m.getTipo(), m.getStato(), m.getCreatoIl() });
+    }
+
+
+    // ===================== helper interni ===================== //
+
+    private boolean periodoValido(LocalDate dal, LocalDate al) {
+        return dal != null && al != null && !dal.isAfter(al)
+                && ChronoUnit.DAYS.between(dal, al) < MAX_GIORNI;
+    }
+
+    /**
+     * Scrive tutte le pagine: pagina riceve l'ultima riga della pagina precedente (null la prima volta),
+     * colonne e valori servono solo al CSV.
+     */
+    private <T> void scrivi(OutputStream risposta, FormatoEsportazione formato, boolean gzip, String[] colonne,
+                            Function<T, List<T>> pagina, Function<T, Object[]> valori) throws IOException {
+
+        GZIPOutputStream compresso = gzip ? new GZIPOutputStream(risposta, BUFFER_BYTE) : null;
+        OutputStream out = gzip ? compresso : risposta;
+
+        Writer csv = null;
+        JsonGenerator json = null;
+        if (formato == FormatoEsportazione.CSV) {
+            csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_BYTE);
+            scriviRigaCsv(csv, colonne);
+        } else {
+            json = scrittoreJson.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            json.setRootValueSeparator(null);   // separatore di riga scritto a mano: '\n'
+        }
+
+        T ultima = null;
+        List<T> righe;
+        do {
+            righe = pagina.apply(ultima);
+            if (righe == null) {
+                throw new IOException("Esportazione interrotta: errore nella lettura dal database");
+            }
+
+            for (T r : righe) {
+                if (csv != null) {
+                    scriviRigaCsv(csv, valori.apply(r));
+                } else {
+                    scrittoreJson.writeValue(json, r);
+                    json.writeRaw('\n');
+                }
+            }
+
+            // quello che è pronto parte subito: il client vede avanzare il download
+            if (csv != null) {
+                csv.flush();
+            } else {
+                json.flush();
+            }
+
+            if (!righe.isEmpty()) {
+                ultima = righe.get(righe.size() - 1);
+            }
+        } while (righe.size() == righePerPagina);
+
+        if (compresso != null) {
+            compresso.finish();
+        }
+    }
+
+    private static void scriviRigaCsv(Writer w, Object[] valori) throws IOException {
+        for (int i = 0; i < valori.length; i++) {
+            if (i > 0) {
+                w.write(',');
+            }
+            if (valori[i] != null) {
+                w.write(campoCsv(valori[i].toString()));
+            }
+        }
+        w.write("\r\n");
+    }
+
+    // RFC 4180: tra virgolette solo se serve, virgolette interne raddoppiate
+    private static String campoCsv(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return '"' + s.replace("\"", "\"\"") + '"';
+            }
+        }
+        return s;
+    }
+}
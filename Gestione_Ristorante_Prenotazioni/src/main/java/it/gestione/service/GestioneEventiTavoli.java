@@ -0,0 +1,338 @@
+package it.gestione.service;
+
+import it.gestione.database.AscoltatoreInvalidazioni;
+import it.gestione.database.BusInvalidazioni;
+import it.gestione.database.TipoInvalidazione;
+import it.gestione.entity.EventoTavolo;
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.TipoEventoTavolo;
+import it.gestione.entity.Tavolo;
+import it.gestione.entity.Turno;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Stream SSE dei cambiamenti dei tavoli per configurazione (data, turno, sala).
+ *
+ * Eventi inviati:
+ *  - "snapshot": lista completa dei tavoli, una volta all'iscrizione
+ *  - "tavolo":   EventoTavolo (INSERITO / ELIMINATO / STATO / RESET)
+ *
+ * Ogni iscritto ha un buffer limitato: pubblica() non blocca mai chi scrive,
+ * accoda e basta. L'invio avviene su un piccolo pool dedicato; se un client
+ * è troppo lento e il buffer si riempie viene disconnesso (EventSource si
+ * riconnette da solo e riparte da uno snapshot aggiornato). La chiusura dell'emitter
+ * avviene sempre su un thread di invio, mai su quello di chi pubblica: complete() aspetta
+ * un eventuale send() in corso verso il client lento.
+ *
+ * Con più nodi (gestione.invalidazioni.attivo=true) ogni evento è inoltrato agli altri
+ * con BusInvalidazioni (tipo TAVOLO, un solo thread per mantenere l'ordine) e ogni nodo
+ * lo consegna ai propri iscritti. Le notifiche perse mentre il bus è scollegato non si
+ * recuperano: alla riconnessione gli iscritti vengono chiusi e ripartono da uno snapshot.
+ */
+@Service
+public class GestioneEventiTavoli implements AscoltatoreInvalidazioni {
+
+    private static final long TIMEOUT_MS = 30 * 60_000L;   // poi il client si riconnette
+    private static final long HEARTBEAT_SECONDI = 20;
+
+    private final int capacitaBuffer;
+
+    // chiave configurazione -> iscritti
+    private final Map<String, Set<Iscritto>> iscritti = new ConcurrentHashMap<>();
+
+    private final ExecutorService invio;
+    private final ScheduledExecutorService heartbeat;
+
+    // inoltro agli altri nodi: null con un nodo solo (bus disattivato)
+    private final ExecutorService inoltro;
+    // per riconoscere (e saltare) le proprie notifiche, che tornano anche a questo nodo
+    private final String nodo = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicBoolean busGiaConnesso = new AtomicBoolean(false);
+
+    public GestioneEventiTavoli(@Value("${gestione.eventi.buffer:256}") int capacitaBuffer,
+                                @Value("${gestione.eventi.thread-invio:4}") int threadInvio,
+                                @Value("${gestione.invalidazioni.attivo:true}") boolean multiNodo) {
+        this.capacitaBuffer = capacitaBuffer;
+        this.invio = Executors.newFixedThreadPool(threadInvio, threadFactory("sse-tavoli-"));
+        this.inoltro = multiNodo ? Executors.newSingleThreadExecutor(threadFactory("sse-inoltro-")) : null;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(threadFactory("sse-heartbeat-"));
+        this.heartbeat.scheduleAtFixedRate(this::inviaHeartbeat,
+                HEARTBEAT_SECONDI, HEARTBEAT_SECONDI, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Registra un nuovo iscritto e gli invia per primo lo snapshot dei tavoli.
+     * L'iscrizione avviene PRIMA di leggere lo snapshot: gli eventi arrivati nel frattempo
+     * vengono inviati dopo lo snapshot (sono stati assoluti, riapplicarli è innocuo).
+     */
+    public SseEmitter iscrivi(LocalDate data, Turno turno, String nomeSala, Supplier<List<Tavolo>> snapshot) {
+        String chiave = chiave(data, turno, nomeSala);
+        Iscritto i = new Iscritto(chiave, new SseEmitter(TIMEOUT_MS));
+
+        // compute atomico: evita di aggiungere a un set appena rimosso da rimuovi()
+        iscritti.compute(chiave, (k, s) -> {
+            Set<Iscritto> set = (s != null) ? s : ConcurrentHashMap.newKeySet();
+            set.add(i);
+            return set;
+        });
+
+        i.emitter.onCompletion(i::terminato);
+        i.emitter.onTimeout(i::terminato);
+        i.emitter.onError(e -> i.terminato());
+
+        i.avvia(SseEmitter.event().name("snapshot").data(snapshot.get(), MediaType.APPLICATION_JSON));
+        return i.emitter;
+    }
+
+    /**
+     * Pubblica un evento a tutti gli iscritti della configurazione. Non blocca.
+     */
+    public void pubblica(LocalDate data, Turno turno, String nomeSala, EventoTavolo evento) {
+        consegna(chiave(data, turno, nomeSala), evento);
+        inoltra(data + ";" + turno.name(), nomeSala, evento);
+    }
+
+    /**
+     * Pubblica un evento a tutte le configurazioni di una sala (es. sala eliminata).
+     */
+    public void pubblicaSala(String nomeSala, EventoTavolo evento) {
+        consegnaSala(nomeSala, evento);
+        inoltra(";", nomeSala, evento);
+    }
+
+    // ---------- eventi degli altri nodi (via BusInvalidazioni) ---------- //
+
+    // payload: nodo;data;turno;tipo;x;y;stato;sala (data e turno vuoti = tutta la sala, sala per ultima)
+    @Override
+    public void invalida(TipoInvalidazione tipo, String chiave) {
+        if (tipo != TipoInvalidazione.TAVOLO) {
+            return;
+        }
+        String[] c = chiave.split(";", 8);
+        if (c.length < 8 || c[0].equals(nodo)) {
+            return;
+        }
+        EventoTavolo evento = new EventoTavolo(TipoEventoTavolo.valueOf(c[3]),
+                Integer.parseInt(c[4]), Integer.parseInt(c[5]),
+                c[6].isEmpty() ? null : StatoTavolo.valueOf(c[6]));
+        if (c[1].isEmpty()) {
+            consegnaSala(c[7], evento);
+        } else {
+            consegna(c[1] + ";" + c[2] + ";" + c[7], evento);
+        }
+    }
+
+    @Override
+    public void cambioStatoBus(boolean attivo) {
+        // riconnessione: gli eventi degli altri nodi nel frattempo sono persi, i client ripartono da uno snapshot
+        if (attivo && inoltro != null && busGiaConnesso.getAndSet(true)) {
+            for (Set<Iscritto> s : iscritti.values()) {
+                for (Iscritto i : s) {
+                    i.disconnetti();
+                }
+            }
+        }
+    }
+
+    // ===================== helper interni ===================== //
+
+    private void consegna(String chiave, EventoTavolo evento) {
+        Set<Iscritto> destinatari = iscritti.get(chiave);
+        if (destinatari == null) {
+            return;
+        }
+        for (Iscritto i : destinatari) {
+            i.accoda(SseEmitter.event().name("tavolo").data(evento, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    private void consegnaSala(String nomeSala, EventoTavolo evento) {
+        String suffisso = ";" + nomeSala;
+        for (Map.Entry<String, Set<Iscritto>> e : iscritti.entrySet()) {
+            if (e.getKey().endsWith(suffisso)) {
+                for (Iscritto i : e.getValue()) {
+                    i.accoda(SseEmitter.event().name("tavolo").data(evento, MediaType.APPLICATION_JSON));
+                }
+            }
+        }
+    }
+
+    /**
+     * Numero di client connessi a una configurazione.
+     */
+    public int getNumeroIscritti(LocalDate data, Turno turno, String nomeSala) {
+        Set<Iscritto> s = iscritti.get(chiave(data, turno, nomeSala));
+        return (s == null) ? 0 : s.size();
+    }
+
+    private void inoltra(String dataTurno, String nomeSala, EventoTavolo evento) {
+        if (inoltro == null) {
+            return;
+        }
+        String payload = nodo + ";" + dataTurno + ";" + evento.getTipo() + ";" + evento.getX() + ";" + evento.getY()
+                + ";" + (evento.getStato() == null ? "" : evento.getStato().name()) + ";" + nomeSala;
+        try {
+            inoltro.execute(() -> BusInvalidazioni.notifica(TipoInvalidazione.TAVOLO, payload));
+        } catch (RejectedExecutionException e) {
+            // in chiusura
+        }
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        heartbeat.shutdownNow();
+        invio.shutdownNow();
+        if (inoltro != null) {
+            inoltro.shutdownNow();
+        }
+        for (Set<Iscritto> s : iscritti.values()) {
+            for (Iscritto i : s) {
+                i.emitter.complete();
+            }
+        }
+    }
+
+    private void inviaHeartbeat() {
+        for (Set<Iscritto> s : iscritti.values()) {
+            for (Iscritto i : s) {
+                i.accoda(SseEmitter.event().comment("ping"));
+            }
+        }
+    }
+
+    private String chiave(LocalDate data, Turno turno, String nomeSala) {
+        return data + ";" + turno.name() + ";" + nomeSala;
+    }
+
+    private static ThreadFactory threadFactory(String prefisso) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefisso + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Un client connesso: buffer limitato + al massimo un task di invio attivo alla volta.
+     */
+    private final class Iscritto {
+        private final String chiave;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> coda;
+        private final AtomicBoolean inInvio = new AtomicBoolean(false);
+        private final AtomicBoolean completato = new AtomicBoolean(false);
+
+        private volatile SseEmitter.SseEventBuilder snapshot;
+        private volatile boolean avviato = false;
+        private volatile boolean chiuso = false;
+
+        private Iscritto(String chiave, SseEmitter emitter) {
+            this.chiave = chiave;
+            this.emitter = emitter;
+            this.coda = new ArrayBlockingQueue<>(capacitaBuffer);
+        }
+
+        private void avvia(SseEmitter.SseEventBuilder primo) {
+            this.snapshot = primo;
+            this.avviato = true;
+            pianifica();
+        }
+
+        private void accoda(SseEmitter.SseEventBuilder evento) {
+            if (chiuso) {
+                return;
+            }
+            if (!coda.offer(evento)) {
+                // consumer lento: lo sgancio invece di far crescere la memoria
+                System.err.println("SSE tavoli: client lento disconnesso (" + chiave + ")");
+                disconnetti();
+                return;
+            }
+            pianifica();
+        }
+
+        // chi pubblica segna solo la chiusura: complete() lo fa svuota() sul pool di invio
+        private void disconnetti() {
+            rimuovi();
+            pianifica();
+        }
+
+        private void pianifica() {
+            if ((avviato || chiuso) && !completato.get() && inInvio.compareAndSet(false, true)) {
+                try {
+                    invio.execute(this::svuota);
+                } catch (RejectedExecutionException e) {
+                    inInvio.set(false);
+                }
+            }
+        }
+
+        private void svuota() {
+            try {
+                if (chiuso) {
+                    completa();
+                    return;
+                }
+                SseEmitter.SseEventBuilder primo = snapshot;
+                if (primo != null) {
+                    snapshot = null;
+                    emitter.send(primo);
+                }
+
+                SseEmitter.SseEventBuilder e;
+                while (!chiuso && (e = coda.poll()) != null) {
+                    emitter.send(e);
+                }
+            } catch (IOException | IllegalStateException ex) {
+                terminato();   // connessione già persa: non c'è niente da completare
+            } finally {
+                inInvio.set(false);
+                // chiuso mentre si inviava (disconnetti non ha potuto pianificare): si completa qui
+                if (chiuso || !coda.isEmpty()) {
+                    pianifica();
+                }
+            }
+        }
+
+        private void completa() {
+            if (completato.compareAndSet(false, true)) {
+                try {
+                    emitter.complete();
+                } catch (IllegalStateException ignored) {
+                    // già completato dal container
+                }
+            }
+        }
+
+        // chiuso dal container (fine, timeout, errore): non c'è più niente da completare
+        private void terminato() {
+            completato.set(true);
+            rimuovi();
+        }
+
+        private void rimuovi() {
+            chiuso = true;
+            coda.clear();
+            iscritti.computeIfPresent(chiave, (k, s) -> {
+                s.remove(this);
+                return s.isEmpty() ? null : s;
+            });
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package it.gestione.service;
+
+import it.gestione.database.IdempotenzaDAO;
+import it.gestione.entity.RispostaIdempotente;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Archivio delle risposte per Idempotency-Key (vedi FiltroIdempotenza).
+ *
+ * - memoria (default): risposte completate in una mappa limitata a max-voci, con scadenza ttl;
+ *   le richieste in corso stanno a parte e il limite non le tocca (togliere una chiave in corso
+ *   farebbe rieseguire il retry concorrente);
+ * - postgres: tabella richiesta_idempotente, condivisa tra più istanze del backend.
+ */
+@Service
+public class GestioneIdempotenza {
+
+    // oltre questo tempo una richiesta "in corso" si considera abbandonata (es. nodo riavviato)
+    private static final long IN_CORSO_MAX_SECONDI = 120;
+
+    private final IdempotenzaDAO idempotenzaDAO;
+    private final boolean postgres;
+    private final long ttlSecondi;
+
+    // completate, in ordine di completamento; in corso, mai rimosse dal limite di dimensione
+    private final Map<String, RispostaIdempotente> memoria;
+    private final Map<String, RispostaIdempotente> inCorso = new HashMap<>();
+
+    public GestioneIdempotenza(IdempotenzaDAO idempotenzaDAO,
+                               @Value("${gestione.idempotenza.archivio:memoria}") String archivio,
+                               @Value("${gestione.idempotenza.ttl-ore:24}") int ttlOre,
+                               @Value("${gestione.idempotenza.max-voci:10000}") int maxVoci) {
+        this.idempotenzaDAO = idempotenzaDAO;
+        this.postgres = "postgres".equalsIgnoreCase(archivio);
+        this.ttlSecondi = ttlOre * 3600L;
+        this.memoria = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RispostaIdempotente> eldest) {
+                return size() > maxVoci;
+            }
+        };
+    }
+
+    /**
+     * Riserva la chiave per la richiesta corrente.
+     * Ritorna null se la richiesta va eseguita, altrimenti la voce già presente
+     * (in corso o completata, con la sua impronta da confrontare).
+     */
+    public RispostaIdempotente prenota(String chiave, String impronta) {
+        if (postgres) {
+            try {
+                return idempotenzaDAO.prenota(chiave, impronta, ttlSecondi, IN_CORSO_MAX_SECONDI);
+            } catch (SQLException e) {
+                // meglio eseguire senza protezione che rifiutare la scrittura
+                System.err.println("Errore SQL in prenota: " + e.getMessage());
+                return null;
+            }
+        }
+
+        Instant ora = Instant.now();
+        synchronized (memoria) {
+            rimuoviScadute(ora);
+
+            RispostaIdempotente completata = memoria.get(chiave);
+            if (completata != null) {
+                return completata;
+            }
+
+            RispostaIdempotente esistente = inCorso.get(chiave);
+            if (esistente != null && !abbandonata(esistente, ora)) {
+                return esistente;
+            }
+
+            inCorso.put(chiave, new RispostaIdempotente(chiave, impronta, ora));
+            return null;
+        }
+    }
+
+    /**
+     * Salva la risposta da riproporre ai duplicati.
+     */
+    public void completa(String chiave, RispostaIdempotente risposta) {
+        risposta.setCompletata(true);
+
+        if (postgres) {
+            idempotenzaDAO.completa(chiave, risposta);
+            return;
+        }
+
+        synchronized (memoria) {
+            RispostaIdempotente voce = inCorso.remove(chiave);
+            if (voce != null) {
+                voce.setStato(risposta.getStato());
+                voce.setContentType(risposta.getContentType());
+                voce.setHeaders(risposta.getHeaders());
+                voce.setCorpo(risposta.getCorpo());
+                voce.setCompletata(true);
+                memoria.put(chiave, voce);   // qui può scattare il limite max-voci
+            }
+        }
+    }
+
+    /**
+     * Libera la chiave: il prossimo tentativo verrà eseguito di nuovo.
+     */
+    public void annulla(String chiave) {
+        if (postgres) {
+            idempotenzaDAO.annulla(chiave);
+            return;
+        }
+
+        synchronized (memoria) {
+            inCorso.remove(chiave);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gestione.idempotenza.pulizia-ms:600000}")
+    public void pulizia() {
+        if (postgres) {
+            idempotenzaDAO.eliminaScadute(ttlSecondi);
+            return;
+        }
+
+        synchronized (memoria) {
+            rimuoviScadute(Instant.now());
+        }
+    }
+
+    // le completate sono (quasi) in ordine di creazione: basta scorrere dalla testa.
+    // Le in corso abbandonate (es. thread morto senza completa/annulla) si tolgono qui
+    private void rimuoviScadute(Instant ora) {
+        Instant limite = ora.minusSeconds(ttlSecondi);
+        Iterator<RispostaIdempotente> it = memoria.values().iterator();
+        while (it.hasNext() && it.next().getCreataIl().isBefore(limite)) {
+            it.remove();
+        }
+        inCorso.values().removeIf(r -> abbandonata(r, ora));
+    }
+
+    private boolean abbandonata(RispostaIdempotente r, Instant ora) {
+        return !r.getCreataIl().plusSeconds(IN_CORSO_MAX_SECONDI).isAfter(ora);
+    }
+}
@@ -0,0 +1,71 @@
+package it.gestione.service;
+
+import it.gestione.database.RegistroModificheDAO;
+import it.gestione.entity.DeltaModifiche;
+import it.gestione.entity.EventoTavolo;
+import it.gestione.entity.ModificaZona;
+import it.gestione.entity.Sala;
+import it.gestione.entity.Turno;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+
+/**
+ * Delta sync: il client tiene l'ultima "versione" ricevuta e chiede solo
+ * le modifiche successive, invece di ricaricare tutti i tavoli/zone.
+ */
+@Service
+public class GestioneModifiche {
+
+    private final RegistroModificheDAO registroModificheDAO;
+    private final int oreRetention;
+
+    public GestioneModifiche(RegistroModificheDAO registroModificheDAO,
+                             @Value("${gestione.modifiche.retention-ore:48}") int oreRetention) {
+        this.registroModificheDAO = registroModificheDAO;
+        this.oreRetention = oreRetention;
+    }
+
+    /**
+     * Versione da associare ad una lettura completa dei tavoli: va letta PRIMA dei tavoli,
+     * così le modifiche concorrenti vengono al più ripetute nel delta successivo.
+     */
+    public long getVersioneTavoli() {
+        return registroModificheDAO.getVersioneConsolidata(RegistroModificheDAO.TAVOLI);
+    }
+
+    public long getVersioneZone() {
+        return registroModificheDAO.getVersioneConsolidata(RegistroModificheDAO.ZONE);
+    }
+
+    /**
+     * Modifiche ai tavoli di una configurazione dopo la versione since.
+     * null se since è negativo o in caso di errore.
+     */
+    public DeltaModifiche<EventoTavolo> getModificheTavoli(LocalDate data, Turno turno, Sala sala, long since) {
+        if (since < 0) {
+            return null;
+        }
+        return registroModificheDAO.getModificheTavoli(data, turno, sala.getNome(), since);
+    }
+
+    /**
+     * Modifiche alle zone di una sala dopo la versione since.
+     */
+    public DeltaModifiche<ModificaZona> getModificheZone(String nomeSala, long since) {
+        if (since < 0) {
+            return null;
+        }
+        return registroModificheDAO.getModificheZone(nomeSala, since);
+    }
+
+    // compattazione periodica dello storico (default ogni ora)
+    @Scheduled(fixedDelayString = "${gestione.modifiche.compattazione-ms:3600000}",
+            initialDelayString = "${gestione.modifiche.compattazione-ms:3600000}")
+    public void compattaRegistro() {
+        registroModificheDAO.compatta(RegistroModificheDAO.TAVOLI, oreRetention);
+        registroModificheDAO.compatta(RegistroModificheDAO.ZONE, oreRetention);
+    }
+}
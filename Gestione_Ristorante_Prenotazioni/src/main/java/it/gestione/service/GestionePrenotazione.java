@@ -2,29 +2,51 @@ package it.gestione.service;
 
 import it.gestione.database.PrenotazioneDAO;
 import it.gestione.entity.Prenotazione;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Service
 public class GestionePrenotazione {
 
+    private static final int MAX_RISULTATI_RICERCA = 100;
+
     private final PrenotazioneDAO prenotazioneDAO;
+    private final GestioneCarico gestioneCarico;
+
+    // true = rifiuta le prenotazioni oltre capienza, false = le inserisce segnalandole
+    private final boolean rifiutaOltreCapienza;
+
+    // letture identiche concorrenti condividono la stessa query (nessun risultato tenuto dopo la risposta)
+    private final SingleFlight<String, List<Prenotazione>> voliLista = new SingleFlight<>();
+    private final SingleFlight<String, Prenotazione> voliSingola = new SingleFlight<>();
 
-    public GestionePrenotazione(PrenotazioneDAO prenotazioneDAO) {
+    public GestionePrenotazione(PrenotazioneDAO prenotazioneDAO,
+                                GestioneCarico gestioneCarico,
+                                @Value("${gestione.carico.rifiuta-oltre-capienza:false}") boolean rifiutaOltreCapienza) {
         this.prenotazioneDAO = prenotazioneDAO;
+        this.gestioneCarico = gestioneCarico;
+        this.rifiutaOltreCapienza = rifiutaOltreCapienza;
     }
 
     /**
      * Crea una prenotazione a partire dai singoli parametri.
      *
+     * Controlla la curva di carico del turno (fasce da 15 minuti, vedi GestioneCarico)
+     * nella stessa transazione dell'insert, con il turno bloccato: prenotazioni concorrenti
+     * per lo stesso turno non possono passare tutte il controllo e superare insieme la capienza.
+     *
      * Ritorni:
+     *  2  = inserita, ma in almeno una fascia si supera la capienza
      *  1  = inserita correttamente
      *  0  = già esistente (stessa data + nome)
      * -1  = errore o parametri non validi
+     * -3  = rifiutata: supererebbe la capienza (solo se gestione.carico.rifiuta-oltre-capienza=true)
      */
     public int creaPrenotazione(String n, int num, LocalDate d, LocalTime o, String numT) {
         // Validazione base
@@ -33,7 +55,17 @@ public class GestionePrenotazione {
         }
 
         Prenotazione p = new Prenotazione(n, num, d, o, numT);
-        return prenotazioneDAO.aggiungiPrenotazione(p);
+
+        // il turno serve anche al riepilogo per le statistiche, aggiornato nella stessa transazione
+        GestioneCarico.ControlloCapienza controllo = gestioneCarico.preparaControllo(p, rifiutaOltreCapienza);
+        int res = prenotazioneDAO.aggiungiPrenotazione(p, controllo.getTurno(), controllo);
+        if (res == 1) {
+            dimentica(d, n);
+        }
+        if (res == 1 && controllo.getOltreCapienza() != null) {
+            return 2;
+        }
+        return res;
     }
 
     /**
@@ -58,7 +90,8 @@ public class GestionePrenotazione {
      * Ritorna tutte le prenotazioni.
      */
     public List<Prenotazione> getAllPrenotazioni() {
-        return prenotazioneDAO.getAllPrenotazioni();
+        return voliLista.esegui("*",
+                () -> Collections.unmodifiableList(prenotazioneDAO.getAllPrenotazioni()));
     }
 
     /**
@@ -69,7 +102,8 @@ public class GestionePrenotazione {
         if (data == null) {
             return new ArrayList<>();
         }
-        return prenotazioneDAO.getPrenotazioniByData(data);
+        return voliLista.esegui(data.toString(),
+                () -> Collections.unmodifiableList(prenotazioneDAO.getPrenotazioniByData(data)));
     }
 
     /**
@@ -80,7 +114,25 @@ public class GestionePrenotazione {
         if (data == null || nome == null || nome.isBlank()) {
             return null;
         }
-        return prenotazioneDAO.getPrenotazione(data, nome);
+        return voliSingola.esegui(data + ";" + nome, () -> prenotazioneDAO.getPrenotazione(data, nome));
+    }
+
+    /**
+     * Ricerca "veloce" all'ingresso: per nome (prefisso o simile, tollera errori di battitura)
+     * o per numero di telefono, opzionalmente tra dal e al (inclusi). Vedi PrenotazioneDAO.cercaPrenotazioni.
+     *
+     * Ritorna al massimo limite risultati (1..MAX_RISULTATI_RICERCA),
+     * lista vuota se il testo è vuoto, null se dal è dopo al.
+     */
+    public List<Prenotazione> cercaPrenotazioni(String testo, LocalDate dal, LocalDate al, int limite) {
+        if (dal != null && al != null && al.isBefore(dal)) {
+            return null;
+        }
+        if (testo == null || testo.isBlank()) {
+            return new ArrayList<>();
+        }
+        int n = Math.max(1, Math.min(limite, MAX_RISULTATI_RICERCA));
+        return prenotazioneDAO.cercaPrenotazioni(testo.trim(), dal, al, n);
     }
 
     /**
@@ -95,7 +147,18 @@ public class GestionePrenotazione {
         if (data == null || nome == null || nome.isBlank()) {
             return -1;
         }
-        return prenotazioneDAO.eliminaPrenotazione(data, nome);
+        int res = prenotazioneDAO.eliminaPrenotazione(data, nome);
+        if (res == 1) {
+            dimentica(data, nome);
+        }
+        return res;
+    }
+
+    // dopo una scrittura le letture successive non si agganciano a query partite prima
+    private void dimentica(LocalDate data, String nome) {
+        voliLista.dimentica("*");
+        voliLista.dimentica(data.toString());
+        voliSingola.dimentica(data + ";" + nome);
     }
 
 }
@@ -1,36 +1,52 @@
 package it.gestione.service;
 
+import it.gestione.database.AscoltatoreInvalidazioni;
 import it.gestione.database.ConfigurazioneSalaDAO;
 import it.gestione.database.SalaDAO;
 import it.gestione.database.TavoloDAO;
+import it.gestione.database.TipoInvalidazione;
 import it.gestione.database.ZonaSalaDAO;
 import it.gestione.entity.ConfigurazioneSala;
+import it.gestione.entity.EventoTavolo;
+import it.gestione.entity.GruppoTavoli;
 import it.gestione.entity.Sala;
 import it.gestione.entity.StatoTavolo;
 import it.gestione.entity.Tavolo;
 import it.gestione.entity.Turno;
 import it.gestione.entity.ZonaSala;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.util.*;
 
 @Service
-public class GestioneSala {
+public class GestioneSala implements AscoltatoreInvalidazioni {
 
     private final ConfigurazioneSalaDAO configurazioneSalaDAO;
     private final TavoloDAO tavoloDAO;
     private final SalaDAO salaDAO;
     private final ZonaSalaDAO zonaSalaDAO;
+    private final GestioneEventiTavoli gestioneEventiTavoli;
+
+    // nome sala -> sala con zone, e zone rasterizzate per validare le posizioni dei tavoli
+    private final CacheLocale<String, Sala> sale = new CacheLocale<>();
+    private final CacheLocale<String, MappaZone> mappeZone = new CacheLocale<>();
+
+    // letture identiche concorrenti per configurazione "data;turno;sala": una sola query / un solo BFS
+    private final SingleFlight<String, List<Tavolo>> voliTavoli = new SingleFlight<>();
+    private final SingleFlight<String, List<Integer>> voliPosti = new SingleFlight<>();
 
     public GestioneSala(ConfigurazioneSalaDAO configurazioneSalaDAO,
                         TavoloDAO tavoloDAO,
                         SalaDAO salaDAO,
-                        ZonaSalaDAO zonaSalaDAO) {
+                        ZonaSalaDAO zonaSalaDAO,
+                        GestioneEventiTavoli gestioneEventiTavoli) {
         this.configurazioneSalaDAO = configurazioneSalaDAO;
         this.tavoloDAO = tavoloDAO;
         this.salaDAO = salaDAO;
         this.zonaSalaDAO = zonaSalaDAO;
+        this.gestioneEventiTavoli = gestioneEventiTavoli;
     }
 
     // ===================== GESTIONE SALA FISICA (Sala + ZonaSala) ===================== //
@@ -50,22 +66,26 @@ public class GestioneSala {
             return -1;
         }
 
-        int resSala = salaDAO.aggiungiSala(sala);
-        if (resSala == -1) {
-            return -1;
-        }
+        try {
+            int resSala = salaDAO.aggiungiSala(sala);
+            if (resSala == -1) {
+                return -1;
+            }
 
-        // Inserimento zone (se presenti)
-        if (sala.getZone() != null) {
-            for (ZonaSala z : sala.getZone()) {
-                int rz = zonaSalaDAO.aggiungiZona(sala.getNome(), z);
-                if (rz == -1) {
-                    return -1;
+            // Inserimento zone (se presenti)
+            if (sala.getZone() != null) {
+                for (ZonaSala z : sala.getZone()) {
+                    int rz = zonaSalaDAO.aggiungiZona(sala.getNome(), z);
+                    if (rz == -1) {
+                        return -1;
+                    }
                 }
             }
-        }
 
-        return resSala; // 1 se nuova sala, 0 se già esisteva
+            return resSala; // 1 se nuova sala, 0 se già esisteva
+        } finally {
+            invalidaSala(sala.getNome()); // zone cambiate: la mappa si ricostruisce al prossimo uso
+        }
     }
 
     /**
@@ -80,30 +100,35 @@ public class GestioneSala {
             return -1;
         }
 
-        // pulisco tutte le zone esistenti per quella sala
-        int del = zonaSalaDAO.eliminaTutteLeZone(sala.getNome());
-        if (del == -1) {
-            return -1;
-        }
+        try {
+            // pulisco tutte le zone esistenti per quella sala
+            int del = zonaSalaDAO.eliminaTutteLeZone(sala.getNome());
+            if (del == -1) {
+                return -1;
+            }
 
-        // reinserisco le nuove zone
-        if (sala.getZone() != null) {
-            for (ZonaSala z : sala.getZone()) {
-                int rz = zonaSalaDAO.aggiungiZona(sala.getNome(), z);
-                if (rz == -1) {
-                    return -1;
+            // reinserisco le nuove zone
+            if (sala.getZone() != null) {
+                for (ZonaSala z : sala.getZone()) {
+                    int rz = zonaSalaDAO.aggiungiZona(sala.getNome(), z);
+                    if (rz == -1) {
+                        return -1;
+                    }
                 }
             }
-        }
 
-        return 1;
+            return 1;
+        } finally {
+            invalidaSala(sala.getNome());
+        }
     }
 
     /**
-     * Restituisce una sala dal DB, con tutte le sue ZoneSala caricate.
+     * Restituisce una sala dal DB, con tutte le sue ZoneSala caricate (null se non esiste o se
+     * le zone non si leggono: la cache non conserva mai una sala senza zone).
      */
     public Sala getSala(String nomeSala) {
-        return salaDAO.getSala(nomeSala);
+        return sale.get(nomeSala, salaDAO::getSala);
     }
 
     /**
@@ -122,7 +147,78 @@ public class GestioneSala {
      *  - tutti i tavoli delle configurazioni di quella sala
      */
     public int eliminaSala(String nomeSala) {
-        return salaDAO.eliminaSala(nomeSala);
+        try {
+            int res = salaDAO.eliminaSala(nomeSala);
+            if (res > 0) {
+                voliTavoli.dimenticaTutto();
+                voliPosti.dimenticaTutto();
+                gestioneEventiTavoli.pubblicaSala(nomeSala, EventoTavolo.reset());
+            }
+            return res;
+        } finally {
+            invalidaSala(nomeSala);
+        }
+    }
+
+    /**
+     * Mappa delle zone della sala (cache in memoria, ricostruita quando le zone cambiano).
+     * null se le zone non si possono leggere: in quel caso non finisce in cache.
+     */
+    public MappaZone getMappaZone(String nomeSala) {
+        return mappeZone.get(nomeSala, n -> {
+            List<ZonaSala> zone = zonaSalaDAO.getZoneForSala(n);
+            return (zone == null) ? null : new MappaZone(zone);
+        });
+    }
+
+    // ---------- coalescenza letture tavoli ---------- //
+
+    private List<Tavolo> leggiTavoli(LocalDate data, Turno turno, String nomeSala) {
+        return voliTavoli.esegui(chiaveConfigurazione(data, turno, nomeSala),
+                () -> Collections.unmodifiableList(tavoloDAO.getTavoli(data, turno, nomeSala)));
+    }
+
+    /**
+     * Da chiamare dopo aver riservato tavoli fuori da GestioneSala (assegnazioni, prenotazioni
+     * con tavoli), a commit avvenuto: come per le scritture fatte qui, le letture successive
+     * non si agganciano a query partite prima e gli iscritti ricevono un evento per tavolo.
+     */
+    public void tavoliRiservati(LocalDate data, Turno turno, String nomeSala, List<Tavolo> tavoli) {
+        for (Tavolo t : tavoli) {
+            pubblicaModifica(data, turno, nomeSala, EventoTavolo.stato(t.getX(), t.getY(), StatoTavolo.RISERVATO));
+        }
+    }
+
+    // dopo ogni scrittura sui tavoli: le letture successive non si agganciano a query partite prima
+    private void pubblicaModifica(LocalDate data, Turno turno, String nomeSala, EventoTavolo evento) {
+        String chiave = chiaveConfigurazione(data, turno, nomeSala);
+        voliTavoli.dimentica(chiave);
+        voliPosti.dimentica(chiave);
+        gestioneEventiTavoli.pubblica(data, turno, nomeSala, evento);
+    }
+
+    private static String chiaveConfigurazione(LocalDate data, Turno turno, String nomeSala) {
+        return data + ";" + turno + ";" + nomeSala;
+    }
+
+    // ---------- invalidazioni (anche da altri nodi, via BusInvalidazioni) ---------- //
+
+    @Override
+    public void invalida(TipoInvalidazione tipo, String chiave) {
+        if (tipo == TipoInvalidazione.SALA) {
+            invalidaSala(chiave);
+        }
+    }
+
+    @Override
+    public void cambioStatoBus(boolean attivo) {
+        sale.setAbilitata(attivo);
+        mappeZone.setAbilitata(attivo);
+    }
+
+    private void invalidaSala(String nomeSala) {
+        sale.rimuovi(nomeSala);
+        mappeZone.rimuovi(nomeSala);
     }
 
     // ================= CONFIGURAZIONE SALA ================= //
@@ -140,7 +236,11 @@ public class GestioneSala {
      * Elimina una configurazione specifica per (data, turno, sala).
      */
     public int eliminaConfigurazione(LocalDate data, Turno turno, Sala sala) {
-        return configurazioneSalaDAO.eliminaConfigurazione(data, turno, sala.getNome());
+        int res = configurazioneSalaDAO.eliminaConfigurazione(data, turno, sala.getNome());
+        if (res > 0) {
+            pubblicaModifica(data, turno, sala.getNome(), EventoTavolo.reset());
+        }
+        return res;
     }
 
     /**
@@ -163,22 +263,103 @@ public class GestioneSala {
 
     /**
      * Aggiunge un tavolo in una configurazione sala (data, turno, sala).
+     *
+     * Ritorni come TavoloDAO.aggiungiTavolo, più:
+     * -2 = posizione non valida (fuori dalle zone vivibili o in uno spazio non vivibile)
+     * -1 anche se non si riescono a leggere le zone: senza zone non si valida niente
      */
     public int aggiungiTavolo(LocalDate data, Turno turno, Sala sala, Tavolo t) {
-        return tavoloDAO.aggiungiTavolo(data, turno, sala.getNome(), t);
+        MappaZone mappa = getMappaZone(sala.getNome());
+        if (mappa == null) {
+            return -1;
+        }
+        if (!mappa.isPosizioneValida(t.getX(), t.getY())) {
+            return -2;
+        }
+        int res = tavoloDAO.aggiungiTavolo(data, turno, sala.getNome(), t);
+        if (res == 1) {
+            pubblicaModifica(data, turno, sala.getNome(), EventoTavolo.inserito(t));
+        }
+        return res;
     }
 
     public int aggiungiTavolo(LocalDate data, Turno turno, Sala sala,
                               int x, int y, StatoTavolo stato) {
         Tavolo t = new Tavolo(x, y, stato);
-        return tavoloDAO.aggiungiTavolo(data, turno, sala.getNome(), t);
+        return aggiungiTavolo(data, turno, sala, t);
+    }
+
+    /**
+     * Aggiunge più tavoli in una configurazione (un solo batch a DB).
+     * Se anche un solo tavolo è in posizione non valida non inserisce niente.
+     *
+     * Ritorna:
+     *  numero di tavoli inseriti (quelli già presenti vengono ignorati),
+     * -2 = almeno una posizione non valida (vedi trovaTavoliNonValidi)
+     * -1 = errore SQL (anche nella lettura delle zone)
+     */
+    public int aggiungiTavoli(LocalDate data, Turno turno, Sala sala, List<Tavolo> tavoli) {
+        List<Tavolo> nonValidi = trovaTavoliNonValidi(sala.getNome(), tavoli);
+        if (nonValidi == null) {
+            return -1;
+        }
+        if (!nonValidi.isEmpty()) {
+            return -2;
+        }
+        List<Tavolo> inseriti = tavoloDAO.aggiungiTavoli(data, turno, sala.getNome(), tavoli);
+        if (inseriti == null) {
+            return -1;
+        }
+        for (Tavolo t : inseriti) {
+            pubblicaModifica(data, turno, sala.getNome(), EventoTavolo.inserito(t));
+        }
+        return inseriti.size();
+    }
+
+    /**
+     * Apre lo stream SSE dei cambiamenti dei tavoli di una configurazione (data, turno, sala).
+     * Il primo evento è lo snapshot completo, poi arrivano solo le variazioni.
+     */
+    public SseEmitter iscriviEventiTavoli(LocalDate data, Turno turno, Sala sala) {
+        return gestioneEventiTavoli.iscrivi(data, turno, sala.getNome(),
+                () -> tavoloDAO.getTavoli(data, turno, sala.getNome()));
+    }
+
+    /**
+     * Tavoli della lista che cadono fuori dalle zone vivibili della sala
+     * (O(1) per tavolo sulla mappa delle zone).
+     * null se le zone non si possono leggere.
+     */
+    public List<Tavolo> trovaTavoliNonValidi(String nomeSala, List<Tavolo> tavoli) {
+        MappaZone mappa = getMappaZone(nomeSala);
+        if (mappa == null) {
+            return null;
+        }
+
+        List<Tavolo> nonValidi = new ArrayList<>();
+        for (Tavolo t : tavoli) {
+            if (!mappa.isPosizioneValida(t.getX(), t.getY())) {
+                nonValidi.add(t);
+            }
+        }
+        return nonValidi;
+    }
+
+    /**
+     * Tavoli già salvati in una configurazione (data, turno, sala) che oggi
+     * non rispettano le zone della sala (es. zone modificate dopo l'inserimento).
+     * null se le zone non si possono leggere.
+     */
+    public List<Tavolo> getTavoliNonValidi(LocalDate data, Turno turno, Sala sala) {
+        return trovaTavoliNonValidi(sala.getNome(), leggiTavoli(data, turno, sala.getNome()));
     }
 
     /**
      * Ottiene tutti i tavoli di una configurazione (data, turno, sala).
+     * Le richieste identiche concorrenti condividono la stessa query (lista non modificabile).
      */
     public List<Tavolo> getTavoli(LocalDate data, Turno turno, Sala sala) {
-        return tavoloDAO.getTavoli(data, turno, sala.getNome());
+        return leggiTavoli(data, turno, sala.getNome());
     }
 
     /**
@@ -193,14 +374,22 @@ public class GestioneSala {
      */
     public int aggiornaStatoTavolo(LocalDate data, Turno turno, Sala sala,
                                    int x, int y, StatoTavolo nuovoStato) {
-        return tavoloDAO.aggiornaStato(data, turno, sala.getNome(), x, y, nuovoStato);
+        int res = tavoloDAO.aggiornaStato(data, turno, sala.getNome(), x, y, nuovoStato);
+        if (res == 1) {
+            pubblicaModifica(data, turno, sala.getNome(), EventoTavolo.stato(x, y, nuovoStato));
+        }
+        return res;
     }
 
     /**
      * Rimuove un tavolo da una configurazione (data, turno, sala).
      */
     public int eliminaTavolo(LocalDate data, Turno turno, Sala sala, int x, int y) {
-        return tavoloDAO.eliminaTavolo(data, turno, sala.getNome(), x, y);
+        int res = tavoloDAO.eliminaTavolo(data, turno, sala.getNome(), x, y);
+        if (res == 1) {
+            pubblicaModifica(data, turno, sala.getNome(), EventoTavolo.eliminato(x, y));
+        }
+        return res;
     }
 
     // Convenience methods per stato singolo tavolo
@@ -232,9 +421,23 @@ public class GestioneSala {
      *    dove U = numero di unioni (lati condivisi) tra tavoli del gruppo.
      */
     public List<Integer> calcolaPostiPerGruppo(LocalDate data, Turno turno, Sala sala) {
-        List<Tavolo> tavoli = tavoloDAO.getTavoli(data, turno, sala.getNome());
+        return voliPosti.esegui(chiaveConfigurazione(data, turno, sala.getNome()), () -> {
+            List<Integer> postiPerGruppo = new ArrayList<>();
+            for (List<Tavolo> gruppo : trovaGruppi(leggiTavoli(data, turno, sala.getNome()))) {
+                postiPerGruppo.add(calcolaPosti(gruppo));
+            }
+            return Collections.unmodifiableList(postiPerGruppo);
+        });
+    }
+
+    /**
+     * Suddivide una lista di tavoli nei rispettivi gruppi (componenti connesse
+     * su 4-direzioni), nell'ordine in cui i tavoli compaiono nella lista.
+     */
+    public List<List<Tavolo>> trovaGruppi(List<Tavolo> tavoli) {
+        List<List<Tavolo>> gruppi = new ArrayList<>();
         if (tavoli.isEmpty()) {
-            return new ArrayList<>();
+            return gruppi;
         }
 
         // Mappa (x,y) -> Tavolo
@@ -244,7 +447,6 @@ public class GestioneSala {
         }
 
         Set<String> visitati = new HashSet<>();
-        List<Integer> postiPerGruppo = new ArrayList<>();
 
         for (Tavolo t : tavoli) {
             String k = key(t.getX(), t.getY());
@@ -253,43 +455,49 @@ public class GestioneSala {
             }
 
             // Trovo il gruppo a partire da questo tavolo e segno i visitati globali
-            List<Tavolo> gruppo = trovaGruppoTavoli(t, tavoliByKey, visitati);
-
-            int nTavoli = gruppo.size();
-            int posti;
-
-            if (nTavoli == 1) {
-                posti = 2; // tavolo singolo
-            } else {
-                // Calcolo quante unioni ci sono nel gruppo (solo destra/giù per non contarle doppie)
-                Set<String> groupKeys = new HashSet<>();
-                for (Tavolo g : gruppo) {
-                    groupKeys.add(key(g.getX(), g.getY()));
-                }
+            gruppi.add(trovaGruppoTavoli(t, tavoliByKey, visitati));
+        }
 
-                int unioni = 0;
-                for (Tavolo g : gruppo) {
-                    int x = g.getX();
-                    int y = g.getY();
+        return gruppi;
+    }
 
-                    String right = key(x + 1, y);
-                    if (groupKeys.contains(right)) {
-                        unioni++;
-                    }
+    /**
+     * Posti a sedere di un singolo gruppo di tavoli adiacenti
+     * (stesse regole di calcolaPostiPerGruppo).
+     */
+    public int calcolaPosti(List<Tavolo> gruppo) {
+        int nTavoli = gruppo.size();
 
-                    String down = key(x, y + 1);
-                    if (groupKeys.contains(down)) {
-                        unioni++;
-                    }
-                }
+        if (nTavoli == 0) {
+            return 0;
+        }
+        if (nTavoli == 1) {
+            return 2; // tavolo singolo
+        }
+
+        // Calcolo quante unioni ci sono nel gruppo (solo destra/giù per non contarle doppie)
+        Set<String> groupKeys = new HashSet<>();
+        for (Tavolo g : gruppo) {
+            groupKeys.add(key(g.getX(), g.getY()));
+        }
+
+        int unioni = 0;
+        for (Tavolo g : gruppo) {
+            int x = g.getX();
+            int y = g.getY();
 
-                posti = 4 * nTavoli - 2 * unioni;
+            String right = key(x + 1, y);
+            if (groupKeys.contains(right)) {
+                unioni++;
             }
 
-            postiPerGruppo.add(posti);
+            String down = key(x, y + 1);
+            if (groupKeys.contains(down)) {
+                unioni++;
+            }
         }
 
-        return postiPerGruppo;
+        return 4 * nTavoli - 2 * unioni;
     }
 
     /**
@@ -304,6 +512,57 @@ public class GestioneSala {
         return tot;
     }
 
+    /**
+     * Gruppi di tavoli completamente LIBERI di tutte le sale configurate per (data, turno).
+     * Un gruppo con anche un solo tavolo RISERVATO/OCCUPATO non è utilizzabile:
+     * i tavoli sono uniti fisicamente e il gruppo si assegna per intero.
+     */
+    public List<GruppoTavoli> getGruppiLiberi(LocalDate data, Turno turno) {
+        List<GruppoTavoli> liberi = new ArrayList<>();
+
+        for (Map.Entry<String, List<Tavolo>> e : tavoloDAO.getTavoliPerTurno(data, turno).entrySet()) {
+            liberi.addAll(trovaGruppiLiberi(e.getKey(), e.getValue()));
+        }
+
+        return liberi;
+    }
+
+    /**
+     * Come getGruppiLiberi, ma su tavoli già caricati di una singola sala.
+     */
+    public List<GruppoTavoli> trovaGruppiLiberi(String nomeSala, List<Tavolo> tavoli) {
+        List<GruppoTavoli> liberi = new ArrayList<>();
+
+        for (List<Tavolo> gruppo : trovaGruppi(tavoli)) {
+            boolean tuttiLiberi = true;
+            for (Tavolo t : gruppo) {
+                if (t.getStato() != StatoTavolo.LIBERO) {
+                    tuttiLiberi = false;
+                    break;
+                }
+            }
+            if (tuttiLiberi) {
+                liberi.add(new GruppoTavoli(nomeSala, gruppo, calcolaPosti(gruppo)));
+            }
+        }
+
+        return liberi;
+    }
+
+    /**
+     * Posti totali di TUTTE le sale configurate per (data, turno), indipendentemente
+     * dallo stato dei tavoli (una sola query).
+     */
+    public int calcolaPostiTotali(LocalDate data, Turno turno) {
+        int tot = 0;
+        for (List<Tavolo> tavoliSala : tavoloDAO.getTavoliPerTurno(data, turno).values()) {
+            for (List<Tavolo> gruppo : trovaGruppi(tavoliSala)) {
+                tot += calcolaPosti(gruppo);
+            }
+        }
+        return tot;
+    }
+
     // ===================== CAMBIO STATO DI GRUPPO ===================== //
 
     /**
@@ -345,6 +604,10 @@ public class GestioneSala {
             if (res == -1) {
                 return -1; // errore SQL in uno degli update
             }
+            if (res == 1) {
+                pubblicaModifica(data, turno, sala.getNome(),
+                        EventoTavolo.stato(t.getX(), t.getY(), nuovoStato));
+            }
             updatedCount += res; // 0 o 1
         }
 
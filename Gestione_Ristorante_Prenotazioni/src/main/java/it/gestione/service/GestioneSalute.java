@@ -0,0 +1,255 @@
+package it.gestione.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import it.gestione.database.ClassePool;
+import it.gestione.database.DBConnectionManager;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Salute del collegamento al database, per le sonde del bilanciatore.
+ *
+ * Una sonda in background (thread dedicato, non lo scheduler di Spring che esegue anche
+ * compattazioni e pulizie) fa un SELECT 1 sul pool LETTURA ogni intervallo-ms e tiene
+ * le latenze delle ultime "campioni" sonde. Lo stato si calcola dall'ultima sonda, quindi leggerlo
+ * (ad ogni GET /actuator/health/readiness) non costa niente:
+ *  - latenza: mediana del round trip nella finestra (un picco isolato non cambia stato);
+ *  - attesa pool: thread in coda su tutti i pool (DBConnectionManager.getThreadInAttesa);
+ *  - acquisizione: p95 di hikaricp.connections.acquire del traffico reale, su tutti i pool.
+ * Sopra le soglie "degradata" -> DEGRADATO, sopra le soglie "non-pronto" -> NON_PRONTO.
+ * NON_PRONTO anche dopo fallimenti-max sonde fallite di fila o se la sonda è ferma
+ * (nessun risultato da 3 intervalli: è bloccata in attesa di una connessione).
+ *
+ * Configurazione: gestione.salute.* (vedi costruttore).
+ */
+@Service
+public class GestioneSalute {
+
+    private final MeterRegistry registro;
+    private final long intervalloMs;
+    private final int fallimentiMax;
+    private final long latenzaDegradataMs;
+    private final long latenzaNonProntoMs;
+    private final int attesaDegradata;
+    private final int attesaNonPronto;
+    private final long acquisizioneDegradataMs;
+    private final long acquisizioneNonProntoMs;
+
+    private final ScheduledExecutorService sonda;
+
+    // finestra circolare dei round trip in nanosecondi (solo sonde riuscite)
+    private final long[] latenze;
+    private int campioni = 0;
+    private int prossimo = 0;
+
+    private int fallimentiDiFila = 0;
+    private String ultimoErrore;
+    private long ultimaSondaNanos;
+    private volatile boolean sondaEseguita = false;
+
+    public GestioneSalute(MeterRegistry registro,
+                          @Value("${gestione.salute.intervallo-ms:5000}") long intervalloMs,
+                          @Value("${gestione.salute.campioni:12}") int campioniFinestra,
+                          @Value("${gestione.salute.fallimenti-max:3}") int fallimentiMax,
+                          @Value("${gestione.salute.latenza-degradata-ms:50}") long latenzaDegradataMs,
+                          @Value("${gestione.salute.latenza-non-pronto-ms:500}") long latenzaNonProntoMs,
+                          @Value("${gestione.salute.attesa-degradata:3}") int attesaDegradata,
+                          @Value("${gestione.salute.attesa-non-pronto:10}") int attesaNonPronto,
+                          @Value("${gestione.salute.acquisizione-degradata-ms:100}") long acquisizioneDegradataMs,
+                          @Value("${gestione.salute.acquisizione-non-pronto-ms:1000}") long acquisizioneNonProntoMs) {
+        this.registro = registro;
+        this.intervalloMs = intervalloMs;
+        this.fallimentiMax = fallimentiMax;
+        this.latenzaDegradataMs = latenzaDegradataMs;
+        this.latenzaNonProntoMs = latenzaNonProntoMs;
+        this.attesaDegradata = attesaDegradata;
+        this.attesaNonPronto = attesaNonPronto;
+        this.acquisizioneDegradataMs = acquisizioneDegradataMs;
+        this.acquisizioneNonProntoMs = acquisizioneNonProntoMs;
+        this.latenze = new long[Math.max(1, campioniFinestra)];
+
+        Gauge.builder("gestione.salute.stato", this, s -> s.getStato().ordinal())
+                .description("0 sconosciuto, 1 pronto, 2 degradato, 3 non pronto")
+                .register(registro);
+        Gauge.builder("gestione.salute.latenza", this, s -> s.latenzaMedianaMs())
+                .description("Mediana del round trip della sonda DB (ms)")
+                .baseUnit("milliseconds")
+                .register(registro);
+
+        this.sonda = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sonda-db");
+            t.setDaemon(true);
+            return t;
+        });
+        this.sonda.scheduleWithFixedDelay(this::eseguiSonda, 0, intervalloMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        sonda.shutdownNow();
+    }
+
+    /** Stato corrente, calcolato dall'ultima sonda e dai contatori dei pool (nessuna query). */
+    public StatoSalute getStato() {
+        return valuta(new LinkedHashMap<>());
+    }
+
+    /**
+     * Stato corrente con i dettagli per /actuator/health: valori misurati,
+     * soglie e motivi dello stato (vuoto se PRONTO).
+     */
+    public Map<String, Object> getDettagli() {
+        Map<String, Object> dettagli = new LinkedHashMap<>();
+        StatoSalute stato = valuta(dettagli);
+        dettagli.put("stato", stato.name());
+        return dettagli;
+    }
+
+    // ---------- sonda ---------- //
+
+    private void eseguiSonda() {
+        try {
+            // timeout della query pari all'intervallo: una sonda non si accavalla con la successiva
+            int timeoutSecondi = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(intervalloMs));
+            long[] t = DBConnectionManager.sonda(ClassePool.LETTURA, timeoutSecondi);
+            synchronized (this) {
+                latenze[prossimo] = t[1];
+                prossimo = (prossimo + 1) % latenze.length;
+                campioni = Math.min(campioni + 1, latenze.length);
+                fallimentiDiFila = 0;
+                ultimoErrore = null;
+            }
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                fallimentiDiFila++;
+                ultimoErrore = e.getMessage();
+            }
+        } finally {
+            synchronized (this) {
+                ultimaSondaNanos = System.nanoTime();
+            }
+            sondaEseguita = true;
+        }
+    }
+
+    // ---------- valutazione ---------- //
+
+    private StatoSalute valuta(Map<String, Object> dettagli) {
+        if (!sondaEseguita) {
+            return StatoSalute.SCONOSCIUTO;
+        }
+
+        StatoSalute stato = StatoSalute.PRONTO;
+        Map<String, String> motivi = new LinkedHashMap<>();
+
+        long latenza = latenzaMedianaMs();
+        int fallimenti;
+        String errore;
+        long trascorsiMs;
+        synchronized (this) {
+            fallimenti = fallimentiDiFila;
+            errore = ultimoErrore;
+            trascorsiMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ultimaSondaNanos);
+        }
+
+        if (fallimenti >= fallimentiMax) {
+            stato = StatoSalute.NON_PRONTO;
+            motivi.put("sonda", fallimenti + " sonde fallite di fila: " + errore);
+        } else if (fallimenti > 0) {
+            stato = peggiore(stato, StatoSalute.DEGRADATO);
+            motivi.put("sonda", "ultima sonda fallita: " + errore);
+        }
+
+        // la sonda parte ogni intervalloMs dalla fine della precedente: se tace da 3 intervalli è bloccata
+        if (trascorsiMs > 3 * intervalloMs) {
+            stato = StatoSalute.NON_PRONTO;
+            motivi.put("sondaFerma", "nessun risultato da " + trascorsiMs + " ms");
+        }
+
+        if (latenza >= 0) {
+            stato = peggiore(stato, controlla(motivi, "latenza", latenza, latenzaDegradataMs, latenzaNonProntoMs));
+        }
+
+        int inAttesa = 0;
+        for (ClassePool classe : ClassePool.values()) {
+            inAttesa += DBConnectionManager.getThreadInAttesa(classe);
+        }
+        stato = peggiore(stato, controlla(motivi, "attesaPool", inAttesa, attesaDegradata, attesaNonPronto));
+
+        long acquisizione = acquisizioneP95Ms();
+        if (acquisizione >= 0) {
+            stato = peggiore(stato, controlla(motivi, "acquisizioneP95",
+                    acquisizione, acquisizioneDegradataMs, acquisizioneNonProntoMs));
+        }
+
+        dettagli.put("latenzaMedianaMs", latenza);
+        dettagli.put("threadInAttesa", inAttesa);
+        dettagli.put("acquisizioneP95Ms", acquisizione);
+        dettagli.put("fallimentiDiFila", fallimenti);
+        dettagli.put("ultimaSondaMsFa", trascorsiMs);
+        if (!motivi.isEmpty()) {
+            dettagli.put("motivi", motivi);
+        }
+        return stato;
+    }
+
+    private static StatoSalute controlla(Map<String, String> motivi, String nome,
+                                         long valore, long sogliaDegradata, long sogliaNonPronto) {
+        if (valore >= sogliaNonPronto) {
+            motivi.put(nome, valore + " >= " + sogliaNonPronto);
+            return StatoSalute.NON_PRONTO;
+        }
+        if (valore >= sogliaDegradata) {
+            motivi.put(nome, valore + " >= " + sogliaDegradata);
+            return StatoSalute.DEGRADATO;
+        }
+        return StatoSalute.PRONTO;
+    }
+
+    private static StatoSalute peggiore(StatoSalute a, StatoSalute b) {
+        return (a.ordinal() >= b.ordinal()) ? a : b;
+    }
+
+    // mediana dei round trip nella finestra, -1 se nessuna sonda è ancora riuscita
+    private long latenzaMedianaMs() {
+        long[] copia;
+        synchronized (this) {
+            if (campioni == 0) {
+                return -1;
+            }
+            copia = Arrays.copyOf(latenze, campioni);
+        }
+        Arrays.sort(copia);
+        return TimeUnit.NANOSECONDS.toMillis(copia[copia.length / 2]);
+    }
+
+    /**
+     * p95 del tempo di acquisizione delle connessioni, il peggiore tra i pool.
+     * Il percentile è calcolato da Micrometer su una finestra scorrevole
+     * (management.metrics.distribution.percentiles.hikaricp.connections.acquire);
+     * -1 se i pool non esistono ancora o i percentili non sono configurati.
+     */
+    private long acquisizioneP95Ms() {
+        double peggiore = -1;
+        for (Timer t : registro.find("hikaricp.connections.acquire").timers()) {
+            for (ValueAtPercentile v : t.takeSnapshot().percentileValues()) {
+                if (v.percentile() == 0.95) {
+                    peggiore = Math.max(peggiore, v.value(TimeUnit.MILLISECONDS));
+                }
+            }
+        }
+        return (peggiore < 0) ? -1 : (long) peggiore;
+    }
+}
@@ -0,0 +1,101 @@
+package it.gestione.service;
+
+import it.gestione.database.RiepilogoPrenotazioniDAO;
+import it.gestione.entity.RiepilogoPrenotazioni;
+import it.gestione.entity.StatistichePrenotazioni;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Statistiche di prenotazioni e coperti dal riepilogo per (data, turno, persone),
+ * senza leggere le prenotazioni: il costo dipende dai giorni del periodo, non dalle prenotazioni.
+ *
+ * Il riepilogo si aggiorna da solo con ogni prenotazione creata o eliminata.
+ * Il ricalcolo (backfill) lo ricostruisce dalle prenotazioni: la prima volta su tutto lo storico
+ * (POST /api/admin/statistiche/ricalcola) e ogni notte sul periodo vicino, per riallineare
+ * il turno delle prenotazioni quando cambiano gli orari dei working day.
+ */
+@Service
+public class GestioneStatistiche {
+
+    // periodo massimo per statistiche e ricalcolo (10 anni)
+    public static final long MAX_GIORNI = 3660;
+
+    private final RiepilogoPrenotazioniDAO riepilogoPrenotazioniDAO;
+    private final GestioneWorkingDay gestioneWorkingDay;
+
+    private final int giorniPassati;
+    private final int giorniFuturi;
+
+    public GestioneStatistiche(RiepilogoPrenotazioniDAO riepilogoPrenotazioniDAO,
+                               GestioneWorkingDay gestioneWorkingDay,
+                               @Value("${gestione.statistiche.ricalcolo-giorni-passati:60}") int giorniPassati,
+                               @Value("${gestione.statistiche.ricalcolo-giorni-futuri:365}") int giorniFuturi) {
+        this.riepilogoPrenotazioniDAO = riepilogoPrenotazioniDAO;
+        this.gestioneWorkingDay = gestioneWorkingDay;
+        this.giorniPassati = giorniPassati;
+        this.giorniFuturi = giorniFuturi;
+    }
+
+    /**
+     * Statistiche tra dal e al (inclusi). null se il periodo non è valido.
+     */
+    public StatistichePrenotazioni getStatistiche(LocalDate dal, LocalDate al) {
+        if (!periodoValido(dal, al)) {
+            return null;
+        }
+
+        StatistichePrenotazioni s = new StatistichePrenotazioni(dal, al);
+        for (RiepilogoPrenotazioni r : riepilogoPrenotazioniDAO.getRiepilogo(dal, al)) {
+            s.aggiungi(r);
+        }
+        return s;
+    }
+
+    /**
+     * Ricostruisce il riepilogo tra dal e al dalle prenotazioni, un mese per transazione
+     * (gli aggiornamenti incrementali restano bloccati solo per il mese in corso di ricalcolo).
+     *
+     * Ritorna le righe di riepilogo scritte, -1 in caso di errore SQL (i mesi precedenti restano
+     * ricalcolati), -2 se il periodo non è valido.
+     */
+    public int ricalcola(LocalDate dal, LocalDate al) {
+        if (!periodoValido(dal, al)) {
+            return -2;
+        }
+
+        int totale = 0;
+        for (LocalDate inizio = dal; !inizio.isAfter(al); ) {
+            LocalDate fine = inizio.withDayOfMonth(inizio.lengthOfMonth());
+            if (fine.isAfter(al)) {
+                fine = al;
+            }
+
+            int n = riepilogoPrenotazioniDAO.ricalcola(inizio, fine,
+                    gestioneWorkingDay.getInizioCenaPerPeriodo(inizio, fine));
+            if (n < 0) {
+                return -1;
+            }
+            totale += n;
+            inizio = fine.plusDays(1);
+        }
+        return totale;
+    }
+
+    @Scheduled(cron = "${gestione.statistiche.ricalcolo-cron:0 30 4 * * *}")
+    public void ricalcoloNotturno() {
+        LocalDate oggi = LocalDate.now();
+        if (ricalcola(oggi.minusDays(giorniPassati), oggi.plusDays(giorniFuturi)) < 0) {
+            System.err.println("Ricalcolo notturno del riepilogo prenotazioni non riuscito");
+        }
+    }
+
+    private static boolean periodoValido(LocalDate dal, LocalDate al) {
+        return dal != null && al != null && !al.isBefore(dal)
+                && ChronoUnit.DAYS.between(dal, al) < MAX_GIORNI;
+    }
+}
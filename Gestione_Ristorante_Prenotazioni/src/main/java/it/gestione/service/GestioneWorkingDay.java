@@ -1,22 +1,70 @@
 package it.gestione.service;
 
+import it.gestione.database.AscoltatoreInvalidazioni;
+import it.gestione.database.RegolaRicorrenzaDAO;
+import it.gestione.database.TipoInvalidazione;
 import it.gestione.database.WorkingDayDAO;
+import it.gestione.entity.RegolaRicorrenza;
+import it.gestione.entity.Turno;
 import it.gestione.entity.WorkingDay;
 import it.gestione.entity.WorkingDayType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
-public class GestioneWorkingDay {
+public class GestioneWorkingDay implements AscoltatoreInvalidazioni {
 
 
+    // Se per la data non c'è nessun WorkingDay, gli orari da qui in poi sono CENA
+    private static final LocalTime INIZIO_CENA_DEFAULT = LocalTime.of(17, 0);
+
+    private static final String TUTTI = "*";
+
+    // finestra massima per espansione e materializzazione delle ricorrenze
+    private static final long MAX_GIORNI_FINESTRA = 3 * 366;
+
     private final WorkingDayDAO workingDayDAO;
+    private final RegolaRicorrenzaDAO regolaRicorrenzaDAO;
+
+    // la tabella working_day è piccola e cambia raramente: la si tiene tutta in cache
+    private final CacheLocale<String, List<WorkingDay>> workingDays = new CacheLocale<>();
+    private final CacheLocale<LocalDate, WorkingDay> perData = new CacheLocale<>();
+
+    // regole di ricorrenza e loro espansione per anno (data -> SPECIAL generato), invalidate con working_day
+    private final CacheLocale<String, List<RegolaRicorrenza>> regole = new CacheLocale<>();
+    private final CacheLocale<Integer, Map<LocalDate, WorkingDay>> ricorrenzePerAnno = new CacheLocale<>();
+
+    // cache mancante o disattivata: le letture concorrenti della stessa chiave fanno una sola query
+    private final SingleFlight<String, List<WorkingDay>> voliLista = new SingleFlight<>();
+    private final SingleFlight<LocalDate, WorkingDay> voliPerData = new SingleFlight<>();
+    private final SingleFlight<String, List<RegolaRicorrenza>> voliRegole = new SingleFlight<>();
 
-    public GestioneWorkingDay(WorkingDayDAO workingDayDAO) {
+    // Permanenza media di un tavolo per turno (minuti), configurabile
+    private final int permanenzaPranzoMinuti;
+    private final int permanenzaCenaMinuti;
+
+    public GestioneWorkingDay(WorkingDayDAO workingDayDAO,
+                              RegolaRicorrenzaDAO regolaRicorrenzaDAO,
+                              @Value("${gestione.permanenza.pranzo-minuti:90}") int permanenzaPranzoMinuti,
+                              @Value("${gestione.permanenza.cena-minuti:120}") int permanenzaCenaMinuti) {
         this.workingDayDAO = workingDayDAO;
+        this.regolaRicorrenzaDAO = regolaRicorrenzaDAO;
+        this.permanenzaPranzoMinuti = permanenzaPranzoMinuti;
+        this.permanenzaCenaMinuti = permanenzaCenaMinuti;
     }
 
     public int creaWorkingDay(WorkingDayType t,boolean g1,boolean g2,LocalTime a1,LocalTime c1,LocalTime a2,LocalTime c2,LocalDate d) {
@@ -43,9 +91,7 @@ public class GestioneWorkingDay {
 
 
         int res = workingDayDAO.aggiungiWorkingDay(wd);
-        // QUI dovresti fare qualcosa con wd:
-        // salvarla su DB, aggiungerla a una lista, ecc.
-        // es: workingDays.add(wd);
+        svuotaCache();
         return res;
     }
 
@@ -64,19 +110,296 @@ public class GestioneWorkingDay {
 
 
     public List<WorkingDay> getAllWorkingDays() {
-        return workingDayDAO.getAllWorkingDays();
+        // lista vuota = nessuna configurazione o errore SQL: non si mette in cache
+        List<WorkingDay> lista = workingDays.get(TUTTI, k -> voliLista.esegui(k, () -> {
+            List<WorkingDay> letti = workingDayDAO.getAllWorkingDays();
+            return letti.isEmpty() ? null : Collections.unmodifiableList(letti);
+        }));
+        return (lista != null) ? lista : new ArrayList<>();
     }
 
     public List<WorkingDay> getWorkingDaysByType(WorkingDayType type) {
-        return workingDayDAO.getWorkingDaysByType(type);
+        if (type == null) {
+            return workingDayDAO.getWorkingDaysByType(null);
+        }
+        return voliLista.esegui(type.name(),
+                () -> Collections.unmodifiableList(workingDayDAO.getWorkingDaysByType(type)));
     }
 
     public int eliminaTemplate(WorkingDayType type) {
-        return workingDayDAO.eliminaWorkingDayTemplate(type);
+        int res = workingDayDAO.eliminaWorkingDayTemplate(type);
+        svuotaCache();
+        return res;
     }
 
     public int eliminaSpecial(WorkingDayType type, LocalDate data) {
-        return workingDayDAO.eliminaWorkingDay(type, data);
+        int res = workingDayDAO.eliminaWorkingDay(type, data);
+        svuotaCache();
+        return res;
+    }
+
+    // ===================== RICORRENZE ===================== //
+
+    /**
+     * Salva una regola di ricorrenza (festività, chiusure settimanali o mensili, ferie).
+     * Ritorna l'id della regola, -1 in caso di errore SQL, -2 se la regola non è valida
+     * (vedi descriviErrore).
+     */
+    public int aggiungiRegola(RegolaRicorrenza r) {
+        if (EspansioneRicorrenze.valida(r) != null) {
+            return -2;
+        }
+        int id = regolaRicorrenzaDAO.aggiungiRegola(r);
+        svuotaCache();
+        return id;
+    }
+
+    /** Motivo per cui una regola non è valida, null se è valida. */
+    public String descriviErrore(RegolaRicorrenza r) {
+        return EspansioneRicorrenze.valida(r);
+    }
+
+    public int eliminaRegola(int id) {
+        int res = regolaRicorrenzaDAO.eliminaRegola(id);
+        svuotaCache();
+        return res;
+    }
+
+    public List<RegolaRicorrenza> getAllRegole() {
+        List<RegolaRicorrenza> lista = leggiRegole();
+        return (lista != null) ? lista : new ArrayList<>();
+    }
+
+    /**
+     * Giorni SPECIAL generati dalle regole tra dal e al (inclusi), in ordine di data.
+     * Non include gli SPECIAL già salvati in working_day per quelle date.
+     * null se la finestra non è valida (dal dopo al o più di MAX_GIORNI_FINESTRA giorni).
+     */
+    public List<WorkingDay> espandiRicorrenze(LocalDate dal, LocalDate al) {
+        if (!finestraValida(dal, al)) {
+            return null;
+        }
+
+        Set<LocalDate> salvati = getAllWorkingDays().stream()
+                .filter(wd -> wd.getType() == WorkingDayType.SPECIAL && wd.getData() != null)
+                .map(WorkingDay::getData)
+                .collect(Collectors.toSet());
+
+        List<WorkingDay> lista = new ArrayList<>();
+        for (int anno = dal.getYear(); anno <= al.getYear(); anno++) {
+            for (WorkingDay wd : getRicorrenzeAnno(anno).values()) {
+                LocalDate d = wd.getData();
+                if (!d.isBefore(dal) && !d.isAfter(al) && !salvati.contains(d)) {
+                    lista.add(wd);
+                }
+            }
+        }
+        lista.sort(Comparator.comparing(WorkingDay::getData));
+        return lista;
+    }
+
+    /**
+     * Salva in working_day, con un solo batch, i giorni SPECIAL generati dalle regole tra dal e al
+     * (quelli non ancora presenti). Da quel momento sono SPECIAL normali: modificabili una per una
+     * e indipendenti dalla regola.
+     * Ritorna quanti ne sono stati inseriti, -1 in caso di errore SQL, -2 se la finestra non è valida.
+     */
+    public int materializzaRicorrenze(LocalDate dal, LocalDate al) {
+        List<WorkingDay> giorni = espandiRicorrenze(dal, al);
+        if (giorni == null) {
+            return -2;
+        }
+        int res = workingDayDAO.aggiungiWorkingDays(giorni);
+        svuotaCache();
+        return res;
+    }
+
+    // espansione delle regole per un anno, calcolata una volta e poi servita dalla cache
+    private Map<LocalDate, WorkingDay> getRicorrenzeAnno(int anno) {
+        Map<LocalDate, WorkingDay> m = ricorrenzePerAnno.get(anno, a -> {
+            List<RegolaRicorrenza> tutte = leggiRegole();
+            // regole non lette (errore SQL): niente in cache, si riprova alla prossima richiesta
+            return (tutte != null) ? EspansioneRicorrenze.espandi(tutte, a) : null;
+        });
+        return (m != null) ? m : Collections.emptyMap();
+    }
+
+    // regole in cache (lista vuota = nessuna regola), null se la lettura è fallita
+    private List<RegolaRicorrenza> leggiRegole() {
+        return regole.get(TUTTI, k -> voliRegole.esegui(k, () -> {
+            List<RegolaRicorrenza> lette = regolaRicorrenzaDAO.getAllRegole();
+            return (lette != null) ? Collections.unmodifiableList(lette) : null;
+        }));
+    }
+
+    private static boolean finestraValida(LocalDate dal, LocalDate al) {
+        return dal != null && al != null && !al.isBefore(dal)
+                && ChronoUnit.DAYS.between(dal, al) < MAX_GIORNI_FINESTRA;
+    }
+
+    // ===================== ORARI E TURNI ===================== //
+
+    /**
+     * WorkingDay valido per una data: lo SPECIAL salvato se presente, poi quello generato
+     * dalle regole di ricorrenza, altrimenti il template del giorno della settimana.
+     * null se non configurato.
+     */
+    public WorkingDay getWorkingDayPerData(LocalDate data) {
+        if (data == null) {
+            return null;
+        }
+        return perData.get(data, d -> voliPerData.esegui(d, () -> {
+            WorkingDay wd = workingDayDAO.getWorkingDayPerData(d, tipoTemplate(d));
+            if (wd == null || wd.getType() != WorkingDayType.SPECIAL) {
+                WorkingDay ricorrente = getRicorrenzeAnno(d.getYear()).get(d);
+                if (ricorrente != null) {
+                    return ricorrente;
+                }
+            }
+            return wd;
+        }));
+    }
+
+    /**
+     * WorkingDay valido per ogni data tra dal e al (inclusi), con una sola lettura
+     * della tabella working_day (più le ricorrenze degli anni coinvolti, dalla cache). Le date senza configurazione non compaiono nella mappa.
+     */
+    public Map<LocalDate, WorkingDay> getWorkingDaysPerPeriodo(LocalDate dal, LocalDate al) {
+        Map<LocalDate, WorkingDay> perData = new HashMap<>();
+        if (dal == null || al == null) {
+            return perData;
+        }
+
+        Map<WorkingDayType, WorkingDay> template = new EnumMap<>(WorkingDayType.class);
+        Map<LocalDate, WorkingDay> special = new HashMap<>();
+        for (WorkingDay wd : getAllWorkingDays()) {
+            if (wd.getData() == null) {
+                template.put(wd.getType(), wd);
+            } else if (wd.getType() == WorkingDayType.SPECIAL) {
+                special.put(wd.getData(), wd);
+            }
+        }
+
+        Map<LocalDate, WorkingDay> ricorrenze = Collections.emptyMap();
+        for (LocalDate d = dal; !d.isAfter(al); d = d.plusDays(1)) {
+            if (d.equals(dal) || d.getDayOfYear() == 1) {
+                ricorrenze = getRicorrenzeAnno(d.getYear());
+            }
+
+            WorkingDay wd = special.get(d);
+            if (wd == null) {
+                wd = ricorrenze.getOrDefault(d, template.get(tipoTemplate(d)));
+            }
+            if (wd != null) {
+                perData.put(d, wd);
+            }
+        }
+
+        return perData;
+    }
+
+    /**
+     * Turno a cui appartiene un orario in una certa data.
+     * Il confine tra PRANZO e CENA è a metà tra chiusura pranzo (c1) e apertura cena (a2);
+     * se mancano gli orari si usa l'apertura cena o le 17:00.
+     */
+    public Turno getTurnoPerOrario(LocalDate data, LocalTime orario) {
+        if (orario == null) {
+            return null;
+        }
+        return orario.isBefore(inizioCena(getWorkingDayPerData(data))) ? Turno.PRANZO : Turno.CENA;
+    }
+
+    /**
+     * Come getTurnoPerOrario, ma con il WorkingDay già caricato
+     * (utile quando si classificano molte prenotazioni della stessa data).
+     */
+    public Turno getTurnoPerOrario(WorkingDay wd, LocalTime orario) {
+        if (orario == null) {
+            return null;
+        }
+        return orario.isBefore(inizioCena(wd)) ? Turno.PRANZO : Turno.CENA;
+    }
+
+    /**
+     * Orario da cui, in una data, le prenotazioni sono CENA (vedi getTurnoPerOrario).
+     */
+    public LocalTime getInizioCena(LocalDate data) {
+        return inizioCena(getWorkingDayPerData(data));
+    }
+
+    /**
+     * Come getInizioCena per ogni data tra dal e al (inclusi), con una sola lettura
+     * di working_day (getWorkingDaysPerPeriodo).
+     */
+    public Map<LocalDate, LocalTime> getInizioCenaPerPeriodo(LocalDate dal, LocalDate al) {
+        Map<LocalDate, LocalTime> inizio = new HashMap<>();
+        if (dal == null || al == null) {
+            return inizio;
+        }
+
+        Map<LocalDate, WorkingDay> perData = getWorkingDaysPerPeriodo(dal, al);
+        for (LocalDate d = dal; !d.isAfter(al); d = d.plusDays(1)) {
+            inizio.put(d, inizioCena(perData.get(d)));
+        }
+        return inizio;
+    }
+
+    /**
+     * Minuti di permanenza previsti per una prenotazione nel turno.
+     */
+    public int getPermanenzaMinuti(Turno turno) {
+        return (turno == Turno.PRANZO) ? permanenzaPranzoMinuti : permanenzaCenaMinuti;
+    }
+
+    // ---------- invalidazioni (anche da altri nodi, via BusInvalidazioni) ---------- //
+
+    @Override
+    public void invalida(TipoInvalidazione tipo, String chiave) {
+        if (tipo == TipoInvalidazione.WORKING_DAY) {
+            svuotaCache();
+        }
+    }
+
+    @Override
+    public void cambioStatoBus(boolean attivo) {
+        workingDays.setAbilitata(attivo);
+        perData.setAbilitata(attivo);
+        regole.setAbilitata(attivo);
+        ricorrenzePerAnno.setAbilitata(attivo);
+    }
+
+    private void svuotaCache() {
+        voliLista.dimenticaTutto();
+        voliPerData.dimenticaTutto();
+        voliRegole.dimenticaTutto();
+        workingDays.svuota();
+        perData.svuota();
+        regole.svuota();
+        ricorrenzePerAnno.svuota();
+    }
+
+    private LocalTime inizioCena(WorkingDay wd) {
+        if (wd == null || wd.getA2() == null) {
+            return INIZIO_CENA_DEFAULT;
+        }
+        if (wd.getC1() == null || !wd.getC1().isBefore(wd.getA2())) {
+            return wd.getA2();
+        }
+        int c1 = wd.getC1().toSecondOfDay();
+        int a2 = wd.getA2().toSecondOfDay();
+        return LocalTime.ofSecondOfDay((c1 + a2) / 2);
+    }
+
+    private WorkingDayType tipoTemplate(LocalDate data) {
+        DayOfWeek dow = data.getDayOfWeek();
+        if (dow == DayOfWeek.SATURDAY) {
+            return WorkingDayType.SATURDAY;
+        }
+        if (dow == DayOfWeek.SUNDAY) {
+            return WorkingDayType.SUNDAY;
+        }
+        return WorkingDayType.WEEKDAY;
     }
 
 }
@@ -0,0 +1,159 @@
+package it.gestione.service;
+
+import it.gestione.entity.TipoZona;
+import it.gestione.entity.ZonaSala;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mappa "rasterizzata" delle zone di una sala, per validare la posizione dei tavoli in O(1).
+ *
+ * Ogni ZonaSala copre le celle [x, x + base) x [y, y + altezza).
+ * Una cella è VALIDA se è coperta da almeno una zona SPAZIO_VIVIBILE
+ * e da nessuna zona SPAZIO_NON_VIVIBILE. Una sala senza zone non ha vincoli.
+ *
+ * Costruzione O(Z + W * H) con array alle differenze 2D, poi bitmap delle celle valide
+ * -> isPosizioneValida in O(1).
+ *
+ * Oltre MAX_CELLE la mappa non viene rasterizzata e si controllano le zone una per una.
+ */
+public class MappaZone {
+
+    private static final long MAX_CELLE = 4_000_000L;
+
+    private final boolean vincolata;        // false = sala senza zone, tutto valido
+    private final List<ZonaSala> zone;      // usate solo se la raster non c'è
+
+    private final int minX;
+    private final int minY;
+    private final int larghezza;
+    private final int altezza;
+
+    private final long[] valide;            // bit (r * larghezza + c) = cella valida
+
+    public MappaZone(List<ZonaSala> zoneSala) {
+        this.zone = new ArrayList<>();
+        if (zoneSala != null) {
+            for (ZonaSala z : zoneSala) {
+                if (z != null && z.getTipo() != null && z.getBase() > 0 && z.getAltezza() > 0) {
+                    this.zone.add(z);
+                }
+            }
+        }
+
+        this.vincolata = !this.zone.isEmpty();
+
+        int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE;
+        long x1 = Long.MIN_VALUE, y1 = Long.MIN_VALUE;
+        for (ZonaSala z : this.zone) {
+            x0 = Math.min(x0, z.getX());
+            y0 = Math.min(y0, z.getY());
+            x1 = Math.max(x1, (long) z.getX() + z.getBase());
+            y1 = Math.max(y1, (long) z.getY() + z.getAltezza());
+        }
+
+        long w = vincolata ? x1 - x0 : 0;
+        long h = vincolata ? y1 - y0 : 0;
+
+        if (!vincolata || w * h > MAX_CELLE) {
+            this.minX = 0;
+            this.minY = 0;
+            this.larghezza = 0;
+            this.altezza = 0;
+            this.valide = null;
+            return;
+        }
+
+        this.minX = x0;
+        this.minY = y0;
+        this.larghezza = (int) w;
+        this.altezza = (int) h;
+
+        // array alle differenze: +1 nell'angolo alto-sx, -1 fuori dagli altri angoli
+        int stride = larghezza + 1;
+        int[] vivibili = new int[stride * (altezza + 1)];
+        int[] nonVivibili = new int[stride * (altezza + 1)];
+
+        for (ZonaSala z : this.zone) {
+            int[] diff = (z.getTipo() == TipoZona.SPAZIO_VIVIBILE) ? vivibili : nonVivibili;
+            int c0 = z.getX() - minX;
+            int r0 = z.getY() - minY;
+            int c1 = c0 + z.getBase();
+            int r1 = r0 + z.getAltezza();
+
+            diff[r0 * stride + c0]++;
+            diff[r0 * stride + c1]--;
+            diff[r1 * stride + c0]--;
+            diff[r1 * stride + c1]++;
+        }
+
+        // integro le differenze (somma prefissa 2D in place) -> copertura per cella
+        for (int r = 0; r < altezza; r++) {
+            for (int c = 0; c < larghezza; c++) {
+                int i = r * stride + c;
+                int sopra = (r > 0) ? i - stride : -1;
+                int sinistra = (c > 0) ? i - 1 : -1;
+                int diag = (r > 0 && c > 0) ? i - stride - 1 : -1;
+
+                vivibili[i] += (sopra >= 0 ? vivibili[sopra] : 0)
+                        + (sinistra >= 0 ? vivibili[sinistra] : 0)
+                        - (diag >= 0 ? vivibili[diag] : 0);
+                nonVivibili[i] += (sopra >= 0 ? nonVivibili[sopra] : 0)
+                        + (sinistra >= 0 ? nonVivibili[sinistra] : 0)
+                        - (diag >= 0 ? nonVivibili[diag] : 0);
+            }
+        }
+
+        this.valide = new long[(larghezza * altezza + 63) >>> 6];
+
+        for (int r = 0; r < altezza; r++) {
+            for (int c = 0; c < larghezza; c++) {
+                int i = r * stride + c;
+                if (vivibili[i] > 0 && nonVivibili[i] == 0) {
+                    int bit = r * larghezza + c;
+                    valide[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * true se un tavolo può stare nella cella (x, y).
+     */
+    public boolean isPosizioneValida(int x, int y) {
+        if (!vincolata) {
+            return true;
+        }
+        if (valide == null) {
+            return isValidaScansione(x, y);
+        }
+
+        int c = x - minX;
+        int r = y - minY;
+        if (c < 0 || r < 0 || c >= larghezza || r >= altezza) {
+            return false;
+        }
+
+        int bit = r * larghezza + c;
+        return (valide[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    // ===================== helper interni ===================== //
+
+    private boolean isValidaScansione(int x, int y) {
+        boolean vivibile = false;
+        for (ZonaSala z : zone) {
+            boolean dentro = x >= z.getX() && x < z.getX() + z.getBase()
+                    && y >= z.getY() && y < z.getY() + z.getAltezza();
+            if (!dentro) {
+                continue;
+            }
+            if (z.getTipo() == TipoZona.SPAZIO_NON_VIVIBILE) {
+                return false;
+            }
+            vivibile = true;
+        }
+        return vivibile;
+    }
+}
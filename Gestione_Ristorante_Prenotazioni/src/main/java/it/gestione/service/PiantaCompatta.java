@@ -0,0 +1,192 @@
+package it.gestione.service;
+
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.Tavolo;
+import it.gestione.entity.TipoZona;
+import it.gestione.entity.ZonaSala;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato binario compatto di una pianta (media type application/x-floorplan).
+ *
+ * Layout (big-endian):
+ *  byte 0-1   magic 'F' 'P'
+ *  byte 2     versione (1)
+ *  byte 3     tipo: 1 = TAVOLI di una configurazione, 2 = ZONE di una sala
+ *  byte 4-7   minX   (int32)   angolo in alto a sinistra del rettangolo che contiene tutto
+ *  byte 8-11  minY   (int32)
+ *  byte 12-15 larghezza (int32, celle)
+ *  byte 16-19 altezza   (int32, celle)
+ *  byte 20-   celle riga per riga (y poi x), 2 bit per cella, 4 celle per byte,
+ *             la prima cella nei 2 bit più alti; l'ultimo byte è completato con zeri.
+ *
+ * Codici cella:
+ *  TAVOLI: 0 = nessun tavolo, 1 = LIBERO, 2 = RISERVATO, 3 = OCCUPATO
+ *  ZONE:   0 = fuori dalle zone, 1 = SPAZIO_VIVIBILE, 2 = SPAZIO_NON_VIVIBILE (prevale)
+ *
+ * Decodifica: cella (x, y) -> indice i = (y - minY) * larghezza + (x - minX),
+ *             codice = (celle[i / 4] >> (6 - 2 * (i % 4))) & 3.
+ * Pianta vuota: larghezza = altezza = 0 e nessun byte di celle.
+ *
+ * Le celle crescono con il rettangolo, non con il numero di tavoli/zone: pochi elementi
+ * molto distanti (o zone grandi) danno un raster più pesante del JSON. In quel caso le
+ * codifiche ritornano null e il chiamante risponde in JSON.
+ */
+public final class PiantaCompatta {
+
+    public static final String MEDIA_TYPE = "application/x-floorplan";
+
+    public static final byte TIPO_TAVOLI = 1;
+    public static final byte TIPO_ZONE = 2;
+
+    private static final byte VERSIONE = 1;
+    private static final int HEADER = 20;
+
+    // fino a 64k celle (16 KB) il raster va sempre bene; oltre, solo se più piccolo del JSON stimato
+    static final long CELLE_SEMPRE = 65_536L;
+    // stima per difetto di un elemento JSON, es. {"x":12,"y":3,"stato":"LIBERO"}
+    static final int BYTE_JSON_TAVOLO = 32;
+    static final int BYTE_JSON_ZONA = 64;
+
+    private PiantaCompatta() {}
+
+    /**
+     * Codifica i tavoli di una configurazione. null se il raster non conviene (vedi conviene).
+     */
+    public static byte[] codificaTavoli(List<Tavolo> tavoli) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (Tavolo t : tavoli) {
+            minX = Math.min(minX, t.getX());
+            minY = Math.min(minY, t.getY());
+            maxX = Math.max(maxX, t.getX());
+            maxY = Math.max(maxY, t.getY());
+        }
+
+        if (tavoli.isEmpty()) {
+            return scrivi(TIPO_TAVOLI, 0, 0, 0, 0, new byte[0]);
+        }
+
+        long w = (long) maxX - minX + 1;
+        long h = (long) maxY - minY + 1;
+        if (!conviene(w, h, (long) tavoli.size() * BYTE_JSON_TAVOLO)) {
+            return null;
+        }
+
+        int larghezza = (int) w;
+        byte[] celle = new byte[(int) ((w * h + 3) / 4)];
+        for (Tavolo t : tavoli) {
+            int i = (t.getY() - minY) * larghezza + (t.getX() - minX);
+            imposta(celle, i, codice(t.getStato()));
+        }
+
+        return scrivi(TIPO_TAVOLI, minX, minY, larghezza, (int) h, celle);
+    }
+
+    /**
+     * Codifica le zone di una sala. null se il raster non conviene (vedi conviene).
+     */
+    public static byte[] codificaZone(List<ZonaSala> zone) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        long maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        List<ZonaSala> valide = new ArrayList<>();
+        for (ZonaSala z : zone) {
+            if (z.getTipo() == null || z.getBase() <= 0 || z.getAltezza() <= 0) {
+                continue;
+            }
+            valide.add(z);
+            minX = Math.min(minX, z.getX());
+            minY = Math.min(minY, z.getY());
+            maxX = Math.max(maxX, (long) z.getX() + z.getBase());
+            maxY = Math.max(maxY, (long) z.getY() + z.getAltezza());
+        }
+
+        if (valide.isEmpty()) {
+            return scrivi(TIPO_ZONE, 0, 0, 0, 0, new byte[0]);
+        }
+
+        long w = maxX - minX;
+        long h = maxY - minY;
+        if (!conviene(w, h, (long) valide.size() * BYTE_JSON_ZONA)) {
+            return null;
+        }
+
+        int larghezza = (int) w;
+        byte[] celle = new byte[(int) ((w * h + 3) / 4)];
+
+        // prima le vivibili, poi le non vivibili che le sovrascrivono
+        for (TipoZona tipo : new TipoZona[]{TipoZona.SPAZIO_VIVIBILE, TipoZona.SPAZIO_NON_VIVIBILE}) {
+            int codice = (tipo == TipoZona.SPAZIO_VIVIBILE) ? 1 : 2;
+            for (ZonaSala z : valide) {
+                if (z.getTipo() != tipo) {
+                    continue;
+                }
+                for (int y = z.getY(); y < z.getY() + z.getAltezza(); y++) {
+                    int riga = (y - minY) * larghezza;
+                    for (int x = z.getX(); x < z.getX() + z.getBase(); x++) {
+                        imposta(celle, riga + (x - minX), codice);
+                    }
+                }
+            }
+        }
+
+        return scrivi(TIPO_ZONE, minX, minY, larghezza, (int) h, celle);
+    }
+
+    /**
+     * Decodifica di riferimento per il tipo TAVOLI (ordine: y poi x, come TavoloDAO.getTavoli).
+     */
+    public static List<Tavolo> decodificaTavoli(byte[] dati) {
+        ByteBuffer buf = ByteBuffer.wrap(dati);
+        if (buf.get() != 'F' || buf.get() != 'P' || buf.get() != VERSIONE || buf.get() != TIPO_TAVOLI) {
+            throw new IllegalArgumentException("Formato pianta non valido");
+        }
+
+        int minX = buf.getInt();
+        int minY = buf.getInt();
+        int larghezza = buf.getInt();
+        int altezza = buf.getInt();
+
+        StatoTavolo[] stati = StatoTavolo.values();
+        List<Tavolo> tavoli = new ArrayList<>();
+        for (int i = 0; i < larghezza * altezza; i++) {
+            int c = (dati[HEADER + (i >>> 2)] >> (6 - 2 * (i & 3))) & 3;
+            if (c != 0) {
+                tavoli.add(new Tavolo(minX + i % larghezza, minY + i / larghezza, stati[c - 1]));
+            }
+        }
+        return tavoli;
+    }
+
+    // ===================== helper interni ===================== //
+
+    // raster piccolo in assoluto, oppure più piccolo della stima del JSON equivalente
+    // (w e h arrivano a 2^32: oltre 2^31 per lato il JSON vince sempre, e w * h non va in overflow)
+    static boolean conviene(long w, long h, long byteJson) {
+        if (w > Integer.MAX_VALUE || h > Integer.MAX_VALUE) {
+            return false;
+        }
+        long celle = w * h;
+        return celle <= CELLE_SEMPRE || HEADER + (celle + 3) / 4 < byteJson;
+    }
+
+    private static int codice(StatoTavolo stato) {
+        return (stato == null) ? 1 : stato.ordinal() + 1; // LIBERO=1, RISERVATO=2, OCCUPATO=3
+    }
+
+    private static void imposta(byte[] celle, int i, int codice) {
+        int shift = 6 - 2 * (i & 3);
+        celle[i >>> 2] = (byte) ((celle[i >>> 2] & ~(3 << shift)) | (codice << shift));
+    }
+
+    private static byte[] scrivi(byte tipo, int minX, int minY, int larghezza, int altezza, byte[] celle) {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + celle.length);
+        buf.put((byte) 'F').put((byte) 'P').put(VERSIONE).put(tipo);
+        buf.putInt(minX).putInt(minY).putInt(larghezza).putInt(altezza);
+        buf.put(celle);
+        return buf.array();
+    }
+}
@@ -0,0 +1,62 @@
+package it.gestione.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalescenza delle letture identiche concorrenti: il primo chiamante per una chiave
+ * esegue il calcolo, chi arriva mentre è in corso ne attende il risultato.
+ * Finito il calcolo la chiave viene rimossa: nessun risultato resta in cache.
+ */
+class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inCorso = new ConcurrentHashMap<>();
+
+    V esegui(K chiave, Supplier<V> calcolo) {
+        CompletableFuture<V> mio = new CompletableFuture<>();
+        CompletableFuture<V> esistente = inCorso.putIfAbsent(chiave, mio);
+        if (esistente != null) {
+            return attendi(esistente);
+        }
+
+        try {
+            V valore = calcolo.get();
+            mio.complete(valore);
+            return valore;
+        } catch (RuntimeException | Error e) {
+            mio.completeExceptionally(e);
+            throw e;
+        } finally {
+            inCorso.remove(chiave, mio);
+        }
+    }
+
+    /**
+     * Dopo una scrittura: chi legge da ora in poi non si aggancia a un calcolo
+     * partito prima della modifica.
+     */
+    void dimentica(K chiave) {
+        inCorso.remove(chiave);
+    }
+
+    void dimenticaTutto() {
+        inCorso.clear();
+    }
+
+    private V attendi(CompletableFuture<V> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException r) {
+                throw r;
+            }
+            if (e.getCause() instanceof Error err) {
+                throw err;
+            }
+            throw e;
+        }
+    }
+}
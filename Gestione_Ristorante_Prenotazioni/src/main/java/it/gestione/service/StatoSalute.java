@@ -0,0 +1,12 @@
+package it.gestione.service;
+
+/**
+ * Stato del collegamento al database calcolato da GestioneSalute
+ * ed esposto nella readiness (/actuator/health/readiness).
+ */
+public enum StatoSalute {
+    SCONOSCIUTO,  // nessuna sonda ancora completata
+    PRONTO,       // latenza e pool sotto le soglie
+    DEGRADATO,    // sopra le soglie di avviso: si accetta traffico, ma il bilanciatore può pesarlo meno
+    NON_PRONTO    // DB irraggiungibile o saturo: meglio mandare il traffico altrove
+}
@@ -0,0 +1,50 @@
+package it.gestione.service;
+
+/**
+ * Token bucket classico: "rate" gettoni al secondo, al massimo "burst" accumulati.
+ */
+class TokenBucket {
+
+    private final double gettoniPerNano;
+    private final double burst;
+
+    private double gettoni;
+    private long ultimoRiempimento;
+    private volatile long ultimoUso;
+
+    TokenBucket(double ratePerSecondo, int burst) {
+        this.gettoniPerNano = ratePerSecondo / 1_000_000_000.0;
+        this.burst = burst;
+        this.gettoni = burst;
+        this.ultimoRiempimento = System.nanoTime();
+        this.ultimoUso = this.ultimoRiempimento;
+    }
+
+    /**
+     * Prende un gettone se disponibile.
+     * Ritorna 0 se preso, altrimenti i nanosecondi da attendere per il prossimo.
+     */
+    synchronized long prendi() {
+        long ora = System.nanoTime();
+        gettoni = Math.min(burst, gettoni + (ora - ultimoRiempimento) * gettoniPerNano);
+        ultimoRiempimento = ora;
+        ultimoUso = ora;
+
+        if (gettoni >= 1) {
+            gettoni -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - gettoni) / gettoniPerNano);
+    }
+
+    /**
+     * Restituisce un gettone preso da questo bucket (richiesta poi rifiutata da un altro controllo).
+     */
+    synchronized void restituisci() {
+        gettoni = Math.min(burst, gettoni + 1);
+    }
+
+    long getUltimoUso() {
+        return ultimoUso;
+    }
+}
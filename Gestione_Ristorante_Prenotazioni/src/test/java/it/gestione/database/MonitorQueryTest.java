@@ -0,0 +1,54 @@
+package it.gestione.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Impronte di MonitorQuery: liste IN e tuple (x, y) IN ((?, ?), ...) di lunghezza diversa
+ * devono finire sulla stessa impronta, arietà diverse no.
+ */
+public class MonitorQueryTest {
+
+    @Test
+    public void tupleInDiLunghezzaDiversaStessaImpronta() {
+        String una = MonitorQuery.impronta("UPDATE tavolo SET stato = ? WHERE (x, y) IN ((?, ?))");
+        String tre = MonitorQuery.impronta("UPDATE tavolo SET stato = ? WHERE (x, y) IN ((?,?), (?, ?),(?, ?))");
+        String letterali = MonitorQuery.impronta("UPDATE tavolo SET stato = 'LIBERO' WHERE (x, y) IN ((1, 2), (3, 4))");
+
+        assertEquals("UPDATE tavolo SET stato = ? WHERE (x, y) IN ((?, ?)+)", una);
+        assertEquals(una, tre);
+        assertEquals(una, letterali);
+    }
+
+    @Test
+    public void arietaDiversaImprontaDiversa() {
+        String due = MonitorQuery.impronta("SELECT * FROM t WHERE (a, b) IN ((?, ?), (?, ?))");
+        String trePerTupla = MonitorQuery.impronta("SELECT * FROM t WHERE (a, b, c) IN ((?, ?, ?), (?, ?, ?))");
+
+        assertEquals("SELECT * FROM t WHERE (a, b, c) IN ((?, ?, ?)+)", trePerTupla);
+        assertNotEquals(due, trePerTupla);
+    }
+
+    @Test
+    public void listeInSegnapostoEStringhe() {
+        String a = MonitorQuery.impronta("SELECT * FROM t1 WHERE nome IN ('a', 'l''oste') AND id IN ($1, $2, $3)");
+        String b = MonitorQuery.impronta("SELECT  *\n FROM t1 WHERE nome in (?) AND id IN (42)");
+
+        // i nomi con cifre (t1) restano, letterali e $n diventano ?
+        assertEquals("SELECT * FROM t1 WHERE nome IN (?+) AND id IN (?+)", a);
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void sqlNullo() {
+        assertEquals("(SQL sconosciuto)", MonitorQuery.impronta(null));
+    }
+
+    @Test
+    public void nomeDelMetodoDaLambda() {
+        assertEquals("getAllSale", MonitorQuery.metodo("lambda$getAllSale$0"));
+        assertEquals("perOgniRiga", MonitorQuery.metodo("perOgniRiga"));
+    }
+}
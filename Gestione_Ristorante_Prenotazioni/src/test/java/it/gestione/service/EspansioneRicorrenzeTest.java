@@ -0,0 +1,110 @@
+package it.gestione.service;
+
+import it.gestione.entity.RegolaRicorrenza;
+import it.gestione.entity.TipoRicorrenza;
+import it.gestione.entity.WorkingDay;
+import it.gestione.entity.WorkingDayType;
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Espansione delle regole di ricorrenza: quinto giorno della settimana (non in tutti i mesi),
+ * ultimo del mese, 29 febbraio solo negli anni bisestili, limiti dal / al e precedenza.
+ */
+public class EspansioneRicorrenzeTest {
+
+    @Test
+    public void quintoVenerdiSoloNeiMesiCheLoHanno() {
+        Map<LocalDate, WorkingDay> giorni = EspansioneRicorrenze.espandi(List.of(mensile(5, DayOfWeek.FRIDAY)), 2024);
+
+        // l'adjuster sconfinerebbe nel mese dopo: restano solo marzo, maggio, agosto e novembre
+        assertEquals(new TreeSet<>(Arrays.asList(
+                        LocalDate.of(2024, 3, 29), LocalDate.of(2024, 5, 31),
+                        LocalDate.of(2024, 8, 30), LocalDate.of(2024, 11, 29))),
+                new TreeSet<>(giorni.keySet()));
+    }
+
+    @Test
+    public void ultimoLunediDelMese() {
+        Map<LocalDate, WorkingDay> giorni = EspansioneRicorrenze.espandi(List.of(mensile(-1, DayOfWeek.MONDAY)), 2024);
+
+        assertEquals(12, giorni.size());
+        assertTrue(giorni.containsKey(LocalDate.of(2024, 2, 26)));
+        assertTrue(giorni.containsKey(LocalDate.of(2024, 12, 30)));
+    }
+
+    @Test
+    public void ventinoveFebbraioSoloNegliAnniBisestili() {
+        RegolaRicorrenza r = annuale(2, 29);
+        assertNull(EspansioneRicorrenze.valida(r));
+
+        assertEquals(List.of(LocalDate.of(2024, 2, 29)),
+                List.copyOf(EspansioneRicorrenze.espandi(List.of(r), 2024).keySet()));
+        assertTrue(EspansioneRicorrenze.espandi(List.of(r), 2025).isEmpty());
+        assertTrue(EspansioneRicorrenze.espandi(List.of(r), 2100).isEmpty());   // secolare non bisestile
+        assertFalse(EspansioneRicorrenze.espandi(List.of(r), 2000).isEmpty());
+    }
+
+    @Test
+    public void giornoInesistenteNonValido() {
+        assertNotNull(EspansioneRicorrenze.valida(annuale(2, 30)));
+        assertNotNull(EspansioneRicorrenze.valida(annuale(4, 31)));
+        assertNotNull(EspansioneRicorrenze.valida(mensile(6, DayOfWeek.FRIDAY)));
+        assertNotNull(EspansioneRicorrenze.valida(mensile(0, DayOfWeek.FRIDAY)));
+    }
+
+    @Test
+    public void validitaDalAlLimitaLEspansione() {
+        RegolaRicorrenza r = mensile(5, DayOfWeek.FRIDAY);
+        r.setDal(LocalDate.of(2024, 4, 1));
+        r.setAl(LocalDate.of(2024, 8, 30));   // estremo incluso
+
+        assertEquals(new TreeSet<>(Arrays.asList(LocalDate.of(2024, 5, 31), LocalDate.of(2024, 8, 30))),
+                new TreeSet<>(EspansioneRicorrenze.espandi(List.of(r), 2024).keySet()));
+        assertTrue(EspansioneRicorrenze.espandi(List.of(r), 2025).isEmpty());
+    }
+
+    @Test
+    public void vinceLaPrimaRegola() {
+        RegolaRicorrenza chiuso = annuale(12, 25);
+        RegolaRicorrenza aperto = annuale(12, 25);
+        aperto.setG2(true);
+        aperto.setA2(LocalTime.of(19, 0));
+
+        WorkingDay wd = EspansioneRicorrenze.espandi(List.of(chiuso, aperto), 2024).get(LocalDate.of(2024, 12, 25));
+        assertEquals(WorkingDayType.SPECIAL, wd.getType());
+        assertNull(wd.getA2());
+    }
+
+    // ---------- helper ---------- //
+
+    private static RegolaRicorrenza mensile(int posizione, DayOfWeek giorno) {
+        RegolaRicorrenza r = new RegolaRicorrenza();
+        r.setTipo(TipoRicorrenza.MENSILE);
+        r.setPosizione(posizione);
+        r.setGiorniSettimana(EnumSet.of(giorno));
+        return r;
+    }
+
+    private static RegolaRicorrenza annuale(int mese, int giorno) {
+        RegolaRicorrenza r = new RegolaRicorrenza();
+        r.setTipo(TipoRicorrenza.ANNUALE);
+        r.setMese(mese);
+        r.setGiorno(giorno);
+        return r;
+    }
+}
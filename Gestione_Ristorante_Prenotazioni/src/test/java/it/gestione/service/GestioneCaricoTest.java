@@ -0,0 +1,153 @@
+package it.gestione.service;
+
+import it.gestione.entity.CaricoTurno;
+import it.gestione.entity.FasciaCarico;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.Turno;
+import it.gestione.entity.WorkingDay;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Curva di carico (sweep-line a fasce di 15 minuti) e controllo di capienza,
+ * anche per permanenze che passano la mezzanotte. Nessun database: working day
+ * assente (cena dalle 17) e capienza fissa.
+ */
+public class GestioneCaricoTest {
+
+    private static final LocalDate DATA = LocalDate.of(2030, 3, 15);
+    private static final int PERMANENZA_CENA = 120;
+
+    private final GestioneCarico gestioneCarico = new GestioneCarico(null, salaConCapienza(6), senzaWorkingDay());
+
+    @Test
+    public void curvaSommaLePrenotazioniSovrapposte() {
+        CaricoTurno carico = gestioneCarico.costruisciCurva(DATA, Turno.CENA, Arrays.asList(
+                new Prenotazione("a", 4, DATA, LocalTime.of(20, 0), null),
+                new Prenotazione("b", 2, DATA, LocalTime.of(20, 30), null)), 60, 8);
+
+        assertFasce(carico, LocalTime.of(20, 0), 4, 4, 6, 6, 2, 2);
+        assertEquals(6, carico.getPiccoCoperti());
+        assertEquals(0.75, carico.getUtilizzoPicco(), 1e-9);
+    }
+
+    @Test
+    public void orarioNonAllineatoOccupaLeFasceToccate() {
+        // 20:10-21:10: dalla fascia 20:00 alla 21:00 compresa
+        CaricoTurno carico = gestioneCarico.costruisciCurva(DATA, Turno.CENA, List.of(
+                new Prenotazione("a", 3, DATA, LocalTime.of(20, 10), null)), 60, 0);
+
+        assertFasce(carico, LocalTime.of(20, 0), 3, 3, 3, 3, 3);
+        assertEquals(0.0, carico.getUtilizzoPicco(), 0.0);
+    }
+
+    @Test
+    public void permanenzaOltreMezzanotte() {
+        CaricoTurno carico = gestioneCarico.costruisciCurva(DATA, Turno.CENA, Arrays.asList(
+                new Prenotazione("a", 4, DATA, LocalTime.of(23, 30), null),
+                new Prenotazione("b", 2, DATA, LocalTime.of(22, 0), null)), 90, 0);
+
+        // 22:00-23:30 per b, 23:30-01:00 per a: le fasce dopo mezzanotte ripartono da 00:00
+        assertFasce(carico, LocalTime.of(22, 0), 2, 2, 2, 2, 2, 2, 4, 4, 4, 4, 4, 4);
+        assertEquals(LocalTime.of(0, 45), carico.getFasce().get(11).getInizio());
+    }
+
+    @Test
+    public void prenotazioniSenzaOrarioOPersoneIgnorate() {
+        CaricoTurno carico = gestioneCarico.costruisciCurva(DATA, Turno.CENA, Arrays.asList(
+                new Prenotazione("a", 2, DATA, null, null),
+                new Prenotazione("b", 0, DATA, LocalTime.of(20, 0), null)), 60, 8);
+
+        assertTrue(carico.getFasce().isEmpty());
+        assertEquals(0, carico.getPiccoCoperti());
+    }
+
+    @Test
+    public void controlloTrovaLaPrimaFasciaOltreCapienza() {
+        GestioneCarico.ControlloCapienza controllo = gestioneCarico.preparaControllo(
+                new Prenotazione("nuova", 4, DATA, LocalTime.of(21, 0), null), true);
+
+        assertEquals(Turno.CENA, controllo.getTurno());
+        assertFalse(controllo.consenti(List.of(
+                new Prenotazione("a", 3, DATA, LocalTime.of(19, 30), null),      // fino alle 21:30
+                new Prenotazione("pranzo", 50, DATA, LocalTime.of(12, 30), null)))); // altro turno
+
+        assertEquals(LocalTime.of(21, 0), controllo.getOltreCapienza().getInizio());
+        assertEquals(7, controllo.getOltreCapienza().getCoperti());
+    }
+
+    @Test
+    public void controlloOltreMezzanotte() {
+        // a: 22:00-00:00, nuova: 23:45-01:45 -> sovrapposte solo nella fascia 23:45
+        Prenotazione a = new Prenotazione("a", 3, DATA, LocalTime.of(22, 0), null);
+
+        GestioneCarico.ControlloCapienza controllo = gestioneCarico.preparaControllo(
+                new Prenotazione("nuova", 4, DATA, LocalTime.of(23, 45), null), true);
+        assertFalse(controllo.consenti(List.of(a)));
+        assertEquals(LocalTime.of(23, 45), controllo.getOltreCapienza().getInizio());
+
+        // con 3 persone si sta nei 6 posti, anche nelle fasce dopo mezzanotte
+        controllo = gestioneCarico.preparaControllo(
+                new Prenotazione("nuova", 3, DATA, LocalTime.of(23, 45), null), true);
+        assertTrue(controllo.consenti(List.of(a)));
+        assertNull(controllo.getOltreCapienza());
+    }
+
+    @Test
+    public void sovraccaricoFuoriDalleFasceDellaNuovaNonConta() {
+        // 19:00-21:00 già oltre capienza, la nuova arriva alle 21:00
+        GestioneCarico.ControlloCapienza controllo = gestioneCarico.preparaControllo(
+                new Prenotazione("nuova", 2, DATA, LocalTime.of(21, 0), null), true);
+
+        assertTrue(controllo.consenti(List.of(new Prenotazione("a", 10, DATA, LocalTime.of(19, 0), null))));
+        assertNull(controllo.getOltreCapienza());
+    }
+
+    @Test
+    public void senzaRifiutoSegnalaMaConsente() {
+        GestioneCarico.ControlloCapienza controllo = gestioneCarico.preparaControllo(
+                new Prenotazione("nuova", 8, DATA, LocalTime.of(20, 0), null), false);
+
+        assertTrue(controllo.consenti(new ArrayList<>()));
+        assertEquals(LocalTime.of(20, 0), controllo.getOltreCapienza().getInizio());
+    }
+
+    // ---------- helper ---------- //
+
+    private static void assertFasce(CaricoTurno carico, LocalTime prima, int... coperti) {
+        List<FasciaCarico> fasce = carico.getFasce();
+        assertEquals("numero di fasce", coperti.length, fasce.size());
+        for (int i = 0; i < coperti.length; i++) {
+            assertEquals(prima.plusMinutes((long) i * GestioneCarico.MINUTI_FASCIA), fasce.get(i).getInizio());
+            assertEquals("coperti fascia " + fasce.get(i).getInizio(), coperti[i], fasce.get(i).getCoperti());
+        }
+    }
+
+    private static GestioneSala salaConCapienza(int posti) {
+        return new GestioneSala(null, null, null, null, null) {
+            @Override
+            public int calcolaPostiTotali(LocalDate data, Turno turno) {
+                return posti;
+            }
+        };
+    }
+
+    private static GestioneWorkingDay senzaWorkingDay() {
+        return new GestioneWorkingDay(null, null, 90, PERMANENZA_CENA) {
+            @Override
+            public WorkingDay getWorkingDayPerData(LocalDate data) {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package it.gestione.service;
+
+import it.gestione.entity.TipoZona;
+import it.gestione.entity.ZonaSala;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Raster delle zone: bordi esclusivi, coordinate negative, zone non vivibili,
+ * confronto cella per cella con la definizione e ripiego sulla scansione oltre MAX_CELLE.
+ */
+public class MappaZoneTest {
+
+    @Test
+    public void salaSenzaZoneNonHaVincoli() {
+        assertTrue(new MappaZone(null).isPosizioneValida(-1000, 1000));
+        assertTrue(new MappaZone(new ArrayList<>()).isPosizioneValida(0, 0));
+    }
+
+    @Test
+    public void bordiDelRettangolo() {
+        MappaZone mappa = new MappaZone(List.of(new ZonaSala(0, 0, TipoZona.SPAZIO_VIVIBILE, 5, 4)));
+
+        assertTrue(mappa.isPosizioneValida(0, 0));
+        assertTrue(mappa.isPosizioneValida(4, 3));
+        assertFalse(mappa.isPosizioneValida(5, 3));   // x + base escluso
+        assertFalse(mappa.isPosizioneValida(4, 4));   // y + altezza escluso
+        assertFalse(mappa.isPosizioneValida(-1, 0));
+        assertFalse(mappa.isPosizioneValida(0, -1));
+    }
+
+    @Test
+    public void coordinateNegativeEBuchi() {
+        MappaZone mappa = new MappaZone(Arrays.asList(
+                new ZonaSala(-3, -2, TipoZona.SPAZIO_VIVIBILE, 2, 2),
+                new ZonaSala(2, 1, TipoZona.SPAZIO_VIVIBILE, 3, 1),
+                new ZonaSala(3, 1, TipoZona.SPAZIO_NON_VIVIBILE, 1, 1)));
+
+        assertTrue(mappa.isPosizioneValida(-3, -2));
+        assertTrue(mappa.isPosizioneValida(-2, -1));
+        assertFalse(mappa.isPosizioneValida(-1, -2));
+        assertFalse(mappa.isPosizioneValida(0, 0));    // dentro il rettangolo, fuori dalle zone
+        assertTrue(mappa.isPosizioneValida(2, 1));
+        assertFalse(mappa.isPosizioneValida(3, 1));    // la non vivibile prevale
+        assertTrue(mappa.isPosizioneValida(4, 1));
+    }
+
+    @Test
+    public void stessoRisultatoDellaDefinizione() {
+        Random random = new Random(42);
+        for (int prova = 0; prova < 50; prova++) {
+            List<ZonaSala> zone = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                zone.add(new ZonaSala(random.nextInt(40) - 20, random.nextInt(40) - 20,
+                        random.nextInt(3) == 0 ? TipoZona.SPAZIO_NON_VIVIBILE : TipoZona.SPAZIO_VIVIBILE,
+                        1 + random.nextInt(15), 1 + random.nextInt(15)));
+            }
+
+            MappaZone mappa = new MappaZone(zone);
+            for (int y = -22; y < 37; y++) {
+                for (int x = -22; x < 37; x++) {
+                    assertEquals("(" + x + ", " + y + ") zone " + prova, valida(zone, x, y), mappa.isPosizioneValida(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void oltreMaxCelleSiScandisconoLeZone() {
+        // 3000 x 3000 = 9M celle: nessuna raster, stessa risposta
+        MappaZone mappa = new MappaZone(Arrays.asList(
+                new ZonaSala(0, 0, TipoZona.SPAZIO_VIVIBILE, 3000, 3000),
+                new ZonaSala(10, 10, TipoZona.SPAZIO_NON_VIVIBILE, 5, 5)));
+
+        assertTrue(mappa.isPosizioneValida(2999, 2999));
+        assertFalse(mappa.isPosizioneValida(3000, 0));
+        assertFalse(mappa.isPosizioneValida(12, 12));
+        assertTrue(mappa.isPosizioneValida(15, 15));
+    }
+
+    // definizione: coperta da almeno una vivibile e da nessuna non vivibile
+    private static boolean valida(List<ZonaSala> zone, int x, int y) {
+        boolean vivibile = false;
+        for (ZonaSala z : zone) {
+            if (x >= z.getX() && x < z.getX() + z.getBase() && y >= z.getY() && y < z.getY() + z.getAltezza()) {
+                if (z.getTipo() == TipoZona.SPAZIO_NON_VIVIBILE) {
+                    return false;
+                }
+                vivibile = true;
+            }
+        }
+        return vivibile;
+    }
+}
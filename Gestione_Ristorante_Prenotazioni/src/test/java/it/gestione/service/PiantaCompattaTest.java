@@ -0,0 +1,171 @@
+package it.gestione.service;
+
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.Tavolo;
+import it.gestione.entity.TipoZona;
+import it.gestione.entity.ZonaSala;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Formato application/x-floorplan: byte esatti di una pianta nota, andata e ritorno con il
+ * decoder Java e con lo stesso ciclo dei decoder TypeScript (front_next/src/lib/floorplan.ts,
+ * risto-gestionale/src/features/tables/floorPlanCodec.ts), rettangolo e ripiego sul JSON.
+ */
+public class PiantaCompattaTest {
+
+    // (-1,0) LIBERO, (2,0) RISERVATO, (0,1) OCCUPATO: rettangolo 4 x 2 da (-1, 0)
+    private static final List<Tavolo> TAVOLI = Arrays.asList(
+            new Tavolo(-1, 0, StatoTavolo.LIBERO),
+            new Tavolo(2, 0, StatoTavolo.RISERVATO),
+            new Tavolo(0, 1, StatoTavolo.OCCUPATO));
+
+    private static final byte[] ATTESO = {
+            'F', 'P', 1, PiantaCompatta.TIPO_TAVOLI,
+            -1, -1, -1, -1,          // minX = -1
+            0, 0, 0, 0,              // minY = 0
+            0, 0, 0, 4,              // larghezza
+            0, 0, 0, 2,              // altezza
+            0b01_00_00_10,           // riga 0: LIBERO, -, -, RISERVATO
+            0b00_11_00_00            // riga 1: -, OCCUPATO, -, -
+    };
+
+    @Test
+    public void byteDiUnaPiantaNota() {
+        assertArrayEquals(ATTESO, PiantaCompatta.codificaTavoli(TAVOLI));
+    }
+
+    @Test
+    public void andataERitorno() {
+        assertEquals(descrivi(TAVOLI), descrivi(PiantaCompatta.decodificaTavoli(ATTESO)));
+    }
+
+    @Test
+    public void stessoRisultatoDelDecoderTypeScript() {
+        List<Tavolo> tavoli = new ArrayList<>();
+        StatoTavolo[] stati = StatoTavolo.values();
+        for (int i = 0; i < 300; i++) {
+            tavoli.add(new Tavolo(i % 37 - 5, i / 37 * 3 - 2, stati[i % 3]));
+        }
+
+        byte[] dati = PiantaCompatta.codificaTavoli(tavoli);
+        assertNotNull(dati);
+        assertEquals(descrivi(tavoli), decodificaComeTypeScript(dati));
+    }
+
+    @Test
+    public void piantaVuota() {
+        byte[] dati = PiantaCompatta.codificaTavoli(new ArrayList<>());
+
+        assertEquals(20, dati.length);
+        ByteBuffer buf = ByteBuffer.wrap(dati, 12, 8);
+        assertEquals(0, buf.getInt());
+        assertEquals(0, buf.getInt());
+        assertEquals(0, PiantaCompatta.decodificaTavoli(dati).size());
+    }
+
+    @Test
+    public void zoneNonVivibiliPrevalgonoERettangoloEsclusivo() {
+        byte[] dati = PiantaCompatta.codificaZone(Arrays.asList(
+                new ZonaSala(2, 3, TipoZona.SPAZIO_VIVIBILE, 3, 2),       // [2,5) x [3,5)
+                new ZonaSala(3, 3, TipoZona.SPAZIO_NON_VIVIBILE, 1, 1),
+                new ZonaSala(9, 9, TipoZona.SPAZIO_VIVIBILE, 0, 4)));     // vuota: ignorata
+
+        ByteBuffer buf = ByteBuffer.wrap(dati);
+        assertEquals(PiantaCompatta.TIPO_ZONE, buf.get(3));
+        assertEquals(2, buf.getInt(4));
+        assertEquals(3, buf.getInt(8));
+        assertEquals(3, buf.getInt(12));
+        assertEquals(2, buf.getInt(16));
+        assertEquals(20 + 2, dati.length);   // 6 celle in 2 byte
+
+        // riga 3: 1 2 1, riga 4: 1 1 1
+        int[] attesi = {1, 2, 1, 1, 1, 1};
+        for (int i = 0; i < attesi.length; i++) {
+            assertEquals("cella " + i, attesi[i], cella(dati, i));
+        }
+    }
+
+    @Test
+    public void rasterPiuPesanteDelJsonNonConviene() {
+        // due tavoli lontani: 100k x 100k celle contro un JSON di poche decine di byte
+        assertNull(PiantaCompatta.codificaTavoli(Arrays.asList(
+                new Tavolo(0, 0, StatoTavolo.LIBERO), new Tavolo(100_000, 100_000, StatoTavolo.LIBERO))));
+
+        // 300 x 300 = 90k celle (oltre la soglia fissa): conviene solo con abbastanza tavoli
+        List<Tavolo> pochi = Arrays.asList(new Tavolo(0, 0, StatoTavolo.LIBERO), new Tavolo(299, 299, StatoTavolo.LIBERO));
+        assertNull(PiantaCompatta.codificaTavoli(pochi));
+
+        List<Tavolo> tanti = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tanti.add(new Tavolo(i % 300, i / 300 * 99, StatoTavolo.LIBERO));
+        }
+        tanti.add(new Tavolo(299, 299, StatoTavolo.LIBERO));
+        assertNotNull(PiantaCompatta.codificaTavoli(tanti));
+
+        // zona grande: una sola riga di JSON
+        assertNull(PiantaCompatta.codificaZone(List.of(new ZonaSala(0, 0, TipoZona.SPAZIO_VIVIBILE, 1000, 1000))));
+    }
+
+    @Test
+    public void coordinateEstremeSenzaOverflow() {
+        assertNull(PiantaCompatta.codificaTavoli(Arrays.asList(
+                new Tavolo(Integer.MIN_VALUE, Integer.MIN_VALUE, StatoTavolo.LIBERO),
+                new Tavolo(Integer.MAX_VALUE, Integer.MAX_VALUE, StatoTavolo.LIBERO))));
+        assertNull(PiantaCompatta.codificaZone(List.of(
+                new ZonaSala(Integer.MIN_VALUE, 0, TipoZona.SPAZIO_VIVIBILE, Integer.MAX_VALUE, 2),
+                new ZonaSala(Integer.MAX_VALUE, 0, TipoZona.SPAZIO_VIVIBILE, 1, 2))));
+    }
+
+    @Test
+    public void sogliaFissa() {
+        assertEquals(true, PiantaCompatta.conviene(256, 256, 0));
+        assertEquals(false, PiantaCompatta.conviene(257, 256, 0));
+        assertEquals(true, PiantaCompatta.conviene(257, 256, 20 + 16_449));
+    }
+
+    // ---------- helper ---------- //
+
+    // stesso ciclo di decodeTavoli / decodeFloorPlan lato TypeScript (DataView big-endian, Uint8Array)
+    private static List<String> decodificaComeTypeScript(byte[] buf) {
+        ByteBuffer view = ByteBuffer.wrap(buf);
+        int minX = view.getInt(4);
+        int minY = view.getInt(8);
+        int larghezza = view.getInt(12);
+        int altezza = view.getInt(16);
+        String[] stati = {"LIBERO", "RISERVATO", "OCCUPATO"};
+
+        List<String> tavoli = new ArrayList<>();
+        for (int i = 0; i < larghezza * altezza; i++) {
+            int c = ((buf[20 + (i >> 2)] & 0xFF) >> (6 - 2 * (i & 3))) & 3;
+            if (c != 0) {
+                tavoli.add((minX + (i % larghezza)) + ";" + (minY + Math.floorDiv(i, larghezza)) + ";" + stati[c - 1]);
+            }
+        }
+        return tavoli;
+    }
+
+    // ordine y poi x, come TavoloDAO.getTavoli e come il decoder
+    private static List<String> descrivi(List<Tavolo> tavoli) {
+        List<Tavolo> ordinati = new ArrayList<>(tavoli);
+        ordinati.sort((a, b) -> (a.getY() != b.getY()) ? Integer.compare(a.getY(), b.getY()) : Integer.compare(a.getX(), b.getX()));
+        List<String> righe = new ArrayList<>();
+        for (Tavolo t : ordinati) {
+            righe.add(t.getX() + ";" + t.getY() + ";" + t.getStato());
+        }
+        return righe;
+    }
+
+    private static int cella(byte[] dati, int i) {
+        return (dati[20 + (i >>> 2)] >> (6 - 2 * (i & 3))) & 3;
+    }
+}
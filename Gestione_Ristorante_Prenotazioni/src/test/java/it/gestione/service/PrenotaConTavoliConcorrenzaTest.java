@@ -0,0 +1,179 @@
+package it.gestione.service;
+
+import it.gestione.database.AssegnazioneTavoloDAO;
+import it.gestione.database.ClassePool;
+import it.gestione.database.ConfigurazioneSalaDAO;
+import it.gestione.database.DBConnectionManager;
+import it.gestione.database.PrenotazioneDAO;
+import it.gestione.database.RegolaRicorrenzaDAO;
+import it.gestione.database.SalaDAO;
+import it.gestione.database.TavoloDAO;
+import it.gestione.database.WorkingDayDAO;
+import it.gestione.database.ZonaSalaDAO;
+import it.gestione.entity.AssegnazioneTavoli;
+import it.gestione.entity.EsitoPrenotazioneTavoli;
+import it.gestione.entity.Prenotazione;
+import it.gestione.entity.Sala;
+import it.gestione.entity.StatoTavolo;
+import it.gestione.entity.Tavolo;
+import it.gestione.entity.Turno;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Garanzia di prenotaConTavoli sotto contesa: nessun tavolo dato a due prenotazioni,
+ * ogni prenotazione inserita ha i suoi tavoli, nessun gruppo libero resta inutilizzato.
+ *
+ * Serve un PostgreSQL con lo schema dell'applicazione (variabili DB_* come l'applicazione):
+ * senza database il test viene saltato. La versione con i tempi è il benchmark ContesaPrenotazioni.
+ */
+public class PrenotaConTavoliConcorrenzaTest {
+
+    private static final LocalDate DATA = LocalDate.of(2099, 1, 2);
+    private static final Turno TURNO = Turno.CENA;
+    private static final LocalTime ORARIO = LocalTime.of(20, 0);   // senza WorkingDay: dopo le 17 è CENA
+
+    private static final int PRENOTAZIONI = 200;
+    private static final int GRUPPI = 60;
+    private static final int THREAD = 48;
+
+    private final ZonaSalaDAO zonaSalaDAO = new ZonaSalaDAO();
+    private final SalaDAO salaDAO = new SalaDAO(zonaSalaDAO);
+    private final PrenotazioneDAO prenotazioneDAO = new PrenotazioneDAO();
+    private final AssegnazioneTavoloDAO assegnazioneDAO = new AssegnazioneTavoloDAO();
+
+    private GestioneEventiTavoli eventi;
+    private GestioneSala gestioneSala;
+    private GestioneWorkingDay gestioneWorkingDay;
+    private GestioneAssegnazioneTavoli gestione;
+
+    private String prefisso;
+    private Sala sala;
+
+    @BeforeClass
+    public static void database() {
+        Assume.assumeTrue("DB_HOST non impostato: test saltato", System.getenv("DB_HOST") != null);
+        try {
+            DBConnectionManager.sonda(ClassePool.SCRITTURA, 5);
+        } catch (SQLException e) {
+            Assume.assumeNoException("database non raggiungibile: test saltato", e);
+        }
+    }
+
+    @Before
+    public void preparaSala() {
+        eventi = new GestioneEventiTavoli(16, 1, false);
+        gestioneSala = new GestioneSala(new ConfigurazioneSalaDAO(), new TavoloDAO(), salaDAO, zonaSalaDAO, eventi);
+        gestioneWorkingDay = new GestioneWorkingDay(new WorkingDayDAO(), new RegolaRicorrenzaDAO(), 90, 120);
+        gestione = new GestioneAssegnazioneTavoli(assegnazioneDAO, prenotazioneDAO, gestioneSala, gestioneWorkingDay,
+                new GestioneCarico(prenotazioneDAO, gestioneSala, gestioneWorkingDay), false);
+
+        prefisso = "test-contesa-" + System.currentTimeMillis();
+        sala = new Sala(prefisso);
+        assertEquals(1, salaDAO.aggiungiSala(sala));
+        assertEquals(1, gestioneSala.aggiungiConfigurazione(DATA, TURNO, sala));
+
+        // gruppi da 2 tavoli affiancati (6 posti), separati da una colonna e una riga vuote
+        List<Tavolo> tavoli = new ArrayList<>();
+        for (int g = 0; g < GRUPPI; g++) {
+            int x = (g % 20) * 3;
+            int y = (g / 20) * 2;
+            tavoli.add(new Tavolo(x, y, StatoTavolo.LIBERO));
+            tavoli.add(new Tavolo(x + 1, y, StatoTavolo.LIBERO));
+        }
+        assertEquals(tavoli.size(), gestioneSala.aggiungiTavoli(DATA, TURNO, sala, tavoli));
+    }
+
+    @After
+    public void pulisci() {
+        salaDAO.eliminaSala(sala.getNome());   // cascade su configurazione, tavoli e assegnazioni
+        for (int i = 0; i < PRENOTAZIONI; i++) {
+            prenotazioneDAO.eliminaPrenotazione(DATA, prefisso + "-" + i);
+        }
+        eventi.chiudi();
+    }
+
+    @Test
+    public void nessunTavoloAssegnatoDueVolte() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREAD);
+        CountDownLatch via = new CountDownLatch(1);
+        ConcurrentLinkedQueue<EsitoPrenotazioneTavoli> esiti = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < PRENOTAZIONI; i++) {
+            String nome = prefisso + "-" + i;
+            int persone = 2 + i % 5;   // 2-6: ogni prenotazione sta in un gruppo
+            pool.execute(() -> {
+                try {
+                    via.await();
+                    esiti.add(gestione.prenotaConTavoli(new Prenotazione(nome, persone, DATA, ORARIO, null), sala.getNome()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        via.countDown();
+        pool.shutdown();
+        assertTrue("prenotazioni non terminate in tempo", pool.awaitTermination(2, TimeUnit.MINUTES));
+
+        // --- lato client --- //
+        int riuscite = 0;
+        Set<String> tavoliPresi = new HashSet<>();
+        for (EsitoPrenotazioneTavoli e : esiti) {
+            // 2 = riuscita oltre capienza: non dovrebbe capitare (ogni riuscita occupa un gruppo suo), ma resta un successo
+            assertTrue("esito inatteso " + e.getEsito(), e.getEsito() == 1 || e.getEsito() == 2 || e.getEsito() == -3);
+            if (e.getEsito() > 0) {
+                riuscite++;
+                for (Tavolo t : e.getAssegnazione().getTavoli()) {
+                    assertTrue("tavolo assegnato due volte: " + t.getX() + ";" + t.getY(),
+                            tavoliPresi.add(t.getX() + ";" + t.getY()));
+                }
+            }
+        }
+        assertEquals(PRENOTAZIONI, esiti.size());
+        assertEquals("ogni gruppo libero deve essere usato", Math.min(PRENOTAZIONI, GRUPPI), riuscite);
+
+        // --- lato DB --- //
+        int riservati = 0;
+        for (Tavolo t : gestioneSala.getTavoli(DATA, TURNO, sala)) {
+            if (t.getStato() == StatoTavolo.RISERVATO) {
+                riservati++;
+            }
+        }
+        assertEquals(tavoliPresi.size(), riservati);
+
+        int conTavoli = 0;
+        for (AssegnazioneTavoli a : assegnazioneDAO.getAssegnazioni(DATA, TURNO)) {
+            if (sala.getNome().equals(a.getNomeSala())) {
+                conTavoli++;
+            }
+        }
+        assertEquals("ogni prenotazione riuscita ha la sua assegnazione", riuscite, conTavoli);
+
+        int inserite = 0;
+        for (Prenotazione p : prenotazioneDAO.getPrenotazioniByData(DATA)) {
+            if (p.getNome().startsWith(prefisso + "-")) {
+                inserite++;
+            }
+        }
+        assertEquals("le prenotazioni senza posto non devono essere inserite", riuscite, inserite);
+    }
+}
@@ -1,8 +1,14 @@
 "use client";
 
 import { useEffect, useMemo, useState } from "react";
-import { api } from "@/lib/api-client";
-import type { Sala, Tavolo, Turno, StatoTavolo } from "@/lib/types";
+import { api, API_BASE_URL } from "@/lib/api-client";
+import type {
+  EventoTavolo,
+  Sala,
+  Tavolo,
+  Turno,
+  StatoTavolo,
+} from "@/lib/types";
 
 const TURNI: Turno[] = ["PRANZO", "CENA"];
 
@@ -13,6 +19,20 @@ function nextStato(stato: StatoTavolo): StatoTavolo {
   return "LIBERO";
 }
 
+// 🔹 applica un evento SSE alla lista (gli eventi sono stati assoluti: riapplicarli è innocuo)
+function applicaEvento(tavoli: Tavolo[], ev: EventoTavolo): Tavolo[] {
+  const altri = tavoli.filter((t) => !(t.x === ev.x && t.y === ev.y));
+  switch (ev.tipo) {
+    case "RESET":
+      return [];
+    case "ELIMINATO":
+      return altri;
+    case "INSERITO":
+    case "STATO":
+      return [...altri, { x: ev.x, y: ev.y, stato: ev.stato! }];
+  }
+}
+
 // 🔹 crea sala + configurazione + primo tavolo usando SOLO API esistenti
 async function creaSetupDemo(date: string, turno: Turno): Promise<string> {
   const nomeSala = "Sala Principale";
@@ -76,25 +96,35 @@ export default function TavoliPage() {
     // eslint-disable-next-line react-hooks/exhaustive-deps
   }, []);
 
-  // 🔹 carica tavoli quando cambiano sala/data/turno
+  // 🔹 tavoli in tempo reale (SSE) quando cambiano sala/data/turno:
+  //    "snapshot" all'apertura (e a ogni riconnessione), poi solo le variazioni
   useEffect(() => {
     if (!selectedSala) return;
 
     setLoadingTavoli(true);
-    api
-      .get<Tavolo[]>(
-        `/sala/tavoli/${encodeURIComponent(selectedSala)}/${date}/${turno}`
-      )
-      .then((data) => {
-        setTavoli(data);
-        setError(null);
-      })
-      .catch((err: any) => {
-        console.error(err);
-        setError(err.message ?? "Errore nel caricamento dei tavoli");
-        setTavoli([]);
-      })
-      .finally(() => setLoadingTavoli(false));
+    const source = new EventSource(
+      `${API_BASE_URL}/sala/tavoli/${encodeURIComponent(
+        selectedSala
+      )}/${date}/${turno}/eventi`
+    );
+
+    source.addEventListener("snapshot", (e) => {
+      setTavoli(JSON.parse((e as MessageEvent).data) as Tavolo[]);
+      setError(null);
+      setLoadingTavoli(false);
+    });
+
+    source.addEventListener("tavolo", (e) => {
+      const ev = JSON.parse((e as MessageEvent).data) as EventoTavolo;
+      setTavoli((prev) => applicaEvento(prev, ev));
+    });
+
+    source.onerror = () => {
+      // EventSource si riconnette da solo e riceve un nuovo snapshot
+      setLoadingTavoli(false);
+    };
+
+    return () => source.close();
   }, [selectedSala, date, turno]);
 
   // 🔹 mappa rapida per trovare tavolo da (x,y)
@@ -130,11 +160,7 @@ export default function TavoliPage() {
           stato: "LIBERO",
         }
       );
-      // ricarica tavoli
-      const data = await api.get<Tavolo[]>(
-        `/sala/tavoli/${encodeURIComponent(selectedSala)}/${date}/${turno}`
-      );
-      setTavoli(data);
+      // il nuovo tavolo arriva dallo stream SSE (evento INSERITO)
     } catch (err: any) {
       console.error(err);
       setError(err.message ?? "Errore nella creazione del tavolo");
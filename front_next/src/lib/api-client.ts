@@ -5,13 +5,21 @@ async function request<T>(
   path: string,
   options: RequestInit = {}
 ): Promise<T> {
-  const res = await fetch(`${API_BASE_URL}${path}`, {
-    ...options,
-    headers: {
-      "Content-Type": "application/json",
-      ...(options.headers || {}),
-    },
-  });
+  const headers: Record<string, string> = {
+    "Content-Type": "application/json",
+    ...((options.headers as Record<string, string>) || {}),
+  };
+  const init: RequestInit = { ...options, headers };
+
+  let res: Response;
+  try {
+    res = await fetch(`${API_BASE_URL}${path}`, init);
+  } catch (err) {
+    // errore di rete: si riprova una volta solo le scritture con Idempotency-Key
+    // (il backend non le riesegue se la prima era arrivata)
+    if (!headers["Idempotency-Key"]) throw err;
+    res = await fetch(`${API_BASE_URL}${path}`, init);
+  }
 
   if (!res.ok) {
     const text = await res.text();
@@ -21,18 +29,23 @@ async function request<T>(
   return res.json() as Promise<T>;
 }
 
+// una chiave per operazione: i retry della stessa chiamata la riusano
+const idempotencyKey = () => ({ "Idempotency-Key": crypto.randomUUID() });
+
 export const api = {
   get: <T>(path: string) => request<T>(path),
   post: <T>(path: string, body?: unknown) =>
     request<T>(path, {
       method: "POST",
+      headers: idempotencyKey(),
       body: body ? JSON.stringify(body) : undefined,
     }),
   delete: <T>(path: string) =>
-    request<T>(path, { method: "DELETE" }),
+    request<T>(path, { method: "DELETE", headers: idempotencyKey() }),
   patch: <T>(path: string, body?: unknown) =>
     request<T>(path, {
       method: "PATCH",
+      headers: idempotencyKey(),
       body: body ? JSON.stringify(body) : undefined,
     }),
 };
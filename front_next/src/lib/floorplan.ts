@@ -0,0 +1,95 @@
+import { API_BASE_URL } from "@/lib/api-client";
+import type { StatoTavolo, Tavolo, Turno } from "@/lib/types";
+
+// Formato binario "application/x-floorplan" servito da
+// GET /sala/tavoli/{nomeSala}/{date}/{turno} e GET /sala/{nomeSala}
+// (specifica completa in PiantaCompatta.java lato backend).
+//
+//  0-1   magic "FP"          2      versione (1)
+//  3     tipo (1 tavoli, 2 zone)
+//  4-19  minX, minY, larghezza, altezza (int32 big-endian)
+//  20-   celle riga per riga, 2 bit per cella, prima cella nei bit alti
+export const FLOORPLAN_MEDIA_TYPE = "application/x-floorplan";
+
+const HEADER = 20;
+const STATI: StatoTavolo[] = ["LIBERO", "RISERVATO", "OCCUPATO"];
+
+export interface FloorPlanGrid {
+  tipo: "TAVOLI" | "ZONE";
+  minX: number;
+  minY: number;
+  larghezza: number;
+  altezza: number;
+  // codice 0-3 della cella (x, y); 0 fuori dal rettangolo
+  cella: (x: number, y: number) => number;
+}
+
+export function decodeFloorPlan(buf: ArrayBuffer): FloorPlanGrid {
+  const view = new DataView(buf);
+  if (
+    view.getUint8(0) !== 0x46 || // 'F'
+    view.getUint8(1) !== 0x50 || // 'P'
+    view.getUint8(2) !== 1
+  ) {
+    throw new Error("Formato pianta non valido");
+  }
+
+  const tipo = view.getUint8(3) === 1 ? "TAVOLI" : "ZONE";
+  const minX = view.getInt32(4);
+  const minY = view.getInt32(8);
+  const larghezza = view.getInt32(12);
+  const altezza = view.getInt32(16);
+  const celle = new Uint8Array(buf, HEADER);
+
+  const cella = (x: number, y: number) => {
+    const c = x - minX;
+    const r = y - minY;
+    if (c < 0 || r < 0 || c >= larghezza || r >= altezza) return 0;
+    const i = r * larghezza + c;
+    return (celle[i >> 2] >> (6 - 2 * (i & 3))) & 3;
+  };
+
+  return { tipo, minX, minY, larghezza, altezza, cella };
+}
+
+// Stessa lista (e stesso ordine y, x) del JSON di getTavoli
+export function decodeTavoli(buf: ArrayBuffer): Tavolo[] {
+  const { minX, minY, larghezza, altezza } = decodeFloorPlan(buf);
+  const celle = new Uint8Array(buf, HEADER);
+  const tavoli: Tavolo[] = [];
+
+  for (let i = 0; i < larghezza * altezza; i++) {
+    const c = (celle[i >> 2] >> (6 - 2 * (i & 3))) & 3;
+    if (c !== 0) {
+      tavoli.push({
+        x: minX + (i % larghezza),
+        y: minY + Math.floor(i / larghezza),
+        stato: STATI[c - 1],
+      });
+    }
+  }
+
+  return tavoli;
+}
+
+export async function fetchTavoliCompatti(
+  nomeSala: string,
+  date: string,
+  turno: Turno
+): Promise<Tavolo[]> {
+  const res = await fetch(
+    `${API_BASE_URL}/sala/tavoli/${encodeURIComponent(nomeSala)}/${date}/${turno}`,
+    { headers: { Accept: `${FLOORPLAN_MEDIA_TYPE}, application/json;q=0.5` } }
+  );
+
+  if (!res.ok) {
+    const text = await res.text();
+    throw new Error(`API ${res.status} ${res.statusText}: ${text}`);
+  }
+
+  // piante molto estese: il backend risponde con la stessa lista in JSON
+  if (res.headers.get("Content-Type")?.includes("json")) {
+    return (await res.json()) as Tavolo[];
+  }
+  return decodeTavoli(await res.arrayBuffer());
+}
@@ -25,6 +25,21 @@ export interface Tavolo {
   // se nel JSON arrivano altri campi (idConfigurazione ecc.), li aggiungiamo dopo
 }
 
+// evento dello stream SSE /sala/tavoli/{nomeSala}/{data}/{turno}/eventi
+export interface EventoTavolo {
+  tipo: "INSERITO" | "ELIMINATO" | "STATO" | "RESET";
+  x: number;
+  y: number;
+  stato: StatoTavolo | null;
+  versione: number;
+}
+
+export interface DeltaModifiche<T> {
+  versione: number;
+  resyncRichiesto: boolean;
+  modifiche: T[];
+}
+
 export interface ConfigurazioneSala {
   id?: number;
   data: string; // ISO date (yyyy-mm-dd)
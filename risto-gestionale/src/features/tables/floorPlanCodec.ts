@@ -0,0 +1,104 @@
+// src/features/tables/floorPlanCodec.ts
+import type { FloorPlan, TableStatus, TableTile } from '@/types/tables';
+
+// Formato binario "application/x-floorplan" del backend
+// (GET /api/sala/tavoli/{nomeSala}/{date}/{turno}, specifica in PiantaCompatta.java).
+// Pesa circa 1/40 del JSON e si decodifica senza JSON.parse: utile sul Wi-Fi del locale.
+//
+//  byte 0-1   magic "FP"        byte 2  versione (1)
+//  byte 3     tipo (1 = tavoli, 2 = zone)
+//  byte 4-19  minX, minY, larghezza, altezza (int32 big-endian)
+//  byte 20-   celle riga per riga, 2 bit per cella, prima cella nei 2 bit alti
+//             tavoli: 0 = vuota, 1 = LIBERO, 2 = RISERVATO, 3 = OCCUPATO
+export const FLOORPLAN_MEDIA_TYPE = 'application/x-floorplan';
+
+const HEADER = 20;
+const TIPO_TAVOLI = 1;
+const MODULE_SEATS = 2;
+
+const STATUS_BY_CODE: (TableStatus | null)[] = [null, 'free', 'reserved', 'occupied'];
+const STATUS_BY_STATO: Record<string, TableStatus> = {
+  LIBERO: 'free',
+  RISERVATO: 'reserved',
+  OCCUPATO: 'occupied',
+};
+
+// tavoli della configurazione come moduli da 2 posti: i gruppi li ricalcola useFloorPlan
+export function decodeFloorPlan(buf: ArrayBuffer, id: string, name: string): FloorPlan {
+  const view = new DataView(buf);
+  if (
+    buf.byteLength < HEADER ||
+    view.getUint8(0) !== 0x46 || // 'F'
+    view.getUint8(1) !== 0x50 || // 'P'
+    view.getUint8(2) !== 1 ||
+    view.getUint8(3) !== TIPO_TAVOLI
+  ) {
+    throw new Error('Formato pianta non valido');
+  }
+
+  const minX = view.getInt32(4);
+  const minY = view.getInt32(8);
+  const width = view.getInt32(12);
+  const height = view.getInt32(16);
+  const cells = new Uint8Array(buf, HEADER);
+
+  const tiles: TableTile[] = [];
+  for (let i = 0; i < width * height; i++) {
+    const code = (cells[i >> 2] >> (6 - 2 * (i & 3))) & 3;
+    const status = STATUS_BY_CODE[code];
+    if (!status) continue;
+
+    const x = minX + (i % width);
+    const y = minY + Math.floor(i / width);
+    tiles.push({ id: `t-${x}-${y}`, x, y, seats: MODULE_SEATS, status });
+  }
+
+  // la griglia dell'app parte da (0, 0): il piano deve contenere anche il rettangolo
+  return {
+    id,
+    name,
+    width: width > 0 ? minX + width : 0,
+    height: height > 0 ? minY + height : 0,
+    tiles,
+  };
+}
+
+// baseUrl es. "http://192.168.1.10:8080/api"
+export async function fetchFloorPlan(
+  baseUrl: string,
+  nomeSala: string,
+  date: string, // yyyy-MM-dd
+  turno: 'PRANZO' | 'CENA'
+): Promise<FloorPlan> {
+  const res = await fetch(
+    `${baseUrl}/sala/tavoli/${encodeURIComponent(nomeSala)}/${date}/${turno}`,
+    { headers: { Accept: `${FLOORPLAN_MEDIA_TYPE}, application/json;q=0.5` } }
+  );
+
+  if (!res.ok) {
+    throw new Error(`API ${res.status}: ${await res.text()}`);
+  }
+
+  const id = `${nomeSala}-${date}-${turno}`;
+  // piante molto estese: il backend risponde in JSON (raster più pesante della lista)
+  if (res.headers.get('Content-Type')?.includes('json')) {
+    return floorPlanFromJson(await res.json(), id, nomeSala);
+  }
+  return decodeFloorPlan(await res.arrayBuffer(), id, nomeSala);
+}
+
+// stessa FloorPlan di decodeFloorPlan a partire dalla lista JSON di getTavoli
+function floorPlanFromJson(
+  tavoli: { x: number; y: number; stato: string }[],
+  id: string,
+  name: string
+): FloorPlan {
+  let width = 0;
+  let height = 0;
+  const tiles: TableTile[] = tavoli.map(({ x, y, stato }) => {
+    width = Math.max(width, x + 1);
+    height = Math.max(height, y + 1);
+    return { id: `t-${x}-${y}`, x, y, seats: MODULE_SEATS, status: STATUS_BY_STATO[stato] ?? 'free' };
+  });
+  return { id, name, width, height, tiles };
+}